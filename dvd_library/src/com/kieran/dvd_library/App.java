@@ -2,27 +2,118 @@ package com.kieran.dvd_library;
 
 import com.kieran.dvd_library.controller.ControllerException;
 import com.kieran.dvd_library.controller.DVDLibraryController;
+import com.kieran.dvd_library.dao.DVDLibraryChangeStream;
+import com.kieran.dvd_library.dao.DVDLibraryChecksummedFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryCompactStorage;
 import com.kieran.dvd_library.dao.DVDLibraryDao;
+import com.kieran.dvd_library.dao.DVDLibraryFastStartFileImpl;
 import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryNormalizedStorage;
+import com.kieran.dvd_library.dao.DVDLibraryRegistry;
+import com.kieran.dvd_library.dao.DVDLibraryShardedDao;
 import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dao.DVDLibraryTitleFilter;
+import com.kieran.dvd_library.dao.DVDLibraryVersionedStorage;
 import com.kieran.dvd_library.ui.UserIO;
+import com.kieran.dvd_library.ui.UserIOBufferedImpl;
 import com.kieran.dvd_library.ui.UserIOConsoleImpl;
+import com.kieran.dvd_library.ui.UserIOException;
 import com.kieran.dvd_library.view.DVDLibraryView;
 
+import java.io.IOException;
+
 
 /**
  * The entry point wrapper for the DVD Library application
  */
 public class App {
+    /**
+     * The file the library is stored in
+     */
+    private static final String LIBRARY_FILE = "DVDLibrary.txt";
+    /**
+     * The file the title filter is saved to between runs
+     */
+    private static final String TITLE_FILTER_FILE = LIBRARY_FILE + ".filter";
+    /**
+     * The library opened from a --library-dir when no --library is given
+     */
+    private static final String DEFAULT_LIBRARY_NAME = "DVDLibrary";
+    /**
+     * The heap budget of a --library-dir when no --heap-budget-mb is given, in MiB
+     */
+    private static final int DEFAULT_HEAP_BUDGET_MB = 256;
+    /**
+     * The number of recent changes buffered in memory when a change log is attached
+     */
+    private static final int CHANGE_STREAM_CAPACITY = 4096;
+    /**
+     * The flags choosing the storage of a single library file, of which at most one may be passed
+     */
+    private static final String[] STORAGE_FLAGS = { "--versioned", "--normalized-titles", "--compact-storage" };
+    /**
+     * The flags configuring the storage or file of a single library file, which sharded and registry libraries ignore
+     */
+    private static final String[] SINGLE_FILE_FLAGS = { "--versioned", "--normalized-titles", "--compact-storage",
+            "--hot-reload", "--checksums", "--fast-start" };
+
     /**
      * The entry point for the DVD Library application
-     * @param args The command line arguments passed in with the application. This value is ignored
-     * @throws ControllerException thrown when the controller encounters an error
+     * @param args The command line arguments passed in with the application:
+     *             <ul>
+     *             <li>--versioned stores the library in a DVDLibraryVersionedStorage</li>
+     *             <li>--normalized-titles ignores case and surrounding whitespace in titles</li>
+     *             <li>--compact-storage keeps titles in an open addressing table instead of a HashMap</li>
+     *             <li>--fast-start shows the menu before the library has finished loading</li>
+     *             <li>--checksums stores a checksum with every record of the library file and quarantines
+     *             damaged records on load instead of failing</li>
+     *             <li>--hot-reload applies changes other programs make to the library file while the application
+     *             is running, storing the library in a DVDLibraryVersionedStorage</li>
+     *             <li>--shards N splits the library across N shard files</li>
+     *             <li>--shard-processes serves each shard from its own local process</li>
+     *             <li>--library-dir DIR serves a library from a DVDLibraryRegistry over DIR</li>
+     *             <li>--library NAME names the library served from --library-dir</li>
+     *             <li>--heap-budget-mb N keeps the libraries opened from --library-dir under N MiB of heap</li>
+     *             <li>--change-log FILE records every change made to the library in FILE</li>
+     *             <li>--title-filter answers lookups of absent titles with a Bloom filter</li>
+     *             <li>--title-filter-fpr R sets the title filter's target false positive rate</li>
+     *             <li>--buffered-io reads input through one long-lived buffer and only writes output when input is
+     *             requested, which speeds up scripted sessions piping thousands of commands</li>
+     *             </ul>
+     *             At most one of --versioned, --normalized-titles and --compact-storage may be given, and
+     *             --hot-reload only combines with --versioned. --checksums and --fast-start exclude each other.
+     *             --shards and --library-dir exclude each other and every storage and file flag
+     * @throws ControllerException thrown when the controller encounters an error, or the arguments combine
+     *                             conflicting flags
      */
     public static void main(String[] args) throws ControllerException {
         // Initialize dependencies
-        UserIO io = new UserIOConsoleImpl();
-        DVDLibraryDao dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), "DVDLibrary.txt");
+        UserIO io = hasFlag(args, "--buffered-io") ? new UserIOBufferedImpl() : new UserIOConsoleImpl();
+        DVDLibraryDao dao = createDao(args);
+        String changeLogFile = getOption(args, "--change-log");
+        if(changeLogFile != null) {
+            try {
+                DVDLibraryChangeStream.attach(dao, CHANGE_STREAM_CAPACITY, changeLogFile);
+            }
+            catch(IOException e) {
+                throw new ControllerException("Failed to open change log: " + e.getMessage());
+            }
+        }
+
+        DVDLibraryTitleFilter titleFilter = null;
+        // Only a single library file has a title filter file saved next to it
+        boolean singleFile = getIntOption(args, "--shards", 0) <= 0 && getOption(args, "--library-dir") == null;
+        if(hasFlag(args, "--title-filter")) {
+            double falsePositiveRate = getDoubleOption(args, "--title-filter-fpr", DVDLibraryTitleFilter.DEFAULT_FALSE_POSITIVE_RATE);
+            try {
+                titleFilter = singleFile
+                        ? DVDLibraryTitleFilter.attach(dao, falsePositiveRate, TITLE_FILTER_FILE, LIBRARY_FILE)
+                        : DVDLibraryTitleFilter.attach(dao, falsePositiveRate);
+            }
+            catch(IllegalArgumentException e) {
+                throw new ControllerException("Failed to attach title filter: " + e.getMessage());
+            }
+        }
 
         // Initialize the application view
         DVDLibraryView view = new DVDLibraryView(io);
@@ -30,6 +121,211 @@ public class App {
         DVDLibraryController controller = new DVDLibraryController(view, dao);
 
         // Start the application
-        controller.run();
+        try {
+            controller.run();
+            if(titleFilter != null && singleFile) {
+                titleFilter.save(TITLE_FILTER_FILE, LIBRARY_FILE);
+            }
+        }
+        finally {
+            try {
+                io.flush();
+            }
+            catch(UserIOException ignored) { }
+            if(dao instanceof DVDLibraryShardedDao) {
+                ((DVDLibraryShardedDao) dao).close();
+            }
+        }
+    }
+
+    /**
+     * Creates the DAO described by the command line arguments
+     * @param args The command line arguments
+     * @return The created DAO
+     * @throws ControllerException thrown when the DAO cannot be created
+     */
+    private static DVDLibraryDao createDao(String[] args) throws ControllerException {
+        checkFlagConflicts(args);
+        String libraryDir = getOption(args, "--library-dir");
+        if(libraryDir != null) {
+            String name = getOption(args, "--library");
+            long heapBudget = (long) getIntOption(args, "--heap-budget-mb", DEFAULT_HEAP_BUDGET_MB) << 20;
+            try {
+                return new DVDLibraryRegistry(libraryDir, heapBudget).open(name == null ? DEFAULT_LIBRARY_NAME : name);
+            }
+            catch(IllegalArgumentException e) {
+                throw new ControllerException(e.getMessage());
+            }
+        }
+        int shardCount = getIntOption(args, "--shards", 0);
+        if(shardCount > 0) {
+            if(!hasFlag(args, "--shard-processes")) {
+                return DVDLibraryShardedDao.openFiles(LIBRARY_FILE, shardCount);
+            }
+            try {
+                return DVDLibraryShardedDao.openProcesses(LIBRARY_FILE, shardCount);
+            }
+            catch(IOException e) {
+                throw new ControllerException("Failed to start shard processes: " + e.getMessage());
+            }
+        }
+        DVDLibraryStorage storage;
+        boolean hotReload = hasFlag(args, "--hot-reload");
+        if(hasFlag(args, "--versioned") || hotReload) {
+            storage = new DVDLibraryVersionedStorage();
+        }
+        else if(hasFlag(args, "--normalized-titles")) {
+            storage = new DVDLibraryNormalizedStorage();
+        }
+        else if(hasFlag(args, "--compact-storage")) {
+            storage = new DVDLibraryCompactStorage();
+        }
+        else {
+            storage = new DVDLibraryStorage();
+        }
+        DVDLibraryFileImpl dao;
+        if(hasFlag(args, "--checksums")) {
+            dao = new DVDLibraryChecksummedFileImpl(storage, LIBRARY_FILE);
+        }
+        else if(hasFlag(args, "--fast-start")) {
+            dao = new DVDLibraryFastStartFileImpl(storage, LIBRARY_FILE);
+        }
+        else {
+            dao = new DVDLibraryFileImpl(storage, LIBRARY_FILE);
+        }
+        try {
+            if(hotReload && !dao.startHotReload()) {
+                throw new ControllerException("Failed to watch " + LIBRARY_FILE + " for changes");
+            }
+        }
+        catch(IllegalStateException e) {
+            throw new ControllerException("Failed to start hot reload: " + e.getMessage());
+        }
+        return dao;
+    }
+
+    /**
+     * Rejects command line flags which cannot be honoured together, rather than letting one silently win
+     * @param args The command line arguments
+     * @throws ControllerException thrown when two conflicting flags are passed, or a flag is passed without
+     *                             the flag it modifies
+     */
+    private static void checkFlagConflicts(String[] args) throws ControllerException {
+        for(int i = 0; i < STORAGE_FLAGS.length; i++) {
+            for(int j = i + 1; j < STORAGE_FLAGS.length; j++) {
+                rejectCombination(args, STORAGE_FLAGS[i], STORAGE_FLAGS[j]);
+            }
+        }
+        // Every other storage flag conflicts with the versioned storage hot reload requires
+        rejectCombination(args, "--hot-reload", "--normalized-titles");
+        rejectCombination(args, "--hot-reload", "--compact-storage");
+        rejectCombination(args, "--checksums", "--fast-start");
+        rejectCombination(args, "--shards", "--library-dir");
+        for(String flag : SINGLE_FILE_FLAGS) {
+            rejectCombination(args, "--shards", flag);
+            rejectCombination(args, "--library-dir", flag);
+        }
+        requireFlag(args, "--shard-processes", "--shards");
+        requireFlag(args, "--library", "--library-dir");
+        requireFlag(args, "--heap-budget-mb", "--library-dir");
+        requireFlag(args, "--title-filter-fpr", "--title-filter");
+    }
+
+    /**
+     * Rejects two flags passed together
+     * @param args The command line arguments
+     * @param first The first flag
+     * @param second The flag conflicting with first
+     * @throws ControllerException thrown when both flags are present in args
+     */
+    private static void rejectCombination(String[] args, String first, String second) throws ControllerException {
+        if(hasFlag(args, first) && hasFlag(args, second)) {
+            throw new ControllerException(first + " cannot be combined with " + second);
+        }
+    }
+
+    /**
+     * Rejects a flag passed without the flag it modifies
+     * @param args The command line arguments
+     * @param flag The modifying flag
+     * @param required The flag which must be present for flag to have an effect
+     * @throws ControllerException thrown when flag is present in args without required
+     */
+    private static void requireFlag(String[] args, String flag, String required) throws ControllerException {
+        if(hasFlag(args, flag) && !hasFlag(args, required)) {
+            throw new ControllerException(flag + " requires " + required);
+        }
+    }
+
+    /**
+     * Checks if a flag was passed on the command line
+     * @param args The command line arguments
+     * @param flag The flag to look for
+     * @return True if the flag is present in args, and false otherwise
+     */
+    private static boolean hasFlag(String[] args, String flag) {
+        for(String arg : args) {
+            if(arg.equals(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the value following an option on the command line
+     * @param args The command line arguments
+     * @param option The option to look for
+     * @return The option's value, or null if the option is missing
+     */
+    private static String getOption(String[] args, String option) {
+        for(int i = 0; i < args.length - 1; i++) {
+            if(args[i].equals(option)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the integer value following an option on the command line
+     * @param args The command line arguments
+     * @param option The option to look for
+     * @param defaultValue The value returned if the option is missing
+     * @return The option's value, or defaultValue if the option is missing
+     * @throws ControllerException thrown when the option's value is not an integer
+     */
+    private static int getIntOption(String[] args, String option, int defaultValue) throws ControllerException {
+        String value = getOption(args, option);
+        if(value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        }
+        catch(NumberFormatException e) {
+            throw new ControllerException("Invalid value for " + option + ": " + value);
+        }
+    }
+
+    /**
+     * Retrieves the decimal value following an option on the command line
+     * @param args The command line arguments
+     * @param option The option to look for
+     * @param defaultValue The value returned if the option is missing
+     * @return The option's value, or defaultValue if the option is missing
+     * @throws ControllerException thrown when the option's value is not a number
+     */
+    private static double getDoubleOption(String[] args, String option, double defaultValue) throws ControllerException {
+        String value = getOption(args, option);
+        if(value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        }
+        catch(NumberFormatException e) {
+            throw new ControllerException("Invalid value for " + option + ": " + value);
+        }
     }
 }
@@ -0,0 +1,197 @@
+package com.kieran.dvd_library.benchmark;
+
+import com.kieran.dvd_library.dao.DVDLibraryChangeStream;
+import com.kieran.dvd_library.dao.DVDLibraryDao;
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import com.kieran.dvd_library.index.ReleaseDateIndex;
+import com.kieran.dvd_library.util.DVDPredicates;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Compares bulk updateWhere() and deleteWhere() against one updateDvd() or removeDvd() call per matching DVD,
+ * the way the EDIT and REMOVE menu options change a library.
+ *
+ * Every run starts from a fresh library. Each operation is measured on a bare library, and again with a release
+ * date index and a change stream persisted to a change log attached, so the second figures include keeping
+ * listeners and the log up to date.
+ *
+ * Usage: BulkOperationBenchmark [librarySize]. A million DVDs needs a heap of about 3 GiB
+ */
+public class BulkOperationBenchmark {
+    /**
+     * The number of distinct studios in the generated library
+     */
+    private static final int STUDIOS = 50;
+    /**
+     * The MPAA ratings of the generated library, assigned in turn
+     */
+    private static final String[] RATINGS = { "G", "PG", "PG-13", "R", "NC-17" };
+    /**
+     * The number of events the change stream buffers in memory
+     */
+    private static final int STREAM_CAPACITY = 4096;
+
+    /**
+     * The entry point of the benchmark
+     * @param args The number of DVDs in the generated library
+     * @throws IOException thrown when the change log cannot be created
+     */
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<DVD> dvds = generate(size);
+        File workDir = Files.createTempDirectory("bulk-benchmark").toFile();
+        Predicate<DVD> studio = DVDPredicates.fieldEquals(EDVDField.STUDIO, "Studio 7");
+        LocalDate from = LocalDate.of(2000, 1, 1);
+        LocalDate to = LocalDate.of(2001, 12, 31);
+        Predicate<DVD> released = DVDPredicates.releasedBetween(from, to);
+        Predicate<DVD> rating = DVDPredicates.fieldEquals(EDVDField.MPAA_RATING, "NC-17");
+        DVDPatch rename = new DVDPatch();
+        rename.set(EDVDField.STUDIO, "Renamed Studio");
+
+        System.out.printf("%-44s %-10s %10s %10s %14s%n", "Operation", "Listeners", "DVDs", "ms", "DVDs/s");
+        try {
+            for(int round = 0; round < 3; round++) {
+                // The first round warms up the JIT and is not reported
+                boolean report = round > 0;
+                boolean listeners = round == 2;
+
+                Run run = new Run(dvds, workDir, listeners);
+                long start = System.nanoTime();
+                int changed = 0;
+                for(DVD dvd : run.dao.query(studio)) {
+                    changed += run.dao.updateDvd(dvd.getTitle(), rename) ? 1 : 0;
+                }
+                run.finish(report, "updateDvd per DVD, studio = Studio 7", changed, start);
+
+                run = new Run(dvds, workDir, listeners);
+                start = System.nanoTime();
+                changed = run.dao.updateWhere(studio, rename);
+                run.finish(report, "updateWhere scan, studio = Studio 7", changed, start);
+
+                run = new Run(dvds, workDir, listeners);
+                start = System.nanoTime();
+                changed = run.dao.updateWhere(run.releaseDates.releasedBetween(from, to), released, rename);
+                run.finish(report, "updateWhere index, released 2000-2001", changed, start);
+
+                run = new Run(dvds, workDir, listeners);
+                start = System.nanoTime();
+                changed = 0;
+                for(DVD dvd : run.dao.query(rating)) {
+                    changed += run.dao.removeDvd(dvd.getTitle()) ? 1 : 0;
+                }
+                run.finish(report, "removeDvd per DVD, rating = NC-17", changed, start);
+
+                run = new Run(dvds, workDir, listeners);
+                start = System.nanoTime();
+                changed = run.dao.deleteWhere(rating);
+                run.finish(report, "deleteWhere scan, rating = NC-17", changed, start);
+            }
+        }
+        finally {
+            File[] files = workDir.listFiles();
+            if(files != null) {
+                for(File file : files) {
+                    file.delete();
+                }
+            }
+            workDir.delete();
+        }
+    }
+
+    /**
+     * Generates a library with evenly spread studios, release dates and ratings
+     * @param size The number of DVDs to generate
+     * @return The generated DVDs
+     */
+    private static List<DVD> generate(int size) {
+        List<DVD> dvds = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            DVD dvd = new DVD();
+            dvd.setTitle("The Movie Number " + i);
+            dvd.setReleaseDate(String.format("%02d/%02d/%d", 1 + i % 12, 1 + i % 28, 1950 + i % 70));
+            dvd.setMpaaRating(RATINGS[i % RATINGS.length]);
+            dvd.setDirectorName("Director " + i % 1000);
+            dvd.setStudio("Studio " + i % STUDIOS);
+            dvd.setUserRatingAndNote((i % 11) + "/10");
+            dvds.add(dvd);
+        }
+        return dvds;
+    }
+
+    /**
+     * A fresh library, with or without its listeners attached
+     */
+    private static final class Run {
+        /**
+         * The library's DAO, which is never loaded or saved
+         */
+        final DVDLibraryDao dao;
+        /**
+         * The release date index of the library, attached to the DAO if listeners are measured
+         */
+        final ReleaseDateIndex releaseDates = new ReleaseDateIndex();
+        /**
+         * The change stream attached to the DAO, or null if listeners are not measured
+         */
+        final DVDLibraryChangeStream stream;
+        /**
+         * The file holding the change log, or null if listeners are not measured
+         */
+        final File logFile;
+
+        /**
+         * Builds a library
+         * @param dvds The DVDs of the library
+         * @param workDir The directory holding the change log
+         * @param listeners If the release date index and change stream should be attached to the DAO
+         * @throws IOException thrown when the change log cannot be created
+         */
+        Run(List<DVD> dvds, File workDir, boolean listeners) throws IOException {
+            DVDLibraryStorage storage = new DVDLibraryStorage(dvds);
+            dao = new DVDLibraryFileImpl(storage, new File(workDir, "library.txt").getPath());
+            releaseDates.onReload(storage.getAllDvds());
+            if(!listeners) {
+                stream = null;
+                logFile = null;
+                return;
+            }
+            dao.addChangeListener(releaseDates);
+            logFile = File.createTempFile("changes", ".log", workDir);
+            logFile.delete();
+            stream = DVDLibraryChangeStream.attach(dao, STREAM_CAPACITY, logFile.getPath());
+        }
+
+        /**
+         * Closes the change log, if any, and prints a result row
+         * @param report If the row should be printed
+         * @param label The operation description
+         * @param changed The number of DVDs the operation changed
+         * @param start The System.nanoTime() the operation started at
+         * @throws IOException thrown when the change log cannot be closed
+         */
+        void finish(boolean report, String label, int changed, long start) throws IOException {
+            if(stream != null) {
+                stream.close();
+            }
+            long elapsed = System.nanoTime() - start;
+            if(logFile != null) {
+                logFile.delete();
+            }
+            if(report) {
+                System.out.printf("%-44s %-10s %10d %10.1f %14.0f%n", label, stream != null ? "attached" : "none",
+                        changed, elapsed / 1e6, changed / (elapsed / 1e9));
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.kieran.dvd_library.benchmark;
+
+import com.kieran.dvd_library.dao.DVDLibraryDao;
+import com.kieran.dvd_library.dao.DVDLibraryFastStartFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Measures the time from constructing a DAO until its first GET is answered,
+ * comparing a full load() against the fast start title index.
+ *
+ * Usage: StartupBenchmark [recordCount] [rounds]
+ */
+public class StartupBenchmark {
+    /**
+     * The entry point of the benchmark
+     * @param args The number of records in the library and the number of measured rounds
+     * @throws IOException thrown when the temporary library cannot be created
+     */
+    public static void main(String[] args) throws IOException {
+        int recordCount = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File libraryFile = File.createTempFile("dvd-startup", ".txt");
+        libraryFile.deleteOnExit();
+        new File(libraryFile + ".idx").deleteOnExit();
+
+        // Write the library once, through the fast start DAO so the title index exists
+        DVDLibraryFastStartFileImpl writer = new DVDLibraryFastStartFileImpl(new DVDLibraryStorage(), libraryFile.getPath());
+        for(int i = 0; i < recordCount; i++) {
+            writer.addDvd(buildDvd(i));
+        }
+        if(!writer.save()) {
+            throw new IOException("Failed to write " + libraryFile);
+        }
+        String probeTitle = "Title " + (recordCount / 2);
+
+        System.out.printf("Library of %d records (%d bytes)%n", recordCount, libraryFile.length());
+        long bestFull = Long.MAX_VALUE;
+        long bestFast = Long.MAX_VALUE;
+        long bestFastComplete = Long.MAX_VALUE;
+        for(int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            DVDLibraryDao full = new DVDLibraryFileImpl(new DVDLibraryStorage(), libraryFile.getPath());
+            full.load();
+            requireFound(full.getDvdInfo(probeTitle));
+            bestFull = Math.min(bestFull, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            DVDLibraryFastStartFileImpl fast = new DVDLibraryFastStartFileImpl(new DVDLibraryStorage(), libraryFile.getPath());
+            fast.load();
+            requireFound(fast.getDvdInfo(probeTitle));
+            bestFast = Math.min(bestFast, System.nanoTime() - start);
+            fast.awaitLoaded();
+            bestFastComplete = Math.min(bestFastComplete, System.nanoTime() - start);
+        }
+        System.out.printf("Full load, time to first GET:        %10.2f ms%n", bestFull / 1e6);
+        System.out.printf("Fast start, time to first GET:       %10.2f ms%n", bestFast / 1e6);
+        System.out.printf("Fast start, time to background load: %10.2f ms%n", bestFastComplete / 1e6);
+    }
+
+    /**
+     * Builds a synthetic DVD
+     * @param i The number of the DVD
+     * @return The built DVD
+     */
+    private static DVD buildDvd(int i) {
+        DVD dvd = new DVD();
+        dvd.setTitle("Title " + i);
+        dvd.setReleaseDate(String.valueOf(1950 + i % 70));
+        dvd.setMpaaRating("PG-13");
+        dvd.setDirectorName("Director " + (i % 1000));
+        dvd.setStudio("Studio " + (i % 50));
+        dvd.setUserRatingAndNote((i % 10) + "/10 a note about title " + i);
+        return dvd;
+    }
+
+    /**
+     * Fails the benchmark if the probe title was not found
+     * @param dvd The result of the probe lookup
+     */
+    private static void requireFound(DVD dvd) {
+        if(dvd == null) {
+            throw new IllegalStateException("Probe title was not found");
+        }
+    }
+}
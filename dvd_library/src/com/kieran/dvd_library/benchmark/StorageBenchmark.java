@@ -0,0 +1,178 @@
+package com.kieran.dvd_library.benchmark;
+
+import com.kieran.dvd_library.dao.DVDLibraryCompactStorage;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the HashMap backed DVDLibraryStorage against DVDLibraryCompactStorage, reporting the heap each storage
+ * holds per DVD and the nanoseconds taken to add, look up and remove a DVD across several library sizes.
+ *
+ * Adds are measured on empty storages, which grow as DVDs are added, and on storages presized for every DVD the way
+ * a library file is loaded. A presized fill allocates nothing the storage lets go of, so the bytes it allocates are
+ * the bytes the storage holds beyond the DVDs and titles themselves.
+ * Lookups use equal copies of the stored titles, so each hit compares title contents.
+ *
+ * Usage: StorageBenchmark [lookupsPerSize]
+ */
+public class StorageBenchmark {
+    /**
+     * The library sizes measured
+     */
+    private static final int[] SIZES = { 10_000, 100_000, 1_000_000 };
+    /**
+     * The number of times each measurement is repeated, keeping the fastest
+     */
+    private static final int REPEATS = 5;
+    /**
+     * A sink for lookup results, so the JIT cannot discard the lookups
+     */
+    private static int sink;
+
+    /**
+     * The entry point of the benchmark
+     * @param args The number of lookups measured per library size
+     */
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        System.out.printf("%-9s %-14s %9s %9s %9s %9s %9s %9s%n", "Size", "Storage",
+                "B/DVD", "put ns", "presized", "hit ns", "miss ns", "remove ns");
+        // The first pass over the smallest size warms up the JIT and is not reported
+        for(int pass = -1; pass < SIZES.length; pass++) {
+            boolean report = pass >= 0;
+            int size = SIZES[Math.max(pass, 0)];
+            DVD[] dvds = new DVD[size];
+            String[] copies = new String[size];
+            String[] absent = new String[size];
+            // Numbered titles have nearly consecutive hash codes, which lets a HashMap walk its table in order.
+            // Shuffling the numbers keeps adds and removals from following that order
+            Random random = new Random(size);
+            int[] numbers = new int[size];
+            for(int i = 0; i < size; i++) {
+                int swap = random.nextInt(i + 1);
+                numbers[i] = numbers[swap];
+                numbers[swap] = i;
+            }
+            for(int i = 0; i < size; i++) {
+                dvds[i] = new DVD();
+                dvds[i].setTitle("The Movie Number " + numbers[i]);
+                copies[i] = new String(dvds[i].getTitle());
+                absent[i] = "The Missing Movie " + numbers[i];
+            }
+            // Build the query order up front so it is not part of the measurement
+            int[] order = new int[lookups];
+            for(int i = 0; i < lookups; i++) {
+                order[i] = random.nextInt(size);
+            }
+            run(report, "HashMap", DVDLibraryStorage::new, dvds, copies, absent, order);
+            run(report, "Compact", DVDLibraryCompactStorage::new, dvds, copies, absent, order);
+        }
+        if(sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Measures one kind of storage and prints its result row
+     * @param report If the row should be printed
+     * @param label The storage description
+     * @param factory Creates empty storages of the measured kind
+     * @param dvds The DVDs of the library
+     * @param copies Equal copies of every stored title
+     * @param absent Titles which are not stored
+     * @param order The indexes into copies and absent, in lookup order
+     */
+    private static void run(boolean report, String label, Supplier<DVDLibraryStorage> factory,
+                            DVD[] dvds, String[] copies, String[] absent, int[] order) {
+        int size = dvds.length;
+        long bytes = Long.MAX_VALUE;
+        long put = Long.MAX_VALUE;
+        long presized = Long.MAX_VALUE;
+        long hit = Long.MAX_VALUE;
+        long miss = Long.MAX_VALUE;
+        long remove = Long.MAX_VALUE;
+        for(int repeat = 0; repeat < REPEATS; repeat++) {
+            DVDLibraryStorage storage = factory.get();
+            long start = System.nanoTime();
+            fill(storage, dvds);
+            put = Math.min(put, System.nanoTime() - start);
+
+            storage = factory.get();
+            long allocatedBefore = allocatedBytes();
+            start = System.nanoTime();
+            storage.presize(size);
+            fill(storage, dvds);
+            presized = Math.min(presized, System.nanoTime() - start);
+            bytes = Math.min(bytes, allocatedBytes() - allocatedBefore);
+
+            hit = Math.min(hit, lookup(storage, copies, order, order.length));
+            miss = Math.min(miss, lookup(storage, absent, order, 0));
+
+            start = System.nanoTime();
+            for(String title : copies) {
+                storage.removeDvd(title);
+            }
+            remove = Math.min(remove, System.nanoTime() - start);
+            if(!storage.isEmpty()) {
+                throw new IllegalStateException(label + " kept DVDs after removing every title");
+            }
+        }
+        if(!report) {
+            return;
+        }
+        System.out.printf("%-9d %-14s %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", size, label, (double) bytes / size,
+                (double) put / size, (double) presized / size, (double) hit / order.length,
+                (double) miss / order.length, (double) remove / size);
+    }
+
+    /**
+     * Adds every DVD to a storage
+     * @param storage The storage to fill
+     * @param dvds The DVDs to add
+     */
+    private static void fill(DVDLibraryStorage storage, DVD[] dvds) {
+        for(DVD dvd : dvds) {
+            storage.addDvd(dvd);
+        }
+    }
+
+    /**
+     * Runs every lookup against a storage
+     * @param storage The storage to query
+     * @param titles The titles to look up
+     * @param order The indexes into titles, in lookup order
+     * @param expected The number of lookups expected to find a DVD
+     * @return The elapsed nanoseconds
+     */
+    private static long lookup(DVDLibraryStorage storage, String[] titles, int[] order, int expected) {
+        long start = System.nanoTime();
+        int found = 0;
+        for(int idx : order) {
+            if(storage.getDvd(titles[idx]) != null) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if(found != expected) {
+            throw new IllegalStateException("Expected " + expected + " lookups to find a DVD, but " + found + " did");
+        }
+        sink += found;
+        return elapsed;
+    }
+
+    /**
+     * Retrieves the number of bytes the current thread has allocated
+     * @return The allocated bytes, or 0 if the JVM cannot report them
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,119 @@
+package com.kieran.dvd_library.benchmark;
+
+import com.kieran.dvd_library.dao.DVDLibraryNormalizedStorage;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Compares the cost of DVDLibraryStorage.getDvd() against the normalized title storage,
+ * reporting nanoseconds and bytes allocated per lookup across several library sizes.
+ *
+ * Usage: TitleLookupBenchmark [lookupsPerSize]
+ */
+public class TitleLookupBenchmark {
+    /**
+     * The library sizes measured
+     */
+    private static final int[] SIZES = { 10_000, 100_000, 1_000_000 };
+    /**
+     * A sink for lookup results, so the JIT cannot discard the lookups
+     */
+    private static int sink;
+
+    /**
+     * The entry point of the benchmark
+     * @param args The number of lookups measured per library size
+     */
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        System.out.printf("%-10s %-32s %10s %14s%n", "Size", "Storage / query", "ns/lookup", "bytes/lookup");
+        for(int size : SIZES) {
+            DVDLibraryStorage plain = new DVDLibraryStorage();
+            DVDLibraryNormalizedStorage normalized = new DVDLibraryNormalizedStorage();
+            String[] exact = new String[size];
+            String[] copies = new String[size];
+            String[] variant = new String[size];
+            for(int i = 0; i < size; i++) {
+                DVD dvd = new DVD();
+                dvd.setTitle("The Movie Number " + i);
+                plain.addDvd(dvd);
+                normalized.addDvd(dvd);
+                exact[i] = dvd.getTitle();
+                copies[i] = new String(dvd.getTitle());
+                variant[i] = "  the MOVIE number " + i + " ";
+            }
+            // Build the query order up front so it is not part of the measurement
+            Random random = new Random(size);
+            int[] order = new int[lookups];
+            for(int i = 0; i < lookups; i++) {
+                order[i] = random.nextInt(size);
+            }
+            for(int warmup = 0; warmup < 2; warmup++) {
+                measure(plain, exact, order);
+                measure(plain, copies, order);
+                measure(normalized, exact, order);
+                measure(normalized, copies, order);
+                measure(normalized, variant, order);
+            }
+            report(size, "HashMap / stored title", measure(plain, exact, order), lookups);
+            report(size, "HashMap / equal copy", measure(plain, copies, order), lookups);
+            report(size, "Normalized / stored title", measure(normalized, exact, order), lookups);
+            report(size, "Normalized / equal copy", measure(normalized, copies, order), lookups);
+            report(size, "Normalized / case+space variant", measure(normalized, variant, order), lookups);
+        }
+        if(sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Runs every lookup against a storage
+     * @param storage The storage to query
+     * @param titles The titles to look up
+     * @param order The indexes into titles, in lookup order
+     * @return The elapsed nanoseconds and the bytes allocated by the lookups
+     */
+    private static long[] measure(DVDLibraryStorage storage, String[] titles, int[] order) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        int found = 0;
+        for(int idx : order) {
+            if(storage.getDvd(titles[idx]) != null) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        if(found != order.length) {
+            throw new IllegalStateException("Lookups missed " + (order.length - found) + " titles");
+        }
+        sink += found;
+        return new long[]{ elapsed, allocated };
+    }
+
+    /**
+     * Prints a result row
+     * @param size The library size
+     * @param label The storage and query description
+     * @param result The elapsed nanoseconds and allocated bytes
+     * @param lookups The number of lookups measured
+     */
+    private static void report(int size, String label, long[] result, int lookups) {
+        System.out.printf("%-10d %-32s %10.1f %14.2f%n", size, label, (double) result[0] / lookups, (double) result[1] / lookups);
+    }
+
+    /**
+     * Retrieves the number of bytes the current thread has allocated
+     * @return The allocated bytes, or 0 if the JVM cannot report them
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
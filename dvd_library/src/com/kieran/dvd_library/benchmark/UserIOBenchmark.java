@@ -0,0 +1,150 @@
+package com.kieran.dvd_library.benchmark;
+
+import com.kieran.dvd_library.ui.UserIO;
+import com.kieran.dvd_library.ui.UserIOBufferedImpl;
+import com.kieran.dvd_library.ui.UserIOConsoleImpl;
+import com.kieran.dvd_library.ui.UserIOException;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares the wall time of UserIOConsoleImpl and UserIOBufferedImpl when a scripted session
+ * is piped through them. Each command displays the main menu, reads a menu selection and
+ * reads a title, and output goes to a scratch file so the cost of every write reaches the OS.
+ *
+ * Input is delivered one line per read, like a terminal, since UserIOConsoleImpl creates a new
+ * Scanner per input and would lose anything buffered past the current line.
+ *
+ * Usage: UserIOBenchmark [commands]
+ */
+public class UserIOBenchmark {
+    /**
+     * The menu displayed before every command
+     */
+    private static final String MENU = "Welcome to the DVD Library:\n1) Add a DVD\n2) Remove a DVD\n3) Edit a DVD\n" +
+            "4) List all DVDs\n5) Find DVD\n6) Library statistics\n7) Exit\nPlease choose an Option: ";
+
+    /**
+     * The entry point of the benchmark
+     * @param args The number of commands piped through each implementation
+     * @throws IOException thrown when the scratch output file cannot be written
+     * @throws UserIOException thrown when an implementation fails to read or write
+     */
+    public static void main(String[] args) throws IOException, UserIOException {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        StringBuilder script = new StringBuilder();
+        for(int i = 0; i < commands; i++) {
+            script.append(i % 7 + 1).append('\n').append("The Movie Number ").append(i).append('\n');
+        }
+        byte[] input = script.toString().getBytes(StandardCharsets.UTF_8);
+        File outFile = File.createTempFile("userio-benchmark", ".out");
+        outFile.deleteOnExit();
+
+        PrintStream originalOut = System.out;
+        InputStream originalIn = System.in;
+        long consoleNanos;
+        try(PrintStream consoleOut = new PrintStream(new BufferedOutputStream(new FileOutputStream(outFile), 8192), true)) {
+            // UserIOConsoleImpl is hardwired to the standard streams, which behave like System.out/in on a terminal
+            System.setOut(consoleOut);
+            System.setIn(new LinePerReadInputStream(input));
+            consoleNanos = run(new UserIOConsoleImpl(), commands);
+        }
+        finally {
+            System.setOut(originalOut);
+            System.setIn(originalIn);
+        }
+        long bufferedNanos;
+        try(OutputStream bufferedOut = new FileOutputStream(outFile)) {
+            bufferedNanos = run(new UserIOBufferedImpl(new LinePerReadInputStream(input), bufferedOut,
+                    UserIOBufferedImpl.DEFAULT_OUTPUT_BUFFER_SIZE), commands);
+        }
+
+        System.out.printf("%-22s %12s %14s%n", "Implementation", "wall ms", "commands/sec");
+        report("UserIOConsoleImpl", consoleNanos, commands);
+        report("UserIOBufferedImpl", bufferedNanos, commands);
+        System.out.printf("Speedup: %.1fx%n", (double) consoleNanos / bufferedNanos);
+    }
+
+    /**
+     * Pipes every command through an implementation
+     * @param io The implementation to measure
+     * @param commands The number of commands in the script
+     * @return The elapsed nanoseconds
+     * @throws UserIOException thrown when the implementation fails to read or write
+     */
+    private static long run(UserIO io, int commands) throws UserIOException {
+        long start = System.nanoTime();
+        long checksum = 0;
+        for(int i = 0; i < commands; i++) {
+            io.displayMessage(MENU);
+            checksum += io.getInputNumber(null).intValue();
+            checksum += io.getInputString("Enter the title of the DVD: ").length();
+        }
+        io.flush();
+        long elapsed = System.nanoTime() - start;
+        if(checksum == 42) {
+            System.err.println();
+        }
+        return elapsed;
+    }
+
+    /**
+     * Prints a row of the results table
+     * @param name The implementation measured
+     * @param nanos The elapsed nanoseconds
+     * @param commands The number of commands piped through
+     */
+    private static void report(String name, long nanos, int commands) {
+        System.out.printf("%-22s %12d %14.0f%n", name, nanos / 1_000_000, commands / (nanos / 1e9));
+    }
+
+    /**
+     * An input stream returning at most one line per read, like a terminal in canonical mode
+     */
+    private static final class LinePerReadInputStream extends InputStream {
+        /**
+         * The scripted input
+         */
+        private final byte[] data;
+        /**
+         * The position of the next unread byte
+         */
+        private int position = 0;
+
+        /**
+         * Constructs a new LinePerReadInputStream
+         * @param data The scripted input
+         */
+        LinePerReadInputStream(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return position < data.length ? data[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if(position >= data.length) {
+                return -1;
+            }
+            int count = 0;
+            while(count < length && position < data.length) {
+                byte b = data[position++];
+                buffer[offset + count++] = b;
+                if(b == '\n') {
+                    break;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -1,12 +1,27 @@
 package com.kieran.dvd_library.controller;
 
 import com.kieran.dvd_library.dao.DVDLibraryDao;
+import com.kieran.dvd_library.dao.DVDLibrarySerializer;
 import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import com.kieran.dvd_library.index.DVDLibraryStatistics;
+import com.kieran.dvd_library.index.ReleaseDateIndex;
+import com.kieran.dvd_library.index.TitleTrigramIndex;
+import com.kieran.dvd_library.index.UserScoreIndex;
+import com.kieran.dvd_library.ui.EBulkAction;
 import com.kieran.dvd_library.ui.EMenuSelection;
+import com.kieran.dvd_library.ui.UserIOEndOfInputException;
 import com.kieran.dvd_library.ui.UserIOException;
+import com.kieran.dvd_library.util.DVDPredicates;
 import com.kieran.dvd_library.view.DVDLibraryView;
+import com.kieran.dvd_library.view.DVDRowRenderCache;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * The controller layer for the DVD Library Application
@@ -20,6 +35,30 @@ public class DVDLibraryController {
      * The data access object used by the controller
      */
     private DVDLibraryDao dao;
+    /**
+     * The approximate title index used to suggest titles when a lookup misses
+     */
+    private TitleTrigramIndex titleIndex;
+    /**
+     * The library statistics, kept up to date with every mutation of the DAO
+     */
+    private DVDLibraryStatistics statistics;
+    /**
+     * The ranking of DVDs by user score, kept up to date with every mutation of the DAO
+     */
+    private UserScoreIndex scoreIndex;
+    /**
+     * The DVDs ordered by release date, kept up to date with every mutation of the DAO
+     */
+    private ReleaseDateIndex releaseDateIndex;
+    /**
+     * The maximum number of titles suggested when a lookup misses
+     */
+    private static final int MAX_SUGGESTIONS = 5;
+    /**
+     * The number of highest scored, lowest scored and newest DVDs shown with the library statistics
+     */
+    private static final int RANKED_DVDS_SHOWN = 5;
 
     /**
      * Constructs a new DVDLibraryController with a given view and data access type
@@ -29,6 +68,18 @@ public class DVDLibraryController {
     public DVDLibraryController(DVDLibraryView view, DVDLibraryDao dao) {
         this.view = view;
         this.dao = dao;
+        this.titleIndex = new TitleTrigramIndex();
+        this.dao.addChangeListener(titleIndex);
+        this.statistics = new DVDLibraryStatistics();
+        this.dao.addChangeListener(statistics);
+        this.scoreIndex = new UserScoreIndex();
+        this.dao.addChangeListener(scoreIndex);
+        this.releaseDateIndex = new ReleaseDateIndex();
+        this.dao.addChangeListener(releaseDateIndex);
+        DVDRowRenderCache rowCache = new DVDRowRenderCache();
+        this.dao.addChangeListener(rowCache);
+        this.view.setRowCache(rowCache);
+        this.view.setTitleFilter(dao.getTitleFilter());
     }
 
     /**
@@ -41,37 +92,60 @@ public class DVDLibraryController {
             throw new ControllerException("Failed to load DAO");
         }
 
-        // Main loop
+        // Main loop, which the end of the input ends like EXIT
         boolean finished = false;
-        while(!finished) {
-            // Query the user's selection
-            EMenuSelection selection = awaitInputGetMenuSelection();
-            switch (selection) {
-                case ADD:
-                    awaitInputAddDvd();
-                    break;
-                case EDIT:
-                    awaitInputEditDvd();
-                    break;
-                case REMOVE:
-                    awaitInputRemoveDvd();
-                    break;
-                case LIST_ALL:
-                    awaitInputListDvds();
-                    break;
-                case GET:
-                    awaitInputGetDvdInfo();
-                    break;
-                case EXIT:
-                    finished = true;
-                    break;
-                case NOOP:
-                    break;
-                default:
-                    // Throw an exception upon unimplemented menu selections
-                    throw new UnsupportedOperationException("Unrecognized command");
+        boolean warningsShown = false;
+        try {
+            while(!finished) {
+                // Load warnings are only complete once a background load has finished
+                if(!warningsShown && dao.isFullyLoaded()) {
+                    displayLoadWarnings();
+                    warningsShown = true;
+                }
+                // Query the user's selection
+                EMenuSelection selection = awaitInputGetMenuSelection();
+                switch (selection) {
+                    case ADD:
+                        awaitInputAddDvd();
+                        break;
+                    case EDIT:
+                        awaitInputEditDvd();
+                        break;
+                    case REMOVE:
+                        awaitInputRemoveDvd();
+                        break;
+                    case LIST_ALL:
+                        awaitInputListDvds();
+                        break;
+                    case GET:
+                        awaitInputGetDvdInfo();
+                        break;
+                    case IMPORT:
+                        awaitInputImportDvds();
+                        break;
+                    case BULK_EDIT:
+                        awaitInputBulkEdit();
+                        break;
+                    case STATISTICS:
+                        displayStatistics();
+                        break;
+                    case EXIT:
+                        finished = true;
+                        break;
+                    case NOOP:
+                        break;
+                    default:
+                        // Throw an exception upon unimplemented menu selections
+                        throw new UnsupportedOperationException("Unrecognized command");
+                }
             }
         }
+        catch(UserIOEndOfInputException e) {
+            view.displayErrorMessage("End of input, exiting");
+        }
+        if(!warningsShown) {
+            displayLoadWarnings();
+        }
 
         // Make sure we are able to correctly save the application
         if(!dao.save()) {
@@ -79,25 +153,36 @@ public class DVDLibraryController {
         }
     }
 
+    /**
+     * Displays the problems found while the DAO was loaded, waiting for a background load to finish
+     */
+    private void displayLoadWarnings() {
+        for(String warning : dao.getLoadWarnings()) {
+            view.displayErrorMessage(warning);
+        }
+    }
+
     /**
      * Process the ADD menu selection.
      * This function will stall the application until it receives input
+     * @throws UserIOEndOfInputException thrown when the input has ended
      */
-    private void awaitInputAddDvd() {
+    private void awaitInputAddDvd() throws UserIOEndOfInputException {
         try {
             DVD target = view.awaitInputCreateDvd();
             dao.addDvd(target);
         }
-        catch(UserIOException e) {
-            view.displayErrorMessage(e.getMessage());
+        catch(UserIOException | IllegalArgumentException e) {
+            displayError(e);
         }
     }
 
     /**
      * Process the REMOVE menu selection.
      * This function will stall the application until it receives input
+     * @throws UserIOEndOfInputException thrown when the input has ended
      */
-    private void awaitInputRemoveDvd() {
+    private void awaitInputRemoveDvd() throws UserIOEndOfInputException {
         try {
             String dvdTitle = view.awaitInputGetDvdTitle();
             if(!dao.removeDvd(dvdTitle)) {
@@ -105,40 +190,47 @@ public class DVDLibraryController {
             }
         }
         catch(UserIOException e) {
-            view.displayErrorMessage(e.getMessage());
+            displayError(e);
         }
     }
 
     /**
      * Process the EDIT menu selection.
      * This function will stall the application until it receives input
+     * @throws UserIOEndOfInputException thrown when the input has ended
      */
-    private void awaitInputEditDvd() {
-        DVD target;
+    private void awaitInputEditDvd() throws UserIOEndOfInputException {
         try {
             String title = view.awaitInputGetDvdTitle();
-            target = dao.getDvdInfo(title);
-            view.awaitInputEditDvd(target);
-            dao.removeDvd(title);
-            dao.addDvd(target);
+            DVD existing = dao.getDvdInfo(title);
+            if(existing == null) {
+                view.displayErrorMessage("DVD not found");
+                view.displayTitleSuggestions(titleIndex.suggest(title, MAX_SUGGESTIONS));
+                return;
+            }
+            DVDPatch patch = view.awaitInputEditDvd(existing);
+            if(!dao.updateDvd(title, patch)) {
+                throw new UserIOException("Failed to edit " + title + ": DVD does not exist in storage");
+            }
         }
-        catch (UserIOException e) {
-            view.displayErrorMessage(e.getMessage());
+        catch(UserIOException | IllegalArgumentException e) {
+            displayError(e);
         }
     }
 
     /**
      * Process the LIST_ALL menu selection.
      * This function will stall the application until it receives input
+     * @throws UserIOEndOfInputException thrown when the input has ended
      */
-    private void awaitInputListDvds() {
+    private void awaitInputListDvds() throws UserIOEndOfInputException {
         Collection<DVD> dvds = dao.getAllDvds();
         if(dvds != null) {
             try {
                 view.displayDvdCollection(dvds);
             }
             catch(UserIOException e) {
-                view.displayErrorMessage(e.getMessage());
+                displayError(e);
             }
         }
         else {
@@ -149,30 +241,127 @@ public class DVDLibraryController {
     /**
      * Process the GET menu selection.
      * This function will stall the application until it receives input
+     * @throws UserIOEndOfInputException thrown when the input has ended
      */
-    private void awaitInputGetDvdInfo() {
+    private void awaitInputGetDvdInfo() throws UserIOEndOfInputException {
         DVD target;
         try {
             String title = view.awaitInputGetDvdTitle();
             target = dao.getDvdInfo(title);
             view.displayDvd(target);
+            if(target == null) {
+                view.displayTitleSuggestions(titleIndex.suggest(title, MAX_SUGGESTIONS));
+            }
+        }
+        catch(UserIOException e) {
+            displayError(e);
+        }
+    }
+
+    /**
+     * Process the IMPORT menu selection.
+     * This function will stall the application until it receives input
+     * @throws UserIOEndOfInputException thrown when the input has ended
+     */
+    private void awaitInputImportDvds() throws UserIOEndOfInputException {
+        try {
+            String file = view.awaitInputGetImportFile();
+            List<DVD> dvds = new DVDLibrarySerializer().readFile(file);
+            int imported = dao.importDvds(dvds);
+            view.displayImportResult(imported, dvds.size() - imported);
+        }
+        catch(IOException e) {
+            view.displayErrorMessage("Failed to import: " + e.getMessage());
+        }
+        catch(UserIOException e) {
+            displayError(e);
+        }
+    }
+
+    /**
+     * Process the BULK_EDIT menu selection.
+     * Conditions covered by an index only test the DVDs the index returns.
+     * This function will stall the application until it receives input
+     * @throws UserIOEndOfInputException thrown when the input has ended
+     */
+    private void awaitInputBulkEdit() throws UserIOEndOfInputException {
+        try {
+            Collection<DVD> candidates = null;
+            Predicate<DVD> where;
+            switch(view.awaitInputGetBulkCondition()) {
+                case RELEASED_BETWEEN:
+                    LocalDate from = LocalDate.of(view.awaitInputGetYear("Enter the earliest release year: "), 1, 1);
+                    LocalDate to = LocalDate.of(view.awaitInputGetYear("Enter the latest release year: "), 12, 31);
+                    candidates = releaseDateIndex.releasedBetween(from, to);
+                    where = DVDPredicates.releasedBetween(from, to);
+                    break;
+                case SCORE_AT_LEAST:
+                    double minScore = view.awaitInputGetMinimumScore();
+                    candidates = scoreIndex.scoredAtLeast(minScore);
+                    where = DVDPredicates.scoreAtLeast(minScore);
+                    break;
+                default:
+                    EDVDField matchField = view.awaitInputGetField("Select DVDs whose field equals a value:");
+                    where = DVDPredicates.fieldEquals(matchField, view.awaitInputGetFieldValue(matchField));
+            }
+            EBulkAction action = view.awaitInputGetBulkAction();
+            int affected;
+            if(action == EBulkAction.DELETE) {
+                affected = dao.deleteWhere(candidates, where);
+            }
+            else {
+                EDVDField setField = view.awaitInputGetField("Set which field?");
+                DVDPatch patch = new DVDPatch();
+                patch.set(setField, view.awaitInputGetFieldValue(setField));
+                affected = dao.updateWhere(candidates, where, patch);
+            }
+            view.displayBulkResult(action, affected);
+        }
+        catch(UserIOException | IllegalArgumentException e) {
+            displayError(e);
+        }
+    }
+
+    /**
+     * Process the STATISTICS menu selection
+     * @throws UserIOEndOfInputException thrown when the input has ended
+     */
+    private void displayStatistics() throws UserIOEndOfInputException {
+        try {
+            view.displayStatistics(statistics);
+            view.displayRankedDvds("Top rated:", scoreIndex.top(RANKED_DVDS_SHOWN));
+            view.displayRankedDvds("Lowest rated:", scoreIndex.bottom(RANKED_DVDS_SHOWN));
+            view.displayRankedDvds("Newest releases:", releaseDateIndex.newest(RANKED_DVDS_SHOWN));
         }
         catch(UserIOException e) {
-            view.displayErrorMessage(e.getMessage());
+            displayError(e);
         }
     }
 
     /**
      * Retrieves the user's input menu selection
      * @return An enumerated value representing the user's selection
+     * @throws UserIOEndOfInputException thrown when the input has ended
      */
-    private EMenuSelection awaitInputGetMenuSelection() {
+    private EMenuSelection awaitInputGetMenuSelection() throws UserIOEndOfInputException {
         try {
             return view.awaitInputGetMenuSelection();
         }
         catch(UserIOException e) {
-            view.displayErrorMessage(e.getMessage());
+            displayError(e);
             return EMenuSelection.NOOP;
         }
     }
+
+    /**
+     * Displays the message of an exception caught while processing a menu selection
+     * @param e The caught exception
+     * @throws UserIOEndOfInputException rethrown when e is the end of the input, which ends the main loop instead
+     */
+    private void displayError(Exception e) throws UserIOEndOfInputException {
+        if(e instanceof UserIOEndOfInputException) {
+            throw (UserIOEndOfInputException) e;
+        }
+        view.displayErrorMessage(e.getMessage());
+    }
 }
@@ -0,0 +1,136 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.EDVDField;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A single mutation made to a DVDLibraryDao.
+ *
+ * The before and after images are immutable copies taken when the mutation was made.
+ * Listeners maintaining derived state can use getChangedFields() to skip EDIT events
+ * which do not touch the fields they depend on.
+ */
+public final class DVDLibraryChangeEvent {
+    /**
+     * The sequence number of the event, which increases by one with every mutation of the DAO
+     */
+    private final long sequence;
+    /**
+     * The kind of mutation
+     */
+    private final EChangeType type;
+    /**
+     * The DVD before the mutation, or null for ADD events
+     */
+    private final DVD before;
+    /**
+     * The DVD after the mutation, or null for REMOVE events
+     */
+    private final DVD after;
+    /**
+     * The fields whose values differ between the before and after images
+     */
+    private final Set<EDVDField> changedFields;
+
+    /**
+     * Constructs a new DVDLibraryChangeEvent
+     * @param sequence The sequence number of the event
+     * @param type The kind of mutation
+     * @param before The DVD before the mutation, or null for ADD events
+     * @param after The DVD after the mutation, or null for REMOVE events
+     */
+    public DVDLibraryChangeEvent(long sequence, EChangeType type, DVD before, DVD after) {
+        this.sequence = sequence;
+        this.type = type;
+        this.before = immutableCopy(before);
+        this.after = immutableCopy(after);
+        this.changedFields = Collections.unmodifiableSet(diff(this.before, this.after));
+    }
+
+    /**
+     * Retrieves the sequence number of the event
+     * @return The sequence number of the event
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Retrieves the kind of mutation
+     * @return The kind of mutation
+     */
+    public EChangeType getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the DVD before the mutation
+     * @return The immutable before image, or null for ADD events
+     */
+    public DVD getBefore() {
+        return before;
+    }
+
+    /**
+     * Retrieves the DVD after the mutation
+     * @return The immutable after image, or null for REMOVE events
+     */
+    public DVD getAfter() {
+        return after;
+    }
+
+    /**
+     * Retrieves the fields changed by the mutation
+     * @return Every field for ADD and REMOVE events, and the fields whose values differ for EDIT events
+     */
+    public Set<EDVDField> getChangedFields() {
+        return changedFields;
+    }
+
+    /**
+     * Checks if the mutation changed a field
+     * @param field The field to check
+     * @return True if the field's value differs between the before and after images, and false otherwise
+     */
+    public boolean hasChanged(EDVDField field) {
+        return changedFields.contains(field);
+    }
+
+    /**
+     * Finds the fields whose values differ between two images
+     * @param before The DVD before the mutation, may be null
+     * @param after The DVD after the mutation, may be null
+     * @return The differing fields, or every field if either image is missing
+     */
+    private static EnumSet<EDVDField> diff(DVD before, DVD after) {
+        if(before == null || after == null) {
+            return EnumSet.allOf(EDVDField.class);
+        }
+        EnumSet<EDVDField> fields = EnumSet.noneOf(EDVDField.class);
+        for(EDVDField field : EDVDField.values()) {
+            if(!Objects.equals(field.get(before), field.get(after))) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Copies a DVD into an immutable DVD, unless it is already immutable
+     * @param dvd The DVD to copy, may be null
+     * @return The immutable DVD, or null if dvd is null
+     */
+    private static DVD immutableCopy(DVD dvd) {
+        if(dvd == null || dvd.isImmutable()) {
+            return dvd;
+        }
+        DVD copy = new DVD(dvd);
+        copy.makeImmutable();
+        return copy;
+    }
+}
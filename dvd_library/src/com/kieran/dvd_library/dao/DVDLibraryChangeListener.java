@@ -0,0 +1,37 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An interface notified of every mutation made through a DVDLibraryDao.
+ *
+ * Listeners are called synchronously on the mutating thread, after the mutation has been applied.
+ */
+public interface DVDLibraryChangeListener {
+    /**
+     * Called after a DVD was added, removed or edited
+     * @param event The mutation made to the DAO
+     */
+    void onChange(DVDLibraryChangeEvent event);
+
+    /**
+     * Called after a batch of DVDs was added, removed or edited, such as by a bulk update.
+     * Listeners which can handle a batch more cheaply than each event on its own should override this
+     * @param events The mutations made to the DAO, in sequence order
+     */
+    default void onChanges(List<DVDLibraryChangeEvent> events) {
+        for(DVDLibraryChangeEvent event : events) {
+            onChange(event);
+        }
+    }
+
+    /**
+     * Called after the DAO's contents were replaced wholesale, such as by load().
+     * Listeners maintaining derived state should rebuild it from dvds
+     * @param dvds Every DVD in the DAO
+     */
+    default void onReload(Collection<DVD> dvds) { }
+}
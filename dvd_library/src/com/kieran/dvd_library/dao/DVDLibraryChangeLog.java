@@ -0,0 +1,222 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An append-only file of DVDLibraryChangeEvents.
+ *
+ * Each event is stored on its own line in the format
+ * SEQUENCE\tTYPE\tSERIALIZED_BEFORE\tSERIALIZED_AFTER
+ * where a missing image is stored as an empty field. Images are serialized with
+ * DVDLibrarySerializer.serializeEscaped, so no field can split the line. EDIT events store an empty after
+ * image followed by a fifth field holding only the changed fields, in the format
+ * SEQUENCE\tEDIT\tSERIALIZED_BEFORE\t\tSERIALIZED_PATCH
+ * and the after image is rebuilt from the before image when the event is read.
+ *
+ * The log keeps a sparse index of byte offsets, so a read starts close to the first event it
+ * returns rather than at the start of the file.
+ */
+public class DVDLibraryChangeLog implements Closeable {
+    /**
+     * The number of events between consecutive entries of the offset index
+     */
+    private static final int INDEX_INTERVAL = 256;
+    /**
+     * The file holding the log
+     */
+    private final String logFile;
+    /**
+     * The serializer used to store before and after images
+     */
+    private final DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+    /**
+     * The stream appending to the log
+     */
+    private final OutputStream out;
+    /**
+     * Byte offsets reads can start at, keyed by the highest sequence number of any event before the offset.
+     * The key bounds every earlier event rather than naming the event at the offset, so an event appended
+     * out of sequence order is never skipped
+     */
+    private final TreeMap<Long, Long> offsets = new TreeMap<>();
+    /**
+     * The highest sequence number of any event in the log
+     */
+    private long lastSequence;
+    /**
+     * The length of the log in bytes, including bytes not yet flushed
+     */
+    private long length;
+    /**
+     * The number of events appended since the last entry of the offset index
+     */
+    private int unindexedEvents;
+
+    /**
+     * Opens a change log, creating the file if it does not exist
+     * @param logFile The file holding the log
+     * @throws IOException thrown when the log cannot be read or opened for appending
+     */
+    public DVDLibraryChangeLog(String logFile) throws IOException {
+        this.logFile = logFile;
+        this.lastSequence = 0;
+        if(new File(logFile).exists()) {
+            try(DVDLibraryLineReader reader = new DVDLibraryLineReader(new FileInputStream(logFile), 0)) {
+                while(reader.next()) {
+                    String line = decode(reader);
+                    if(!line.isEmpty()) {
+                        lastSequence = Math.max(lastSequence, parseSequence(line));
+                        indexEvent(reader.getOffset());
+                    }
+                }
+                length = reader.getOffset();
+            }
+        }
+        this.out = new BufferedOutputStream(new FileOutputStream(logFile, true));
+    }
+
+    /**
+     * Retrieves the highest sequence number in the log
+     * @return The sequence number of the newest event, or 0 if the log is empty
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Appends events to the log with a single flush
+     * @param events The events to append
+     * @throws IOException thrown when the log cannot be written
+     */
+    public synchronized void append(List<DVDLibraryChangeEvent> events) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for(DVDLibraryChangeEvent event : events) {
+            line.setLength(0);
+            line.append(event.getSequence()).append('\t').append(event.getType().name()).append('\t');
+            if(event.getBefore() != null) {
+                line.append(serializer.serializeEscaped(event.getBefore()));
+            }
+            line.append('\t');
+            if(event.getType() == EChangeType.EDIT && event.getBefore() != null && event.getAfter() != null) {
+                line.append('\t').append(serializer.serializePatch(DVDPatch.between(event.getBefore(), event.getAfter())));
+            }
+            else if(event.getAfter() != null) {
+                line.append(serializer.serializeEscaped(event.getAfter()));
+            }
+            line.append('\n');
+            byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(bytes);
+            length += bytes.length;
+            lastSequence = Math.max(lastSequence, event.getSequence());
+            indexEvent(length);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a window of events from the log, starting from the nearest indexed offset
+     * @param fromSequence The lowest sequence number to read
+     * @param maxEvents The maximum number of events to read
+     * @return The events with a sequence number from fromSequence up to but excluding fromSequence + maxEvents,
+     *         in sequence order
+     * @throws IOException thrown when the log cannot be read
+     */
+    public synchronized List<DVDLibraryChangeEvent> read(long fromSequence, int maxEvents) throws IOException {
+        out.flush();
+        List<DVDLibraryChangeEvent> events = new ArrayList<>();
+        long toSequence = fromSequence + maxEvents;
+        Map.Entry<Long, Long> start = offsets.lowerEntry(fromSequence);
+        long offset = start == null ? 0 : start.getValue();
+        try(FileInputStream in = new FileInputStream(logFile)) {
+            in.getChannel().position(offset);
+            DVDLibraryLineReader reader = new DVDLibraryLineReader(in, offset);
+            while(events.size() < maxEvents && reader.next()) {
+                String line = decode(reader);
+                if(line.isEmpty()) {
+                    continue;
+                }
+                long sequence = parseSequence(line);
+                if(sequence >= fromSequence && sequence < toSequence) {
+                    events.add(parseEvent(line));
+                }
+            }
+        }
+        events.sort(Comparator.comparingLong(DVDLibraryChangeEvent::getSequence));
+        return events;
+    }
+
+    /**
+     * Closes the log's stream
+     * @throws IOException thrown when the log cannot be flushed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Counts an event towards the offset index, adding an entry once enough events have passed since the last one
+     * @param nextOffset The offset following the event
+     */
+    private void indexEvent(long nextOffset) {
+        if(++unindexedEvents >= INDEX_INTERVAL) {
+            offsets.put(lastSequence, nextOffset);
+            unindexedEvents = 0;
+        }
+    }
+
+    /**
+     * Parses a log line into an event
+     * @param line The log line
+     * @return The event stored on the line
+     */
+    private DVDLibraryChangeEvent parseEvent(String line) {
+        String[] fields = line.split("\t", -1);
+        DVD before = fields[2].isEmpty() ? null : serializer.deserializeEscaped(fields[2]);
+        DVD after;
+        if(fields.length > 4) {
+            after = serializer.deserializePatch(fields[4]).applyTo(before);
+        }
+        else {
+            after = fields[3].isEmpty() ? null : serializer.deserializeEscaped(fields[3]);
+        }
+        return new DVDLibraryChangeEvent(Long.parseLong(fields[0]), EChangeType.valueOf(fields[1]), before, after);
+    }
+
+    /**
+     * Decodes the current line of a reader, dropping the carriage return of a Windows line break
+     * @param reader The reader
+     * @return The line's text
+     */
+    private static String decode(DVDLibraryLineReader reader) {
+        int lineLength = reader.getLength();
+        if(lineLength > 0 && reader.getLine()[lineLength - 1] == '\r') {
+            lineLength--;
+        }
+        return new String(reader.getLine(), 0, lineLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the sequence number of a log line
+     * @param line The log line
+     * @return The sequence number of the line's event
+     */
+    private static long parseSequence(String line) {
+        return Long.parseLong(line.substring(0, line.indexOf('\t')));
+    }
+}
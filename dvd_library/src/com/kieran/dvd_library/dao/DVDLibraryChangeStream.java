@@ -0,0 +1,288 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A change data capture stream over the mutations of a DVDLibraryDao.
+ *
+ * Recent events are kept in a bounded ring buffer which subscribers read in batches.
+ * The DAO is never slowed down by a slow subscriber: once the ring buffer is full the
+ * oldest events are overwritten, and a subscriber which fell behind them resumes from
+ * the persisted change log, if one is attached.
+ *
+ * A RELOAD event marks where the DAO's contents were replaced wholesale, such as by load().
+ * Subscribers maintaining derived state should rebuild it from the DAO when they read one.
+ */
+public class DVDLibraryChangeStream implements DVDLibraryChangeListener, Closeable {
+    /**
+     * The DAO the stream captures changes from, which numbers the stream's reload markers
+     */
+    private final DVDLibraryDao dao;
+    /**
+     * The ring buffer of recent events, indexed by sequence number
+     */
+    private final DVDLibraryChangeEvent[] ring;
+    /**
+     * The mask mapping a sequence number onto a ring buffer slot
+     */
+    private final int mask;
+    /**
+     * The persisted log of every event, or null if the stream is not persisted
+     */
+    private final DVDLibraryChangeLog log;
+    /**
+     * The sequence number of the oldest event still in the ring buffer
+     */
+    private long oldestSequence;
+    /**
+     * The highest sequence number recorded by the stream
+     */
+    private long lastSequence;
+    /**
+     * The first failure to append to the change log, or null if the log is healthy
+     */
+    private IOException logFailure;
+
+    /**
+     * Constructs a new DVDLibraryChangeStream
+     * @param dao The DAO to capture changes from
+     * @param capacity The minimum number of events kept in the ring buffer, rounded up to a power of two
+     * @param log The persisted log of every event, or null if the stream is not persisted
+     * @param lastSequence The sequence number of the last event already in the log
+     */
+    private DVDLibraryChangeStream(DVDLibraryDao dao, int capacity, DVDLibraryChangeLog log, long lastSequence) {
+        this.dao = dao;
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.ring = new DVDLibraryChangeEvent[size];
+        this.mask = size - 1;
+        this.log = log;
+        this.lastSequence = lastSequence;
+        this.oldestSequence = lastSequence + 1;
+    }
+
+    /**
+     * Attaches a stream without a persisted log to a DAO
+     * @param dao The DAO to capture changes from
+     * @param capacity The minimum number of events kept in the ring buffer
+     * @return The attached stream
+     */
+    public static DVDLibraryChangeStream attach(DVDLibraryDao dao, int capacity) {
+        DVDLibraryChangeStream stream = new DVDLibraryChangeStream(dao, capacity, null, dao.getLastSequence());
+        dao.addChangeListener(stream);
+        return stream;
+    }
+
+    /**
+     * Attaches a stream persisted to a change log to a DAO.
+     * The DAO continues numbering its mutations after the last event already in the log
+     * @param dao The DAO to capture changes from
+     * @param capacity The minimum number of events kept in the ring buffer
+     * @param logFile The file holding the change log
+     * @return The attached stream
+     * @throws IOException thrown when the change log cannot be opened
+     */
+    public static DVDLibraryChangeStream attach(DVDLibraryDao dao, int capacity, String logFile) throws IOException {
+        DVDLibraryChangeLog log = new DVDLibraryChangeLog(logFile);
+        dao.resumeSequenceAfter(log.getLastSequence());
+        DVDLibraryChangeStream stream = new DVDLibraryChangeStream(dao, capacity, log, dao.getLastSequence());
+        dao.addChangeListener(stream);
+        return stream;
+    }
+
+    /**
+     * Records a mutation of the DAO
+     * @param event The mutation made to the DAO
+     */
+    @Override
+    public void onChange(DVDLibraryChangeEvent event) {
+        record(Collections.singletonList(event));
+    }
+
+    /**
+     * Records a batch of mutations of the DAO, appending them to the change log with a single flush
+     * @param events The mutations made to the DAO, in sequence order
+     */
+    @Override
+    public void onChanges(List<DVDLibraryChangeEvent> events) {
+        if(!events.isEmpty()) {
+            record(events);
+        }
+    }
+
+    /**
+     * Records a RELOAD marker, numbered by the DAO like any other mutation
+     * @param dvds Every DVD in the DAO
+     */
+    @Override
+    public void onReload(Collection<DVD> dvds) {
+        record(Collections.singletonList(new DVDLibraryChangeEvent(dao.nextSequence(), EChangeType.RELOAD, null, null)));
+    }
+
+    /**
+     * Appends events to the change log and the ring buffer under one lock, so both receive events in the
+     * same order. DAOs number and deliver each mutation while holding their monitor, so events arrive in
+     * sequence order. The newest sequence number still only ever moves forward, and an event older than
+     * the ring buffer by the time it arrives is only kept in the change log
+     * @param events The events to record
+     */
+    private synchronized void record(List<DVDLibraryChangeEvent> events) {
+        if(log != null) {
+            try {
+                log.append(events);
+            }
+            catch(IOException e) {
+                if(logFailure == null) {
+                    logFailure = e;
+                }
+            }
+        }
+        for(DVDLibraryChangeEvent event : events) {
+            lastSequence = Math.max(lastSequence, event.getSequence());
+            oldestSequence = Math.max(oldestSequence, lastSequence - ring.length + 1);
+            if(event.getSequence() >= oldestSequence) {
+                ring[(int) (event.getSequence() & mask)] = event;
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Retrieves the sequence number of the newest event
+     * @return The sequence number of the newest event
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Subscribes to the events following the newest event
+     * @return The new subscription
+     */
+    public synchronized Subscription subscribe() {
+        return new Subscription(lastSequence + 1);
+    }
+
+    /**
+     * Subscribes to events starting at a given sequence number.
+     * Events older than the ring buffer are read from the change log
+     * @param fromSequence The sequence number of the first event to receive
+     * @return The new subscription
+     */
+    public Subscription subscribe(long fromSequence) {
+        return new Subscription(Math.max(1, fromSequence));
+    }
+
+    /**
+     * Closes the change log, if one is attached
+     * @throws IOException thrown when the change log cannot be flushed
+     */
+    @Override
+    public void close() throws IOException {
+        if(log != null) {
+            log.close();
+        }
+    }
+
+    /**
+     * Reads a batch of events
+     * @param fromSequence The sequence number of the first event to read
+     * @param maxEvents The maximum number of events to read
+     * @return The events read, in sequence order. Empty if there are no events at or after fromSequence
+     * @throws IOException thrown when the events are only available from a change log which cannot be read
+     */
+    private List<DVDLibraryChangeEvent> read(long fromSequence, int maxEvents) throws IOException {
+        long ringStart;
+        synchronized(this) {
+            if(fromSequence >= oldestSequence) {
+                List<DVDLibraryChangeEvent> events = new ArrayList<>();
+                for(long seq = fromSequence; seq <= lastSequence && events.size() < maxEvents; seq++) {
+                    DVDLibraryChangeEvent event = ring[(int) (seq & mask)];
+                    // Stop at an event which has been numbered but not delivered yet
+                    if(event == null || event.getSequence() != seq) {
+                        break;
+                    }
+                    events.add(event);
+                }
+                return events;
+            }
+            if(log == null) {
+                throw new IOException("Events before sequence " + oldestSequence + " are no longer buffered and no change log is attached");
+            }
+            if(logFailure != null) {
+                throw new IOException("The change log is unavailable", logFailure);
+            }
+            ringStart = oldestSequence;
+        }
+        // Catch up from the log without blocking the DAO, stopping where the ring buffer takes over
+        return log.read(fromSequence, (int) Math.min(maxEvents, ringStart - fromSequence));
+    }
+
+    /**
+     * A reader of the stream with its own position
+     */
+    public class Subscription {
+        /**
+         * The sequence number of the next event to deliver
+         */
+        private long nextSequence;
+
+        /**
+         * Constructs a new Subscription
+         * @param nextSequence The sequence number of the first event to deliver
+         */
+        private Subscription(long nextSequence) {
+            this.nextSequence = nextSequence;
+        }
+
+        /**
+         * Retrieves the sequence number of the next event to deliver.
+         * Persist this value to resume the subscription later
+         * @return The sequence number of the next event to deliver
+         */
+        public long getNextSequence() {
+            return nextSequence;
+        }
+
+        /**
+         * Retrieves the next batch of events without waiting
+         * @param maxEvents The maximum number of events to retrieve
+         * @return The next events in sequence order, or an empty list if the subscription is caught up
+         * @throws IOException thrown when the events are only available from a change log which cannot be read
+         */
+        public List<DVDLibraryChangeEvent> poll(int maxEvents) throws IOException {
+            List<DVDLibraryChangeEvent> events = read(nextSequence, maxEvents);
+            if(!events.isEmpty()) {
+                nextSequence = events.get(events.size() - 1).getSequence() + 1;
+            }
+            return events;
+        }
+
+        /**
+         * Retrieves the next batch of events, waiting for events if the subscription is caught up
+         * @param maxEvents The maximum number of events to retrieve
+         * @param timeout The maximum time to wait
+         * @param unit The unit of timeout
+         * @return The next events in sequence order, or an empty list if no events arrived in time
+         * @throws IOException thrown when the events are only available from a change log which cannot be read
+         * @throws InterruptedException thrown when the thread is interrupted while waiting
+         */
+        public List<DVDLibraryChangeEvent> poll(int maxEvents, long timeout, TimeUnit unit) throws IOException, InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            synchronized(DVDLibraryChangeStream.this) {
+                long remaining;
+                while(lastSequence < nextSequence && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(DVDLibraryChangeStream.this, remaining);
+                }
+            }
+            return poll(maxEvents);
+        }
+    }
+}
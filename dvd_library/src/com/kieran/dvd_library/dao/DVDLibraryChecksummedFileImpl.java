@@ -0,0 +1,453 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * A DVDLibraryFileImpl which protects every record of its output file with a checksum.
+ *
+ * The file starts with a header line. Every record is prefixed with the CRC32C of its serialized DVD
+ * as eight hex digits and a space, and every BLOCK_RECORDS records are followed by a trailer line holding
+ * the number of records in the block and the CRC32C of the block's record lines, line breaks included.
+ * Block trailers let DVDLibraryScrubber verify a large library in parallel, and catch lost or duplicated lines
+ * which every record checksum alone would miss.
+ *
+ * Loading never fails because of a damaged record. Records whose checksum does not match, or which do not hold
+ * a DVD, are skipped and appended to a quarantine file beside the output file, and getLoadWarnings() reports
+ * the byte offset of each one. A library file without the header is loaded as a plain library file and is
+ * checksummed by the next save.
+ *
+ * Saves write a temporary file and move it into place, so a crash never leaves a half written library.
+ * Hot reload is not supported, as it reads plain library lines.
+ */
+public class DVDLibraryChecksummedFileImpl extends DVDLibraryFileImpl {
+    /**
+     * The first line of a checksummed library file
+     */
+    public static final String HEADER = "#DVDLIB CRC32C 1";
+    /**
+     * The start of every block trailer line, followed by the block's record count and checksum
+     */
+    public static final String BLOCK_PREFIX = "#BLOCK ";
+    /**
+     * The number of records in every block except the last
+     */
+    public static final int BLOCK_RECORDS = 1024;
+    /**
+     * The number of hex digits in a record's checksum
+     */
+    static final int CHECKSUM_DIGITS = 8;
+    /**
+     * The number of bytes before a record's serialized DVD: the checksum and a space
+     */
+    static final int RECORD_PREFIX_BYTES = CHECKSUM_DIGITS + 1;
+    /**
+     * The lowercase hex digits
+     */
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * The file damaged records are appended to
+     */
+    private final String quarantineFile;
+    /**
+     * The problems found by the last load, in the order they were found
+     */
+    private final List<String> repairReport = new ArrayList<>();
+
+    /**
+     * Constructs a new DVDLibraryChecksummedFileImpl with a specified storage container and output file
+     * @param storage The storage container to use
+     * @param outputFile The file to save to and load from
+     */
+    public DVDLibraryChecksummedFileImpl(DVDLibraryStorage storage, String outputFile) {
+        super(storage, outputFile);
+        this.quarantineFile = outputFile + ".quarantine";
+    }
+
+    /**
+     * Retrieves the file damaged records are appended to when the library is loaded
+     * @return The quarantine file
+     */
+    public String getQuarantineFile() {
+        return quarantineFile;
+    }
+
+    /**
+     * Retrieves the character set the output file is written in
+     * @return UTF-8, which the record checksums are computed over
+     */
+    @Override
+    protected Charset getFileCharset() {
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Saves the library with a checksum on every record and a trailer after every block
+     * @return True if saving was successful, and false otherwise
+     */
+    @Override
+    public synchronized boolean save() {
+        File outFile = new File(getOutputFile());
+        File tmpFile = new File(getOutputFile() + ".tmp");
+        byte[] prefix = new byte[RECORD_PREFIX_BYTES];
+        prefix[CHECKSUM_DIGITS] = ' ';
+        CRC32C recordCrc = new CRC32C();
+        CRC32C blockCrc = new CRC32C();
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16)) {
+            out.write((HEADER + "\n").getBytes(StandardCharsets.US_ASCII));
+            int blockRecords = 0;
+            for(DVD dvd : storage) {
+                byte[] record = getSerializer().serialize(dvd).getBytes(StandardCharsets.UTF_8);
+                recordCrc.reset();
+                recordCrc.update(record, 0, record.length);
+                writeHex((int) recordCrc.getValue(), prefix, 0);
+                out.write(prefix);
+                out.write(record);
+                out.write('\n');
+                blockCrc.update(prefix, 0, prefix.length);
+                blockCrc.update(record, 0, record.length);
+                blockCrc.update('\n');
+                if(++blockRecords == BLOCK_RECORDS) {
+                    out.write(formatTrailer(blockRecords, (int) blockCrc.getValue()));
+                    blockRecords = 0;
+                    blockCrc.reset();
+                }
+            }
+            if(blockRecords > 0) {
+                out.write(formatTrailer(blockRecords, (int) blockCrc.getValue()));
+            }
+        }
+        catch(IOException e) {
+            tmpFile.delete();
+            return false;
+        }
+        try {
+            Files.move(tmpFile.toPath(), outFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(IOException e) {
+            return false;
+        }
+        // The saved file matches the storage, so it must not be reloaded
+        recordFileState();
+        return true;
+    }
+
+    /**
+     * Populates the DAO from its output file, quarantining every damaged record instead of failing
+     * @return True if the output file could be read, and false otherwise
+     */
+    @Override
+    public synchronized boolean load() {
+        File outFile = new File(getOutputFile());
+        if(outFile.isDirectory()) {
+            return false;
+        }
+        repairReport.clear();
+        List<String> quarantined = new ArrayList<>();
+        try {
+            if(!outFile.exists()) {
+                new FileOutputStream(outFile).close();
+            }
+            prepareStorageForLoad(outFile);
+            try(DVDLibraryLineReader reader = new DVDLibraryLineReader(new FileInputStream(outFile), 0)) {
+                if(reader.next()) {
+                    if(reader.startsWith(HEADER)) {
+                        readChecksummed(reader, quarantined);
+                    }
+                    else {
+                        readPlain(reader, quarantined);
+                    }
+                }
+            }
+        }
+        catch(IOException e) {
+            return false;
+        }
+        if(!quarantined.isEmpty()) {
+            writeQuarantine(quarantined);
+        }
+        fireReload();
+        recordFileState();
+        return true;
+    }
+
+    /**
+     * Retrieves the problems found while the library was loaded, including the offset of every quarantined record
+     * @return A description of each problem, in the order they were found
+     */
+    @Override
+    public List<String> getLoadWarnings() {
+        List<String> warnings = new ArrayList<>(super.getLoadWarnings());
+        synchronized(this) {
+            warnings.addAll(repairReport);
+        }
+        return Collections.unmodifiableList(warnings);
+    }
+
+    /**
+     * Hot reload reads plain library lines, so it cannot follow a checksummed file
+     * @return Never returns
+     * @throws IllegalStateException thrown on every call
+     */
+    @Override
+    public synchronized boolean startHotReload() {
+        throw new IllegalStateException("Hot reload cannot read a checksummed library file");
+    }
+
+    /**
+     * Changes made to a checksummed file by other programs cannot be applied incrementally,
+     * as they are read as plain library lines
+     * @return -1, as the file is never read
+     */
+    @Override
+    public synchronized int reloadChanges() {
+        return -1;
+    }
+
+    /**
+     * Verifies every checksum of the output file as last saved, without loading it
+     * @param threads The number of threads reading the file
+     * @return The problems found
+     * @throws IOException thrown when the output file cannot be read
+     */
+    public DVDLibraryScrubber.Report scrub(int threads) throws IOException {
+        return DVDLibraryScrubber.scrub(getOutputFile(), threads);
+    }
+
+    /**
+     * Reads the records following the header of a checksummed file into storage
+     * @param reader The reader, positioned on the header
+     * @param quarantined Receives each quarantined line, preceded by a line describing it
+     * @throws IOException thrown when the file cannot be read
+     */
+    private void readChecksummed(DVDLibraryLineReader reader, List<String> quarantined) throws IOException {
+        CRC32C recordCrc = new CRC32C();
+        CRC32C blockCrc = new CRC32C();
+        int blockRecords = 0;
+        int blockDamaged = 0;
+        long blockStart = reader.getOffset();
+        while(reader.next()) {
+            byte[] line = reader.getLine();
+            int length = reader.getLength();
+            if(reader.startsWith(BLOCK_PREFIX)) {
+                String trailer = new String(line, 0, length, StandardCharsets.US_ASCII);
+                String problem = checkTrailer(trailer, blockRecords, (int) blockCrc.getValue(), blockDamaged);
+                if(problem != null) {
+                    repairReport.add("Block of records from byte offset " + blockStart + " " + problem);
+                }
+                blockCrc.reset();
+                blockRecords = 0;
+                blockDamaged = 0;
+                blockStart = reader.getOffset();
+                continue;
+            }
+            blockCrc.update(line, 0, length);
+            if(reader.isTerminated()) {
+                blockCrc.update('\n');
+            }
+            blockRecords++;
+            String problem = checkRecord(line, length, recordCrc);
+            DVD dvd = null;
+            if(problem == null) {
+                dvd = deserialize(new String(line, RECORD_PREFIX_BYTES, length - RECORD_PREFIX_BYTES, StandardCharsets.UTF_8));
+                problem = dvd == null ? "does not hold a DVD" : null;
+            }
+            if(problem != null) {
+                blockDamaged++;
+                quarantine(reader, problem, quarantined);
+                continue;
+            }
+            storage.addDvd(dvd);
+        }
+        if(blockRecords > 0) {
+            repairReport.add("The last " + blockRecords + " records, from byte offset " + blockStart
+                    + ", have no block trailer, so the file may have been truncated");
+        }
+    }
+
+    /**
+     * Reads a plain library file, whose lines have no checksums, into storage
+     * @param reader The reader, positioned on the first line
+     * @param quarantined Receives each quarantined line, preceded by a line describing it
+     * @throws IOException thrown when the file cannot be read
+     */
+    private void readPlain(DVDLibraryLineReader reader, List<String> quarantined) throws IOException {
+        do {
+            int length = reader.getLength();
+            if(length > 0 && reader.getLine()[length - 1] == '\r') {
+                length--;
+            }
+            DVD dvd = deserialize(new String(reader.getLine(), 0, length, StandardCharsets.UTF_8));
+            if(dvd == null) {
+                quarantine(reader, "does not hold a DVD", quarantined);
+            }
+            else {
+                storage.addDvd(dvd);
+            }
+        } while(reader.next());
+    }
+
+    /**
+     * Records a damaged line in the repair report and queues it for the quarantine file
+     * @param reader The reader, positioned on the damaged line
+     * @param problem A description of the damage
+     * @param quarantined Receives the damaged line, preceded by a line describing it
+     */
+    private void quarantine(DVDLibraryLineReader reader, String problem, List<String> quarantined) {
+        repairReport.add("Quarantined the record at byte offset " + reader.getLineOffset() + ": it " + problem);
+        quarantined.add("# " + Instant.now() + " byte offset " + reader.getLineOffset() + " of " + getOutputFile() + ": " + problem);
+        quarantined.add(new String(reader.getLine(), 0, reader.getLength(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends quarantined lines to the quarantine file, so no damaged record is lost when the library is next saved
+     * @param quarantined The damaged lines, each preceded by a line describing it
+     */
+    private void writeQuarantine(List<String> quarantined) {
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(quarantineFile, true))) {
+            for(String line : quarantined) {
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+            }
+            repairReport.add("Moved " + quarantined.size() / 2 + " damaged records to " + quarantineFile);
+        }
+        catch(IOException e) {
+            repairReport.add("Failed to write the damaged records to " + quarantineFile + ": " + e.getMessage()
+                    + ". They are dropped from the library file when it is next saved");
+        }
+    }
+
+    /**
+     * Deserializes a record, treating a record with missing fields as damaged
+     * @param serialized The serialized DVD
+     * @return The DVD, or null if the record does not hold every field of a DVD
+     */
+    private DVD deserialize(String serialized) {
+        try {
+            return getSerializer().deserialize(serialized);
+        }
+        catch(ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Verifies the checksum of a record line
+     * @param line The bytes of the line
+     * @param length The length of the line in bytes
+     * @param crc A checksum to compute the record's checksum with, which is reset first
+     * @return A description of the damage, or null if the record matches its checksum
+     */
+    static String checkRecord(byte[] line, int length, CRC32C crc) {
+        if(length < RECORD_PREFIX_BYTES || line[CHECKSUM_DIGITS] != ' ') {
+            return "has no checksum";
+        }
+        long expected = parseHex(line, 0, CHECKSUM_DIGITS);
+        if(expected < 0) {
+            return "has no checksum";
+        }
+        crc.reset();
+        crc.update(line, RECORD_PREFIX_BYTES, length - RECORD_PREFIX_BYTES);
+        return crc.getValue() == expected ? null : "does not match its checksum";
+    }
+
+    /**
+     * Compares a block trailer against the records read since the previous trailer
+     * @param trailer The trailer line
+     * @param records The number of record lines read
+     * @param crc The checksum of the record lines read
+     * @param damaged The number of those records already found to be damaged
+     * @return A description of the mismatch, or null if the block matches its trailer,
+     *         or the mismatch is explained by its damaged records
+     */
+    static String checkTrailer(String trailer, int records, int crc, int damaged) {
+        String[] parts = trailer.substring(BLOCK_PREFIX.length()).split(" ");
+        int expectedRecords;
+        long expectedCrc;
+        try {
+            expectedRecords = parts.length == 2 ? Integer.parseInt(parts[0]) : -1;
+            expectedCrc = parts.length == 2 && parts[1].length() == CHECKSUM_DIGITS ? Long.parseLong(parts[1], 16) : -1;
+        }
+        catch(NumberFormatException e) {
+            expectedRecords = -1;
+            expectedCrc = -1;
+        }
+        if(expectedRecords < 0 || expectedCrc < 0) {
+            return "ends in a damaged trailer";
+        }
+        if(expectedRecords != records) {
+            return "holds " + records + " records, but its trailer records " + expectedRecords
+                    + ", so lines were lost or duplicated";
+        }
+        if(expectedCrc != (crc & 0xFFFFFFFFL) && damaged == 0) {
+            return "does not match the checksum in its trailer";
+        }
+        return null;
+    }
+
+    /**
+     * Builds a block trailer line
+     * @param records The number of records in the block
+     * @param crc The checksum of the block's record lines
+     * @return The trailer line, including its line break
+     */
+    static byte[] formatTrailer(int records, int crc) {
+        byte[] hex = new byte[CHECKSUM_DIGITS];
+        writeHex(crc, hex, 0);
+        return (BLOCK_PREFIX + records + " " + new String(hex, StandardCharsets.US_ASCII) + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Writes a value as eight lowercase hex digits
+     * @param value The value
+     * @param dest The array to write to
+     * @param pos The position of the first digit
+     */
+    private static void writeHex(int value, byte[] dest, int pos) {
+        for(int i = CHECKSUM_DIGITS - 1; i >= 0; i--) {
+            dest[pos + i] = HEX_DIGITS[value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    /**
+     * Parses hex digits
+     * @param src The array holding the digits
+     * @param pos The position of the first digit
+     * @param count The number of digits, at most 15
+     * @return The parsed value, or -1 if a byte is not a lowercase hex digit
+     */
+    private static long parseHex(byte[] src, int pos, int count) {
+        long value = 0;
+        for(int i = pos; i < pos + count; i++) {
+            int digit;
+            byte b = src[i];
+            if(b >= '0' && b <= '9') {
+                digit = b - '0';
+            }
+            else if(b >= 'a' && b <= 'f') {
+                digit = b - 'a' + 10;
+            }
+            else {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+}
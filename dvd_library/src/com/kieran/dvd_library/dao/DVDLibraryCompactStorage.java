@@ -0,0 +1,392 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A DVDLibraryStorage which keeps its titles in an open addressing table instead of a HashMap.
+ *
+ * The table is three parallel arrays holding each entry's cached hash, title and DVD, so an entry costs
+ * a hash and two references rather than a HashMap node object. Collisions are resolved with linear probing,
+ * and removals shift the following entries of the probe run back instead of leaving tombstones,
+ * so lookups never step over deleted slots. presize() allocates the whole table up front when the
+ * number of DVDs is known, such as before a library file is loaded.
+ *
+ * DVDs with no title are ignored, and like DVDLibraryStorage the storage is not thread safe.
+ */
+public class DVDLibraryCompactStorage extends DVDLibraryStorage {
+    /**
+     * The smallest table allocated, in slots
+     */
+    private static final int MIN_CAPACITY = 16;
+    /**
+     * The largest table allocated, in slots
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+    /**
+     * The fraction of slots which may be filled before the table grows
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+    /**
+     * The spread hash of the title in each slot, or 0 if the slot is empty
+     */
+    private int[] hashes;
+    /**
+     * The title in each slot
+     */
+    private String[] keys;
+    /**
+     * The DVD in each slot
+     */
+    private DVD[] values;
+    /**
+     * The number of DVDs in the table
+     */
+    private int size;
+    /**
+     * The number of DVDs the table holds before it grows
+     */
+    private int threshold;
+    /**
+     * The right shift turning a spread hash into a slot index, 32 minus log2 of the table length
+     */
+    private int shift;
+    /**
+     * The number of structural changes, used to detect changes during iteration
+     */
+    private int modCount;
+    /**
+     * The view returned by getAllDvds()
+     */
+    private final Collection<DVD> valuesView = new ValuesView();
+
+    /**
+     * Constructs a new DVDLibraryCompactStorage object with no elements
+     */
+    public DVDLibraryCompactStorage() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructs a DVDLibraryCompactStorage object given a collection of DVDs
+     * @param dvds The DVDs used to populate the storage
+     */
+    public DVDLibraryCompactStorage(Collection<DVD> dvds) {
+        allocate(capacityFor(dvds.size()));
+        for(DVD dvd : dvds) {
+            addDvd(dvd);
+        }
+    }
+
+    /**
+     * Grows the table so it holds expectedSize DVDs without growing again
+     * @param expectedSize The number of DVDs the storage is expected to hold
+     */
+    @Override
+    public void presize(int expectedSize) {
+        int capacity = capacityFor(Math.max(expectedSize, size));
+        if(capacity > hashes.length) {
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Checks if the storage is empty
+     * @return True if the storage contains no elements, and false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds a DVD to the storage, replacing any DVD with the same title
+     * @param dvd The DVD to add
+     */
+    @Override
+    public void addDvd(DVD dvd) {
+        if(dvd == null || dvd.getTitle() == null) {
+            return;
+        }
+        String title = dvd.getTitle();
+        int hash = spread(title);
+        int mask = hashes.length - 1;
+        int slot = hash >>> shift;
+        while(hashes[slot] != 0) {
+            if(hashes[slot] == hash && title.equals(keys[slot])) {
+                keys[slot] = title;
+                values[slot] = dvd;
+                invalidateArraySnapshot();
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        keys[slot] = title;
+        values[slot] = dvd;
+        size++;
+        modCount++;
+        invalidateArraySnapshot();
+        if(size > threshold && hashes.length < MAX_CAPACITY) {
+            rehash(hashes.length << 1);
+        }
+    }
+
+    /**
+     * Removes a DVD from storage
+     * @param title The Title of the DVD to remove
+     * @return If the title was present in the storage
+     */
+    @Override
+    public boolean removeDvd(String title) {
+        int slot = find(title);
+        if(slot < 0) {
+            return false;
+        }
+        int mask = hashes.length - 1;
+        // Shift every later entry of the probe run which may sit in the freed slot back into it
+        int free = slot;
+        int next = (free + 1) & mask;
+        while(hashes[next] != 0) {
+            int home = hashes[next] >>> shift;
+            if(((next - home) & mask) >= ((next - free) & mask)) {
+                hashes[free] = hashes[next];
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        hashes[free] = 0;
+        keys[free] = null;
+        values[free] = null;
+        size--;
+        modCount++;
+        invalidateArraySnapshot();
+        return true;
+    }
+
+    /**
+     * Retrieves a DVD from storage
+     * @param title The title of the DVD to retrieve
+     * @return The DVD object if it was found, and null if it was not
+     */
+    @Override
+    public DVD getDvd(String title) {
+        int slot = find(title);
+        return slot < 0 ? null : values[slot];
+    }
+
+    /**
+     * Retrieves all DVDs contained in the storage
+     * @return A collection of DVDs owned by the storage
+     */
+    @Override
+    public Collection<DVD> getAllDvds() {
+        return valuesView;
+    }
+
+    /**
+     * Constructs an iterator over the DVDLibraryCompactStorage's DVD elements
+     * @return The constructed iterator
+     */
+    @Override
+    public Iterator<DVD> iterator() {
+        return new ValuesIterator();
+    }
+
+    /**
+     * Retrieves the number of slots in the table
+     * @return The table's capacity
+     */
+    public int getCapacity() {
+        return hashes.length;
+    }
+
+    /**
+     * Estimates the heap held by the table itself, excluding the titles and DVDs it refers to
+     * @return The estimated number of bytes held by the table's arrays
+     */
+    public long getTableBytes() {
+        // Each array has a 16 byte header, and references are compressed to 4 bytes
+        return 3 * (16 + 4L * hashes.length);
+    }
+
+    /**
+     * Finds the slot holding a title
+     * @param title The title to find
+     * @return The slot index, or -1 if the title is not in the table
+     */
+    private int find(String title) {
+        if(title == null) {
+            return -1;
+        }
+        int hash = spread(title);
+        int mask = hashes.length - 1;
+        int slot = hash >>> shift;
+        int slotHash;
+        while((slotHash = hashes[slot]) != 0) {
+            if(slotHash == hash) {
+                String key = keys[slot];
+                if(key == title || key.equals(title)) {
+                    return slot;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Moves every entry into a new table
+     * @param capacity The number of slots of the new table, a power of two
+     */
+    private void rehash(int capacity) {
+        int[] oldHashes = hashes;
+        String[] oldKeys = keys;
+        DVD[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for(int i = 0; i < oldHashes.length; i++) {
+            int hash = oldHashes[i];
+            if(hash == 0) {
+                continue;
+            }
+            int slot = hash >>> shift;
+            while(hashes[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+        modCount++;
+    }
+
+    /**
+     * Replaces the table's arrays with empty arrays
+     * @param capacity The number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        keys = new String[capacity];
+        values = new DVD[capacity];
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        threshold = capacity == MAX_CAPACITY ? Integer.MAX_VALUE : (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Calculates the table length needed to hold a number of DVDs
+     * @param expectedSize The number of DVDs
+     * @return The smallest power of two holding expectedSize DVDs under the load factor
+     */
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if(needed >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+
+    /**
+     * Spreads a title's hash code so its top bits select the slot, reserving 0 for empty slots.
+     * Titles differing only in a trailing number have hash codes in a narrow range, so every bit is mixed
+     * with the MurmurHash3 finalizer to keep them from forming long probe runs
+     * @param title The title to hash
+     * @return The spread hash, never 0
+     */
+    private static int spread(String title) {
+        int hash = title.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * A live view of the storage's DVDs
+     */
+    private final class ValuesView extends AbstractCollection<DVD> {
+        @Override
+        public Iterator<DVD> iterator() {
+            return new ValuesIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return toArray(new DVD[0]);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T[] toArray(T[] array) {
+            T[] result = array.length >= size ? array : Arrays.copyOf(array, size);
+            int idx = 0;
+            for(int i = 0; i < hashes.length; i++) {
+                if(hashes[i] != 0) {
+                    result[idx++] = (T) values[i];
+                }
+            }
+            if(result.length > idx) {
+                result[idx] = null;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * An iterator over the occupied slots of the table, failing fast if the table changes structurally
+     */
+    private final class ValuesIterator implements Iterator<DVD> {
+        /**
+         * The modCount the iterator was created at
+         */
+        private final int expectedModCount = modCount;
+        /**
+         * The next slot to check
+         */
+        private int slot;
+        /**
+         * The number of DVDs returned so far
+         */
+        private int returned;
+
+        @Override
+        public boolean hasNext() {
+            return returned < size;
+        }
+
+        @Override
+        public DVD next() {
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if(returned >= size) {
+                throw new NoSuchElementException();
+            }
+            while(hashes[slot] == 0) {
+                slot++;
+            }
+            returned++;
+            return values[slot++];
+        }
+    }
+}
@@ -1,17 +1,47 @@
 package com.kieran.dvd_library.dao;
 
 import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import com.kieran.dvd_library.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The data access object base class for the DVDLibrary application
+ *
+ * Each mutation reads its before images, changes the storage, takes its sequence numbers and notifies
+ * the listeners while holding the DAO's monitor, so listeners such as a change log receive mutations in
+ * the order they were applied. Reads do not take the monitor
  */
 public abstract class DVDLibraryDao {
     /**
      * The underlying storage used by the DAO
      */
     protected DVDLibraryStorage storage;
+    /**
+     * The listeners notified of every mutation made through the DAO
+     */
+    private final List<DVDLibraryChangeListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * The sequence number of the most recent mutation
+     */
+    private final AtomicLong lastSequence = new AtomicLong();
+    /**
+     * The filter ruling out lookups of absent titles, or null if lookups always reach storage
+     */
+    private volatile DVDLibraryTitleFilter titleFilter;
 
     /**
      * Saves the DAO.
@@ -35,11 +65,21 @@ public abstract class DVDLibraryDao {
     }
 
     /**
-     * Adds a DVD to the DAO
+     * Adds a DVD to the DAO, replacing any DVD with the same title
      * @param dvd The DVD to add
+     * @throws IllegalArgumentException thrown when the storage treats the DVD's title as the title of a stored DVD
+     *                                  spelled differently, such as "the matrix" for "The Matrix" in a normalized storage
      */
     public void addDvd(DVD dvd) {
-        storage.addDvd(dvd);
+        if(dvd == null) {
+            return;
+        }
+        synchronized(this) {
+            storage.checkTitleAvailable(dvd);
+            DVD before = hasChangeListeners() ? storage.getDvd(dvd.getTitle()) : null;
+            storage.addDvd(dvd);
+            fireChange(before == null ? EChangeType.ADD : EChangeType.EDIT, before, dvd);
+        }
     }
 
     /**
@@ -47,7 +87,49 @@ public abstract class DVDLibraryDao {
      * @param title The title of the DVD to add
      */
     public boolean removeDvd(String title) {
-        return storage.removeDvd(title);
+        if(isDefinitelyAbsent(title)) {
+            return false;
+        }
+        synchronized(this) {
+            DVD before = hasChangeListeners() ? storage.getDvd(title) : null;
+            if(!storage.removeDvd(title)) {
+                recordFilterMiss();
+                return false;
+            }
+            fireChange(EChangeType.REMOVE, before, null);
+            return true;
+        }
+    }
+
+    /**
+     * Changes individual fields of a DVD in the DAO, moving the DVD to its new title if the patch renames it
+     * @param title The title of the DVD to update
+     * @param patch The new field values
+     * @return True if the DVD was found and updated, and false if no DVD has the title
+     * @throws IllegalArgumentException thrown when the patch renames the DVD to the title of another DVD
+     */
+    public boolean updateDvd(String title, DVDPatch patch) {
+        if(isDefinitelyAbsent(title)) {
+            return false;
+        }
+        if(patch.isEmpty()) {
+            if(storage.getDvd(title) == null) {
+                recordFilterMiss();
+                return false;
+            }
+            return true;
+        }
+        synchronized(this) {
+            DVD before = hasChangeListeners() ? storage.getDvd(title) : null;
+            // Listeners receive the DVD as stored, since some of them compare it by identity
+            DVD after = storage.updateDvd(title, patch);
+            if(after == null) {
+                recordFilterMiss();
+                return false;
+            }
+            fireChange(EChangeType.EDIT, before, after);
+            return true;
+        }
     }
 
     /**
@@ -56,7 +138,108 @@ public abstract class DVDLibraryDao {
      * @return The retrieved object if it exists, or null otherwise
      */
     public DVD getDvdInfo(String title) {
-        return storage.getDvd(title);
+        if(isDefinitelyAbsent(title)) {
+            return null;
+        }
+        DVD dvd = storage.getDvd(title);
+        if(dvd == null) {
+            recordFilterMiss();
+        }
+        return dvd;
+    }
+
+    /**
+     * Adds the DVDs whose titles are not already in the DAO.
+     * Titles the title filter rules out are added without looking them up in storage
+     * @param dvds The DVDs to import
+     * @return The number of DVDs added. DVDs whose titles were already present, including earlier in dvds, are skipped
+     */
+    public int importDvds(Collection<DVD> dvds) {
+        int imported = 0;
+        for(DVD dvd : dvds) {
+            if(dvd != null && getDvdInfo(dvd.getTitle()) == null) {
+                addDvd(dvd);
+                imported++;
+            }
+        }
+        return imported;
+    }
+
+    /**
+     * Applies a patch to every DVD matching a predicate, found with a parallel scan
+     * @param where The predicate DVDs must match. See DVDPredicates for common predicates
+     * @param patch The new field values
+     * @return The number of DVDs updated
+     * @throws IllegalArgumentException thrown when the patch would give several DVDs the same title
+     */
+    public int updateWhere(Predicate<? super DVD> where, DVDPatch patch) {
+        return updateWhere(null, where, patch);
+    }
+
+    /**
+     * Applies a patch to every DVD matching a predicate as a single batch.
+     * Listeners are notified of every change together once the whole batch has been applied
+     * @param candidates The DVDs to test, such as the result of an index query covering the predicate,
+     *                   or null to scan the whole DAO. Candidates no longer in the DAO are skipped
+     * @param where The predicate DVDs must match. See DVDPredicates for common predicates
+     * @param patch The new field values
+     * @return The number of DVDs updated
+     * @throws IllegalArgumentException thrown when the patch would give several DVDs the same title,
+     *                                  or renames a single DVD to the title of another DVD
+     */
+    public synchronized int updateWhere(Collection<DVD> candidates, Predicate<? super DVD> where, DVDPatch patch) {
+        List<DVD> before = findMatches(candidates, where);
+        if(before.isEmpty() || patch.isEmpty()) {
+            return before.size();
+        }
+        if(patch.isSet(EDVDField.TITLE)) {
+            if(before.size() > 1) {
+                throw new IllegalArgumentException("Cannot give " + before.size() + " DVDs the title " + patch.get(EDVDField.TITLE));
+            }
+            return updateDvd(before.get(0).getTitle(), patch) ? 1 : 0;
+        }
+        List<DVD> after = new ArrayList<>(before.size());
+        for(DVD dvd : before) {
+            after.add(patch.applyTo(dvd));
+        }
+        applyBatch(Collections.emptyList(), after);
+        if(hasChangeListeners()) {
+            // Storages may publish copies of the patched DVDs, and listeners compare the stored DVDs by identity
+            after.replaceAll(dvd -> storage.getDvd(dvd.getTitle()));
+            fireChanges(EChangeType.EDIT, before, after);
+        }
+        return before.size();
+    }
+
+    /**
+     * Removes every DVD matching a predicate, found with a parallel scan
+     * @param where The predicate DVDs must match. See DVDPredicates for common predicates
+     * @return The number of DVDs removed
+     */
+    public int deleteWhere(Predicate<? super DVD> where) {
+        return deleteWhere(null, where);
+    }
+
+    /**
+     * Removes every DVD matching a predicate as a single batch.
+     * Listeners are notified of every removal together once the whole batch has been applied
+     * @param candidates The DVDs to test, such as the result of an index query covering the predicate,
+     *                   or null to scan the whole DAO. Candidates no longer in the DAO are skipped
+     * @param where The predicate DVDs must match. See DVDPredicates for common predicates
+     * @return The number of DVDs removed
+     */
+    public synchronized int deleteWhere(Collection<DVD> candidates, Predicate<? super DVD> where) {
+        List<DVD> before = findMatches(candidates, where);
+        if(before.isEmpty()) {
+            return 0;
+        }
+        List<String> titles = new ArrayList<>(before.size());
+        for(DVD dvd : before) {
+            titles.add(dvd.getTitle());
+        }
+        applyBatch(titles, Collections.emptyList());
+        fireChanges(EChangeType.REMOVE, before, null);
+        return before.size();
     }
 
     /**
@@ -67,6 +250,44 @@ public abstract class DVDLibraryDao {
         return storage.getAllDvds();
     }
 
+    /**
+     * Creates a sequential stream over a point-in-time view of the DAO's DVDs.
+     * The stream is unaffected by mutations made while it is consumed
+     * @return A stream of the DAO's DVDs
+     */
+    public Stream<DVD> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Creates a parallel stream over a point-in-time view of the DAO's DVDs.
+     * The view splits into balanced, exactly sized halves, so scans divide evenly across the fork-join pool
+     * @return A parallel stream of the DAO's DVDs
+     */
+    public Stream<DVD> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Finds every DVD matching a predicate with a parallel scan
+     * @param where The predicate DVDs must match. See DVDPredicates for common predicates
+     * @return The matching DVDs, in no particular order
+     */
+    public List<DVD> query(Predicate<? super DVD> where) {
+        return parallelStream().filter(where).collect(Collectors.toList());
+    }
+
+    /**
+     * Projects every DVD matching a predicate with a parallel scan
+     * @param where The predicate DVDs must match. See DVDPredicates for common predicates
+     * @param projection The value extracted from each matching DVD, such as EDVDField.STUDIO::get
+     * @param <R> The type of the projected values
+     * @return The projected values, in no particular order
+     */
+    public <R> List<R> select(Predicate<? super DVD> where, Function<? super DVD, ? extends R> projection) {
+        return parallelStream().filter(where).map(projection).collect(Collectors.toList());
+    }
+
     /**
      * Checks if there are no DVDs in the DAO's storage
      * @return True if there are no DVDs in the DAO, and false otherwise
@@ -74,4 +295,213 @@ public abstract class DVDLibraryDao {
     public boolean isEmpty() {
         return storage.isEmpty();
     }
+
+    /**
+     * Retrieves problems found while the DAO was loaded, such as duplicate titles
+     * @return A copy of the description of each problem found
+     */
+    public List<String> getLoadWarnings() {
+        return new ArrayList<>(storage.getWarnings());
+    }
+
+    /**
+     * Checks if load() has finished reading the library. DAOs loading in the background return false until
+     * they finish, so their load warnings are not yet complete
+     * @return True if no load is in progress, and false otherwise
+     */
+    public boolean isFullyLoaded() {
+        return true;
+    }
+
+    /**
+     * Registers a listener notified of every mutation made through the DAO
+     * @param listener The listener to register
+     */
+    public void addChangeListener(DVDLibraryChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener
+     * @param listener The listener to unregister
+     */
+    public void removeChangeListener(DVDLibraryChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Retrieves the sequence number of the most recent mutation
+     * @return The sequence number of the most recent mutation, or 0 if nothing has been mutated
+     */
+    public long getLastSequence() {
+        return lastSequence.get();
+    }
+
+    /**
+     * Reserves the next sequence number for an event recorded outside of fireChange and fireChanges,
+     * such as a change stream's reload marker
+     * @return The reserved sequence number
+     */
+    long nextSequence() {
+        return lastSequence.incrementAndGet();
+    }
+
+    /**
+     * Continues numbering mutations after a given sequence number, such as the last
+     * sequence number of a persisted change log
+     * @param sequence The sequence number the next mutation follows
+     */
+    void resumeSequenceAfter(long sequence) {
+        lastSequence.accumulateAndGet(sequence, Math::max);
+    }
+
+    /**
+     * Constructs the spliterator backing stream() and parallelStream()
+     * @return A spliterator over a point-in-time view of the DAO's DVDs
+     */
+    protected Spliterator<DVD> spliterator() {
+        return storage.spliterator();
+    }
+
+    /**
+     * Removes and adds a batch of DVDs without notifying listeners, which bulk operations notify afterwards
+     * @param removals The titles of the DVDs to remove
+     * @param additions The DVDs to add, replacing any DVDs with the same titles
+     */
+    protected void applyBatch(Collection<String> removals, Collection<DVD> additions) {
+        storage.applyBatch(removals, additions);
+    }
+
+    /**
+     * Finds the DVDs a bulk operation applies to
+     * @param candidates The DVDs to test, or null to scan the whole DAO
+     * @param where The predicate DVDs must match
+     * @return The current image of every matching DVD
+     */
+    private List<DVD> findMatches(Collection<DVD> candidates, Predicate<? super DVD> where) {
+        if(candidates == null) {
+            return query(where);
+        }
+        List<DVD> matches = new ArrayList<>();
+        for(DVD candidate : candidates) {
+            if(candidate == null || !where.test(candidate)) {
+                continue;
+            }
+            // Candidates may come from an index which has not caught up with the DAO, so match the current image
+            DVD current = getDvdInfo(candidate.getTitle());
+            if(current != null && (current == candidate || where.test(current))) {
+                matches.add(current);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Retrieves the filter ruling out lookups of absent titles
+     * @return The attached DVDLibraryTitleFilter, or null if none is attached
+     */
+    public DVDLibraryTitleFilter getTitleFilter() {
+        return titleFilter;
+    }
+
+    /**
+     * Sets the filter ruling out lookups of absent titles. Called by DVDLibraryTitleFilter.attach()
+     * @param titleFilter The filter, which must already be registered as a change listener
+     */
+    void setTitleFilter(DVDLibraryTitleFilter titleFilter) {
+        this.titleFilter = titleFilter;
+    }
+
+    /**
+     * Hashes a title into 64 bits the way the DAO's storage compares titles
+     * @param title The title to hash
+     * @return The 64-bit hash of the title
+     */
+    protected long hashTitle(String title) {
+        return storage == null ? StringUtils.hash64(title) : storage.hashTitle(title);
+    }
+
+    /**
+     * Checks the title filter for a title which is definitely not in the DAO
+     * @param title The title to check
+     * @return True if a title filter rules the title out, and false if the title must be looked up
+     */
+    protected boolean isDefinitelyAbsent(String title) {
+        DVDLibraryTitleFilter filter = titleFilter;
+        return filter != null && title != null && filter.isDefinitelyAbsent(title);
+    }
+
+    /**
+     * Records that a title which the title filter did not rule out was missing
+     */
+    protected void recordFilterMiss() {
+        DVDLibraryTitleFilter filter = titleFilter;
+        if(filter != null) {
+            filter.recordFalsePositive();
+        }
+    }
+
+    /**
+     * Checks if any listeners are registered, so implementations can skip
+     * gathering before images nobody will read
+     * @return True if at least one listener is registered, and false otherwise
+     */
+    protected boolean hasChangeListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Notifies every registered listener that the DAO's contents were replaced.
+     * Implementations MUST call this once load() has populated the DAO
+     */
+    protected void fireReload() {
+        if(listeners.isEmpty()) {
+            return;
+        }
+        // Read storage directly, since subclasses may block getAllDvds() until the load firing this has finished
+        Collection<DVD> dvds = storage == null ? getAllDvds() : storage.getAllDvds();
+        for(DVDLibraryChangeListener listener : listeners) {
+            listener.onReload(dvds);
+        }
+    }
+
+    /**
+     * Notifies every registered listener of a batch of mutations of the same kind with a single call each.
+     * Callers hold the same lock as for fireChange
+     * @param type The kind of mutations
+     * @param before The DVDs before the mutations, or null for ADD events
+     * @param after The DVDs after the mutations in the same order as before, or null for REMOVE events
+     */
+    protected void fireChanges(EChangeType type, List<DVD> before, List<DVD> after) {
+        if(listeners.isEmpty()) {
+            return;
+        }
+        int count = before != null ? before.size() : after.size();
+        List<DVDLibraryChangeEvent> events = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            events.add(new DVDLibraryChangeEvent(lastSequence.incrementAndGet(), type,
+                    before == null ? null : before.get(i), after == null ? null : after.get(i)));
+        }
+        events = Collections.unmodifiableList(events);
+        for(DVDLibraryChangeListener listener : listeners) {
+            listener.onChanges(events);
+        }
+    }
+
+    /**
+     * Notifies every registered listener of a mutation. Callers hold the DAO's monitor, or another lock
+     * serializing every mutation of the DAO, from reading the before image until this returns
+     * @param type The kind of mutation
+     * @param before The DVD before the mutation, or null for ADD events
+     * @param after The DVD after the mutation, or null for REMOVE events
+     */
+    protected void fireChange(EChangeType type, DVD before, DVD after) {
+        if(listeners.isEmpty()) {
+            return;
+        }
+        DVDLibraryChangeEvent event = new DVDLibraryChangeEvent(lastSequence.incrementAndGet(), type, before, after);
+        for(DVDLibraryChangeListener listener : listeners) {
+            listener.onChange(event);
+        }
+    }
 }
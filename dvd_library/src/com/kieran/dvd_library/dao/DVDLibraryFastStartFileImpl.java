@@ -0,0 +1,540 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Predicate;
+
+/**
+ * A DVDLibraryFileImpl which becomes usable before the library has finished loading.
+ *
+ * Every save also writes a title index next to the output file, holding the hash, byte
+ * offset and length of each record in an open addressing table. On load the index is
+ * memory mapped and the remaining records are read on a background thread. Until that
+ * thread finishes, getDvdInfo() is served through the index, and every operation which
+ * needs the full library waits for the background load.
+ *
+ * If the index is missing or does not match the output file, load() falls back to
+ * loading the whole library before returning.
+ */
+public class DVDLibraryFastStartFileImpl extends DVDLibraryFileImpl {
+    /**
+     * The magic number identifying an index file
+     */
+    private static final int INDEX_MAGIC = 0x44564449;
+    /**
+     * The version of the index file format. Version 2 hashes titles with the storage's title hash
+     */
+    private static final int INDEX_VERSION = 2;
+    /**
+     * The size of the index file header in bytes:
+     * magic, version, data file length, data file modification time, record count and table size
+     */
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4;
+    /**
+     * The size of an index table entry in bytes: title hash (see indexHash), record length and record offset.
+     * Empty entries have a record length of 0
+     */
+    private static final int ENTRY_BYTES = 4 + 4 + 8;
+    /**
+     * The largest index table which fits in a single mapped buffer
+     */
+    private static final int MAX_TABLE_SIZE = 1 << 26;
+    /**
+     * The file holding the title index
+     */
+    private final String indexFile;
+    /**
+     * Released once every record has been loaded into storage
+     */
+    private volatile CountDownLatch loaded = new CountDownLatch(0);
+    /**
+     * Whether the background load failed, in which case the storage only holds part of the library
+     */
+    private volatile boolean loadFailed = false;
+    /**
+     * The mapped title index, or null when lookups are served by the storage
+     */
+    private volatile MappedByteBuffer index;
+    /**
+     * The output file opened for reading records at indexed offsets
+     */
+    private RandomAccessFile dataReader;
+    /**
+     * The number of records in the mapped index
+     */
+    private int indexedRecordCount;
+
+    /**
+     * Constructs a new DVDLibraryFastStartFileImpl with a specified storage container and output file
+     * @param storage The storage container to use
+     * @param outputFile The target file that the DAO saves to and loads from
+     */
+    public DVDLibraryFastStartFileImpl(DVDLibraryStorage storage, String outputFile) {
+        super(storage, outputFile);
+        this.indexFile = outputFile + ".idx";
+    }
+
+    /**
+     * Retrieves the character set the output file is written in
+     * @return UTF-8, which the title index's byte offsets are measured in
+     */
+    @Override
+    protected Charset getFileCharset() {
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Maps the title index and starts loading the library on a background thread.
+     * If there is no usable index, the library is loaded before returning
+     * @return True if the index was mapped or the library was loaded, and false otherwise
+     */
+    @Override
+    public boolean load() {
+        File outFile = new File(getOutputFile());
+        if(outFile.isDirectory()) {
+            return false;
+        }
+        try {
+            if(!outFile.exists()) {
+                new FileOutputStream(outFile).close();
+            }
+            if(!mapIndex(outFile)) {
+                readAllRecords();
+                fireReload();
+                recordFileState();
+                return true;
+            }
+        }
+        catch(IOException e) {
+            return false;
+        }
+
+        loaded = new CountDownLatch(1);
+        Thread loader = new Thread(() -> {
+            try {
+                readAllRecords();
+                // Notify listeners before releasing writers, which would otherwise race the rebuild
+                fireReload();
+                recordFileState();
+            }
+            catch(IOException | RuntimeException e) {
+                loadFailed = true;
+            }
+            finally {
+                releaseIndex();
+                loaded.countDown();
+            }
+        }, "dvd-library-loader");
+        loader.setDaemon(true);
+        loader.start();
+        return true;
+    }
+
+    /**
+     * Saves the library and a title index describing the saved file.
+     * Waits for a background load to finish first, and refuses to save if it failed.
+     * The file is written under the DAO's lock, so a reload never reads a half written file
+     * @return True if saving was successful, and false otherwise
+     */
+    @Override
+    public boolean save() {
+        // The background load takes the DAO's lock to finish, so it is awaited before taking the lock
+        awaitLoaded();
+        synchronized(this) {
+            if(loadFailed) {
+                return false;
+            }
+            Collection<DVD> dvds = storage.getAllDvds();
+            int tableSize = tableSizeFor(dvds.size());
+            File outFile = new File(getOutputFile());
+            if(tableSize > MAX_TABLE_SIZE) {
+                // Too large to map, so the next start up loads the whole library instead
+                new File(indexFile).delete();
+                return super.save();
+            }
+            ByteBuffer table = ByteBuffer.allocate(tableSize * ENTRY_BYTES);
+            try(FileOutputStream fileOut = new FileOutputStream(outFile);
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fileOut, StandardCharsets.UTF_8))) {
+                long offset = 0;
+                for(DVD dvd : dvds) {
+                    String line = getSerializer().serialize(dvd);
+                    int length = line.getBytes(StandardCharsets.UTF_8).length;
+                    writer.write(line);
+                    writer.write('\n');
+                    insertEntry(table, tableSize, indexHash(dvd.getTitle()), length, offset);
+                    offset += length + 1;
+                }
+            }
+            catch(IOException e) {
+                return false;
+            }
+
+            // Write the index beside the file and move it into place, so a crash never leaves a half written index
+            File tmpIndex = new File(indexFile + ".tmp");
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpIndex)))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(INDEX_VERSION);
+                out.writeLong(outFile.length());
+                out.writeLong(outFile.lastModified());
+                out.writeInt(dvds.size());
+                out.writeInt(tableSize);
+                out.write(table.array());
+            }
+            catch(IOException e) {
+                return false;
+            }
+            try {
+                Files.move(tmpIndex.toPath(), new File(indexFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch(IOException e) {
+                return false;
+            }
+            recordFileState();
+            return true;
+        }
+    }
+
+    /**
+     * Gets a DVD, through the title index if the library is still loading.
+     * If an indexed record cannot be read or is damaged, waits for the background load instead
+     * @param title The Title of the DVD to retrieve
+     * @return The retrieved object if it exists, or null otherwise
+     */
+    @Override
+    public DVD getDvdInfo(String title) {
+        if(loaded.getCount() == 0) {
+            return super.getDvdInfo(title);
+        }
+        synchronized(this) {
+            // Re-check, the background load may have finished and released the index
+            if(index != null) {
+                if(isDefinitelyAbsent(title)) {
+                    return null;
+                }
+                try {
+                    DVD dvd = lookupIndexed(title);
+                    if(dvd == null) {
+                        recordFilterMiss();
+                    }
+                    return dvd;
+                }
+                catch(IOException | RuntimeException e) {
+                    // Fall back to the storage below
+                }
+            }
+        }
+        // Wait outside the lock, which the background load needs before it can finish
+        awaitLoaded();
+        return super.getDvdInfo(title);
+    }
+
+    /**
+     * Retrieves problems found while the library was loaded, waiting for the library to finish loading
+     * @return A copy of the description of each problem found
+     */
+    @Override
+    public List<String> getLoadWarnings() {
+        awaitLoaded();
+        return super.getLoadWarnings();
+    }
+
+    /**
+     * Gets all DVDs, waiting for the library to finish loading
+     * @return A collection of DVDs
+     */
+    @Override
+    public Collection<DVD> getAllDvds() {
+        awaitLoaded();
+        return super.getAllDvds();
+    }
+
+    /**
+     * Constructs the spliterator backing the DAO's streams, waiting for the library to finish loading
+     * @return A spliterator over a point-in-time view of the DAO's DVDs
+     */
+    @Override
+    protected Spliterator<DVD> spliterator() {
+        awaitLoaded();
+        return super.spliterator();
+    }
+
+    /**
+     * Adds a DVD, waiting for the library to finish loading
+     * @param dvd The DVD to add
+     */
+    @Override
+    public void addDvd(DVD dvd) {
+        awaitLoaded();
+        super.addDvd(dvd);
+    }
+
+    /**
+     * Removes a DVD, waiting for the library to finish loading
+     * @param title The title of the DVD to remove
+     * @return If the title was present in the library
+     */
+    @Override
+    public boolean removeDvd(String title) {
+        if(loaded.getCount() != 0 && isDefinitelyAbsent(title)) {
+            // A saved title filter rules the title out without waiting for the load
+            return false;
+        }
+        awaitLoaded();
+        return super.removeDvd(title);
+    }
+
+    /**
+     * Updates a DVD, waiting for the library to finish loading
+     * @param title The title of the DVD to update
+     * @param patch The new field values
+     * @return True if the DVD was found and updated, and false if no DVD has the title
+     */
+    @Override
+    public boolean updateDvd(String title, DVDPatch patch) {
+        awaitLoaded();
+        return super.updateDvd(title, patch);
+    }
+
+    /**
+     * Removes and adds a batch of DVDs, waiting for the library to finish loading
+     * @param removals The titles of the DVDs to remove
+     * @param additions The DVDs to add, replacing any DVDs with the same titles
+     */
+    @Override
+    protected void applyBatch(Collection<String> removals, Collection<DVD> additions) {
+        awaitLoaded();
+        super.applyBatch(removals, additions);
+    }
+
+    /**
+     * Applies a patch to every DVD matching a predicate, waiting for the library to finish loading before
+     * taking the DAO's monitor, which the background load needs to finish
+     * @param candidates The DVDs to test, or null to scan the whole DAO
+     * @param where The predicate DVDs must match
+     * @param patch The new field values
+     * @return The number of DVDs updated
+     */
+    @Override
+    public int updateWhere(Collection<DVD> candidates, Predicate<? super DVD> where, DVDPatch patch) {
+        awaitLoaded();
+        return super.updateWhere(candidates, where, patch);
+    }
+
+    /**
+     * Removes every DVD matching a predicate, waiting for the library to finish loading before
+     * taking the DAO's monitor, which the background load needs to finish
+     * @param candidates The DVDs to test, or null to scan the whole DAO
+     * @param where The predicate DVDs must match
+     * @return The number of DVDs removed
+     */
+    @Override
+    public int deleteWhere(Collection<DVD> candidates, Predicate<? super DVD> where) {
+        awaitLoaded();
+        return super.deleteWhere(candidates, where);
+    }
+
+    /**
+     * Checks if the library is empty, through the title index if the library is still loading
+     * @return True if there are no DVDs in the library, and false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        synchronized(this) {
+            if(index != null) {
+                return indexedRecordCount == 0;
+            }
+        }
+        return super.isEmpty();
+    }
+
+    /**
+     * Checks if the whole library has been loaded into storage
+     * @return True if no background load is in progress, and false otherwise
+     */
+    @Override
+    public boolean isFullyLoaded() {
+        return loaded.getCount() == 0;
+    }
+
+    /**
+     * Blocks until the background load, if any, has finished
+     */
+    public void awaitLoaded() {
+        boolean interrupted = false;
+        while(true) {
+            try {
+                loaded.await();
+                break;
+            }
+            catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Maps the title index if it describes the current contents of the output file
+     * @param outFile The output file
+     * @return True if the index was mapped, and false if it is missing or stale
+     * @throws IOException thrown when the output file cannot be opened
+     */
+    private synchronized boolean mapIndex(File outFile) throws IOException {
+        File idx = new File(indexFile);
+        if(!idx.isFile() || idx.length() < HEADER_BYTES) {
+            return false;
+        }
+        MappedByteBuffer mapped;
+        try(RandomAccessFile idxFile = new RandomAccessFile(idx, "r")) {
+            if(idxFile.length() > Integer.MAX_VALUE) {
+                return false;
+            }
+            mapped = idxFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, idxFile.length());
+        }
+        if(mapped.getInt(0) != INDEX_MAGIC || mapped.getInt(4) != INDEX_VERSION ||
+                mapped.getLong(8) != outFile.length() || mapped.getLong(16) != outFile.lastModified()) {
+            return false;
+        }
+        int tableSize = mapped.getInt(28);
+        if(Integer.bitCount(tableSize) != 1 || (long) HEADER_BYTES + (long) tableSize * ENTRY_BYTES != mapped.capacity()) {
+            return false;
+        }
+        this.indexedRecordCount = mapped.getInt(24);
+        this.dataReader = new RandomAccessFile(outFile, "r");
+        this.index = mapped;
+        return true;
+    }
+
+    /**
+     * Drops the mapped index once the storage can serve every lookup
+     */
+    private synchronized void releaseIndex() {
+        index = null;
+        if(dataReader != null) {
+            try {
+                dataReader.close();
+            }
+            catch(IOException ignored) { }
+            dataReader = null;
+        }
+    }
+
+    /**
+     * Looks a title up through the mapped index. Caller MUST hold the DAO's lock
+     * @param title The title to look up
+     * @return The DVD stored under title, or null if the title is not in the index
+     * @throws IOException thrown when a record cannot be read from the output file
+     * @throws RuntimeException thrown when a record is damaged and cannot be deserialized
+     */
+    private DVD lookupIndexed(String title) throws IOException {
+        int hash = indexHash(title);
+        int tableSize = index.getInt(28);
+        int mask = tableSize - 1;
+        for(int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = HEADER_BYTES + slot * ENTRY_BYTES;
+            int length = index.getInt(entry + 4);
+            if(length == 0) {
+                return null;
+            }
+            if(index.getInt(entry) != hash) {
+                continue;
+            }
+            byte[] record = new byte[length];
+            dataReader.seek(index.getLong(entry + 8));
+            dataReader.readFully(record);
+            DVD dvd = getSerializer().deserialize(new String(record, StandardCharsets.UTF_8));
+            if(storage.titlesMatch(title, dvd.getTitle())) {
+                return dvd;
+            }
+        }
+    }
+
+    /**
+     * Reads every record of the output file into storage
+     * @throws IOException thrown when the output file cannot be read
+     */
+    private void readAllRecords() throws IOException {
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(getOutputFile()), StandardCharsets.UTF_8))) {
+            prepareStorageForLoad(new File(getOutputFile()));
+            String line;
+            while((line = reader.readLine()) != null) {
+                storage.addDvd(getSerializer().deserialize(line));
+            }
+        }
+    }
+
+    /**
+     * Hashes a title for the index with the storage's title hash, so titles the storage treats as the same
+     * title, such as titles differing only in case in a normalized storage, are found through the index
+     * @param title The title to hash
+     * @return The storage's 64-bit title hash folded into 32 bits
+     */
+    private int indexHash(String title) {
+        long hash = storage.hashTitle(title);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Inserts an entry into an index table with linear probing
+     * @param table The index table
+     * @param tableSize The number of entries in the table
+     * @param hash The hash of the record's title
+     * @param length The length of the record in bytes
+     * @param offset The offset of the record in the output file
+     */
+    private static void insertEntry(ByteBuffer table, int tableSize, int hash, int length, long offset) {
+        int mask = tableSize - 1;
+        int slot = spread(hash) & mask;
+        while(table.getInt(slot * ENTRY_BYTES + 4) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table.putInt(slot * ENTRY_BYTES, hash);
+        table.putInt(slot * ENTRY_BYTES + 4, length);
+        table.putLong(slot * ENTRY_BYTES + 8, offset);
+    }
+
+    /**
+     * Computes the index table size for a number of records, keeping the table at most half full
+     * @param recordCount The number of records
+     * @return The table size, a power of two
+     */
+    private static int tableSizeFor(int recordCount) {
+        long minSize = Math.max(1L, recordCount) * 2;
+        return (int) Math.min(Long.highestOneBit(minSize - 1) << 1, MAX_TABLE_SIZE * 2L);
+    }
+
+    /**
+     * Mixes the bits of a title hash before it is reduced to a table slot
+     * @param hash The title's hash code
+     * @return The mixed hash
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
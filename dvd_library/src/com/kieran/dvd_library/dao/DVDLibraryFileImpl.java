@@ -1,13 +1,40 @@
 package com.kieran.dvd_library.dao;
 
 import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
 
 import java.io.*;
-import java.util.Scanner;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 /**
  * An implementation of DVDLibraryDAO that saves and loads
  * from a specified file
+ *
+ * Changes written to the file by other programs can be applied while the library is open,
+ * either on demand with reloadChanges() or automatically with startHotReload(). Lines
+ * appended to the file are read from where the last load, save or reload stopped, as long
+ * as every byte before that point is unchanged. Any other file is treated as rewritten and
+ * compared line by line against the stored DVDs, so only the DVDs which
+ * actually changed are applied and reported to the change listeners. While the file is watched,
+ * DVDs added, edited or removed through the DAO since the last load or save keep their unsaved
+ * state through a reload.
  */
 public class DVDLibraryFileImpl extends DVDLibraryDao {
     /**
@@ -15,35 +42,49 @@ public class DVDLibraryFileImpl extends DVDLibraryDao {
      */
     private String outputFile;
     /**
-     * The delimiter used during DVD serialization
+     * The serializer used to convert DVDs to and from lines of the output file
      *
-     * This value is "::" unless otherwise specified in DVDLibraryFileImpl's constructor
+     * The serializer's delimiter is "::" unless otherwise specified in DVDLibraryFileImpl's constructor
      */
-    private String delimiter;
+    private DVDLibrarySerializer serializer;
     /**
-     * An index into a streamified DVD serialized string representing the DVD's title
+     * The number of bytes read at a time while checksumming the known part of the file
      */
-    private static final int TITLE_IDX = 0;
+    private static final int CHECKSUM_BUFFER_BYTES = 64 * 1024;
     /**
-     * An index into a streamified DVD serialized string representing the DVD's release date
+     * The largest append read in one piece. Larger appends are compared like a rewrite
      */
-    private static final int RELEASE_DATE_IDX = 1;
+    private static final long MAX_APPEND_BYTES = 64L << 20;
     /**
-     * An index into a streamified DVD serialized string representing the DVD's MPAA rating
+     * The number of bytes at the start of the output file sampled to estimate its number of records
      */
-    private static final int MPAA_RATING_IDX = 2;
+    private static final int RECORD_SAMPLE_BYTES = 64 * 1024;
     /**
-     * An index into a streamified DVD serialized string representing the DVD's director's name
+     * The time the file must go without changing before a hot reload reads it, in milliseconds
      */
-    private static final int DIRECTOR_NAME_IDX = 3;
+    private static final long SETTLE_MILLIS = 50;
     /**
-     * An index into a streamified DVD serialized string representing the DVD's studio's name
+     * The length of the file when it was last loaded, saved or reloaded, or -1 before the first load
      */
-    private static final int STUDIO_NAME_IDX = 4;
+    private long knownLength = -1;
     /**
-     * An index into a streamified DVD serialized string representing the DVD's user rating/note
+     * The modification time of the file when it was last loaded, saved or reloaded
      */
-    private static final int USER_RATING_IDX = 5;
+    private long knownModified = -1;
+    /**
+     * The checksum of every byte before knownLength, which the file must still start with to be read as an append
+     */
+    private long knownChecksum = 0;
+    /**
+     * The thread applying changes made to the file, or null if the file is not watched
+     */
+    private Thread watcher;
+    /**
+     * The titles added, edited or removed through the DAO while the file is watched since it was last loaded
+     * or saved, which reloads leave alone so unsaved changes are not discarded. Guarded by the DAO's lock
+     */
+    private final Set<String> dirtyTitles = new HashSet<>();
+
     /**
      * Constructs a new DVDLibraryFileImpl with a specified storage container and output file
      * @param storage The storage container to use
@@ -52,7 +93,19 @@ public class DVDLibraryFileImpl extends DVDLibraryDao {
     public DVDLibraryFileImpl(DVDLibraryStorage storage, String outputFile) {
         super(storage);
         this.outputFile = outputFile;
-        this.delimiter = "::";
+        this.serializer = new DVDLibrarySerializer();
+    }
+
+    /**
+     * Constructs a new DVDLibraryFileImpl with a specified storage container, output file, and serializer
+     * @param storage The storage container to use
+     * @param outputFile The target file that the DAO saves to and loads from
+     * @param serializer The serializer used to convert DVDs to and from lines of the output file
+     */
+    public DVDLibraryFileImpl(DVDLibraryStorage storage, String outputFile, DVDLibrarySerializer serializer) {
+        super(storage);
+        this.outputFile = outputFile;
+        this.serializer = serializer;
     }
 
     /**
@@ -64,44 +117,31 @@ public class DVDLibraryFileImpl extends DVDLibraryDao {
     public DVDLibraryFileImpl(DVDLibraryStorage storage, String outputFile, String delimiter) {
         super(storage);
         this.outputFile = outputFile;
-        this.delimiter = delimiter;
+        this.serializer = new DVDLibrarySerializer(delimiter);
     }
 
     /**
-     * Processes a DVD object into a serialized String format.
-     *
-     * The resulting string is in the format
-     * TITLEdelimiterRELEASE_DATEdelimiterMPAA_RATINGdelimiterDIRECTOR_NAMEdelimiterSTUDIO_NAMEdelimiterUSER_RATING
-     * @param dvd The DVD to stringify
-     * @return The DVD in a serializable string format
-     */
-    private String getSerializedDvdStr(DVD dvd) {
-        return dvd.getTitle() + delimiter +
-                dvd.getReleaseDate() + delimiter +
-                dvd.getMpaaRating() + delimiter +
-                dvd.getDirectorName() + delimiter +
-                dvd.getStudio() + delimiter +
-                dvd.getUserRatingAndNote();
-    }
-
-    /**
-     * Processes a String and builds a resulting DVD object from it's contents
-     * @param serializedStr The String to build a DVD from
-     * @return The resulting DVD object
-     */
-    private DVD getDeserializedDvd(String serializedStr) {
-        DVD dvd = new DVD();
-        // Get tokens from serialized string
-        String[] tokens = serializedStr.split(delimiter);
-
-        // Set the DVD's values
-        dvd.setTitle(tokens[TITLE_IDX]);
-        dvd.setReleaseDate(tokens[RELEASE_DATE_IDX]);
-        dvd.setMpaaRating(tokens[MPAA_RATING_IDX]);
-        dvd.setDirectorName(tokens[DIRECTOR_NAME_IDX]);
-        dvd.setStudio(tokens[STUDIO_NAME_IDX]);
-        dvd.setUserRatingAndNote(tokens[USER_RATING_IDX]);
-        return dvd;
+     * Retrieves the file that the DAO saves to and loads from
+     * @return The DAO's output file
+     */
+    protected String getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * Retrieves the serializer used to convert DVDs to and from lines of the output file
+     * @return The DAO's serializer
+     */
+    protected DVDLibrarySerializer getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Retrieves the character set the output file is written in
+     * @return The platform's default character set
+     */
+    protected Charset getFileCharset() {
+        return Charset.defaultCharset();
     }
 
     /**
@@ -109,7 +149,7 @@ public class DVDLibraryFileImpl extends DVDLibraryDao {
      * @return True if saving was successful, and false otherwise
      */
     @Override
-    public boolean save() {
+    public synchronized boolean save() {
         PrintWriter writer;
         try {
             writer = new PrintWriter(new FileWriter(outputFile));
@@ -121,12 +161,14 @@ public class DVDLibraryFileImpl extends DVDLibraryDao {
 
         // Write storage to file
         for(DVD dvd : super.storage) {
-            String serializedDvdStr = getSerializedDvdStr(dvd);
+            String serializedDvdStr = serializer.serialize(dvd);
             writer.println(serializedDvdStr);
         }
         // Clean up
         writer.flush();
         writer.close();
+        // The saved file matches the storage, so it must not be reloaded
+        recordFileState();
         return true;
     }
 
@@ -135,9 +177,9 @@ public class DVDLibraryFileImpl extends DVDLibraryDao {
      * @return True if loading from the File was successful, and false otherwise
      */
     @Override
-    public boolean load() {
+    public synchronized boolean load() {
         // Try to open the file
-        Scanner fileReader;
+        BufferedReader fileReader;
         try {
             File outFile = new File(outputFile);
             if(outFile.isDirectory()) {
@@ -148,20 +190,476 @@ public class DVDLibraryFileImpl extends DVDLibraryDao {
                 writer.flush();
                 writer.close();
             }
-            fileReader = new Scanner(new BufferedReader(new FileReader(outputFile)));
+            fileReader = new BufferedReader(new InputStreamReader(new FileInputStream(outputFile), getFileCharset()));
         }
         catch(IOException e) {
             return false;
         }
 
-        // Read DVDs from the file
+        // Read DVDs from the file, sizing the storage for every record up front
         String curLine;
         DVD curDvd;
-        while(fileReader.hasNextLine()) {
-            curLine = fileReader.nextLine();
-            curDvd = getDeserializedDvd(curLine);
-            storage.addDvd(curDvd);
+        try(BufferedReader reader = fileReader) {
+            prepareStorageForLoad(new File(outputFile));
+            while((curLine = reader.readLine()) != null) {
+                curDvd = serializer.deserialize(curLine);
+                storage.addDvd(curDvd);
+            }
+        }
+        catch(IOException e) {
+            return false;
+        }
+        fireReload();
+        recordFileState();
+        return true;
+    }
+
+    /**
+     * Adds a DVD, keeping it through reloads until the library is saved
+     * @param dvd The DVD to add
+     * @throws IllegalArgumentException thrown when the storage treats the DVD's title as the title of a stored DVD
+     *                                  spelled differently
+     */
+    @Override
+    public void addDvd(DVD dvd) {
+        synchronized(this) {
+            if(dvd != null) {
+                markDirty(dvd.getTitle());
+            }
+            super.addDvd(dvd);
+        }
+    }
+
+    /**
+     * Removes a DVD, keeping it removed through reloads until the library is saved
+     * @param title The title of the DVD to remove
+     * @return If the title was present in the library
+     */
+    @Override
+    public boolean removeDvd(String title) {
+        synchronized(this) {
+            boolean marked = markDirty(title);
+            boolean removed = super.removeDvd(title);
+            if(!removed && marked) {
+                dirtyTitles.remove(title);
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Updates a DVD, keeping the edit through reloads until the library is saved
+     * @param title The title of the DVD to update
+     * @param patch The new field values
+     * @return True if the DVD was found and updated, and false if no DVD has the title
+     */
+    @Override
+    public boolean updateDvd(String title, DVDPatch patch) {
+        synchronized(this) {
+            boolean marked = markDirty(title);
+            boolean renamedMarked = patch.isSet(EDVDField.TITLE) && markDirty(patch.get(EDVDField.TITLE));
+            boolean updated = super.updateDvd(title, patch);
+            if(!updated) {
+                if(marked) {
+                    dirtyTitles.remove(title);
+                }
+                if(renamedMarked) {
+                    dirtyTitles.remove(patch.get(EDVDField.TITLE));
+                }
+            }
+            return updated;
+        }
+    }
+
+    /**
+     * Removes and adds a batch of DVDs, keeping the batch through reloads until the library is saved
+     * @param removals The titles of the DVDs to remove
+     * @param additions The DVDs to add, replacing any DVDs with the same titles
+     */
+    @Override
+    protected void applyBatch(Collection<String> removals, Collection<DVD> additions) {
+        synchronized(this) {
+            for(String title : removals) {
+                markDirty(title);
+            }
+            for(DVD dvd : additions) {
+                markDirty(dvd.getTitle());
+            }
+            super.applyBatch(removals, additions);
+        }
+    }
+
+    /**
+     * Marks a title as changed through the DAO before it is changed, so a reload running on the watcher
+     * never overwrites the change. Titles are only tracked while the file is watched.
+     * Callers MUST hold the DAO's lock
+     * @param title The title about to change
+     * @return True if the title was newly marked, and false if it was already marked or the file is not watched
+     */
+    private boolean markDirty(String title) {
+        return watcher != null && dirtyTitles.add(title);
+    }
+
+    /**
+     * Starts applying changes made to the output file by other programs as they happen.
+     * Changes are applied on a background thread once the file has stopped changing, and
+     * only after the library has been loaded. The DAO's own saves are never reloaded
+     * @return True if the file is being watched, and false if the file system cannot watch it
+     * @throws IllegalStateException thrown when the storage is not a DVDLibraryVersionedStorage,
+     *                               which is the only storage able to publish a reload to concurrent readers atomically
+     */
+    public synchronized boolean startHotReload() {
+        if(!(storage instanceof DVDLibraryVersionedStorage)) {
+            throw new IllegalStateException("Hot reload requires a DVDLibraryVersionedStorage");
+        }
+        if(watcher != null) {
+            return true;
+        }
+        Path path = Paths.get(outputFile).toAbsolutePath();
+        WatchService service;
+        try {
+            service = path.getFileSystem().newWatchService();
+            path.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
         }
+        catch(IOException e) {
+            return false;
+        }
+        watcher = new Thread(() -> watch(service, path.getFileName()), "dvd-library-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
         return true;
     }
+
+    /**
+     * Stops applying changes made to the output file by other programs
+     */
+    public synchronized void stopHotReload() {
+        if(watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Applies the changes made to the output file since it was last loaded, saved or reloaded.
+     *
+     * If the file only grew, the new lines are read from where the file previously ended,
+     * ignoring a final line which has not been completed yet. Otherwise the whole file is
+     * compared against the storage. Either way the changed DVDs are applied to the storage
+     * as a single batch before the change listeners are notified. DVDs changed through the DAO
+     * while the file was watched since the last load or save are left as they are, but without
+     * startHotReload() unsaved changes are overwritten by the file's contents
+     * @return The number of DVDs added, replaced or removed, or -1 if the file could not be read
+     */
+    public synchronized int reloadChanges() {
+        if(knownLength < 0) {
+            // Nothing to compare against until the library is loaded
+            return 0;
+        }
+        File file = new File(outputFile);
+        long length = file.length();
+        long modified = file.lastModified();
+        if(length == knownLength && modified == knownModified) {
+            return 0;
+        }
+        try {
+            if(length > knownLength && length - knownLength <= MAX_APPEND_BYTES) {
+                // Only an unchanged known part makes the new bytes an append, an edit anywhere before them is a rewrite
+                CRC32 prefix = prefixChecksum(file, knownLength);
+                if(prefix.getValue() == knownChecksum) {
+                    return reloadAppended(file, length, modified, prefix);
+                }
+            }
+            return reloadRewritten(file);
+        }
+        catch(IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Records the length, modification time and checksum of the output file,
+     * marking its current contents as already applied to the storage and the storage as saved
+     */
+    protected synchronized void recordFileState() {
+        dirtyTitles.clear();
+        File file = new File(outputFile);
+        try {
+            long length = file.length();
+            knownModified = file.lastModified();
+            knownChecksum = prefixChecksum(file, length).getValue();
+            knownLength = length;
+        }
+        catch(IOException e) {
+            // Compare the whole file on the next reload
+            knownLength = 0;
+            knownModified = -1;
+            knownChecksum = 0;
+        }
+    }
+
+    /**
+     * Applies lines appended to the output file
+     * @param file The output file
+     * @param length The length of the file
+     * @param modified The modification time of the file
+     * @param prefix The checksum of the known part of the file, which is extended over the lines read
+     * @return The number of DVDs added or replaced
+     * @throws IOException thrown when the file cannot be read
+     */
+    private int reloadAppended(File file, long length, long modified, CRC32 prefix) throws IOException {
+        byte[] appended = new byte[(int) (length - knownLength)];
+        try(RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(knownLength);
+            in.readFully(appended);
+        }
+        int end = appended.length;
+        while(end > 0 && appended[end - 1] != '\n') {
+            end--;
+        }
+        if(end == 0) {
+            // The only new line is still being written
+            return 0;
+        }
+        Map<String, DVD> additions = new LinkedHashMap<>();
+        for(String line : new String(appended, 0, end, getFileCharset()).split("\r?\n")) {
+            DVD dvd = readChangedLine(line);
+            if(dvd != null && !dirtyTitles.contains(dvd.getTitle())) {
+                additions.put(dvd.getTitle(), dvd);
+            }
+            else if(!line.isEmpty()) {
+                // A later line may restore a DVD replaced by an earlier one
+                additions.remove(titleOf(line));
+            }
+        }
+        int applied = applyReload(new ArrayList<>(), additions);
+        prefix.update(appended, 0, end);
+        knownLength += end;
+        knownModified = modified;
+        knownChecksum = prefix.getValue();
+        return applied;
+    }
+
+    /**
+     * Applies the differences between a rewritten output file and the storage
+     * @param file The output file
+     * @return The number of DVDs added, replaced or removed
+     * @throws IOException thrown when the file cannot be read
+     */
+    private int reloadRewritten(File file) throws IOException {
+        long length = file.length();
+        long modified = file.lastModified();
+        Map<String, DVD> additions = new LinkedHashMap<>();
+        HashSet<String> seen = new HashSet<>();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), getFileCharset()))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.isEmpty()) {
+                    continue;
+                }
+                DVD dvd = readChangedLine(line);
+                String title = dvd != null ? dvd.getTitle() : titleOf(line);
+                seen.add(title);
+                if(dvd != null && !dirtyTitles.contains(title)) {
+                    additions.put(title, dvd);
+                }
+                else {
+                    additions.remove(title);
+                }
+            }
+        }
+        List<String> removals = new ArrayList<>();
+        for(DVD dvd : storage) {
+            if(!seen.contains(dvd.getTitle()) && !dirtyTitles.contains(dvd.getTitle())) {
+                removals.add(dvd.getTitle());
+            }
+        }
+        int applied = applyReload(removals, additions);
+        knownLength = length;
+        knownModified = modified;
+        knownChecksum = prefixChecksum(file, length).getValue();
+        return applied;
+    }
+
+    /**
+     * Reads a line of the output file, keeping it only if it differs from the stored DVD with the same title
+     * @param line The line to read
+     * @return The line's DVD, or null if the stored DVD with the same title is identical or the line is not a DVD
+     */
+    private DVD readChangedLine(String line) {
+        DVD dvd;
+        try {
+            dvd = serializer.deserialize(line);
+        }
+        catch(RuntimeException e) {
+            return null;
+        }
+        DVD existing = storage.getDvd(dvd.getTitle());
+        if(existing != null && serializer.serialize(existing).equals(line)) {
+            return null;
+        }
+        return dvd;
+    }
+
+    /**
+     * Extracts the title from a line of the output file without reading the rest of the line
+     * @param line The line
+     * @return The text before the first delimiter
+     */
+    private String titleOf(String line) {
+        int end = line.indexOf(serializer.getDelimiter());
+        return end < 0 ? line : line.substring(0, end);
+    }
+
+    /**
+     * Applies a reload to the storage as a single batch and notifies the change listeners
+     * with one batch of removals, one of additions and one of edits
+     * @param removals The titles of the DVDs to remove
+     * @param additions The DVDs to add or replace, by title
+     * @return The number of DVDs added, replaced or removed
+     */
+    private int applyReload(List<String> removals, Map<String, DVD> additions) {
+        if(removals.isEmpty() && additions.isEmpty()) {
+            return 0;
+        }
+        List<DVD> removed = new ArrayList<>(removals.size());
+        for(String title : removals) {
+            removed.add(storage.getDvd(title));
+        }
+        List<DVD> added = new ArrayList<>();
+        List<DVD> editedBefore = new ArrayList<>();
+        List<DVD> editedAfter = new ArrayList<>();
+        for(DVD after : additions.values()) {
+            DVD before = storage.getDvd(after.getTitle());
+            if(before == null) {
+                added.add(after);
+            }
+            else {
+                editedBefore.add(before);
+                editedAfter.add(after);
+            }
+        }
+        storage.applyBatch(removals, additions.values());
+        if(!removed.isEmpty()) {
+            fireChanges(EChangeType.REMOVE, removed, null);
+        }
+        if(!added.isEmpty()) {
+            fireChanges(EChangeType.ADD, null, added);
+        }
+        if(!editedBefore.isEmpty()) {
+            fireChanges(EChangeType.EDIT, editedBefore, editedAfter);
+        }
+        return removals.size() + additions.size();
+    }
+
+    /**
+     * Waits for changes to the output file and reloads them until the watching thread is interrupted
+     * @param service The watch service registered on the file's directory
+     * @param fileName The name of the output file within its directory
+     */
+    private void watch(WatchService service, Path fileName) {
+        try(WatchService events = service) {
+            while(!Thread.currentThread().isInterrupted()) {
+                boolean changed = isFileEvent(events.take(), fileName);
+                // Let the writer finish, absorbing the events it causes meanwhile
+                WatchKey more;
+                while((more = events.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= isFileEvent(more, fileName);
+                }
+                if(changed) {
+                    reloadChanges();
+                }
+            }
+        }
+        catch(InterruptedException | ClosedWatchServiceException e) {
+            // Hot reload was stopped
+        }
+        catch(IOException ignored) { }
+    }
+
+    /**
+     * Checks if a batch of watch events concerns the output file, and rearms the watch
+     * @param key The batch of events
+     * @param fileName The name of the output file within its directory
+     * @return True if an event concerns the output file or events were lost, and false otherwise
+     */
+    private static boolean isFileEvent(WatchKey key, Path fileName) {
+        boolean relevant = false;
+        for(WatchEvent<?> event : key.pollEvents()) {
+            relevant |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+        }
+        key.reset();
+        return relevant;
+    }
+
+    /**
+     * Prepares the storage for reading a whole library file, dropping the DVDs and warnings of the previous load
+     * and sizing the storage for every record of the file up front
+     * @param file The library file about to be read
+     * @throws IOException thrown when the file cannot be read
+     */
+    protected void prepareStorageForLoad(File file) throws IOException {
+        if(!storage.isEmpty()) {
+            storage.clear();
+        }
+        storage.clearWarnings();
+        storage.presize(estimateRecords(file));
+    }
+
+    /**
+     * Estimates the number of records in a file from the line breaks of its first bytes, without reading the whole file.
+     * Files no larger than the sample are counted exactly
+     * @param file The file
+     * @return The estimated number of lines in the file
+     * @throws IOException thrown when the file cannot be read
+     */
+    protected static int estimateRecords(File file) throws IOException {
+        byte[] sample = new byte[RECORD_SAMPLE_BYTES];
+        int sampled = 0;
+        try(InputStream in = new FileInputStream(file)) {
+            int read;
+            while(sampled < sample.length && (read = in.read(sample, sampled, sample.length - sampled)) > 0) {
+                sampled += read;
+            }
+        }
+        if(sampled == 0) {
+            return 0;
+        }
+        int lines = 0;
+        for(int i = 0; i < sampled; i++) {
+            if(sample[i] == '\n') {
+                lines++;
+            }
+        }
+        if(sampled < sample.length) {
+            return sample[sampled - 1] == '\n' ? lines : lines + 1;
+        }
+        // Scale the sample's lines to the whole file, counting the partial line the sample ends in
+        long estimate = (long) Math.ceil((lines + 1) * (double) file.length() / sampled);
+        return (int) Math.min(estimate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Checksums every byte preceding a position of a file
+     * @param file The file
+     * @param end The position following the checksummed bytes
+     * @return The CRC32 of every byte before end, which can be extended over the bytes which follow
+     * @throws IOException thrown when the file cannot be read or ends before end
+     */
+    private static CRC32 prefixChecksum(File file, long end) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[(int) Math.min(CHECKSUM_BUFFER_BYTES, Math.max(end, 1))];
+        try(FileInputStream in = new FileInputStream(file)) {
+            long remaining = end;
+            while(remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if(read < 0) {
+                    throw new EOFException("The file ended before " + end + " bytes");
+                }
+                crc.update(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+        return crc;
+    }
 }
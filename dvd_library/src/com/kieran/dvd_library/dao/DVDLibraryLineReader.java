@@ -0,0 +1,199 @@
+package com.kieran.dvd_library.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of a file as raw bytes, tracking the byte offset each line starts at.
+ * Lines are returned without their line break, and are not decoded, so checksums can be computed
+ * over exactly the bytes on disk
+ */
+class DVDLibraryLineReader implements AutoCloseable {
+    /**
+     * The size of the read buffer in bytes
+     */
+    private static final int BUFFER_BYTES = 1 << 20;
+    /**
+     * The stream being read
+     */
+    private final InputStream in;
+    /**
+     * The bytes read from the stream which have not been returned yet
+     */
+    private final byte[] buffer;
+    /**
+     * The position of the next unreturned byte in buffer
+     */
+    private int bufferPos;
+    /**
+     * The number of valid bytes in buffer
+     */
+    private int bufferEnd;
+    /**
+     * The bytes of the current line
+     */
+    private byte[] line = new byte[256];
+    /**
+     * The length of the current line in bytes
+     */
+    private int length;
+    /**
+     * The offset of the current line in the file
+     */
+    private long lineOffset;
+    /**
+     * The offset of the next unreturned byte in the file
+     */
+    private long offset;
+    /**
+     * True if the current line ended with a line break, and false if it ended with the file
+     */
+    private boolean terminated;
+
+    /**
+     * Constructs a reader over a stream
+     * @param in The stream to read
+     * @param offset The offset in the file the stream starts at
+     */
+    DVDLibraryLineReader(InputStream in, long offset) {
+        this(in, offset, BUFFER_BYTES);
+    }
+
+    /**
+     * Constructs a reader over a stream with a given buffer size
+     * @param in The stream to read
+     * @param offset The offset in the file the stream starts at
+     * @param bufferBytes The size of the read buffer in bytes
+     */
+    DVDLibraryLineReader(InputStream in, long offset, int bufferBytes) {
+        this.in = in;
+        this.offset = offset;
+        this.buffer = new byte[bufferBytes];
+    }
+
+    /**
+     * Reads the next line
+     * @return True if a line was read, and false if the file has ended
+     * @throws IOException thrown when the stream cannot be read
+     */
+    boolean next() throws IOException {
+        length = 0;
+        lineOffset = offset;
+        while(true) {
+            if(bufferPos == bufferEnd) {
+                bufferEnd = in.read(buffer);
+                bufferPos = 0;
+                if(bufferEnd <= 0) {
+                    bufferEnd = 0;
+                    terminated = false;
+                    return length > 0;
+                }
+            }
+            int start = bufferPos;
+            int end = bufferEnd;
+            int pos = start;
+            while(pos < end && buffer[pos] != '\n') {
+                pos++;
+            }
+            append(start, pos - start);
+            if(pos < end) {
+                bufferPos = pos + 1;
+                offset += pos + 1 - start;
+                terminated = true;
+                return true;
+            }
+            bufferPos = end;
+            offset += end - start;
+        }
+    }
+
+    /**
+     * Skips the rest of the current line, so the next line read starts on a line boundary
+     * @return True if a line break was found, and false if the file ended first
+     * @throws IOException thrown when the stream cannot be read
+     */
+    boolean skipToLineStart() throws IOException {
+        return next() && terminated;
+    }
+
+    /**
+     * Retrieves the bytes of the current line. Only the first getLength() bytes are part of the line,
+     * and the array is reused by the next call to next()
+     * @return The line's bytes
+     */
+    byte[] getLine() {
+        return line;
+    }
+
+    /**
+     * Retrieves the length of the current line, excluding its line break
+     * @return The length in bytes
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Retrieves the offset of the current line in the file
+     * @return The offset of the line's first byte
+     */
+    long getLineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * Retrieves the offset of the next line in the file
+     * @return The offset following the current line and its line break
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Checks if the current line ended with a line break
+     * @return True if the line was terminated, and false if it ended with the file
+     */
+    boolean isTerminated() {
+        return terminated;
+    }
+
+    /**
+     * Checks if the current line starts with a prefix
+     * @param prefix The prefix, which must be ASCII
+     * @return True if the line starts with prefix, and false otherwise
+     */
+    boolean startsWith(String prefix) {
+        if(length < prefix.length()) {
+            return false;
+        }
+        for(int i = 0; i < prefix.length(); i++) {
+            if(line[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends bytes from the read buffer to the current line
+     * @param start The position of the first byte in buffer
+     * @param count The number of bytes
+     */
+    private void append(int start, int count) {
+        if(length + count > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+        }
+        System.arraycopy(buffer, start, line, length, count);
+        length += count;
+    }
+
+    /**
+     * Closes the underlying stream
+     * @throws IOException thrown when the stream cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
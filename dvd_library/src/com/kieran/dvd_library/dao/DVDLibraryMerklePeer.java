@@ -0,0 +1,33 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+
+import java.util.List;
+
+/**
+ * A library which can be compared with another library through a Merkle tree over its title buckets.
+ *
+ * Nodes are numbered as in a binary heap: the root is node 1, the children of node n are nodes
+ * 2n and 2n + 1, and bucket b is the leaf node 2^depth + b
+ */
+public interface DVDLibraryMerklePeer {
+    /**
+     * Retrieves the depth of the peer's tree
+     * @return The number of levels below the root, where the tree has 2^depth buckets
+     */
+    int getMerkleDepth();
+
+    /**
+     * Retrieves the hashes of nodes of the peer's tree
+     * @param nodes The numbers of the nodes
+     * @return The hash of every node, in the same order as nodes
+     */
+    long[] getMerkleHashes(int[] nodes);
+
+    /**
+     * Retrieves the DVDs in buckets of the peer's tree
+     * @param buckets The numbers of the buckets
+     * @return Every DVD whose title falls in one of the buckets
+     */
+    List<DVD> getMerkleBuckets(int[] buckets);
+}
@@ -0,0 +1,255 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.util.ConsistentHashRing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A Merkle tree summarizing the contents of a DVDLibraryDao.
+ *
+ * Titles are hashed into 2^depth buckets. The hash of a bucket is the XOR of the hashes of the
+ * DVDs in it, so adding, removing or editing a DVD updates its bucket without looking at the
+ * bucket's other DVDs, followed by the depth inner nodes above it. Two libraries are compared
+ * by their root hashes, descending only into the children whose hashes differ, so the cost of
+ * a comparison grows with the number of differences rather than the size of the libraries.
+ */
+public class DVDLibraryMerkleTree implements DVDLibraryChangeListener, DVDLibraryMerklePeer {
+    /**
+     * The depth used when no depth is specified, giving 16384 buckets
+     */
+    public static final int DEFAULT_DEPTH = 14;
+    /**
+     * The deepest supported tree
+     */
+    public static final int MAX_DEPTH = 24;
+    /**
+     * The DAO summarized by the tree
+     */
+    private final DVDLibraryDao dao;
+    /**
+     * The number of levels below the root
+     */
+    private final int depth;
+    /**
+     * The hash of every node, indexed by node number. Index 0 is unused
+     */
+    private final long[] hashes;
+    /**
+     * The serializer used to hash DVDs
+     */
+    private final DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+
+    /**
+     * Constructs a new DVDLibraryMerkleTree
+     * @param dao The DAO summarized by the tree
+     * @param depth The number of levels below the root
+     */
+    private DVDLibraryMerkleTree(DVDLibraryDao dao, int depth) {
+        if(depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("A Merkle tree's depth must be between 1 and " + MAX_DEPTH);
+        }
+        this.dao = dao;
+        this.depth = depth;
+        this.hashes = new long[2 << depth];
+        rebuildInnerNodes();
+    }
+
+    /**
+     * Attaches a tree of the default depth to a DAO.
+     * The tree is built when the DAO is next loaded, so it should be attached before loading
+     * @param dao The DAO to summarize
+     * @return The attached tree
+     */
+    public static DVDLibraryMerkleTree attach(DVDLibraryDao dao) {
+        return attach(dao, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Attaches a tree to a DAO.
+     * The tree is built when the DAO is next loaded, so it should be attached before loading
+     * @param dao The DAO to summarize
+     * @param depth The number of levels below the root
+     * @return The attached tree
+     */
+    public static DVDLibraryMerkleTree attach(DVDLibraryDao dao, int depth) {
+        DVDLibraryMerkleTree tree = new DVDLibraryMerkleTree(dao, depth);
+        dao.addChangeListener(tree);
+        return tree;
+    }
+
+    /**
+     * Finds the buckets whose contents differ between two libraries
+     * @param a The first library
+     * @param b The second library
+     * @return The numbers of the differing buckets, in ascending order
+     * @throws IllegalArgumentException thrown when the libraries' trees have different depths
+     */
+    public static int[] diff(DVDLibraryMerklePeer a, DVDLibraryMerklePeer b) {
+        int depth = a.getMerkleDepth();
+        if(b.getMerkleDepth() != depth) {
+            throw new IllegalArgumentException("Cannot compare Merkle trees of depth " + depth + " and " + b.getMerkleDepth());
+        }
+        int[] frontier = { 1 };
+        if(a.getMerkleHashes(frontier)[0] == b.getMerkleHashes(frontier)[0]) {
+            return new int[0];
+        }
+        // Every level costs one round trip to each library, asking only for the children of differing nodes
+        for(int level = 0; level < depth; level++) {
+            int[] children = new int[frontier.length * 2];
+            for(int i = 0; i < frontier.length; i++) {
+                children[2 * i] = 2 * frontier[i];
+                children[2 * i + 1] = 2 * frontier[i] + 1;
+            }
+            long[] hashesA = a.getMerkleHashes(children);
+            long[] hashesB = b.getMerkleHashes(children);
+            int differing = 0;
+            for(int i = 0; i < children.length; i++) {
+                if(hashesA[i] != hashesB[i]) {
+                    children[differing++] = children[i];
+                }
+            }
+            frontier = Arrays.copyOf(children, differing);
+        }
+        int firstLeaf = 1 << depth;
+        for(int i = 0; i < frontier.length; i++) {
+            frontier[i] -= firstLeaf;
+        }
+        return frontier;
+    }
+
+    /**
+     * Rebuilds the tree from every DVD in the library
+     * @param dvds Every DVD in the library
+     */
+    @Override
+    public synchronized void onReload(Collection<DVD> dvds) {
+        Arrays.fill(hashes, 0);
+        int firstLeaf = 1 << depth;
+        for(DVD dvd : dvds) {
+            hashes[firstLeaf + bucketOf(dvd.getTitle())] ^= hashDvd(dvd);
+        }
+        rebuildInnerNodes();
+    }
+
+    /**
+     * Keeps the tree up to date with a mutation of the library
+     * @param event The mutation made to the library
+     */
+    @Override
+    public synchronized void onChange(DVDLibraryChangeEvent event) {
+        if(event.getBefore() != null) {
+            toggle(event.getBefore());
+        }
+        if(event.getAfter() != null) {
+            toggle(event.getAfter());
+        }
+    }
+
+    /**
+     * Retrieves the depth of the tree
+     * @return The number of levels below the root
+     */
+    @Override
+    public int getMerkleDepth() {
+        return depth;
+    }
+
+    /**
+     * Retrieves the hashes of nodes of the tree
+     * @param nodes The numbers of the nodes
+     * @return The hash of every node, in the same order as nodes
+     */
+    @Override
+    public synchronized long[] getMerkleHashes(int[] nodes) {
+        long[] result = new long[nodes.length];
+        for(int i = 0; i < nodes.length; i++) {
+            if(nodes[i] < 1 || nodes[i] >= hashes.length) {
+                throw new IllegalArgumentException("No Merkle tree node " + nodes[i]);
+            }
+            result[i] = hashes[nodes[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the DVDs in buckets of the tree with a single pass over the library
+     * @param buckets The numbers of the buckets
+     * @return Every DVD whose title falls in one of the buckets
+     */
+    @Override
+    public List<DVD> getMerkleBuckets(int[] buckets) {
+        boolean[] wanted = new boolean[1 << depth];
+        for(int bucket : buckets) {
+            wanted[bucket] = true;
+        }
+        List<DVD> dvds = new ArrayList<>();
+        dao.stream().filter(dvd -> wanted[bucketOf(dvd.getTitle())]).forEach(dvds::add);
+        return dvds;
+    }
+
+    /**
+     * Retrieves the root hash of the tree
+     * @return The hash summarizing the whole library
+     */
+    public synchronized long getRootHash() {
+        return hashes[1];
+    }
+
+    /**
+     * Finds the bucket of a title
+     * @param title The title
+     * @return The number of the title's bucket
+     */
+    public int bucketOf(String title) {
+        return (int) (ConsistentHashRing.hash(title) >>> (64 - depth));
+    }
+
+    /**
+     * Hashes every field of a DVD
+     * @param dvd The DVD to hash
+     * @return The 64-bit hash of the DVD
+     */
+    public long hashDvd(DVD dvd) {
+        return ConsistentHashRing.hash(serializer.serialize(dvd));
+    }
+
+    /**
+     * Adds a DVD to its bucket if it is absent, or removes it if it is present, and updates the bucket's ancestors
+     * @param dvd The DVD to toggle
+     */
+    private void toggle(DVD dvd) {
+        int node = (1 << depth) + bucketOf(dvd.getTitle());
+        hashes[node] ^= hashDvd(dvd);
+        for(node >>>= 1; node >= 1; node >>>= 1) {
+            hashes[node] = combine(hashes[2 * node], hashes[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Recomputes every inner node from the buckets
+     */
+    private void rebuildInnerNodes() {
+        for(int node = (1 << depth) - 1; node >= 1; node--) {
+            hashes[node] = combine(hashes[2 * node], hashes[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Combines the hashes of two children into the hash of their parent.
+     * Unlike XOR, the combination depends on the order of the children
+     * @param left The hash of the left child
+     * @param right The hash of the right child
+     * @return The hash of the parent
+     */
+    private static long combine(long left, long right) {
+        long hash = left * 0x9E3779B97F4A7C15L + right;
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+}
@@ -0,0 +1,255 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A DVDLibraryStorage which treats titles differing only in case or surrounding whitespace as the same title.
+ * Ex. "The Matrix" and "the matrix " refer to the same DVD.
+ *
+ * Keys are hashed and compared directly over the caller's title, so a lookup never allocates
+ * a normalized copy of the title. While a library is loaded, adding a DVD whose title collides with a
+ * differently spelled stored title replaces the stored DVD and records a warning. DAOs reject such a DVD
+ * when it is added at runtime instead (see checkTitleAvailable).
+ */
+public class DVDLibraryNormalizedStorage extends DVDLibraryStorage {
+    /**
+     * The underlying storage container, keyed by normalized title
+     */
+    private final HashMap<TitleKey, DVD> library = new HashMap<>();
+    /**
+     * A reusable key per thread, used to look titles up without allocating a key
+     */
+    private static final ThreadLocal<TitleKey> PROBE = ThreadLocal.withInitial(TitleKey::new);
+    /**
+     * The title collisions found while DVDs were added, guarded by its own lock since a background load may add them
+     */
+    private final List<String> warnings = new ArrayList<>();
+
+    /**
+     * Constructs a new DVDLibraryNormalizedStorage object with no elements
+     */
+    public DVDLibraryNormalizedStorage() { }
+
+    /**
+     * Constructs a DVDLibraryNormalizedStorage object given a collection of DVDs
+     * @param dvds The DVDs used to populate the storage
+     */
+    public DVDLibraryNormalizedStorage(Collection<DVD> dvds) {
+        for(DVD dvd : dvds) {
+            addDvd(dvd);
+        }
+    }
+
+    /**
+     * Checks if the storage is empty
+     * @return True if the storage contains no elements, and false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return library.isEmpty();
+    }
+
+    /**
+     * Adds a DVD to the storage, replacing any DVD with the same normalized title.
+     * A warning is recorded if the replaced DVD's title was spelled differently
+     * @param dvd The DVD to add
+     */
+    @Override
+    public void addDvd(DVD dvd) {
+        if(dvd == null) {
+            return;
+        }
+        TitleKey key = new TitleKey(dvd.getTitle());
+        DVD replaced = library.put(key, dvd);
+        invalidateArraySnapshot();
+        if(replaced != null && !replaced.getTitle().equals(dvd.getTitle())) {
+            synchronized(warnings) {
+                warnings.add("Duplicate title: \"" + dvd.getTitle() + "\" replaced \"" + replaced.getTitle() + "\"");
+            }
+            // Keep the key spelled like the DVD it now maps to
+            library.remove(key);
+            library.put(key, dvd);
+        }
+    }
+
+    /**
+     * Removes a DVD from storage
+     * @param title The Title of the DVD to remove, in any case and with any surrounding whitespace
+     * @return If the title was present in the storage
+     */
+    @Override
+    public boolean removeDvd(String title) {
+        TitleKey probe = PROBE.get().wrap(title);
+        try {
+            if(library.remove(probe) == null) {
+                return false;
+            }
+            invalidateArraySnapshot();
+            return true;
+        }
+        finally {
+            probe.wrap(null);
+        }
+    }
+
+    /**
+     * Hashes a title into 64 bits, ignoring case and surrounding whitespace
+     * @param title The title to hash
+     * @return The 64-bit hash of the trimmed, case folded title
+     */
+    @Override
+    public long hashTitle(CharSequence title) {
+        return StringUtils.foldedHash64(title);
+    }
+
+    /**
+     * Checks if two titles refer to the same DVD in this storage
+     * @param a The first title
+     * @param b The second title
+     * @return True if the titles are equal ignoring case and surrounding whitespace, and false otherwise
+     */
+    @Override
+    public boolean titlesMatch(CharSequence a, CharSequence b) {
+        return StringUtils.foldedEquals(a, b);
+    }
+
+    /**
+     * Retrieves a DVD from storage
+     * @param title The title of the DVD to retrieve, in any case and with any surrounding whitespace
+     * @return The DVD object if it was found, and null if it was not
+     */
+    @Override
+    public DVD getDvd(String title) {
+        return getDvd((CharSequence) title);
+    }
+
+    /**
+     * Retrieves a DVD from storage without requiring the title to be a String
+     * @param title The title of the DVD to retrieve, in any case and with any surrounding whitespace
+     * @return The DVD object if it was found, and null if it was not
+     */
+    public DVD getDvd(CharSequence title) {
+        TitleKey probe = PROBE.get().wrap(title);
+        try {
+            return library.get(probe);
+        }
+        finally {
+            probe.wrap(null);
+        }
+    }
+
+    /**
+     * Retrieves all DVDs contained in the storage
+     * @return A collection of DVDs owned by the storage
+     */
+    @Override
+    public Collection<DVD> getAllDvds() {
+        return library.values();
+    }
+
+    /**
+     * Retrieves the title collisions found while DVDs were added
+     * @return A copy of the description of each collision, in the order they were found
+     */
+    @Override
+    public List<String> getWarnings() {
+        synchronized(warnings) {
+            return new ArrayList<>(warnings);
+        }
+    }
+
+    /**
+     * Forgets the title collisions found while DVDs were added, such as before the library is loaded again
+     */
+    @Override
+    public void clearWarnings() {
+        synchronized(warnings) {
+            warnings.clear();
+        }
+    }
+
+    /**
+     * Checks that a DVD can be added without replacing a stored DVD whose title is spelled differently
+     * @param dvd The DVD about to be added
+     * @throws IllegalArgumentException thrown when a stored DVD's title differs from the DVD's title only in
+     *                                  case or surrounding whitespace
+     */
+    @Override
+    public void checkTitleAvailable(DVD dvd) {
+        DVD existing = getDvd(dvd.getTitle());
+        if(existing != null && !existing.getTitle().equals(dvd.getTitle())) {
+            throw new IllegalArgumentException("A DVD titled " + existing.getTitle() + " already exists");
+        }
+    }
+
+    /**
+     * Constructs an iterator over the DVDLibraryNormalizedStorage's DVD elements
+     * @return The constructed iterator
+     */
+    @Override
+    public Iterator<DVD> iterator() {
+        return library.values().iterator();
+    }
+
+    /**
+     * A title compared by its trimmed, case folded contents
+     */
+    private static final class TitleKey {
+        /**
+         * The title, as given by the caller
+         */
+        private CharSequence title;
+        /**
+         * The folded hash of the title
+         */
+        private int hash;
+
+        /**
+         * Constructs an empty TitleKey, used as a reusable probe
+         */
+        TitleKey() { }
+
+        /**
+         * Constructs a TitleKey stored in the map
+         * @param title The title of the key
+         */
+        TitleKey(String title) {
+            wrap(title);
+        }
+
+        /**
+         * Points the key at a title
+         * @param title The title of the key, or null to release the previous title
+         * @return This key
+         */
+        TitleKey wrap(CharSequence title) {
+            this.title = title;
+            this.hash = title == null ? 0 : StringUtils.foldedHash(title);
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(this == obj) {
+                return true;
+            }
+            if(!(obj instanceof TitleKey)) {
+                return false;
+            }
+            TitleKey other = (TitleKey) obj;
+            return hash == other.hash && StringUtils.foldedEquals(title, other.title);
+        }
+    }
+}
@@ -0,0 +1,787 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import com.kieran.dvd_library.util.StringDictionary;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Hosts many libraries in one JVM, each stored in its own file of a directory and opened by name.
+ *
+ * A library is read from its file on first use rather than when it is opened. Every library shares one
+ * StringDictionary, so a studio, director or MPAA rating is held once however many DVDs and libraries use it.
+ * The estimated heap held by resident libraries is kept under a global budget: once it is exceeded, idle libraries
+ * are saved if they have unsaved changes and dropped from memory, least recently used first, and read back from
+ * their files the next time they are used. A library busy on another thread is never evicted, so the budget can be
+ * exceeded while every resident library is in use.
+ *
+ * The DAOs handed out stay valid across evictions. Their listeners are not told about evictions or reopens,
+ * which leave the library's contents unchanged, so indexes attached to them never need rebuilding.
+ */
+public class DVDLibraryRegistry implements AutoCloseable {
+    /**
+     * The extension of library files
+     */
+    public static final String LIBRARY_EXTENSION = ".txt";
+    /**
+     * The estimated heap cost of a DVD object, excluding its strings
+     */
+    private static final int DVD_BYTES = 40;
+    /**
+     * The estimated heap cost of a storage entry holding a DVD, including its share of the hash table
+     */
+    private static final int ENTRY_BYTES = 48;
+    /**
+     * The directory holding the library files
+     */
+    private final File directory;
+    /**
+     * The estimated number of bytes resident libraries may hold before idle libraries are evicted
+     */
+    private final long heapBudget;
+    /**
+     * The dictionary shared by every library
+     */
+    private final StringDictionary dictionary = new StringDictionary();
+    /**
+     * The opened libraries by name, least recently used first
+     */
+    private final LinkedHashMap<String, Library> libraries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * The estimated number of bytes held by resident libraries
+     */
+    private long residentBytes = 0;
+    /**
+     * The number of libraries evicted since the registry was created
+     */
+    private int evictionCount = 0;
+    /**
+     * The number of evicted libraries read back since the registry was created
+     */
+    private int reopenCount = 0;
+    /**
+     * The total time spent reading evicted libraries back, in nanoseconds
+     */
+    private long reopenNanos = 0;
+
+    /**
+     * Constructs a new DVDLibraryRegistry
+     * @param directory The directory holding the library files, created if it does not exist
+     * @param heapBudget The estimated number of bytes resident libraries may hold before idle libraries are evicted
+     */
+    public DVDLibraryRegistry(String directory, long heapBudget) {
+        this.directory = new File(directory);
+        this.heapBudget = heapBudget;
+        this.directory.mkdirs();
+    }
+
+    /**
+     * Opens a library by name without reading it. The library is read from its file the first time it is used
+     * @param name The library's name, which is the name of its file without the extension
+     * @return The library's DAO. Opening the same name again returns the same DAO
+     * @throws IllegalArgumentException thrown when the name is empty or holds characters other than letters,
+     *                                  digits, '.', '_' and '-'
+     */
+    public synchronized DVDLibraryDao open(String name) {
+        if(!name.matches("[A-Za-z0-9._-]+") || name.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid library name: " + name);
+        }
+        Library library = libraries.get(name);
+        if(library == null) {
+            library = new Library(name, new File(directory, name + LIBRARY_EXTENSION).getPath());
+            libraries.put(name, library);
+        }
+        return library;
+    }
+
+    /**
+     * Lists the libraries stored in the registry's directory, whether or not they were opened
+     * @return The name of every library file, in alphabetical order
+     */
+    public List<String> listLibraries() {
+        List<String> names = new ArrayList<>();
+        File[] files = directory.listFiles((dir, file) -> file.endsWith(LIBRARY_EXTENSION));
+        if(files != null) {
+            for(File file : files) {
+                String name = file.getName().substring(0, file.getName().length() - LIBRARY_EXTENSION.length());
+                if(name.matches("[A-Za-z0-9._-]+") && !name.startsWith(".")) {
+                    names.add(name);
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Retrieves the dictionary shared by every library
+     * @return The shared StringDictionary
+     */
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Retrieves the budget resident libraries are kept under
+     * @return The estimated number of bytes resident libraries may hold before idle libraries are evicted
+     */
+    public long getHeapBudget() {
+        return heapBudget;
+    }
+
+    /**
+     * Retrieves the estimated heap held by resident libraries, excluding the shared dictionary
+     * @return The estimated number of bytes
+     */
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Retrieves the number of libraries evicted since the registry was created
+     * @return The number of evictions
+     */
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Retrieves the number of evicted libraries read back since the registry was created
+     * @return The number of reopens
+     */
+    public synchronized int getReopenCount() {
+        return reopenCount;
+    }
+
+    /**
+     * Retrieves the average time taken to read an evicted library back
+     * @return The average reopen time in milliseconds, or NaN if no library was reopened
+     */
+    public synchronized double getAverageReopenMillis() {
+        return reopenCount == 0 ? Double.NaN : reopenNanos / 1e6 / reopenCount;
+    }
+
+    /**
+     * Reports the memory held by every opened library
+     * @return One report per opened library, most recently used first
+     */
+    public synchronized List<LibraryMemory> getMemoryReport() {
+        List<LibraryMemory> report = new ArrayList<>();
+        long now = System.nanoTime();
+        for(Library library : libraries.values()) {
+            report.add(new LibraryMemory(library.name, library.resident, library.dvdCount,
+                    library.residentBytes, (now - library.lastAccess) / 1_000_000));
+        }
+        Collections.reverse(report);
+        return report;
+    }
+
+    /**
+     * Saves every resident library with unsaved changes
+     * @return True if every library saved successfully, and false otherwise
+     */
+    public boolean saveAll() {
+        List<Library> opened;
+        synchronized(this) {
+            opened = new ArrayList<>(libraries.values());
+        }
+        boolean success = true;
+        for(Library library : opened) {
+            success &= library.save();
+        }
+        return success;
+    }
+
+    /**
+     * Saves every resident library with unsaved changes
+     */
+    @Override
+    public void close() {
+        saveAll();
+    }
+
+    /**
+     * Estimates the heap held by a DVD stored in a library, excluding the strings shared through the dictionary
+     * @param dvd The DVD. May be null
+     * @return The estimated number of bytes, or 0 if dvd is null
+     */
+    long estimateBytes(DVD dvd) {
+        if(dvd == null) {
+            return 0;
+        }
+        long bytes = DVD_BYTES + ENTRY_BYTES;
+        for(EDVDField field : EDVDField.values()) {
+            String value = field.get(dvd);
+            if(!dictionary.isShared(value)) {
+                bytes += StringDictionary.estimateBytes(value);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Marks a library as the most recently used
+     * @param library The library
+     */
+    private synchronized void touch(Library library) {
+        libraries.get(library.name);
+        library.lastAccess = System.nanoTime();
+    }
+
+    /**
+     * Records a change in the heap held by a resident library, evicting idle libraries if the budget is exceeded
+     * @param library The library, which is never evicted by this call
+     * @param delta The change in the library's estimated heap, in bytes
+     */
+    private synchronized void adjustResidentBytes(Library library, long delta) {
+        library.residentBytes += delta;
+        residentBytes += delta;
+        if(delta > 0) {
+            enforceBudget(library);
+        }
+    }
+
+    /**
+     * Records the heap held by a library which was just read, evicting idle libraries if the budget is exceeded
+     * @param library The library, which is never evicted by this call
+     * @param bytes The estimated heap held by the library, in bytes
+     */
+    private synchronized void setResidentBytes(Library library, long bytes) {
+        adjustResidentBytes(library, bytes - library.residentBytes);
+    }
+
+    /**
+     * Evicts idle libraries, least recently used first, until the resident libraries fit in the budget
+     * @param library The library which caused the budget to be exceeded, which is never evicted
+     */
+    private synchronized void enforceBudget(Library library) {
+        for(Library candidate : new ArrayList<>(libraries.values())) {
+            if(residentBytes <= heapBudget) {
+                break;
+            }
+            if(candidate != library && candidate.resident && candidate.tryEvict()) {
+                residentBytes -= candidate.residentBytes;
+                candidate.residentBytes = 0;
+                evictionCount++;
+            }
+        }
+    }
+
+    /**
+     * Records the time taken to read an evicted library back
+     * @param nanos The time taken, in nanoseconds
+     */
+    private synchronized void recordReopen(long nanos) {
+        reopenCount++;
+        reopenNanos += nanos;
+    }
+
+    /**
+     * The memory held by a library at the time of a report
+     */
+    public static final class LibraryMemory {
+        /**
+         * The name of the library
+         */
+        private final String name;
+        /**
+         * If the library's DVDs are in memory
+         */
+        private final boolean resident;
+        /**
+         * The number of DVDs in the library when it was last resident
+         */
+        private final int dvdCount;
+        /**
+         * The estimated heap held by the library
+         */
+        private final long residentBytes;
+        /**
+         * The time since the library was last used, in milliseconds
+         */
+        private final long idleMillis;
+
+        /**
+         * Constructs a new LibraryMemory
+         * @param name The name of the library
+         * @param resident If the library's DVDs are in memory
+         * @param dvdCount The number of DVDs in the library when it was last resident
+         * @param residentBytes The estimated heap held by the library
+         * @param idleMillis The time since the library was last used, in milliseconds
+         */
+        LibraryMemory(String name, boolean resident, int dvdCount, long residentBytes, long idleMillis) {
+            this.name = name;
+            this.resident = resident;
+            this.dvdCount = dvdCount;
+            this.residentBytes = residentBytes;
+            this.idleMillis = idleMillis;
+        }
+
+        /**
+         * Retrieves the name of the library
+         * @return The library's name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Checks if the library's DVDs are in memory
+         * @return True if the library is resident, and false if it is evicted or was never read
+         */
+        public boolean isResident() {
+            return resident;
+        }
+
+        /**
+         * Retrieves the number of DVDs in the library
+         * @return The number of DVDs when the library was last resident, or 0 if it was never read
+         */
+        public int getDvdCount() {
+            return dvdCount;
+        }
+
+        /**
+         * Retrieves the estimated heap held by the library, excluding strings shared through the dictionary
+         * @return The estimated number of bytes, or 0 if the library is not resident
+         */
+        public long getResidentBytes() {
+            return residentBytes;
+        }
+
+        /**
+         * Retrieves the time since the library was last used
+         * @return The idle time in milliseconds
+         */
+        public long getIdleMillis() {
+            return idleMillis;
+        }
+    }
+
+    /**
+     * A library of the registry, reading its file on first use and after every eviction
+     */
+    private final class Library extends DVDLibraryDao {
+        /**
+         * The name of the library
+         */
+        final String name;
+        /**
+         * The file holding the library
+         */
+        final String file;
+        /**
+         * Held while the library is used, so a busy library is never evicted
+         */
+        final ReentrantLock lock = new ReentrantLock();
+        /**
+         * The DAO holding the library's DVDs while it is resident, or null if it is not
+         */
+        DVDLibraryFileImpl delegate;
+        /**
+         * If the library's DVDs are in memory. Read by the registry under its own lock
+         */
+        volatile boolean resident = false;
+        /**
+         * If the library has been read from its file before, so reading it again is a reopen
+         */
+        boolean loadedOnce = false;
+        /**
+         * If the library was changed since it was last read or saved
+         */
+        boolean dirty = false;
+        /**
+         * The number of DVDs in the library when it was last resident
+         */
+        volatile int dvdCount = 0;
+        /**
+         * The estimated heap held by the library. Guarded by the registry
+         */
+        long residentBytes = 0;
+        /**
+         * The System.nanoTime() the library was last used at. Guarded by the registry
+         */
+        long lastAccess = System.nanoTime();
+
+        /**
+         * Constructs a new Library
+         * @param name The name of the library
+         * @param file The file holding the library
+         */
+        Library(String name, String file) {
+            super(null);
+            this.name = name;
+            this.file = file;
+        }
+
+        /**
+         * Saves the library if it is resident and has unsaved changes
+         * @return True if the library's file holds every change, and false otherwise
+         */
+        @Override
+        public boolean save() {
+            lock.lock();
+            try {
+                if(delegate == null || !dirty) {
+                    return true;
+                }
+                if(!delegate.save()) {
+                    return false;
+                }
+                dirty = false;
+                return true;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Reads the library from its file, discarding unsaved changes
+         * @return True if the library was read successfully, and false otherwise
+         */
+        @Override
+        public boolean load() {
+            lock.lock();
+            try {
+                if(!read()) {
+                    return false;
+                }
+                fireReload();
+                return true;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Adds a DVD, sharing its studio, director and MPAA rating through the registry's dictionary
+         * @param dvd The DVD to add
+         */
+        @Override
+        public void addDvd(DVD dvd) {
+            if(dvd == null) {
+                return;
+            }
+            DVD shared = new DVD(dvd);
+            shared.setStudio(dictionary.intern(dvd.getStudio()));
+            shared.setDirectorName(dictionary.intern(dvd.getDirectorName()));
+            shared.setMpaaRating(dictionary.intern(dvd.getMpaaRating()));
+            lock.lock();
+            try {
+                DVDLibraryFileImpl dao = resident();
+                DVD before = dao.storage.getDvd(shared.getTitle());
+                dao.addDvd(shared);
+                dirty = true;
+                dvdCount = dao.storage.getAllDvds().size();
+                adjustResidentBytes(this, estimateBytes(shared) - estimateBytes(before));
+                fireChange(before == null ? EChangeType.ADD : EChangeType.EDIT, before, shared);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Removes a DVD
+         * @param title The title of the DVD to remove
+         * @return If the title was present in the library
+         */
+        @Override
+        public boolean removeDvd(String title) {
+            if(isDefinitelyAbsent(title)) {
+                return false;
+            }
+            lock.lock();
+            try {
+                DVDLibraryFileImpl dao = resident();
+                DVD before = dao.storage.getDvd(title);
+                if(!dao.removeDvd(title)) {
+                    recordFilterMiss();
+                    return false;
+                }
+                dirty = true;
+                dvdCount = dao.storage.getAllDvds().size();
+                adjustResidentBytes(this, -estimateBytes(before));
+                fireChange(EChangeType.REMOVE, before, null);
+                return true;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Changes individual fields of a DVD, sharing the new values through the registry's dictionary
+         * @param title The title of the DVD to update
+         * @param patch The new field values
+         * @return True if the DVD was found and updated, and false if no DVD has the title
+         * @throws IllegalArgumentException thrown when the patch renames the DVD to the title of another DVD
+         */
+        @Override
+        public boolean updateDvd(String title, DVDPatch patch) {
+            DVDPatch shared = sharePatch(patch);
+            lock.lock();
+            try {
+                DVDLibraryFileImpl dao = resident();
+                DVD before = dao.storage.getDvd(title);
+                if(before == null) {
+                    return false;
+                }
+                if(shared.isEmpty()) {
+                    return true;
+                }
+                dao.updateDvd(title, shared);
+                DVD after = dao.storage.getDvd(shared.applyTo(before).getTitle());
+                dirty = true;
+                adjustResidentBytes(this, estimateBytes(after) - estimateBytes(before));
+                fireChange(EChangeType.EDIT, before, after);
+                return true;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Applies a patch to every DVD matching a predicate as a single batch, sharing the new values through the registry's dictionary
+         * @param candidates The DVDs to test, or null to scan the whole library
+         * @param where The predicate DVDs must match
+         * @param patch The new field values
+         * @return The number of DVDs updated
+         * @throws IllegalArgumentException thrown when the patch would give several DVDs the same title
+         */
+        @Override
+        public int updateWhere(Collection<DVD> candidates, Predicate<? super DVD> where, DVDPatch patch) {
+            lock.lock();
+            try {
+                return super.updateWhere(candidates, where, sharePatch(patch));
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Removes every DVD matching a predicate as a single batch
+         * @param candidates The DVDs to test, or null to scan the whole library
+         * @param where The predicate DVDs must match
+         * @return The number of DVDs removed
+         */
+        @Override
+        public int deleteWhere(Collection<DVD> candidates, Predicate<? super DVD> where) {
+            lock.lock();
+            try {
+                return super.deleteWhere(candidates, where);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Gets a DVD, reading the library back if it was evicted
+         * @param title The title of the DVD to retrieve
+         * @return The retrieved object if it exists, or null otherwise
+         */
+        @Override
+        public DVD getDvdInfo(String title) {
+            if(isDefinitelyAbsent(title)) {
+                return null;
+            }
+            lock.lock();
+            try {
+                DVD dvd = resident().storage.getDvd(title);
+                if(dvd == null) {
+                    recordFilterMiss();
+                }
+                return dvd;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Gets every DVD, reading the library back if it was evicted
+         * @return A collection of DVDs, which stays readable after the library is evicted
+         */
+        @Override
+        public Collection<DVD> getAllDvds() {
+            lock.lock();
+            try {
+                return resident().getAllDvds();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Checks if the library is empty, reading the library back if it was evicted
+         * @return True if there are no DVDs in the library, and false otherwise
+         */
+        @Override
+        public boolean isEmpty() {
+            lock.lock();
+            try {
+                return resident().isEmpty();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Retrieves problems found while the library was last read
+         * @return A description of each problem found, or an empty list if the library is not resident
+         */
+        @Override
+        public List<String> getLoadWarnings() {
+            lock.lock();
+            try {
+                return delegate == null ? Collections.emptyList() : delegate.getLoadWarnings();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Constructs the spliterator backing the library's streams, reading the library back if it was evicted
+         * @return A spliterator over a point-in-time view of the library's DVDs
+         */
+        @Override
+        protected Spliterator<DVD> spliterator() {
+            lock.lock();
+            try {
+                return resident().spliterator();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Removes and adds a batch of DVDs, keeping the library's estimated heap up to date
+         * @param removals The titles of the DVDs to remove
+         * @param additions The DVDs to add, replacing any DVDs with the same titles
+         */
+        @Override
+        protected void applyBatch(Collection<String> removals, Collection<DVD> additions) {
+            lock.lock();
+            try {
+                DVDLibraryFileImpl dao = resident();
+                long delta = 0;
+                for(String title : removals) {
+                    delta -= estimateBytes(dao.storage.getDvd(title));
+                }
+                for(DVD dvd : additions) {
+                    delta += estimateBytes(dvd) - estimateBytes(dao.storage.getDvd(dvd.getTitle()));
+                }
+                dao.applyBatch(removals, additions);
+                dirty = true;
+                dvdCount = dao.storage.getAllDvds().size();
+                adjustResidentBytes(this, delta);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Retrieves the DAO holding the library's DVDs, reading the library back if it is not resident.
+         * The caller MUST hold the library's lock
+         * @return The resident DAO
+         * @throws IllegalStateException thrown when the library's file cannot be read
+         */
+        private DVDLibraryFileImpl resident() {
+            touch(this);
+            if(delegate == null) {
+                boolean reopen = loadedOnce;
+                long start = System.nanoTime();
+                if(!read()) {
+                    throw new IllegalStateException("Failed to read library " + name + " from " + file);
+                }
+                if(reopen) {
+                    recordReopen(System.nanoTime() - start);
+                }
+            }
+            return delegate;
+        }
+
+        /**
+         * Reads the library from its file into a new DAO, replacing the current one.
+         * The caller MUST hold the library's lock
+         * @return True if the library was read successfully, and false otherwise
+         */
+        private boolean read() {
+            DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), file,
+                    new DVDLibrarySerializer(DVDLibrarySerializer.DEFAULT_DELIMITER, dictionary));
+            if(!dao.load()) {
+                return false;
+            }
+            long bytes = 0;
+            for(DVD dvd : dao.storage) {
+                bytes += estimateBytes(dvd);
+            }
+            delegate = dao;
+            resident = true;
+            dirty = false;
+            dvdCount = dao.storage.getAllDvds().size();
+            loadedOnce = true;
+            setResidentBytes(this, bytes);
+            return true;
+        }
+
+        /**
+         * Saves the library if it has unsaved changes and drops its DVDs from memory, unless it is in use.
+         * Called by the registry under its own lock
+         * @return True if the library was evicted, and false if it is in use or could not be saved
+         */
+        boolean tryEvict() {
+            // A library used further up this thread's stack is busy even though its lock can be reacquired
+            if(lock.isHeldByCurrentThread() || !lock.tryLock()) {
+                return false;
+            }
+            try {
+                if(delegate == null || (dirty && !delegate.save())) {
+                    return false;
+                }
+                delegate = null;
+                resident = false;
+                dirty = false;
+                return true;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Copies a patch, sharing its studio, director and MPAA rating through the registry's dictionary
+         * @param patch The patch to copy
+         * @return The copied patch
+         */
+        private DVDPatch sharePatch(DVDPatch patch) {
+            DVDPatch shared = new DVDPatch();
+            for(EDVDField field : patch.getFields()) {
+                String value = patch.get(field);
+                boolean repeated = field == EDVDField.STUDIO || field == EDVDField.DIRECTOR_NAME || field == EDVDField.MPAA_RATING;
+                shared.set(field, repeated ? dictionary.intern(value) : value);
+            }
+            return shared;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+
+/**
+ * A DVDLibraryDao backed by a DVDLibraryShardServer reached over a loopback socket.
+ *
+ * Operations which cannot report failures through their return value throw an
+ * UncheckedIOException when the connection to the server fails.
+ */
+public class DVDLibraryRemoteDao extends DVDLibraryDao implements DVDLibraryMerklePeer, AutoCloseable {
+    /**
+     * The connection to the server
+     */
+    private final Socket socket;
+    /**
+     * The server's responses
+     */
+    private final BufferedReader in;
+    /**
+     * The requests sent to the server
+     */
+    private final BufferedWriter out;
+    /**
+     * The server process, or null if the server was not launched by this DAO
+     */
+    private final Process process;
+    /**
+     * The serializer used to send DVDs over the socket
+     */
+    private final DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+
+    /**
+     * Constructs a new DVDLibraryRemoteDao connected to a running shard server
+     * @param port The loopback port the server is listening on
+     * @throws IOException thrown when the server cannot be reached
+     */
+    public DVDLibraryRemoteDao(int port) throws IOException {
+        this(port, null);
+    }
+
+    /**
+     * Constructs a new DVDLibraryRemoteDao connected to a running shard server
+     * @param port The loopback port the server is listening on
+     * @param process The server process, destroyed when the DAO is closed. May be null
+     * @throws IOException thrown when the server cannot be reached
+     */
+    private DVDLibraryRemoteDao(int port, Process process) throws IOException {
+        super(null);
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        this.process = process;
+    }
+
+    /**
+     * Starts a shard server process for a library file and connects to it
+     * @param libraryFile The library file served by the process
+     * @return The DAO connected to the new process
+     * @throws IOException thrown when the process cannot be started or reached
+     */
+    public static DVDLibraryRemoteDao launch(String libraryFile) throws IOException {
+        String javaBin = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(javaBin, "-cp", getServerClassPath(),
+                DVDLibraryShardServer.class.getName(), libraryFile)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            BufferedReader processOut = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            String banner = processOut.readLine();
+            if(banner == null || !banner.startsWith("PORT ")) {
+                throw new IOException("Shard process for " + libraryFile + " failed to start");
+            }
+            return new DVDLibraryRemoteDao(Integer.parseInt(banner.substring("PORT ".length())), process);
+        }
+        catch(IOException | NumberFormatException e) {
+            process.destroyForcibly();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    /**
+     * Builds the class path of a shard server process. Launchers such as test runners may load this class
+     * through a class loader of their own rather than the JVM's class path, so the location the server's
+     * class was loaded from is added to the JVM's class path
+     * @return The class path
+     */
+    private static String getServerClassPath() {
+        String classPath = System.getProperty("java.class.path");
+        CodeSource source = DVDLibraryShardServer.class.getProtectionDomain().getCodeSource();
+        if(source == null || source.getLocation() == null) {
+            return classPath;
+        }
+        try {
+            String location = Paths.get(source.getLocation().toURI()).toString();
+            return classPath.isEmpty() ? location : location + File.pathSeparator + classPath;
+        }
+        catch(URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+            return classPath;
+        }
+    }
+
+    /**
+     * Saves the server's library
+     * @return True if the server saved successfully, and false otherwise
+     */
+    @Override
+    public boolean save() {
+        try {
+            return Boolean.parseBoolean(request("SAVE"));
+        }
+        catch(IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads the server's library
+     * @return True if the server loaded successfully, and false otherwise
+     */
+    @Override
+    public boolean load() {
+        try {
+            return Boolean.parseBoolean(request("LOAD"));
+        }
+        catch(IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds a DVD to the server's library
+     * @param dvd The DVD to add
+     * @throws IllegalArgumentException thrown when the server's storage already holds the title spelled differently
+     */
+    @Override
+    public void addDvd(DVD dvd) {
+        if(dvd != null) {
+            requestUnchecked("ADD " + DVDLibraryShardServer.escape(serializer.serialize(dvd)));
+        }
+    }
+
+    /**
+     * Removes a DVD from the server's library
+     * @param title The title of the DVD to remove
+     * @return If the title was present in the server's library
+     */
+    @Override
+    public boolean removeDvd(String title) {
+        return Boolean.parseBoolean(requestUnchecked("REMOVE " + DVDLibraryShardServer.escape(title)));
+    }
+
+    /**
+     * Updates a DVD in the server's library, sending only the changed fields
+     * @param title The title of the DVD to update
+     * @param patch The new field values
+     * @return True if the DVD was found and updated, and false if no DVD has the title
+     * @throws IllegalArgumentException thrown when the patch renames the DVD to the title of another DVD
+     */
+    @Override
+    public boolean updateDvd(String title, DVDPatch patch) {
+        return Boolean.parseBoolean(requestUnchecked("UPDATE " + DVDLibraryShardServer.escape(title) + "\t"
+                + DVDLibraryShardServer.escape(serializer.serializePatch(patch))));
+    }
+
+    /**
+     * Removes and adds a batch of DVDs in the server's library, one request per DVD
+     * @param removals The titles of the DVDs to remove
+     * @param additions The DVDs to add, replacing any DVDs with the same titles
+     */
+    @Override
+    protected void applyBatch(Collection<String> removals, Collection<DVD> additions) {
+        for(String title : removals) {
+            removeDvd(title);
+        }
+        for(DVD dvd : additions) {
+            addDvd(dvd);
+        }
+    }
+
+    /**
+     * Gets a DVD from the server's library
+     * @param title The Title of the DVD to retrieve
+     * @return The retrieved object if it exists, or null otherwise
+     */
+    @Override
+    public DVD getDvdInfo(String title) {
+        String response = requestUnchecked("GET " + DVDLibraryShardServer.escape(title));
+        return response == null ? null : serializer.deserialize(response);
+    }
+
+    /**
+     * Gets a copy of every DVD in the server's library
+     * @return A collection of DVDs
+     */
+    @Override
+    public Collection<DVD> getAllDvds() {
+        return requestDvds("ALL");
+    }
+
+    /**
+     * Constructs the spliterator backing the DAO's streams over a copy of the server's library
+     * @return A spliterator over a point-in-time copy of the server's DVDs
+     */
+    @Override
+    protected Spliterator<DVD> spliterator() {
+        return getAllDvds().spliterator();
+    }
+
+    /**
+     * Retrieves the depth of the Merkle tree summarizing the server's library
+     * @return The number of levels below the root
+     */
+    @Override
+    public int getMerkleDepth() {
+        return Integer.parseInt(requestUnchecked("DEPTH"));
+    }
+
+    /**
+     * Retrieves the hashes of nodes of the Merkle tree summarizing the server's library
+     * @param nodes The numbers of the nodes
+     * @return The hash of every node, in the same order as nodes
+     */
+    @Override
+    public long[] getMerkleHashes(int[] nodes) {
+        if(nodes.length == 0) {
+            return new long[0];
+        }
+        String[] tokens = requestUnchecked("HASHES " + joinInts(nodes)).split(",");
+        long[] hashes = new long[tokens.length];
+        for(int i = 0; i < tokens.length; i++) {
+            hashes[i] = Long.parseUnsignedLong(tokens[i], 16);
+        }
+        return hashes;
+    }
+
+    /**
+     * Retrieves the DVDs in buckets of the Merkle tree summarizing the server's library
+     * @param buckets The numbers of the buckets
+     * @return Every DVD whose title falls in one of the buckets
+     */
+    @Override
+    public List<DVD> getMerkleBuckets(int[] buckets) {
+        if(buckets.length == 0) {
+            return new ArrayList<>();
+        }
+        return requestDvds("BUCKETS " + joinInts(buckets));
+    }
+
+    /**
+     * Checks if the server's library is empty
+     * @return True if there are no DVDs in the server's library, and false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return Boolean.parseBoolean(requestUnchecked("EMPTY"));
+    }
+
+    /**
+     * Retrieves problems found while loading. Problems found by the server are reported on its standard error
+     * @return An empty list
+     */
+    @Override
+    public List<String> getLoadWarnings() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Disconnects from the server, shutting the server process down if it was launched by this DAO
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            if(process != null) {
+                request("SHUTDOWN");
+            }
+        }
+        catch(IOException ignored) { }
+        try {
+            socket.close();
+        }
+        catch(IOException ignored) { }
+        if(process != null) {
+            try {
+                process.waitFor();
+            }
+            catch(InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Sends a request and reads the payload of the response
+     * @param line The request line
+     * @return The payload following "OK ", an empty String for a bare "OK", or null for "NONE"
+     * @throws IOException thrown when the connection fails or the server reports an error
+     * @throws IllegalArgumentException thrown when the server rejects the request's arguments
+     */
+    private synchronized String request(String line) throws IOException {
+        out.write(line);
+        out.newLine();
+        out.flush();
+        String response = in.readLine();
+        if(response == null) {
+            throw new IOException("Shard server closed the connection");
+        }
+        if(response.equals("NONE")) {
+            return null;
+        }
+        if(response.equals("OK")) {
+            return "";
+        }
+        if(response.startsWith("OK ")) {
+            return DVDLibraryShardServer.unescape(response.substring("OK ".length()));
+        }
+        if(response.startsWith("REJECT ")) {
+            throw new IllegalArgumentException(DVDLibraryShardServer.unescape(response.substring("REJECT ".length())));
+        }
+        throw new IOException("Shard server error: " + DVDLibraryShardServer.unescape(response));
+    }
+
+    /**
+     * Sends a request answered by a count of DVDs followed by one line per DVD
+     * @param line The request line
+     * @return The DVDs in the response
+     */
+    private synchronized List<DVD> requestDvds(String line) {
+        try {
+            int count = Integer.parseInt(request(line));
+            List<DVD> dvds = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                String dvdLine = in.readLine();
+                if(dvdLine == null) {
+                    throw new IOException("Shard server closed the connection");
+                }
+                dvds.add(serializer.deserialize(DVDLibraryShardServer.unescape(dvdLine)));
+            }
+            return dvds;
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Joins integers into a comma separated list
+     * @param values The integers to join
+     * @return The comma separated list
+     */
+    private static String joinInts(int[] values) {
+        StringBuilder joined = new StringBuilder();
+        for(int i = 0; i < values.length; i++) {
+            if(i > 0) {
+                joined.append(',');
+            }
+            joined.append(values[i]);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Sends a request, rethrowing connection failures as UncheckedIOExceptions
+     * @param line The request line
+     * @return The payload of the response
+     */
+    private String requestUnchecked(String line) {
+        try {
+            return request(line);
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.kieran.dvd_library.dao;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+/**
+ * Verifies every checksum of a file written by DVDLibraryChecksummedFileImpl without loading the library.
+ *
+ * The file is split into one byte range per thread. Each thread starts at the first block trailer of its range
+ * and verifies whole blocks until it has verified the block following the last trailer of its range, so every
+ * block is verified by exactly one thread and the threads never coordinate. Records are only checked against
+ * their checksums, never deserialized, so a scrub reads at close to the speed of the disk.
+ */
+public class DVDLibraryScrubber {
+    /**
+     * The smallest byte range given to a thread, so small files are not split across more threads than useful
+     */
+    private static final long MIN_RANGE_BYTES = 4L << 20;
+
+    /**
+     * Verifies every record and block checksum of a checksummed library file
+     * @param file The library file
+     * @param threads The number of threads reading the file
+     * @return The problems found
+     * @throws IOException thrown when the file cannot be read
+     */
+    public static Report scrub(String file, int threads) throws IOException {
+        long start = System.nanoTime();
+        long length = new File(file).length();
+        try(DVDLibraryLineReader reader = new DVDLibraryLineReader(new FileInputStream(file), 0, 256)) {
+            if(!reader.next() || !reader.startsWith(DVDLibraryChecksummedFileImpl.HEADER)) {
+                List<Issue> issues = Collections.singletonList(new Issue(0, "The file is not a checksummed library file"));
+                return new Report(file, length, 0, 0, 1, issues, System.nanoTime() - start);
+            }
+        }
+
+        int rangeCount = (int) Math.max(1, Math.min(Math.max(1, threads), length / MIN_RANGE_BYTES));
+        long rangeBytes = (length + rangeCount - 1) / rangeCount;
+        List<Callable<RangeResult>> tasks = new ArrayList<>();
+        for(int i = 0; i < rangeCount; i++) {
+            long rangeStart = i * rangeBytes;
+            long rangeEnd = Math.min(length, rangeStart + rangeBytes);
+            tasks.add(() -> scrubRange(file, rangeStart, rangeEnd));
+        }
+        List<Issue> issues = new ArrayList<>();
+        long records = 0;
+        long blocks = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(rangeCount);
+        try {
+            for(Future<RangeResult> future : executor.invokeAll(tasks)) {
+                RangeResult result = future.get();
+                records += result.records;
+                blocks += result.blocks;
+                issues.addAll(result.issues);
+            }
+        }
+        catch(ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Scrub of " + file + " was interrupted");
+        }
+        finally {
+            executor.shutdown();
+        }
+        issues.sort(Comparator.comparingLong(Issue::getOffset));
+        return new Report(file, length, records, blocks, rangeCount, issues, System.nanoTime() - start);
+    }
+
+    /**
+     * Verifies the blocks following the header or block trailers which start within a byte range
+     * @param file The library file
+     * @param start The first byte of the range
+     * @param end The byte following the range
+     * @return The records, blocks and problems found
+     * @throws IOException thrown when the file cannot be read
+     */
+    private static RangeResult scrubRange(String file, long start, long end) throws IOException {
+        RangeResult result = new RangeResult();
+        try(FileInputStream in = new FileInputStream(file)) {
+            long position = Math.max(0, start - 1);
+            in.getChannel().position(position);
+            DVDLibraryLineReader reader = new DVDLibraryLineReader(in, position);
+            // The line before the next block: the header, or a trailer starting within the range
+            long syncOffset;
+            if(start == 0) {
+                reader.next();
+                syncOffset = 0;
+            }
+            else {
+                // Starting a byte early finds the first line starting at or after start
+                if(!reader.skipToLineStart()) {
+                    return result;
+                }
+                do {
+                    if(!reader.next()) {
+                        return result;
+                    }
+                } while(!reader.startsWith(DVDLibraryChecksummedFileImpl.BLOCK_PREFIX));
+                syncOffset = reader.getLineOffset();
+            }
+            while(syncOffset < end) {
+                syncOffset = scrubBlock(reader, result);
+                if(syncOffset < 0) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Verifies the records of one block and its trailer
+     * @param reader The reader, positioned on the line before the block
+     * @param result Receives the records, blocks and problems found
+     * @return The offset of the block's trailer, or -1 if the file ended before the trailer
+     * @throws IOException thrown when the file cannot be read
+     */
+    private static long scrubBlock(DVDLibraryLineReader reader, RangeResult result) throws IOException {
+        CRC32C recordCrc = result.recordCrc;
+        CRC32C blockCrc = result.blockCrc;
+        blockCrc.reset();
+        long blockStart = reader.getOffset();
+        int records = 0;
+        int damaged = 0;
+        while(reader.next()) {
+            byte[] line = reader.getLine();
+            int length = reader.getLength();
+            if(reader.startsWith(DVDLibraryChecksummedFileImpl.BLOCK_PREFIX)) {
+                String trailer = new String(line, 0, length, StandardCharsets.US_ASCII);
+                String problem = DVDLibraryChecksummedFileImpl.checkTrailer(trailer, records, (int) blockCrc.getValue(), damaged);
+                if(problem != null) {
+                    result.issues.add(new Issue(reader.getLineOffset(), "The block of records from byte offset " + blockStart + " " + problem));
+                }
+                result.blocks++;
+                return reader.getLineOffset();
+            }
+            blockCrc.update(line, 0, length);
+            if(reader.isTerminated()) {
+                blockCrc.update('\n');
+            }
+            records++;
+            result.records++;
+            String problem = DVDLibraryChecksummedFileImpl.checkRecord(line, length, recordCrc);
+            if(problem != null) {
+                damaged++;
+                result.issues.add(new Issue(reader.getLineOffset(), "The record " + problem));
+            }
+        }
+        if(records > 0) {
+            result.issues.add(new Issue(blockStart, "The last " + records + " records have no block trailer, so the file may have been truncated"));
+        }
+        return -1;
+    }
+
+    /**
+     * The records, blocks and problems found in one byte range
+     */
+    private static final class RangeResult {
+        /**
+         * The number of records verified
+         */
+        long records;
+        /**
+         * The number of block trailers verified
+         */
+        long blocks;
+        /**
+         * The problems found
+         */
+        final List<Issue> issues = new ArrayList<>();
+        /**
+         * The checksum reused for every record
+         */
+        final CRC32C recordCrc = new CRC32C();
+        /**
+         * The checksum reused for every block
+         */
+        final CRC32C blockCrc = new CRC32C();
+    }
+
+    /**
+     * A problem found at a byte offset of a library file
+     */
+    public static final class Issue {
+        /**
+         * The byte offset of the damaged line
+         */
+        private final long offset;
+        /**
+         * A description of the problem
+         */
+        private final String description;
+
+        /**
+         * Constructs an Issue
+         * @param offset The byte offset of the damaged line
+         * @param description A description of the problem
+         */
+        Issue(long offset, String description) {
+            this.offset = offset;
+            this.description = description;
+        }
+
+        /**
+         * Retrieves the byte offset of the damaged line
+         * @return The offset
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Retrieves a description of the problem
+         * @return The description
+         */
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public String toString() {
+            return "Byte offset " + offset + ": " + description;
+        }
+    }
+
+    /**
+     * The outcome of a scrub
+     */
+    public static final class Report {
+        /**
+         * The scrubbed file
+         */
+        private final String file;
+        /**
+         * The length of the file in bytes
+         */
+        private final long bytes;
+        /**
+         * The number of records verified
+         */
+        private final long records;
+        /**
+         * The number of block trailers verified
+         */
+        private final long blocks;
+        /**
+         * The number of threads which read the file
+         */
+        private final int threads;
+        /**
+         * The problems found, ordered by offset
+         */
+        private final List<Issue> issues;
+        /**
+         * The time the scrub took, in nanoseconds
+         */
+        private final long elapsedNanos;
+
+        /**
+         * Constructs a Report
+         * @param file The scrubbed file
+         * @param bytes The length of the file in bytes
+         * @param records The number of records verified
+         * @param blocks The number of block trailers verified
+         * @param threads The number of threads which read the file
+         * @param issues The problems found, ordered by offset
+         * @param elapsedNanos The time the scrub took, in nanoseconds
+         */
+        Report(String file, long bytes, long records, long blocks, int threads, List<Issue> issues, long elapsedNanos) {
+            this.file = file;
+            this.bytes = bytes;
+            this.records = records;
+            this.blocks = blocks;
+            this.threads = threads;
+            this.issues = Collections.unmodifiableList(issues);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Checks if the scrub found no problems
+         * @return True if every checksum matched, and false otherwise
+         */
+        public boolean isClean() {
+            return issues.isEmpty();
+        }
+
+        /**
+         * Retrieves the scrubbed file
+         * @return The file's path
+         */
+        public String getFile() {
+            return file;
+        }
+
+        /**
+         * Retrieves the length of the scrubbed file
+         * @return The length in bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Retrieves the number of records verified
+         * @return The record count
+         */
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * Retrieves the number of blocks verified
+         * @return The block count
+         */
+        public long getBlocks() {
+            return blocks;
+        }
+
+        /**
+         * Retrieves the number of threads which read the file
+         * @return The thread count
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Retrieves the problems found
+         * @return The problems, ordered by byte offset
+         */
+        public List<Issue> getIssues() {
+            return issues;
+        }
+
+        /**
+         * Retrieves the time the scrub took
+         * @return The elapsed time in milliseconds
+         */
+        public double getElapsedMillis() {
+            return elapsedNanos / 1e6;
+        }
+
+        /**
+         * Retrieves the rate the file was verified at
+         * @return The verified MiB per second
+         */
+        public double getMibPerSecond() {
+            return elapsedNanos == 0 ? 0 : (bytes / (double) (1 << 20)) / (elapsedNanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import com.kieran.dvd_library.util.StringDictionary;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Converts DVDs to and from the single line format used by the DVD Library's files
+ */
+public class DVDLibrarySerializer {
+    /**
+     * The delimiter used when no delimiter is specified
+     */
+    public static final String DEFAULT_DELIMITER = "::";
+    /**
+     * The delimiter used during DVD serialization
+     */
+    private final String delimiter;
+    /**
+     * The dictionary sharing the studios, directors and MPAA ratings of deserialized DVDs, or null if they are not shared
+     */
+    private final StringDictionary dictionary;
+    /**
+     * The number of fields in a serialized DVD
+     */
+    private static final int FIELD_COUNT = 6;
+    /**
+     * An index into a streamified DVD serialized string representing the DVD's title
+     */
+    private static final int TITLE_IDX = 0;
+    /**
+     * An index into a streamified DVD serialized string representing the DVD's release date
+     */
+    private static final int RELEASE_DATE_IDX = 1;
+    /**
+     * An index into a streamified DVD serialized string representing the DVD's MPAA rating
+     */
+    private static final int MPAA_RATING_IDX = 2;
+    /**
+     * An index into a streamified DVD serialized string representing the DVD's director's name
+     */
+    private static final int DIRECTOR_NAME_IDX = 3;
+    /**
+     * An index into a streamified DVD serialized string representing the DVD's studio's name
+     */
+    private static final int STUDIO_NAME_IDX = 4;
+    /**
+     * An index into a streamified DVD serialized string representing the DVD's user rating/note
+     */
+    private static final int USER_RATING_IDX = 5;
+
+    /**
+     * Constructs a new DVDLibrarySerializer using the default delimiter
+     */
+    public DVDLibrarySerializer() {
+        this(DEFAULT_DELIMITER);
+    }
+
+    /**
+     * Constructs a new DVDLibrarySerializer with a given delimiter
+     * @param delimiter The delimiter placed between the serialized fields
+     */
+    public DVDLibrarySerializer(String delimiter) {
+        this(delimiter, null);
+    }
+
+    /**
+     * Constructs a new DVDLibrarySerializer which shares repeated field values between the DVDs it deserializes
+     * @param delimiter The delimiter placed between the serialized fields
+     * @param dictionary The dictionary sharing the studios, directors and MPAA ratings of deserialized DVDs. May be null
+     */
+    public DVDLibrarySerializer(String delimiter, StringDictionary dictionary) {
+        this.delimiter = delimiter;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Retrieves the delimiter used by the serializer
+     * @return The delimiter placed between the serialized fields
+     */
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * Processes a DVD object into a serialized String format.
+     *
+     * The resulting string is in the format
+     * TITLEdelimiterRELEASE_DATEdelimiterMPAA_RATINGdelimiterDIRECTOR_NAMEdelimiterSTUDIO_NAMEdelimiterUSER_RATING
+     * @param dvd The DVD to stringify
+     * @return The DVD in a serializable string format
+     */
+    public String serialize(DVD dvd) {
+        return dvd.getTitle() + delimiter +
+                dvd.getReleaseDate() + delimiter +
+                dvd.getMpaaRating() + delimiter +
+                dvd.getDirectorName() + delimiter +
+                dvd.getStudio() + delimiter +
+                dvd.getUserRatingAndNote();
+    }
+
+    /**
+     * Processes a DVD object into a serialized String format which never holds a tab or line break.
+     *
+     * The fields are in the same order as serialize(), but escaped like the values of serializePatch(),
+     * so formats which separate serialized DVDs with tabs or line breaks can store any DVD
+     * @param dvd The DVD to stringify
+     * @return The DVD in an escaped serializable string format
+     */
+    public String serializeEscaped(DVD dvd) {
+        StringBuilder serialized = new StringBuilder();
+        escapeValue(dvd.getTitle(), serialized);
+        serialized.append(delimiter);
+        escapeValue(dvd.getReleaseDate(), serialized);
+        serialized.append(delimiter);
+        escapeValue(dvd.getMpaaRating(), serialized);
+        serialized.append(delimiter);
+        escapeValue(dvd.getDirectorName(), serialized);
+        serialized.append(delimiter);
+        escapeValue(dvd.getStudio(), serialized);
+        serialized.append(delimiter);
+        escapeValue(dvd.getUserRatingAndNote(), serialized);
+        return serialized.toString();
+    }
+
+    /**
+     * Processes a String produced by serializeEscaped and builds the resulting DVD object
+     * @param serializedStr The String to build a DVD from
+     * @return The resulting DVD object
+     * @throws IllegalArgumentException thrown when a field holds an invalid escape
+     */
+    public DVD deserializeEscaped(String serializedStr) {
+        DVD dvd = new DVD();
+        String[] tokens = splitFields(serializedStr);
+        dvd.setTitle(unescapeValue(tokens[TITLE_IDX]));
+        dvd.setReleaseDate(unescapeValue(tokens[RELEASE_DATE_IDX]));
+        dvd.setMpaaRating(share(unescapeValue(tokens[MPAA_RATING_IDX])));
+        dvd.setDirectorName(share(unescapeValue(tokens[DIRECTOR_NAME_IDX])));
+        dvd.setStudio(share(unescapeValue(tokens[STUDIO_NAME_IDX])));
+        dvd.setUserRatingAndNote(unescapeValue(tokens[USER_RATING_IDX]));
+        return dvd;
+    }
+
+    /**
+     * Processes a String and builds a resulting DVD object from it's contents
+     * @param serializedStr The String to build a DVD from
+     * @return The resulting DVD object
+     */
+    public DVD deserialize(String serializedStr) {
+        DVD dvd = new DVD();
+        // Get tokens from serialized string
+        String[] tokens = splitFields(serializedStr);
+
+        // Set the DVD's values
+        dvd.setTitle(tokens[TITLE_IDX]);
+        dvd.setReleaseDate(tokens[RELEASE_DATE_IDX]);
+        dvd.setMpaaRating(share(tokens[MPAA_RATING_IDX]));
+        dvd.setDirectorName(share(tokens[DIRECTOR_NAME_IDX]));
+        dvd.setStudio(share(tokens[STUDIO_NAME_IDX]));
+        dvd.setUserRatingAndNote(tokens[USER_RATING_IDX]);
+        return dvd;
+    }
+
+    /**
+     * Splits a serialized DVD at every occurrence of the delimiter, which is matched literally
+     * @param serializedStr The serialized DVD
+     * @return The fields of the DVD. Lines missing fields produce fewer than FIELD_COUNT fields
+     */
+    private String[] splitFields(String serializedStr) {
+        String[] tokens = new String[FIELD_COUNT];
+        int count = 0;
+        int start = 0;
+        int end;
+        while((end = serializedStr.indexOf(delimiter, start)) >= 0) {
+            if(count == tokens.length) {
+                tokens = Arrays.copyOf(tokens, count * 2);
+            }
+            tokens[count++] = serializedStr.substring(start, end);
+            start = end + delimiter.length();
+        }
+        if(count == tokens.length) {
+            tokens = Arrays.copyOf(tokens, count + 1);
+        }
+        tokens[count++] = serializedStr.substring(start);
+        return count == tokens.length ? tokens : Arrays.copyOf(tokens, count);
+    }
+
+    /**
+     * Replaces a field value with the dictionary's shared instance
+     * @param value The field value
+     * @return The shared instance, or value itself if the serializer has no dictionary
+     */
+    private String share(String value) {
+        return dictionary == null ? value : dictionary.intern(value);
+    }
+
+    /**
+     * Reads every DVD in a file holding one serialized DVD per line, skipping blank lines
+     * @param file The file to read
+     * @return The file's DVDs, in the order they appear
+     * @throws IOException thrown when the file cannot be read or a line is not a serialized DVD
+     */
+    public List<DVD> readFile(String file) throws IOException {
+        List<DVD> dvds = new ArrayList<>();
+        try(BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while((line = reader.readLine()) != null) {
+                lineNumber++;
+                if(line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    dvds.add(deserialize(line));
+                }
+                catch(ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("Line " + lineNumber + " of " + file + " is not a DVD");
+                }
+            }
+        }
+        return dvds;
+    }
+
+    /**
+     * Processes a DVDPatch into a serialized String format holding only the fields it changes.
+     *
+     * The resulting string is in the format
+     * FIELD=VALUEdelimiterFIELD=VALUE...
+     * where FIELD is the name of an EDVDField. Backslashes in values are doubled, and line breaks, tabs and the characters
+     * of the delimiter become a backslash, 'u' and four hexadecimal digits, so values never split the patch or its line.
+     * The delimiter must therefore not hold backslashes, 'u' or hexadecimal digits
+     * @param patch The patch to stringify
+     * @return The patch in a serializable string format, which is empty for an empty patch
+     */
+    public String serializePatch(DVDPatch patch) {
+        StringBuilder serialized = new StringBuilder();
+        for(EDVDField field : patch.getFields()) {
+            if(serialized.length() > 0) {
+                serialized.append(delimiter);
+            }
+            serialized.append(field.name()).append('=');
+            escapeValue(patch.get(field), serialized);
+        }
+        return serialized.toString();
+    }
+
+    /**
+     * Appends a field value with its backslashes, control characters and delimiter characters escaped
+     * @param value The value to escape
+     * @param escaped The builder the escaped value is appended to
+     */
+    private void escapeValue(String value, StringBuilder escaped) {
+        value = String.valueOf(value);
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '\\') {
+                escaped.append("\\\\");
+            }
+            else if(c < ' ' || delimiter.indexOf(c) >= 0) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                escaped.append(c);
+            }
+        }
+    }
+
+    /**
+     * Reverses escapeValue
+     * @param escaped The escaped value
+     * @return The original value
+     * @throws IllegalArgumentException thrown when the value holds an incomplete or unknown escape
+     */
+    private static String unescapeValue(String escaped) {
+        if(escaped.indexOf('\\') < 0) {
+            return escaped;
+        }
+        StringBuilder value = new StringBuilder(escaped.length());
+        for(int i = 0; i < escaped.length(); i++) {
+            char c = escaped.charAt(i);
+            if(c != '\\') {
+                value.append(c);
+            }
+            else if(i + 1 < escaped.length() && escaped.charAt(i + 1) == '\\') {
+                value.append('\\');
+                i++;
+            }
+            else if(i + 5 < escaped.length() && escaped.charAt(i + 1) == 'u') {
+                value.append((char) Integer.parseInt(escaped.substring(i + 2, i + 6), 16));
+                i += 5;
+            }
+            else {
+                throw new IllegalArgumentException("Invalid escape in patch value " + escaped);
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * Processes a String produced by serializePatch and builds the resulting DVDPatch
+     * @param serializedStr The String to build a patch from
+     * @return The resulting DVDPatch
+     */
+    public DVDPatch deserializePatch(String serializedStr) {
+        DVDPatch patch = new DVDPatch();
+        if(serializedStr.isEmpty()) {
+            return patch;
+        }
+        for(String token : splitFields(serializedStr)) {
+            int split = token.indexOf('=');
+            patch.set(EDVDField.valueOf(token.substring(0, split)), unescapeValue(token.substring(split + 1)));
+        }
+        return patch;
+    }
+}
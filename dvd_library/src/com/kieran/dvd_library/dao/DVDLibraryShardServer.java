@@ -0,0 +1,292 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A standalone process serving a single DVDLibraryFileImpl over a loopback socket.
+ *
+ * The server prints "PORT n" on standard output once it is listening, then serves
+ * one client at a time. Each request is a single line holding a command and an optional
+ * argument separated by a space, and each response starts with "OK", "NONE", "REJECT" or "ERR".
+ * Titles, DVDs, patches and messages are escaped (see escape), so field values holding tabs or
+ * line breaks cannot split a request or response:
+ *
+ * LOAD / SAVE / EMPTY -> OK true|false
+ * ADD serializedDvd   -> OK | REJECT reason
+ * REMOVE title        -> OK true|false
+ * UPDATE title\tpatch -> OK true|false | REJECT reason
+ * GET title           -> OK serializedDvd | NONE
+ * ALL                 -> OK count, followed by count serialized DVD lines
+ * DEPTH               -> OK depth of the library's Merkle tree
+ * HASHES n1,n2,...    -> OK h1,h2,... hashes of the Merkle tree nodes, in hexadecimal
+ * BUCKETS b1,b2,...   -> OK count, followed by count serialized DVD lines from the Merkle tree buckets
+ * SHUTDOWN            -> OK, then the process exits
+ */
+public class DVDLibraryShardServer {
+    /**
+     * The DAO served by the server
+     */
+    private final DVDLibraryDao dao;
+    /**
+     * The serializer used to send DVDs over the socket
+     */
+    private final DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+    /**
+     * The Merkle tree summarizing the served library, used to sync it with another library
+     */
+    private final DVDLibraryMerkleTree merkleTree;
+
+    /**
+     * Constructs a new DVDLibraryShardServer
+     * @param dao The DAO served by the server, which has not been loaded yet
+     */
+    public DVDLibraryShardServer(DVDLibraryDao dao) {
+        this.dao = dao;
+        this.merkleTree = DVDLibraryMerkleTree.attach(dao);
+    }
+
+    /**
+     * The entry point of a shard process
+     * @param args The file served by the shard
+     * @throws IOException thrown when the server socket cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 1) {
+            System.err.println("Usage: DVDLibraryShardServer <libraryFile>");
+            System.exit(1);
+        }
+        DVDLibraryShardServer server = new DVDLibraryShardServer(new DVDLibraryFileImpl(new DVDLibraryStorage(), args[0]));
+        try(ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            System.out.println("PORT " + serverSocket.getLocalPort());
+            System.out.flush();
+            boolean running = true;
+            while(running) {
+                try(Socket client = serverSocket.accept()) {
+                    running = server.serve(client);
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves requests from a client until it disconnects or requests a shutdown
+     * @param client The connected client
+     * @return False if the client requested a shutdown, and true otherwise
+     * @throws IOException thrown when the connection fails
+     */
+    public boolean serve(Socket client) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+        String request;
+        while((request = in.readLine()) != null) {
+            int split = request.indexOf(' ');
+            String command = split < 0 ? request : request.substring(0, split);
+            String arg = split < 0 ? "" : request.substring(split + 1);
+            try {
+                switch(command) {
+                    case "LOAD":
+                        boolean loaded = dao.load();
+                        for(String warning : dao.getLoadWarnings()) {
+                            System.err.println(warning);
+                        }
+                        writeLine(out, "OK " + loaded);
+                        break;
+                    case "SAVE":
+                        writeLine(out, "OK " + dao.save());
+                        break;
+                    case "EMPTY":
+                        writeLine(out, "OK " + dao.isEmpty());
+                        break;
+                    case "ADD":
+                        try {
+                            dao.addDvd(serializer.deserialize(unescape(arg)));
+                            writeLine(out, "OK");
+                        }
+                        catch(IllegalArgumentException e) {
+                            writeLine(out, "REJECT " + escape(e.getMessage()));
+                        }
+                        break;
+                    case "REMOVE":
+                        writeLine(out, "OK " + dao.removeDvd(unescape(arg)));
+                        break;
+                    case "UPDATE":
+                        int tab = arg.indexOf('\t');
+                        try {
+                            boolean updated = dao.updateDvd(unescape(arg.substring(0, tab)),
+                                    serializer.deserializePatch(unescape(arg.substring(tab + 1))));
+                            writeLine(out, "OK " + updated);
+                        }
+                        catch(IllegalArgumentException e) {
+                            writeLine(out, "REJECT " + escape(e.getMessage()));
+                        }
+                        break;
+                    case "GET":
+                        DVD dvd = dao.getDvdInfo(unescape(arg));
+                        writeLine(out, dvd == null ? "NONE" : "OK " + escape(serializer.serialize(dvd)));
+                        break;
+                    case "ALL":
+                        writeDvds(out, dao.getAllDvds());
+                        break;
+                    case "DEPTH":
+                        writeLine(out, "OK " + merkleTree.getMerkleDepth());
+                        break;
+                    case "HASHES":
+                        long[] hashes = merkleTree.getMerkleHashes(parseIntList(arg));
+                        StringBuilder response = new StringBuilder("OK ");
+                        for(int i = 0; i < hashes.length; i++) {
+                            if(i > 0) {
+                                response.append(',');
+                            }
+                            response.append(Long.toHexString(hashes[i]));
+                        }
+                        writeLine(out, response.toString());
+                        break;
+                    case "BUCKETS":
+                        writeDvds(out, merkleTree.getMerkleBuckets(parseIntList(arg)));
+                        break;
+                    case "SHUTDOWN":
+                        writeLine(out, "OK");
+                        return false;
+                    default:
+                        writeLine(out, "ERR Unrecognized command " + command);
+                }
+            }
+            catch(RuntimeException e) {
+                writeLine(out, "ERR " + escape(e.toString()));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes and flushes a count of DVDs followed by one line per DVD
+     * @param out The client's output stream
+     * @param dvds The DVDs to write
+     * @throws IOException thrown when the connection fails
+     */
+    private void writeDvds(BufferedWriter out, Collection<DVD> dvds) throws IOException {
+        out.write("OK " + dvds.size());
+        out.newLine();
+        for(DVD cur : dvds) {
+            out.write(escape(serializer.serialize(cur)));
+            out.newLine();
+        }
+        out.flush();
+    }
+
+    /**
+     * Escapes a value sent over the socket, so it holds no tabs or line breaks.
+     * Backslashes, tabs, carriage returns and line feeds are sent as \\, \t, \r and \n
+     * @param value The value to escape. May be null
+     * @return The escaped value, or "null" for a null value
+     */
+    static String escape(String value) {
+        if(value == null) {
+            return "null";
+        }
+        int first = 0;
+        while(first < value.length() && "\\\t\r\n".indexOf(value.charAt(first)) < 0) {
+            first++;
+        }
+        if(first == value.length()) {
+            return value;
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 8).append(value, 0, first);
+        for(int i = first; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch(c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Reverses escape
+     * @param value The escaped value
+     * @return The original value
+     */
+    static String unescape(String value) {
+        if(value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c != '\\' || i + 1 == value.length()) {
+                unescaped.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            switch(next) {
+                case 't':
+                    unescaped.append('\t');
+                    break;
+                case 'r':
+                    unescaped.append('\r');
+                    break;
+                case 'n':
+                    unescaped.append('\n');
+                    break;
+                default:
+                    unescaped.append(next);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * Parses a comma separated list of integers
+     * @param list The list to parse
+     * @return The integers in the list
+     * @throws NumberFormatException thrown when an element is not an integer
+     */
+    private static int[] parseIntList(String list) {
+        if(list.isEmpty()) {
+            return new int[0];
+        }
+        String[] tokens = list.split(",");
+        int[] values = new int[tokens.length];
+        for(int i = 0; i < tokens.length; i++) {
+            values[i] = Integer.parseInt(tokens[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Writes and flushes a single response line
+     * @param out The client's output stream
+     * @param line The line to write
+     * @throws IOException thrown when the connection fails
+     */
+    private static void writeLine(BufferedWriter out, String line) throws IOException {
+        out.write(line);
+        out.newLine();
+        out.flush();
+    }
+}
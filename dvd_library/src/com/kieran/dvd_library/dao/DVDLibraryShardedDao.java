@@ -0,0 +1,457 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.util.ConsistentHashRing;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A DVDLibraryDao which partitions one library across several underlying DAOs.
+ *
+ * Titles are assigned to shards with a consistent hash ring, so changing the number
+ * of shards only moves a small fraction of the library (see DVDLibraryShardRebalancer).
+ * Loading and saving run on every shard in parallel.
+ */
+public class DVDLibraryShardedDao extends DVDLibraryDao implements AutoCloseable {
+    /**
+     * The DAOs owning each partition of the library
+     */
+    private final List<DVDLibraryDao> shards;
+    /**
+     * The ring mapping titles onto shards
+     */
+    private final ConsistentHashRing ring;
+    /**
+     * The threads running operations on every shard in parallel, one per shard, or null for a single shard
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a new DVDLibraryShardedDao over a list of shards.
+     * The sharded DAO does not own a storage container of its own, every DVD lives in one of the shards
+     * @param shards The DAOs owning each partition of the library. The order of the shards MUST
+     *               be the same every time the library is opened
+     */
+    public DVDLibraryShardedDao(List<? extends DVDLibraryDao> shards) {
+        super(null);
+        if(shards.isEmpty()) {
+            throw new IllegalArgumentException("A sharded DAO requires at least one shard");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.ring = new ConsistentHashRing(shards.size());
+        this.executor = shards.size() == 1 ? null : Executors.newFixedThreadPool(shards.size(), task -> {
+            Thread thread = new Thread(task, "dvd-library-shard");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a library sharded across several files in the current process
+     * @param baseFile The library file the shard files are named after
+     * @param shardCount The number of shards
+     * @return The sharded DAO
+     */
+    public static DVDLibraryShardedDao openFiles(String baseFile, int shardCount) {
+        List<DVDLibraryDao> shards = new ArrayList<>();
+        for(int i = 0; i < shardCount; i++) {
+            shards.add(new DVDLibraryFileImpl(new DVDLibraryStorage(), getShardFileName(baseFile, i)));
+        }
+        return new DVDLibraryShardedDao(shards);
+    }
+
+    /**
+     * Opens a library sharded across several files, each served by its own local JVM process.
+     * The processes are reached over loopback sockets and are shut down by close()
+     * @param baseFile The library file the shard files are named after
+     * @param shardCount The number of shards
+     * @return The sharded DAO
+     * @throws IOException thrown when a shard process could not be started or reached
+     */
+    public static DVDLibraryShardedDao openProcesses(String baseFile, int shardCount) throws IOException {
+        List<DVDLibraryRemoteDao> shards = new ArrayList<>();
+        try {
+            for(int i = 0; i < shardCount; i++) {
+                shards.add(DVDLibraryRemoteDao.launch(getShardFileName(baseFile, i)));
+            }
+        }
+        catch(IOException e) {
+            for(DVDLibraryRemoteDao shard : shards) {
+                shard.close();
+            }
+            throw e;
+        }
+        return new DVDLibraryShardedDao(shards);
+    }
+
+    /**
+     * Builds the name of a shard's file.
+     * Ex. baseFile = "DVDLibrary.txt", shardIdx = 2, result = "DVDLibrary.shard-2.txt"
+     * @param baseFile The library file the shard files are named after
+     * @param shardIdx The index of the shard
+     * @return The name of the shard's file
+     */
+    public static String getShardFileName(String baseFile, int shardIdx) {
+        int extensionIdx = baseFile.lastIndexOf('.');
+        if(extensionIdx <= Math.max(baseFile.lastIndexOf('/'), baseFile.lastIndexOf('\\'))) {
+            return baseFile + ".shard-" + shardIdx;
+        }
+        return baseFile.substring(0, extensionIdx) + ".shard-" + shardIdx + baseFile.substring(extensionIdx);
+    }
+
+    /**
+     * Retrieves the number of shards
+     * @return The number of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Retrieves the index of the shard owning a title
+     * @param title The title to locate
+     * @return The index of the owning shard
+     */
+    public int getShardIndex(String title) {
+        return ring.partitionFor(title);
+    }
+
+    /**
+     * Saves every shard in parallel
+     * @return True if every shard saved successfully, and false otherwise
+     */
+    @Override
+    public boolean save() {
+        return forEachShardInParallel((shardIdx, shard) -> shard.save());
+    }
+
+    /**
+     * Loads every shard in parallel
+     * @return True if every shard loaded successfully, and false otherwise
+     */
+    @Override
+    public boolean load() {
+        if(!forEachShardInParallel((shardIdx, shard) -> shard.load())) {
+            return false;
+        }
+        fireReload();
+        return true;
+    }
+
+    /**
+     * Adds a DVD to the shard owning its title
+     * @param dvd The DVD to add
+     * @throws IllegalArgumentException thrown when the shard's storage already holds the title spelled differently
+     */
+    @Override
+    public void addDvd(DVD dvd) {
+        if(dvd == null) {
+            return;
+        }
+        DVDLibraryDao shard = shardFor(dvd.getTitle());
+        synchronized(this) {
+            DVD before = hasChangeListeners() ? shard.getDvdInfo(dvd.getTitle()) : null;
+            shard.addDvd(dvd);
+            fireChange(before == null ? EChangeType.ADD : EChangeType.EDIT, before, dvd);
+        }
+    }
+
+    /**
+     * Removes a DVD from the shard owning its title
+     * @param title The title of the DVD to remove
+     * @return If the title was present in the library
+     */
+    @Override
+    public boolean removeDvd(String title) {
+        if(isDefinitelyAbsent(title)) {
+            return false;
+        }
+        DVDLibraryDao shard = shardFor(title);
+        synchronized(this) {
+            DVD before = hasChangeListeners() ? shard.getDvdInfo(title) : null;
+            if(!shard.removeDvd(title)) {
+                recordFilterMiss();
+                return false;
+            }
+            fireChange(EChangeType.REMOVE, before, null);
+            return true;
+        }
+    }
+
+    /**
+     * Updates a DVD in the shard owning its title. A rename whose new title is owned by another
+     * shard moves the DVD by adding it to the new shard before removing it from the old one,
+     * so the DVD is never missing from the library, but the move is not atomic across shards
+     * @param title The title of the DVD to update
+     * @param patch The new field values
+     * @return True if the DVD was found and updated, and false if no DVD has the title
+     * @throws IllegalArgumentException thrown when the patch renames the DVD to the title of another DVD
+     */
+    @Override
+    public synchronized boolean updateDvd(String title, DVDPatch patch) {
+        DVDLibraryDao shard = shardFor(title);
+        DVD before = shard.getDvdInfo(title);
+        if(before == null) {
+            return false;
+        }
+        if(patch.isEmpty()) {
+            return true;
+        }
+        DVD after = patch.applyTo(before);
+        DVDLibraryDao target = shardFor(after.getTitle());
+        if(target == shard) {
+            if(!shard.updateDvd(title, patch)) {
+                return false;
+            }
+        }
+        else {
+            if(target.getDvdInfo(after.getTitle()) != null) {
+                throw new IllegalArgumentException("A DVD titled " + after.getTitle() + " already exists");
+            }
+            target.addDvd(after);
+            shard.removeDvd(title);
+        }
+        fireChange(EChangeType.EDIT, before, after);
+        return true;
+    }
+
+    /**
+     * Removes and adds a batch of DVDs, applying each shard's part of the batch in parallel.
+     * Shards which applied their part keep it when another shard fails
+     * @param removals The titles of the DVDs to remove
+     * @param additions The DVDs to add, replacing any DVDs with the same titles
+     * @throws RuntimeException rethrown from the first shard which failed to apply its part, such as an
+     *                          UncheckedIOException from a shard process which could not be reached
+     */
+    @Override
+    protected void applyBatch(Collection<String> removals, Collection<DVD> additions) {
+        List<List<String>> shardRemovals = new ArrayList<>();
+        List<List<DVD>> shardAdditions = new ArrayList<>();
+        for(int i = 0; i < shards.size(); i++) {
+            shardRemovals.add(new ArrayList<>());
+            shardAdditions.add(new ArrayList<>());
+        }
+        for(String title : removals) {
+            shardRemovals.get(getShardIndex(title)).add(title);
+        }
+        for(DVD dvd : additions) {
+            shardAdditions.get(getShardIndex(dvd.getTitle())).add(dvd);
+        }
+        forEachShardInParallel((shardIdx, shard) -> {
+            if(!shardRemovals.get(shardIdx).isEmpty() || !shardAdditions.get(shardIdx).isEmpty()) {
+                shard.applyBatch(shardRemovals.get(shardIdx), shardAdditions.get(shardIdx));
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Gets a DVD from the shard owning its title
+     * @param title The Title of the DVD to retrieve
+     * @return The retrieved object if it exists, or null otherwise
+     */
+    @Override
+    public DVD getDvdInfo(String title) {
+        if(isDefinitelyAbsent(title)) {
+            return null;
+        }
+        DVD dvd = shardFor(title).getDvdInfo(title);
+        if(dvd == null) {
+            recordFilterMiss();
+        }
+        return dvd;
+    }
+
+    /**
+     * Constructs the spliterator backing the DAO's streams over every shard's DVDs.
+     * The shards' views are copied into a single array, so the spliterator splits evenly across shards
+     * @return A spliterator over a point-in-time view of the library
+     */
+    @Override
+    protected Spliterator<DVD> spliterator() {
+        List<DVD[]> parts = new ArrayList<>();
+        int size = 0;
+        for(DVDLibraryDao shard : shards) {
+            DVD[] part = shard.stream().toArray(DVD[]::new);
+            parts.add(part);
+            size += part.length;
+        }
+        DVD[] all = new DVD[size];
+        int offset = 0;
+        for(DVD[] part : parts) {
+            System.arraycopy(part, 0, all, offset, part.length);
+            offset += part.length;
+        }
+        return Spliterators.spliterator(all, Spliterator.IMMUTABLE | Spliterator.NONNULL);
+    }
+
+    /**
+     * Gets all DVDs contained in every shard
+     * @return A collection of DVDs, iterating each shard in turn
+     */
+    @Override
+    public Collection<DVD> getAllDvds() {
+        List<Collection<DVD>> parts = new ArrayList<>();
+        for(DVDLibraryDao shard : shards) {
+            parts.add(shard.getAllDvds());
+        }
+        return new AbstractCollection<DVD>() {
+            @Override
+            public Iterator<DVD> iterator() {
+                return new Iterator<DVD>() {
+                    private int partIdx = 0;
+                    private Iterator<DVD> cur = parts.get(0).iterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        while(!cur.hasNext() && partIdx + 1 < parts.size()) {
+                            cur = parts.get(++partIdx).iterator();
+                        }
+                        return cur.hasNext();
+                    }
+
+                    @Override
+                    public DVD next() {
+                        if(!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return cur.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for(Collection<DVD> part : parts) {
+                    size += part.size();
+                }
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Checks if every shard is empty
+     * @return True if there are no DVDs in any shard, and false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        for(DVDLibraryDao shard : shards) {
+            if(!shard.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the problems found while loading every shard
+     * @return A description of each problem found, grouped by shard
+     */
+    @Override
+    public List<String> getLoadWarnings() {
+        List<String> warnings = new ArrayList<>();
+        for(DVDLibraryDao shard : shards) {
+            warnings.addAll(shard.getLoadWarnings());
+        }
+        return warnings;
+    }
+
+    /**
+     * Stops the threads running parallel shard operations and closes every shard that holds
+     * external resources, such as shard processes
+     */
+    @Override
+    public void close() {
+        if(executor != null) {
+            executor.shutdown();
+        }
+        for(DVDLibraryDao shard : shards) {
+            if(shard instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) shard).close();
+                }
+                catch(Exception ignored) { }
+            }
+        }
+    }
+
+    /**
+     * Retrieves the shard owning a title
+     * @param title The title to locate
+     * @return The owning shard
+     */
+    private DVDLibraryDao shardFor(String title) {
+        return shards.get(ring.partitionFor(title));
+    }
+
+    /**
+     * Runs an operation on every shard in parallel, waiting for every shard to finish
+     * @param op The operation to run
+     * @return True if the operation returned true for every shard, and false otherwise
+     * @throws RuntimeException rethrown from the first shard whose operation threw one
+     */
+    private boolean forEachShardInParallel(ShardOp op) {
+        if(executor == null) {
+            return op.apply(0, shards.get(0));
+        }
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for(int i = 0; i < shards.size(); i++) {
+            int shardIdx = i;
+            tasks.add(() -> op.apply(shardIdx, shards.get(shardIdx)));
+        }
+        try {
+            boolean success = true;
+            RuntimeException failure = null;
+            for(Future<Boolean> result : executor.invokeAll(tasks)) {
+                try {
+                    success &= result.get();
+                }
+                catch(ExecutionException e) {
+                    success = false;
+                    if(failure == null && e.getCause() instanceof RuntimeException) {
+                        failure = (RuntimeException) e.getCause();
+                    }
+                }
+            }
+            if(failure != null) {
+                throw failure;
+            }
+            return success;
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * An operation run against a single shard
+     */
+    @FunctionalInterface
+    private interface ShardOp {
+        /**
+         * Runs the operation
+         * @param shardIdx The index of the shard
+         * @param shard The shard to run the operation against
+         * @return True if the operation was successful, and false otherwise
+         */
+        boolean apply(int shardIdx, DVDLibraryDao shard);
+    }
+}
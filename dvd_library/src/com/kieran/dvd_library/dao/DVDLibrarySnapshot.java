@@ -0,0 +1,133 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.util.PersistentHashMap;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+/**
+ * An immutable, point-in-time view of a DVDLibraryVersionedStorage.
+ *
+ * A snapshot never changes after it is taken, so it can be iterated for as long as
+ * needed while writers continue to publish newer versions of the storage.
+ */
+public final class DVDLibrarySnapshot implements Iterable<DVD> {
+    /**
+     * The shared snapshot of an empty storage
+     */
+    static final DVDLibrarySnapshot EMPTY = new DVDLibrarySnapshot(PersistentHashMap.empty(), 0);
+    /**
+     * The DVDs in the snapshot, keyed by title
+     */
+    private final PersistentHashMap<String, DVD> library;
+    /**
+     * The version number of the snapshot
+     */
+    private final long version;
+    /**
+     * Every DVD of the snapshot in an array, built the first time the snapshot is split
+     */
+    private volatile DVD[] array;
+
+    /**
+     * Constructs a new DVDLibrarySnapshot
+     * @param library The DVDs in the snapshot, keyed by title
+     * @param version The version number of the snapshot
+     */
+    DVDLibrarySnapshot(PersistentHashMap<String, DVD> library, long version) {
+        this.library = library;
+        this.version = version;
+    }
+
+    /**
+     * Retrieves the version number of the snapshot.
+     * Every write to the storage publishes a snapshot with a higher version number
+     * @return The version number of the snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Retrieves the underlying persistent map of the snapshot
+     * @return The DVDs in the snapshot, keyed by title
+     */
+    PersistentHashMap<String, DVD> getLibrary() {
+        return library;
+    }
+
+    /**
+     * Retrieves a DVD from the snapshot
+     * @param title The title of the DVD to retrieve
+     * @return The DVD object if it was found, and null if it was not
+     */
+    public DVD getDvd(String title) {
+        return library.get(title);
+    }
+
+    /**
+     * Retrieves the number of DVDs in the snapshot
+     * @return The number of DVDs in the snapshot
+     */
+    public int size() {
+        return library.size();
+    }
+
+    /**
+     * Checks if the snapshot is empty
+     * @return True if the snapshot contains no DVDs, and false otherwise
+     */
+    public boolean isEmpty() {
+        return library.isEmpty();
+    }
+
+    /**
+     * Retrieves all DVDs contained in the snapshot
+     * @return An unmodifiable collection of the snapshot's DVDs
+     */
+    public Collection<DVD> getAllDvds() {
+        return new AbstractCollection<DVD>() {
+            @Override
+            public Iterator<DVD> iterator() {
+                return library.iterator();
+            }
+
+            @Override
+            public int size() {
+                return library.size();
+            }
+        };
+    }
+
+    /**
+     * Constructs a spliterator over the snapshot's DVDs, backed by an array built once per snapshot
+     * so it splits into exact halves
+     * @return The constructed SIZED, SUBSIZED and IMMUTABLE spliterator
+     */
+    @Override
+    public Spliterator<DVD> spliterator() {
+        DVD[] dvds = array;
+        if(dvds == null) {
+            dvds = new DVD[library.size()];
+            int i = 0;
+            for(DVD dvd : library) {
+                dvds[i++] = dvd;
+            }
+            array = dvds;
+        }
+        return Spliterators.spliterator(dvds, Spliterator.IMMUTABLE | Spliterator.NONNULL);
+    }
+
+    /**
+     * Constructs an iterator over the snapshot's DVDs
+     * @return The constructed iterator
+     */
+    @Override
+    public Iterator<DVD> iterator() {
+        return library.iterator();
+    }
+}
@@ -1,11 +1,18 @@
 package com.kieran.dvd_library.dao;
 
 import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A container which store's DVDs
@@ -15,6 +22,14 @@ public class DVDLibraryStorage implements Iterable<DVD> {
      * The underlying storage container for the DVDLibraryStorage object
      */
     private HashMap<String, DVD> library = new HashMap<>();
+    /**
+     * Every DVD of the storage in an array, built on demand for spliterators and dropped on every mutation
+     */
+    private volatile ArraySnapshot arraySnapshot;
+    /**
+     * The number of mutations made to the storage, which an array snapshot must match to be used
+     */
+    private final AtomicLong modCount = new AtomicLong();
 
     /**
      * Constructs a new DVDLibraryStorage object with no elements
@@ -41,6 +56,17 @@ public class DVDLibraryStorage implements Iterable<DVD> {
         }
     }
 
+    /**
+     * Prepares the storage to hold a number of DVDs, so adding them does not repeatedly grow its container.
+     * Only an empty storage is resized
+     * @param expectedSize The number of DVDs the storage is expected to hold
+     */
+    public void presize(int expectedSize) {
+        if(library.isEmpty() && expectedSize > 0) {
+            library = new HashMap<>((int) (expectedSize / 0.75f) + 1);
+        }
+    }
+
     /**
      * Checks if the storage is empty
      * @return True if the storage contains no elements, and false otherwise
@@ -56,6 +82,7 @@ public class DVDLibraryStorage implements Iterable<DVD> {
     public void addDvd(DVD dvd) {
         if(dvd != null) {
             library.put(dvd.getTitle(), dvd);
+            invalidateArraySnapshot();
         }
     }
 
@@ -65,7 +92,70 @@ public class DVDLibraryStorage implements Iterable<DVD> {
      * @return If the title was present in the storage
      */
     public boolean removeDvd(String title) {
-        return library.remove(title) != null;
+        if(library.remove(title) == null) {
+            return false;
+        }
+        invalidateArraySnapshot();
+        return true;
+    }
+
+    /**
+     * Removes and adds a batch of DVDs.
+     * The batch is applied one DVD at a time, so storages shared with concurrent readers override this
+     * @param removals The titles of the DVDs to remove
+     * @param additions The DVDs to add, replacing any stored DVDs with the same titles
+     */
+    public void applyBatch(Collection<String> removals, Collection<DVD> additions) {
+        for(String title : removals) {
+            removeDvd(title);
+        }
+        for(DVD dvd : additions) {
+            addDvd(dvd);
+        }
+    }
+
+    /**
+     * Applies a patch to a stored DVD, moving the DVD to its new title if the patch renames it.
+     * The stored DVD is replaced by a patched copy rather than modified in place
+     * @param title The title of the DVD to patch
+     * @param patch The new field values
+     * @return The patched DVD as stored, or null if the title was not present in the storage
+     * @throws IllegalArgumentException thrown when the patch renames the DVD to the title of another stored DVD
+     */
+    public DVD updateDvd(String title, DVDPatch patch) {
+        DVD before = getDvd(title);
+        if(before == null) {
+            return null;
+        }
+        DVD after = patch.applyTo(before);
+        if(patch.renames(before)) {
+            DVD clash = getDvd(after.getTitle());
+            if(clash != null && clash != before) {
+                throw new IllegalArgumentException("A DVD titled " + after.getTitle() + " already exists");
+            }
+            removeDvd(title);
+        }
+        addDvd(after);
+        return after;
+    }
+
+    /**
+     * Hashes a title into 64 bits. Titles the storage treats as the same title always have the same hash
+     * @param title The title to hash
+     * @return The 64-bit hash of the title
+     */
+    public long hashTitle(CharSequence title) {
+        return StringUtils.hash64(title);
+    }
+
+    /**
+     * Checks if two titles refer to the same DVD in this storage
+     * @param a The first title
+     * @param b The second title
+     * @return True if the titles are equal, and false otherwise
+     */
+    public boolean titlesMatch(CharSequence a, CharSequence b) {
+        return a.toString().contentEquals(b);
     }
 
     /**
@@ -85,6 +175,37 @@ public class DVDLibraryStorage implements Iterable<DVD> {
         return library.values();
     }
 
+    /**
+     * Retrieves problems the storage found while DVDs were added, such as duplicate titles
+     * @return A description of each problem found, in the order they were found
+     */
+    public List<String> getWarnings() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Forgets the problems found while DVDs were added, such as before the library is loaded again
+     */
+    public void clearWarnings() { }
+
+    /**
+     * Removes every DVD as a single batch, so storages shared with concurrent readers publish one empty version
+     */
+    public void clear() {
+        List<String> titles = new ArrayList<>();
+        for(DVD dvd : getAllDvds()) {
+            titles.add(dvd.getTitle());
+        }
+        applyBatch(titles, Collections.emptyList());
+    }
+
+    /**
+     * Checks that a DVD can be added without replacing a stored DVD whose title is spelled differently.
+     * Titles are compared exactly, so a DVD can always be added
+     * @param dvd The DVD about to be added
+     */
+    public void checkTitleAvailable(DVD dvd) { }
+
     /**
      * Constructs an iterator over the DVDLibraryStorage's DVD elements
      * @return The constructed iterator
@@ -93,4 +214,69 @@ public class DVDLibraryStorage implements Iterable<DVD> {
     public Iterator<DVD> iterator() {
         return library.values().iterator();
     }
+
+    /**
+     * Constructs a spliterator over a point-in-time array of the storage's DVDs.
+     * The array splits into exact halves and is unaffected by later mutations of the storage,
+     * so the spliterator is SIZED, SUBSIZED and IMMUTABLE and suits parallel streams.
+     * The array is reused until the storage is next mutated
+     * @return The constructed spliterator
+     */
+    @Override
+    public Spliterator<DVD> spliterator() {
+        return Spliterators.spliterator(getArraySnapshot(), Spliterator.IMMUTABLE | Spliterator.NONNULL);
+    }
+
+    /**
+     * Retrieves every DVD of the storage in an array, building it if the storage was mutated since it was last built.
+     * The returned array MUST NOT be modified
+     * @return The storage's DVDs
+     */
+    protected DVD[] getArraySnapshot() {
+        while(true) {
+            long seen = modCount.get();
+            ArraySnapshot snapshot = arraySnapshot;
+            if(snapshot != null && snapshot.modCount == seen) {
+                return snapshot.dvds;
+            }
+            DVD[] array = getAllDvds().toArray(new DVD[0]);
+            // An array built while the storage was mutated may hold a partial mutation, so it is built again
+            if(modCount.get() == seen) {
+                arraySnapshot = new ArraySnapshot(array, seen);
+                return array;
+            }
+        }
+    }
+
+    /**
+     * Drops the array built by getArraySnapshot(). Implementations MUST call this after every change to their contents
+     */
+    protected void invalidateArraySnapshot() {
+        modCount.incrementAndGet();
+        arraySnapshot = null;
+    }
+
+    /**
+     * Every DVD of the storage in an array, tagged with the number of mutations made before it was built
+     */
+    private static final class ArraySnapshot {
+        /**
+         * The storage's DVDs
+         */
+        final DVD[] dvds;
+        /**
+         * The number of mutations made to the storage before the array was built
+         */
+        final long modCount;
+
+        /**
+         * Constructs an ArraySnapshot
+         * @param dvds The storage's DVDs
+         * @param modCount The number of mutations made to the storage before the array was built
+         */
+        ArraySnapshot(DVD[] dvds, long modCount) {
+            this.dvds = dvds;
+            this.modCount = modCount;
+        }
+    }
 }
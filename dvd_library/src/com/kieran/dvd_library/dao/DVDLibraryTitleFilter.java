@@ -0,0 +1,312 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.util.CountingBloomFilter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counting Bloom filter over the titles of a DVDLibraryDao, answering lookups of titles
+ * which are definitely not in the library without touching the DAO's storage.
+ *
+ * The filter is rebuilt whenever the DAO reloads and kept up to date with every mutation
+ * made through the DAO. When the library outgrows the filter, the filter is rebuilt at
+ * twice the library's size, so the false positive rate stays near its target. A filter
+ * can be saved beside its library file, letting the next start up answer misses before
+ * the library has finished loading.
+ */
+public class DVDLibraryTitleFilter implements DVDLibraryChangeListener {
+    /**
+     * The false positive rate used when no rate is specified
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    /**
+     * The fewest titles a filter is sized for
+     */
+    private static final long MIN_CAPACITY = 1024;
+    /**
+     * Identifies a saved filter file
+     */
+    private static final int FILTER_MAGIC = 0x44564446;
+    /**
+     * The version of the saved filter format
+     */
+    private static final int FILTER_VERSION = 1;
+    /**
+     * The DAO whose titles are filtered
+     */
+    private final DVDLibraryDao dao;
+    /**
+     * The target false positive rate
+     */
+    private final double falsePositiveRate;
+    /**
+     * The filter, or null until the library has been loaded
+     */
+    private volatile CountingBloomFilter filter;
+    /**
+     * The number of titles the filter is sized for
+     */
+    private long capacity = 0;
+    /**
+     * The number of lookups answered by the filter
+     */
+    private final LongAdder lookups = new LongAdder();
+    /**
+     * The number of lookups the filter answered as definite misses
+     */
+    private final LongAdder definiteMisses = new LongAdder();
+    /**
+     * The number of lookups the filter passed which then missed in storage
+     */
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Constructs a new DVDLibraryTitleFilter
+     * @param dao The DAO whose titles are filtered
+     * @param falsePositiveRate The target false positive rate
+     */
+    private DVDLibraryTitleFilter(DVDLibraryDao dao, double falsePositiveRate) {
+        if(falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("A false positive rate must be between 0 and 1");
+        }
+        this.dao = dao;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Attaches a filter to a DAO, which starts answering lookups once the DAO has been loaded
+     * @param dao The DAO whose titles are filtered
+     * @param falsePositiveRate The target false positive rate
+     * @return The attached filter
+     * @throws IllegalArgumentException thrown when the DAO does not notify its listeners of its mutations
+     */
+    public static DVDLibraryTitleFilter attach(DVDLibraryDao dao, double falsePositiveRate) {
+        if(dao instanceof DVDLibraryRemoteDao) {
+            throw new IllegalArgumentException("A remote DAO cannot be filtered, since its server's mutations are not reported");
+        }
+        DVDLibraryTitleFilter titleFilter = new DVDLibraryTitleFilter(dao, falsePositiveRate);
+        dao.addChangeListener(titleFilter);
+        dao.setTitleFilter(titleFilter);
+        return titleFilter;
+    }
+
+    /**
+     * Attaches a filter to a DAO, answering lookups immediately if a filter saved for the
+     * current contents of a library file exists
+     * @param dao The DAO whose titles are filtered
+     * @param falsePositiveRate The target false positive rate
+     * @param filterFile The file a filter may have been saved to
+     * @param libraryFile The library file the DAO loads
+     * @return The attached filter
+     * @throws IllegalArgumentException thrown when the DAO does not notify its listeners of its mutations
+     */
+    public static DVDLibraryTitleFilter attach(DVDLibraryDao dao, double falsePositiveRate, String filterFile, String libraryFile) {
+        DVDLibraryTitleFilter titleFilter = attach(dao, falsePositiveRate);
+        File library = new File(libraryFile);
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filterFile)))) {
+            if(in.readInt() == FILTER_MAGIC && in.readInt() == FILTER_VERSION
+                    && in.readLong() == library.length() && in.readLong() == library.lastModified()) {
+                long capacity = in.readLong();
+                CountingBloomFilter saved = CountingBloomFilter.readFrom(in);
+                synchronized(titleFilter) {
+                    if(titleFilter.filter == null) {
+                        titleFilter.capacity = capacity;
+                        titleFilter.filter = saved;
+                    }
+                }
+            }
+        }
+        catch(IOException ignored) {
+            // A missing, stale or corrupt filter is rebuilt when the library loads
+        }
+        return titleFilter;
+    }
+
+    /**
+     * Saves the filter, recording the library file it describes.
+     * The library file should be saved first, since a filter is only reused while the file is unchanged
+     * @param filterFile The file to save the filter to
+     * @param libraryFile The library file the filter describes
+     * @return True if the filter was saved, and false if it has not been built or the file could not be written
+     */
+    public synchronized boolean save(String filterFile, String libraryFile) {
+        if(filter == null) {
+            return false;
+        }
+        File library = new File(libraryFile);
+        File tmpFile = new File(filterFile + ".tmp");
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(FILTER_MAGIC);
+            out.writeInt(FILTER_VERSION);
+            out.writeLong(library.length());
+            out.writeLong(library.lastModified());
+            out.writeLong(capacity);
+            filter.writeTo(out);
+        }
+        catch(IOException e) {
+            return false;
+        }
+        try {
+            Files.move(tmpFile.toPath(), new File(filterFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(IOException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the filter from every DVD in the library
+     * @param dvds Every DVD in the library
+     */
+    @Override
+    public synchronized void onReload(Collection<DVD> dvds) {
+        rebuild(dvds);
+    }
+
+    /**
+     * Keeps the filter up to date with a mutation of the library
+     * @param event The mutation made to the library
+     */
+    @Override
+    public synchronized void onChange(DVDLibraryChangeEvent event) {
+        if(filter == null) {
+            return;
+        }
+        long before = event.getBefore() == null ? 0 : dao.hashTitle(event.getBefore().getTitle());
+        long after = event.getAfter() == null ? 0 : dao.hashTitle(event.getAfter().getTitle());
+        if(event.getBefore() != null && event.getAfter() != null && before == after) {
+            return;
+        }
+        if(event.getBefore() != null) {
+            filter.remove(before);
+        }
+        if(event.getAfter() != null) {
+            filter.add(after);
+            if(filter.size() > capacity) {
+                rebuild(dao.getAllDvds());
+            }
+        }
+    }
+
+    /**
+     * Checks if a title is definitely not in the library
+     * @param title The title to check
+     * @return True if the title is definitely absent, and false if it might be present or the filter has not been built
+     */
+    public boolean isDefinitelyAbsent(String title) {
+        if(filter == null) {
+            return false;
+        }
+        lookups.increment();
+        boolean absent;
+        long hash = dao.hashTitle(title);
+        synchronized(this) {
+            absent = !filter.mightContain(hash);
+        }
+        if(absent) {
+            definiteMisses.increment();
+        }
+        return absent;
+    }
+
+    /**
+     * Records that a title the filter did not rule out was missing from storage
+     */
+    public void recordFalsePositive() {
+        if(filter != null) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * Retrieves the target false positive rate
+     * @return The false positive rate the filter is sized for
+     */
+    public double getTargetFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * Estimates the false positive rate of the filter at the library's current size
+     * @return The expected false positive rate, or NaN if the filter has not been built
+     */
+    public synchronized double getExpectedFalsePositiveRate() {
+        return filter == null ? Double.NaN : filter.getExpectedFalsePositiveRate();
+    }
+
+    /**
+     * Measures the false positive rate of the lookups answered so far
+     * @return The share of lookups of absent titles which the filter failed to rule out, or NaN if there were none
+     */
+    public double getObservedFalsePositiveRate() {
+        long passed = falsePositives.sum();
+        long absent = passed + definiteMisses.sum();
+        return absent == 0 ? Double.NaN : (double) passed / absent;
+    }
+
+    /**
+     * Retrieves the memory used by the filter
+     * @return The size of the filter's counters in bytes, or 0 if the filter has not been built
+     */
+    public synchronized long getMemoryBytes() {
+        return filter == null ? 0 : filter.getMemoryBytes();
+    }
+
+    /**
+     * Retrieves the number of titles in the filter
+     * @return The number of titles added and not removed
+     */
+    public synchronized long size() {
+        return filter == null ? 0 : filter.size();
+    }
+
+    /**
+     * Retrieves the number of lookups answered by the filter
+     * @return The number of lookups made since the filter was attached
+     */
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * Retrieves the number of lookups the filter answered without touching storage
+     * @return The number of definite misses
+     */
+    public long getDefiniteMisses() {
+        return definiteMisses.sum();
+    }
+
+    /**
+     * Retrieves the number of lookups the filter passed which then missed in storage
+     * @return The number of false positives
+     */
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * Rebuilds the filter at twice the size of a library
+     * @param dvds Every DVD in the library
+     */
+    private void rebuild(Collection<DVD> dvds) {
+        capacity = Math.max(MIN_CAPACITY, 2L * dvds.size());
+        CountingBloomFilter rebuilt = new CountingBloomFilter(capacity, falsePositiveRate);
+        for(DVD dvd : dvds) {
+            rebuilt.add(dao.hashTitle(dvd.getTitle()));
+        }
+        filter = rebuilt;
+    }
+}
@@ -0,0 +1,193 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.util.PersistentHashMap;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A DVDLibraryStorage which keeps its DVDs in a persistent hash trie.
+ *
+ * Readers take O(1) immutable snapshots and never block, while writers publish
+ * a new version of the library atomically. Every DVD published to the storage is
+ * made immutable, so a reader can never observe a DVD being changed under it.
+ * To edit a DVD, copy it with the DVD copy constructor and add the copy.
+ */
+public class DVDLibraryVersionedStorage extends DVDLibraryStorage {
+    /**
+     * The most recently published version of the library
+     */
+    private final AtomicReference<DVDLibrarySnapshot> current = new AtomicReference<>(DVDLibrarySnapshot.EMPTY);
+    /**
+     * The lock serializing writers. Readers never take this lock
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Constructs a new DVDLibraryVersionedStorage object with no elements
+     */
+    public DVDLibraryVersionedStorage() { }
+
+    /**
+     * Constructs a DVDLibraryVersionedStorage object given a collection of DVDs
+     * @param dvds The DVDs used to populate the storage
+     */
+    public DVDLibraryVersionedStorage(Collection<DVD> dvds) {
+        for(DVD dvd : dvds) {
+            addDvd(dvd);
+        }
+    }
+
+    /**
+     * Takes an immutable snapshot of the storage's current version
+     * @return The current version of the storage
+     */
+    public DVDLibrarySnapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Checks if the storage is empty
+     * @return True if the storage contains no elements, and false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return snapshot().isEmpty();
+    }
+
+    /**
+     * Adds a DVD to the storage, publishing a new version.
+     * A mutable DVD is copied before being published, so the caller's object is left untouched
+     * @param dvd The DVD to add
+     */
+    @Override
+    public void addDvd(DVD dvd) {
+        if(dvd == null) {
+            return;
+        }
+        DVD published = dvd;
+        if(!published.isImmutable()) {
+            published = new DVD(dvd);
+            published.makeImmutable();
+        }
+        synchronized(writeLock) {
+            DVDLibrarySnapshot cur = current.get();
+            current.set(new DVDLibrarySnapshot(cur.getLibrary().put(published.getTitle(), published), cur.getVersion() + 1));
+        }
+    }
+
+    /**
+     * Removes a DVD from storage, publishing a new version if the title was present
+     * @param title The Title of the DVD to remove
+     * @return If the title was present in the storage
+     */
+    @Override
+    public boolean removeDvd(String title) {
+        synchronized(writeLock) {
+            DVDLibrarySnapshot cur = current.get();
+            if(!cur.getLibrary().containsKey(title)) {
+                return false;
+            }
+            current.set(new DVDLibrarySnapshot(cur.getLibrary().remove(title), cur.getVersion() + 1));
+            return true;
+        }
+    }
+
+    /**
+     * Removes and adds a batch of DVDs, publishing the whole batch as a single new version,
+     * so a reader sees either none of the batch or all of it
+     * @param removals The titles of the DVDs to remove
+     * @param additions The DVDs to add, replacing any stored DVDs with the same titles
+     */
+    @Override
+    public void applyBatch(Collection<String> removals, Collection<DVD> additions) {
+        synchronized(writeLock) {
+            DVDLibrarySnapshot cur = current.get();
+            PersistentHashMap<String, DVD> library = cur.getLibrary();
+            for(String title : removals) {
+                library = library.remove(title);
+            }
+            for(DVD dvd : additions) {
+                DVD published = dvd;
+                if(!published.isImmutable()) {
+                    published = new DVD(dvd);
+                    published.makeImmutable();
+                }
+                library = library.put(published.getTitle(), published);
+            }
+            current.set(new DVDLibrarySnapshot(library, cur.getVersion() + 1));
+        }
+    }
+
+    /**
+     * Applies a patch to a stored DVD, publishing the patched DVD under its new title and
+     * removing its old title in a single new version
+     * @param title The title of the DVD to patch
+     * @param patch The new field values
+     * @return The immutable patched DVD as published, or null if the title was not present in the storage
+     * @throws IllegalArgumentException thrown when the patch renames the DVD to the title of another stored DVD
+     */
+    @Override
+    public DVD updateDvd(String title, DVDPatch patch) {
+        synchronized(writeLock) {
+            DVDLibrarySnapshot cur = current.get();
+            DVD before = cur.getDvd(title);
+            if(before == null) {
+                return null;
+            }
+            DVD after = patch.applyTo(before);
+            after.makeImmutable();
+            PersistentHashMap<String, DVD> library = cur.getLibrary();
+            if(patch.renames(before)) {
+                if(library.containsKey(after.getTitle())) {
+                    throw new IllegalArgumentException("A DVD titled " + after.getTitle() + " already exists");
+                }
+                library = library.remove(title);
+            }
+            current.set(new DVDLibrarySnapshot(library.put(after.getTitle(), after), cur.getVersion() + 1));
+            return after;
+        }
+    }
+
+    /**
+     * Retrieves a DVD from the current version of the storage
+     * @param title The title of the DVD to retrieve
+     * @return The immutable DVD object if it was found, and null if it was not
+     */
+    @Override
+    public DVD getDvd(String title) {
+        return snapshot().getDvd(title);
+    }
+
+    /**
+     * Retrieves all DVDs contained in the current version of the storage.
+     * The returned collection is a snapshot and does not reflect later writes
+     * @return An unmodifiable collection of DVDs
+     */
+    @Override
+    public Collection<DVD> getAllDvds() {
+        return snapshot().getAllDvds();
+    }
+
+    /**
+     * Constructs an iterator over a snapshot of the storage's DVDs
+     * @return The constructed iterator
+     */
+    @Override
+    public Iterator<DVD> iterator() {
+        return snapshot().iterator();
+    }
+
+    /**
+     * Constructs a spliterator over a snapshot of the storage's DVDs
+     * @return The constructed SIZED, SUBSIZED and IMMUTABLE spliterator
+     */
+    @Override
+    public Spliterator<DVD> spliterator() {
+        return snapshot().spliterator();
+    }
+}
@@ -0,0 +1,15 @@
+package com.kieran.dvd_library.dao;
+
+/**
+ * An enumerated value representing the kind of mutation made to a DVDLibraryDao
+ */
+public enum EChangeType {
+    /** A DVD was added under a title which was not in the library */
+    ADD,
+    /** A DVD was removed from the library */
+    REMOVE,
+    /** A DVD in the library was replaced */
+    EDIT,
+    /** The library's contents were replaced wholesale, such as by load(). Only recorded by change streams */
+    RELOAD,
+}
@@ -60,6 +60,30 @@ public class DVD {
      * output will not be formatted correctly
      */
     private static final int STUDIO_STRING_LEN = 15;
+    /**
+     * Whether the DVD has been made immutable.
+     * Once set, every mutator throws an IllegalStateException.
+     * Volatile, so a thread which sees the DVD as immutable also sees every value set before makeImmutable()
+     */
+    private volatile boolean immutable = false;
+
+    /**
+     * Constructs a new DVD with no values set
+     */
+    public DVD() { }
+
+    /**
+     * Constructs a new, mutable DVD holding the same values as another DVD
+     * @param other The DVD to copy values from
+     */
+    public DVD(DVD other) {
+        this.title = other.title;
+        this.releaseDate = other.releaseDate;
+        this.mpaaRating = other.mpaaRating;
+        this.directorName = other.directorName;
+        this.studio = other.studio;
+        this.userRatingAndNote = other.userRatingAndNote;
+    }
 
     /*
      * ACCESSORS
@@ -107,6 +131,13 @@ public class DVD {
     public String getUserRatingAndNote() {
         return this.userRatingAndNote;
     }
+    /**
+     * Checks if the DVD has been made immutable
+     * @return True if the DVD's mutators are disabled, and false otherwise
+     */
+    public boolean isImmutable() {
+        return this.immutable;
+    }
 
     /*
      * MUTATORS
@@ -117,6 +148,7 @@ public class DVD {
      * @param title The new title of the DVD
      */
     public void setTitle(String title) {
+        checkMutable();
         this.title = title;
     }
     /**
@@ -124,6 +156,7 @@ public class DVD {
      * @param releaseDate The new release date of the DVD
      */
     public void setReleaseDate(String releaseDate) {
+        checkMutable();
         this.releaseDate = releaseDate;
     }
     /**
@@ -131,6 +164,7 @@ public class DVD {
      * @param mpaaRating The new MPAA rating of the DVD
      */
     public void setMpaaRating(String mpaaRating) {
+        checkMutable();
         this.mpaaRating = mpaaRating;
     }
     /**
@@ -138,6 +172,7 @@ public class DVD {
      * @param directorName The new director name for the DVD
      */
     public void setDirectorName(String directorName) {
+        checkMutable();
         this.directorName = directorName;
     }
     /**
@@ -145,6 +180,7 @@ public class DVD {
      * @param studioName The new studio name for the DVD
      */
     public void setStudio(String studioName) {
+        checkMutable();
         this.studio = studioName;
     }
     /**
@@ -152,9 +188,19 @@ public class DVD {
      * @param userRatingAndNote The new user rating for the DVD
      */
     public void setUserRatingAndNote(String userRatingAndNote) {
+        checkMutable();
         this.userRatingAndNote = userRatingAndNote;
     }
 
+    /**
+     * Makes the DVD immutable. This cannot be undone, use the copy constructor to
+     * obtain an editable DVD with the same values.
+     * The DVD's values are published to every thread which later checks isImmutable()
+     */
+    public void makeImmutable() {
+        this.immutable = true;
+    }
+
     /*
      * UTILITY
      */
@@ -196,4 +242,14 @@ public class DVD {
         return String.format(getFormatString(),
                 this.title, this.releaseDate, this.mpaaRating, this.directorName, this.studio, this.userRatingAndNote);
     }
+
+    /**
+     * Throws if the DVD has been made immutable
+     * @throws IllegalStateException thrown when the DVD is immutable
+     */
+    private void checkMutable() {
+        if(immutable) {
+            throw new IllegalStateException("Cannot modify an immutable DVD");
+        }
+    }
 }
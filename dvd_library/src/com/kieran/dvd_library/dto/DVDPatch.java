@@ -0,0 +1,103 @@
+package com.kieran.dvd_library.dto;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A set of new field values for a DVD. Fields which are not set are left unchanged
+ */
+public class DVDPatch {
+    /**
+     * The new value of every field the patch changes
+     */
+    private final EnumMap<EDVDField, String> values = new EnumMap<>(EDVDField.class);
+
+    /**
+     * Constructs a new DVDPatch which changes no fields
+     */
+    public DVDPatch() { }
+
+    /**
+     * Constructs the patch turning one DVD into another
+     * @param before The DVD before the change
+     * @param after The DVD after the change
+     * @return A patch setting every field whose value differs between before and after
+     */
+    public static DVDPatch between(DVD before, DVD after) {
+        DVDPatch patch = new DVDPatch();
+        for(EDVDField field : EDVDField.values()) {
+            if(!Objects.equals(field.get(before), field.get(after))) {
+                patch.set(field, field.get(after));
+            }
+        }
+        return patch;
+    }
+
+    /**
+     * Sets the new value of a field
+     * @param field The field to change
+     * @param value The field's new value
+     */
+    public void set(EDVDField field, String value) {
+        values.put(field, value);
+    }
+
+    /**
+     * Retrieves the new value of a field
+     * @param field The field
+     * @return The field's new value, or null if the patch does not change the field
+     */
+    public String get(EDVDField field) {
+        return values.get(field);
+    }
+
+    /**
+     * Checks if the patch changes a field
+     * @param field The field
+     * @return True if the patch sets a new value for the field, and false otherwise
+     */
+    public boolean isSet(EDVDField field) {
+        return values.containsKey(field);
+    }
+
+    /**
+     * Retrieves the fields changed by the patch
+     * @return An unmodifiable view of the changed fields, in declaration order
+     */
+    public Set<EDVDField> getFields() {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+    /**
+     * Checks if the patch changes nothing
+     * @return True if the patch sets no fields, and false otherwise
+     */
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /**
+     * Checks if the patch gives a DVD a different title
+     * @param dvd The DVD the patch is applied to
+     * @return True if the patch sets a title differing from the DVD's title, and false otherwise
+     */
+    public boolean renames(DVD dvd) {
+        return values.containsKey(EDVDField.TITLE) && !Objects.equals(values.get(EDVDField.TITLE), dvd.getTitle());
+    }
+
+    /**
+     * Applies the patch to a copy of a DVD
+     * @param dvd The DVD to patch, which is left untouched
+     * @return A new, mutable DVD holding the patched values
+     */
+    public DVD applyTo(DVD dvd) {
+        DVD patched = new DVD(dvd);
+        for(Map.Entry<EDVDField, String> entry : values.entrySet()) {
+            entry.getKey().set(patched, entry.getValue());
+        }
+        return patched;
+    }
+}
@@ -0,0 +1,93 @@
+package com.kieran.dvd_library.dto;
+
+/**
+ * An enumerated value representing a single field of a DVD
+ */
+public enum EDVDField {
+    /** The title of the DVD */
+    TITLE {
+        @Override
+        public String get(DVD dvd) {
+            return dvd.getTitle();
+        }
+
+        @Override
+        public void set(DVD dvd, String value) {
+            dvd.setTitle(value);
+        }
+    },
+    /** The release date of the DVD */
+    RELEASE_DATE {
+        @Override
+        public String get(DVD dvd) {
+            return dvd.getReleaseDate();
+        }
+
+        @Override
+        public void set(DVD dvd, String value) {
+            dvd.setReleaseDate(value);
+        }
+    },
+    /** The MPAA rating of the DVD */
+    MPAA_RATING {
+        @Override
+        public String get(DVD dvd) {
+            return dvd.getMpaaRating();
+        }
+
+        @Override
+        public void set(DVD dvd, String value) {
+            dvd.setMpaaRating(value);
+        }
+    },
+    /** The director's name of the DVD */
+    DIRECTOR_NAME {
+        @Override
+        public String get(DVD dvd) {
+            return dvd.getDirectorName();
+        }
+
+        @Override
+        public void set(DVD dvd, String value) {
+            dvd.setDirectorName(value);
+        }
+    },
+    /** The studio's name of the DVD */
+    STUDIO {
+        @Override
+        public String get(DVD dvd) {
+            return dvd.getStudio();
+        }
+
+        @Override
+        public void set(DVD dvd, String value) {
+            dvd.setStudio(value);
+        }
+    },
+    /** The user rating/note of the DVD */
+    USER_RATING_AND_NOTE {
+        @Override
+        public String get(DVD dvd) {
+            return dvd.getUserRatingAndNote();
+        }
+
+        @Override
+        public void set(DVD dvd, String value) {
+            dvd.setUserRatingAndNote(value);
+        }
+    };
+
+    /**
+     * Retrieves the value of this field from a DVD
+     * @param dvd The DVD to read
+     * @return The DVD's value of this field
+     */
+    public abstract String get(DVD dvd);
+
+    /**
+     * Sets the value of this field on a DVD
+     * @param dvd The DVD to modify
+     * @param value The new value of this field
+     */
+    public abstract void set(DVD dvd, String value);
+}
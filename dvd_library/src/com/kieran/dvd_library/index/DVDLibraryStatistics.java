@@ -0,0 +1,305 @@
+package com.kieran.dvd_library.index;
+
+import com.kieran.dvd_library.dao.DVDLibraryChangeEvent;
+import com.kieran.dvd_library.dao.DVDLibraryChangeListener;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.EDVDField;
+import com.kieran.dvd_library.util.DVDFieldParser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Summary statistics of a library, kept up to date as the library is mutated.
+ *
+ * Every add, remove or edit adjusts a handful of counters in constant time, so reports never
+ * scan the library. An edit only adjusts the counters of the fields it changed. A reload rebuilds the counters from scratch with a parallel stream.
+ */
+public class DVDLibraryStatistics implements DVDLibraryChangeListener {
+    /**
+     * The key counting DVDs with a blank field
+     */
+    public static final String UNKNOWN = "(unknown)";
+    /**
+     * The decade counting DVDs without a recognizable release year
+     */
+    public static final int UNKNOWN_DECADE = -1;
+    /**
+     * The number of fixed point units in one user score point
+     */
+    private static final long SCORE_UNITS = 100;
+    /**
+     * The fields of an added or removed DVD
+     */
+    private static final Set<EDVDField> ALL_FIELDS = Collections.unmodifiableSet(EnumSet.allOf(EDVDField.class));
+    /**
+     * The current counters
+     */
+    private Tally tally = new Tally();
+
+    /**
+     * Rebuilds the statistics from every DVD in the library
+     * @param dvds Every DVD in the library
+     */
+    @Override
+    public void onReload(Collection<DVD> dvds) {
+        Tally rebuilt = dvds.parallelStream().collect(Tally::new, Tally::add, Tally::merge);
+        synchronized(this) {
+            tally = rebuilt;
+        }
+    }
+
+    /**
+     * Keeps the statistics up to date with a mutation of the library
+     * @param event The mutation made to the library
+     */
+    @Override
+    public synchronized void onChange(DVDLibraryChangeEvent event) {
+        // Edits only move the counters of the fields they changed
+        Set<EDVDField> fields = event.getChangedFields();
+        if(event.getBefore() != null) {
+            tally.adjust(event.getBefore(), -1, fields);
+        }
+        if(event.getAfter() != null) {
+            tally.adjust(event.getAfter(), 1, fields);
+        }
+    }
+
+    /**
+     * Retrieves the number of DVDs in the library
+     * @return The number of DVDs counted
+     */
+    public synchronized int getTotalCount() {
+        return tally.total;
+    }
+
+    /**
+     * Retrieves the number of DVDs with a numeric user score
+     * @return The number of DVDs contributing to the average user score
+     */
+    public synchronized int getScoredCount() {
+        return tally.scored;
+    }
+
+    /**
+     * Retrieves the average user score, on a scale of 0 to 10
+     * @return The average user score, or NaN if no DVD has a numeric user score
+     */
+    public synchronized double getAverageUserScore() {
+        if(tally.scored == 0) {
+            return Double.NaN;
+        }
+        return (double) tally.scoreSum / SCORE_UNITS / tally.scored;
+    }
+
+    /**
+     * Retrieves the number of DVDs made by each studio
+     * @return The counts by studio, most common first
+     */
+    public synchronized Map<String, Integer> getCountsByStudio() {
+        return byDescendingCount(tally.studios);
+    }
+
+    /**
+     * Retrieves the number of DVDs with each MPAA rating
+     * @return The counts by MPAA rating, most common first
+     */
+    public synchronized Map<String, Integer> getCountsByMpaaRating() {
+        return byDescendingCount(tally.ratings);
+    }
+
+    /**
+     * Retrieves the number of DVDs made by each director
+     * @return The counts by director, most common first
+     */
+    public synchronized Map<String, Integer> getCountsByDirector() {
+        return byDescendingCount(tally.directors);
+    }
+
+    /**
+     * Retrieves the number of DVDs released in each decade
+     * @return The counts by decade, keyed by the decade's first year and ordered by decade.
+     *         DVDs without a release year are counted under UNKNOWN_DECADE
+     */
+    public synchronized SortedMap<Integer, Integer> getCountsByDecade() {
+        SortedMap<Integer, Integer> counts = new TreeMap<>();
+        for(Map.Entry<Integer, Count> entry : tally.decades.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().value);
+        }
+        return counts;
+    }
+
+    /**
+     * Copies a set of counters into a map ordered by descending count, then by key
+     * @param counts The counters to copy
+     * @return The ordered counts
+     */
+    private static Map<String, Integer> byDescendingCount(HashMap<String, Count> counts) {
+        List<Map.Entry<String, Count>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((a, b) -> a.getValue().value != b.getValue().value
+                ? Integer.compare(b.getValue().value, a.getValue().value)
+                : a.getKey().compareTo(b.getKey()));
+        Map<String, Integer> ordered = new LinkedHashMap<>();
+        for(Map.Entry<String, Count> entry : entries) {
+            ordered.put(entry.getKey(), entry.getValue().value);
+        }
+        return ordered;
+    }
+
+    /**
+     * Converts a free text field into a counter key
+     * @param field The field's value, may be null
+     * @return The trimmed field, or UNKNOWN if the field is blank
+     */
+    private static String keyOf(String field) {
+        if(field == null) {
+            return UNKNOWN;
+        }
+        String trimmed = field.trim();
+        return trimmed.isEmpty() ? UNKNOWN : trimmed;
+    }
+
+    /**
+     * Finds the decade a DVD was released in
+     * @param dvd The DVD
+     * @return The first year of the decade, or UNKNOWN_DECADE if the release date holds no year
+     */
+    private static int decadeOf(DVD dvd) {
+        int year = DVDFieldParser.parseYear(dvd.getReleaseDate());
+        return year < 0 ? UNKNOWN_DECADE : year / 10 * 10;
+    }
+
+    /**
+     * A mutable counter, so adjusting a count does not box a new Integer
+     */
+    private static final class Count {
+        /**
+         * The current count
+         */
+        int value;
+    }
+
+    /**
+     * The full set of counters, which partial results of a parallel rebuild are merged into
+     */
+    private static final class Tally {
+        /**
+         * The number of DVDs made by each studio
+         */
+        final HashMap<String, Count> studios = new HashMap<>();
+        /**
+         * The number of DVDs with each MPAA rating
+         */
+        final HashMap<String, Count> ratings = new HashMap<>();
+        /**
+         * The number of DVDs made by each director
+         */
+        final HashMap<String, Count> directors = new HashMap<>();
+        /**
+         * The number of DVDs released in each decade
+         */
+        final HashMap<Integer, Count> decades = new HashMap<>();
+        /**
+         * The number of DVDs counted
+         */
+        int total;
+        /**
+         * The number of DVDs with a numeric user score
+         */
+        int scored;
+        /**
+         * The sum of every numeric user score, in SCORE_UNITS so removals never accumulate rounding error
+         */
+        long scoreSum;
+
+        /**
+         * Counts a DVD
+         * @param dvd The DVD to count
+         */
+        void add(DVD dvd) {
+            adjust(dvd, 1, ALL_FIELDS);
+        }
+
+        /**
+         * Adds the counters of another tally to this tally
+         * @param other The tally to merge in
+         */
+        void merge(Tally other) {
+            mergeCounts(studios, other.studios);
+            mergeCounts(ratings, other.ratings);
+            mergeCounts(directors, other.directors);
+            mergeCounts(decades, other.decades);
+            total += other.total;
+            scored += other.scored;
+            scoreSum += other.scoreSum;
+        }
+
+        /**
+         * Adjusts the counters a DVD contributes to through a set of fields.
+         * The total only moves when every field is adjusted, as it does for an added or removed DVD
+         * @param dvd The DVD
+         * @param delta 1 to count the DVD, or -1 to stop counting it
+         * @param fields The fields whose counters are adjusted
+         */
+        void adjust(DVD dvd, int delta, Set<EDVDField> fields) {
+            if(fields.contains(EDVDField.STUDIO)) {
+                adjustCount(studios, keyOf(dvd.getStudio()), delta);
+            }
+            if(fields.contains(EDVDField.MPAA_RATING)) {
+                adjustCount(ratings, keyOf(dvd.getMpaaRating()), delta);
+            }
+            if(fields.contains(EDVDField.DIRECTOR_NAME)) {
+                adjustCount(directors, keyOf(dvd.getDirectorName()), delta);
+            }
+            if(fields.contains(EDVDField.RELEASE_DATE)) {
+                adjustCount(decades, decadeOf(dvd), delta);
+            }
+            if(fields.contains(EDVDField.USER_RATING_AND_NOTE)) {
+                double score = DVDFieldParser.parseUserScore(dvd.getUserRatingAndNote());
+                if(!Double.isNaN(score)) {
+                    scored += delta;
+                    scoreSum += delta * Math.round(score * SCORE_UNITS);
+                }
+            }
+            if(fields.size() == ALL_FIELDS.size()) {
+                total += delta;
+            }
+        }
+
+        /**
+         * Adjusts a single counter, dropping it once it reaches zero
+         * @param counts The counters
+         * @param key The key of the counter to adjust
+         * @param delta The amount to adjust the counter by
+         * @param <K> The type of the counter keys
+         */
+        private static <K> void adjustCount(HashMap<K, Count> counts, K key, int delta) {
+            Count count = counts.computeIfAbsent(key, k -> new Count());
+            count.value += delta;
+            if(count.value <= 0) {
+                counts.remove(key);
+            }
+        }
+
+        /**
+         * Adds one set of counters to another
+         * @param into The counters to add to
+         * @param from The counters to add
+         * @param <K> The type of the counter keys
+         */
+        private static <K> void mergeCounts(HashMap<K, Count> into, HashMap<K, Count> from) {
+            for(Map.Entry<K, Count> entry : from.entrySet()) {
+                adjustCount(into, entry.getKey(), entry.getValue().value);
+            }
+        }
+    }
+}
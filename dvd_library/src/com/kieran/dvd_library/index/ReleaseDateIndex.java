@@ -0,0 +1,221 @@
+package com.kieran.dvd_library.index;
+
+import com.kieran.dvd_library.dao.DVDLibraryChangeEvent;
+import com.kieran.dvd_library.dao.DVDLibraryChangeListener;
+import com.kieran.dvd_library.dao.EChangeType;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.EDVDField;
+import com.kieran.dvd_library.util.DVDFieldParser;
+import com.kieran.dvd_library.util.IndexedSkipList;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An index ordering DVDs by their release date.
+ *
+ * Release dates are parsed into epoch days once when a DVD is added or edited, and the dated
+ * DVDs are kept in an order-statistic skip list, so date range and newest-N queries cost
+ * O(log n + k) instead of parsing every release date in the library. DVDs whose release date
+ * holds no year are not indexed.
+ */
+public class ReleaseDateIndex implements DVDLibraryChangeListener {
+    /**
+     * Orders entries from the oldest release date to the newest, and alphabetically among equal dates
+     */
+    private static final Comparator<Entry> ORDER = (a, b) -> a.epochDay != b.epochDay
+            ? Long.compare(a.epochDay, b.epochDay)
+            : a.title.compareTo(b.title);
+    /**
+     * The dated entries, oldest first
+     */
+    private final IndexedSkipList<Entry> timeline = new IndexedSkipList<>(ORDER);
+    /**
+     * The dated entry of every indexed title
+     */
+    private final HashMap<String, Entry> entriesByTitle = new HashMap<>();
+
+    /**
+     * Rebuilds the index from every DVD in the library
+     * @param dvds Every DVD in the library
+     */
+    @Override
+    public synchronized void onReload(Collection<DVD> dvds) {
+        timeline.clear();
+        entriesByTitle.clear();
+        for(DVD dvd : dvds) {
+            add(dvd);
+        }
+    }
+
+    /**
+     * Keeps the index up to date with a mutation of the library
+     * @param event The mutation made to the library
+     */
+    @Override
+    public synchronized void onChange(DVDLibraryChangeEvent event) {
+        if(event.getType() == EChangeType.EDIT
+                && !event.hasChanged(EDVDField.TITLE) && !event.hasChanged(EDVDField.RELEASE_DATE)) {
+            // The DVD keeps its position, so only its image needs replacing
+            Entry entry = entriesByTitle.get(event.getAfter().getTitle());
+            if(entry != null) {
+                entry.dvd = event.getAfter();
+            }
+            return;
+        }
+        if(event.getBefore() != null) {
+            remove(event.getBefore().getTitle());
+        }
+        if(event.getAfter() != null) {
+            add(event.getAfter());
+        }
+    }
+
+    /**
+     * Retrieves the number of indexed DVDs
+     * @return The number of DVDs with a release year
+     */
+    public synchronized int size() {
+        return timeline.size();
+    }
+
+    /**
+     * Retrieves the DVDs released within a range of dates
+     * @param from The earliest release date, inclusive
+     * @param to The latest release date, inclusive
+     * @return The DVDs released between from and to, oldest first
+     */
+    public List<DVD> releasedBetween(LocalDate from, LocalDate to) {
+        return releasedBetween(from.toEpochDay(), to.toEpochDay());
+    }
+
+    /**
+     * Retrieves the DVDs released within a range of years
+     * @param fromYear The earliest release year, inclusive
+     * @param toYear The latest release year, inclusive
+     * @return The DVDs released between the start of fromYear and the end of toYear, oldest first
+     */
+    public List<DVD> releasedBetween(int fromYear, int toYear) {
+        return releasedBetween(LocalDate.of(fromYear, 1, 1), LocalDate.of(toYear, 12, 31));
+    }
+
+    /**
+     * Retrieves the DVDs released within a range of epoch days
+     * @param fromEpochDay The earliest release date, inclusive
+     * @param toEpochDay The latest release date, inclusive
+     * @return The DVDs released between fromEpochDay and toEpochDay, oldest first
+     */
+    public synchronized List<DVD> releasedBetween(long fromEpochDay, long toEpochDay) {
+        if(fromEpochDay > toEpochDay) {
+            return new ArrayList<>();
+        }
+        int from = timeline.lowerBound(new Entry("", fromEpochDay, null));
+        int to = toEpochDay == Long.MAX_VALUE ? timeline.size() : timeline.lowerBound(new Entry("", toEpochDay + 1, null));
+        return toDvds(timeline.range(from, to - from));
+    }
+
+    /**
+     * Retrieves the most recently released DVDs
+     * @param n The maximum number of DVDs to retrieve
+     * @return Up to n DVDs, newest first
+     */
+    public synchronized List<DVD> newest(int n) {
+        int count = Math.min(n, timeline.size());
+        List<DVD> dvds = toDvds(timeline.range(timeline.size() - count, count));
+        Collections.reverse(dvds);
+        return dvds;
+    }
+
+    /**
+     * Retrieves the earliest released DVDs
+     * @param n The maximum number of DVDs to retrieve
+     * @return Up to n DVDs, oldest first
+     */
+    public synchronized List<DVD> oldest(int n) {
+        return toDvds(timeline.range(0, n));
+    }
+
+    /**
+     * Retrieves the parsed release date of a DVD
+     * @param title The title of the DVD
+     * @return The DVD's release date, or null if the DVD is not indexed
+     */
+    public synchronized LocalDate getReleaseDate(String title) {
+        Entry entry = entriesByTitle.get(title);
+        return entry == null ? null : LocalDate.ofEpochDay(entry.epochDay);
+    }
+
+    /**
+     * Indexes a DVD if its release date holds a year
+     * @param dvd The DVD to index
+     */
+    private void add(DVD dvd) {
+        long epochDay = DVDFieldParser.parseEpochDay(dvd.getReleaseDate());
+        if(epochDay == DVDFieldParser.UNKNOWN_DATE || dvd.getTitle() == null) {
+            return;
+        }
+        remove(dvd.getTitle());
+        Entry entry = new Entry(dvd.getTitle(), epochDay, dvd);
+        entriesByTitle.put(entry.title, entry);
+        timeline.add(entry);
+    }
+
+    /**
+     * Stops indexing a DVD
+     * @param title The title of the DVD
+     */
+    private void remove(String title) {
+        Entry entry = entriesByTitle.remove(title);
+        if(entry != null) {
+            timeline.remove(entry);
+        }
+    }
+
+    /**
+     * Extracts the DVDs of a run of entries
+     * @param entries The entries
+     * @return The entries' DVDs, in the same order
+     */
+    private static List<DVD> toDvds(List<Entry> entries) {
+        List<DVD> dvds = new ArrayList<>(entries.size());
+        for(Entry entry : entries) {
+            dvds.add(entry.dvd);
+        }
+        return dvds;
+    }
+
+    /**
+     * A dated DVD
+     */
+    private static final class Entry {
+        /**
+         * The title of the DVD
+         */
+        final String title;
+        /**
+         * The parsed release date of the DVD, in days since 1970-01-01
+         */
+        final long epochDay;
+        /**
+         * The most recent immutable image of the DVD
+         */
+        DVD dvd;
+
+        /**
+         * Constructs a new Entry
+         * @param title The title of the DVD
+         * @param epochDay The parsed release date of the DVD, in days since 1970-01-01
+         * @param dvd The DVD
+         */
+        Entry(String title, long epochDay, DVD dvd) {
+            this.title = title;
+            this.epochDay = epochDay;
+            this.dvd = dvd;
+        }
+    }
+}
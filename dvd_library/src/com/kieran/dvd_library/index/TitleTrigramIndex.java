@@ -0,0 +1,304 @@
+package com.kieran.dvd_library.index;
+
+import com.kieran.dvd_library.dao.DVDLibraryChangeEvent;
+import com.kieran.dvd_library.dao.DVDLibraryChangeListener;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.util.EditDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An approximate title index answering "did you mean" queries.
+ *
+ * Each title is broken into its case-insensitive trigrams, and every trigram keeps a posting
+ * list of the titles containing it. A title within the allowed edit distance of a query must
+ * share a minimum number of the query's trigrams, so candidates are only gathered from the
+ * query's rarest posting lists and then verified with a banded Levenshtein distance.
+ *
+ * Removed titles are only marked dead in the posting lists, which are compacted once
+ * dead entries outnumber live ones.
+ */
+public class TitleTrigramIndex implements DVDLibraryChangeListener {
+    /**
+     * The character padding both ends of a title, so prefixes and suffixes form their own trigrams
+     */
+    private static final char PAD = '\u0000';
+    /**
+     * The number of trigram occurrences a single edit can destroy
+     */
+    private static final int TRIGRAMS_PER_EDIT = 3;
+    /**
+     * The titles of the index by id, or null for a removed title
+     */
+    private final ArrayList<String> titles = new ArrayList<>();
+    /**
+     * The lower cased, trimmed titles of the index by id, or null for a removed title
+     */
+    private final ArrayList<String> normalizedTitles = new ArrayList<>();
+    /**
+     * The id of every live title
+     */
+    private final HashMap<String, Integer> idsByTitle = new HashMap<>();
+    /**
+     * The posting list of every trigram, keyed by the trigram's three characters packed into a long
+     */
+    private final HashMap<Long, PostingList> postings = new HashMap<>();
+    /**
+     * Marks the candidates a query has already verified, indexed by id. Reused between queries
+     */
+    private boolean[] verified = new boolean[0];
+    /**
+     * The number of removed titles still referenced by posting lists
+     */
+    private int deadCount = 0;
+
+    /**
+     * Rebuilds the index from every DVD in the library
+     * @param dvds Every DVD in the library
+     */
+    @Override
+    public synchronized void onReload(Collection<DVD> dvds) {
+        titles.clear();
+        normalizedTitles.clear();
+        idsByTitle.clear();
+        postings.clear();
+        deadCount = 0;
+        for(DVD dvd : dvds) {
+            addTitle(dvd.getTitle());
+        }
+    }
+
+    /**
+     * Keeps the index up to date with a mutation of the library
+     * @param event The mutation made to the library
+     */
+    @Override
+    public synchronized void onChange(DVDLibraryChangeEvent event) {
+        String before = event.getBefore() == null ? null : event.getBefore().getTitle();
+        String after = event.getAfter() == null ? null : event.getAfter().getTitle();
+        if(before != null && before.equals(after)) {
+            return;
+        }
+        if(before != null) {
+            removeTitle(before);
+        }
+        if(after != null) {
+            addTitle(after);
+        }
+    }
+
+    /**
+     * Retrieves the number of titles in the index
+     * @return The number of live titles
+     */
+    public synchronized int size() {
+        return idsByTitle.size();
+    }
+
+    /**
+     * Finds titles similar to a query, using an edit distance allowance which grows with the query's length
+     * @param query The title to find similar titles for
+     * @param limit The maximum number of titles to return
+     * @return The similar titles, closest first
+     */
+    public List<String> suggest(String query, int limit) {
+        int length = query.trim().length();
+        int maxDistance = length <= 4 ? 1 : length <= 10 ? 2 : 3;
+        return suggest(query, maxDistance, limit);
+    }
+
+    /**
+     * Finds titles within a case-insensitive edit distance of a query
+     * @param query The title to find similar titles for
+     * @param maxDistance The largest edit distance of a returned title
+     * @param limit The maximum number of titles to return
+     * @return The similar titles, closest first and alphabetically among equally close titles
+     */
+    public synchronized List<String> suggest(String query, int maxDistance, int limit) {
+        String normalizedQuery = normalize(query);
+        long[] queryTrigrams = distinctTrigrams(normalizedQuery);
+        // Every edit destroys at most three trigram occurrences, so a match within maxDistance must share
+        // at least this many of the query's trigrams. Very short queries are still required to share one
+        int minShared = Math.max(1, queryTrigrams.length - TRIGRAMS_PER_EDIT * maxDistance);
+
+        // A title sharing minShared of the query's trigrams must appear in at least one of the
+        // (trigrams - minShared + 1) rarest posting lists, so the common lists are never scanned
+        List<PostingList> lists = new ArrayList<>();
+        for(long trigram : queryTrigrams) {
+            PostingList list = postings.get(trigram);
+            lists.add(list == null ? PostingList.EMPTY : list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        int prefixLength = queryTrigrams.length - minShared + 1;
+
+        if(verified.length < titles.size()) {
+            verified = new boolean[titles.size()];
+        }
+        List<Match> matches = new ArrayList<>();
+        for(int listIdx = 0; listIdx < prefixLength && listIdx < lists.size(); listIdx++) {
+            PostingList list = lists.get(listIdx);
+            for(int i = 0; i < list.size; i++) {
+                int id = list.ids[i];
+                String candidate = normalizedTitles.get(id);
+                if(candidate == null || verified[id]) {
+                    continue;
+                }
+                verified[id] = true;
+                int distance = EditDistance.boundedLevenshtein(normalizedQuery, candidate, maxDistance);
+                if(distance <= maxDistance) {
+                    matches.add(new Match(titles.get(id), distance));
+                }
+            }
+        }
+        // Reset the marks for the next query
+        for(int listIdx = 0; listIdx < prefixLength && listIdx < lists.size(); listIdx++) {
+            PostingList list = lists.get(listIdx);
+            for(int i = 0; i < list.size; i++) {
+                verified[list.ids[i]] = false;
+            }
+        }
+        matches.sort((a, b) -> a.distance != b.distance ? Integer.compare(a.distance, b.distance) : a.title.compareTo(b.title));
+
+        List<String> result = new ArrayList<>();
+        for(int i = 0; i < Math.min(limit, matches.size()); i++) {
+            result.add(matches.get(i).title);
+        }
+        return result;
+    }
+
+    /**
+     * Adds a title to the index
+     * @param title The title to add
+     */
+    private void addTitle(String title) {
+        if(idsByTitle.containsKey(title)) {
+            return;
+        }
+        int id = titles.size();
+        String normalized = normalize(title);
+        titles.add(title);
+        normalizedTitles.add(normalized);
+        idsByTitle.put(title, id);
+        for(long trigram : distinctTrigrams(normalized)) {
+            postings.computeIfAbsent(trigram, key -> new PostingList()).add(id);
+        }
+    }
+
+    /**
+     * Removes a title from the index, compacting the posting lists if they hold too many dead entries
+     * @param title The title to remove
+     */
+    private void removeTitle(String title) {
+        Integer id = idsByTitle.remove(title);
+        if(id == null) {
+            return;
+        }
+        titles.set(id, null);
+        normalizedTitles.set(id, null);
+        deadCount++;
+        if(deadCount > idsByTitle.size()) {
+            List<String> live = new ArrayList<>(idsByTitle.keySet());
+            titles.clear();
+            normalizedTitles.clear();
+            idsByTitle.clear();
+            postings.clear();
+            deadCount = 0;
+            for(String liveTitle : live) {
+                addTitle(liveTitle);
+            }
+        }
+    }
+
+    /**
+     * Lower cases and trims a title
+     * @param title The title to normalize
+     * @return The normalized title
+     */
+    private static String normalize(String title) {
+        return title.trim().toLowerCase();
+    }
+
+    /**
+     * Breaks a normalized title into its distinct, padded trigrams
+     * @param normalized The normalized title
+     * @return The title's distinct trigrams, each packed into a long
+     */
+    private static long[] distinctTrigrams(String normalized) {
+        int length = normalized.length() + 4;
+        char[] padded = new char[length];
+        padded[0] = PAD;
+        padded[1] = PAD;
+        normalized.getChars(0, normalized.length(), padded, 2);
+        padded[length - 2] = PAD;
+        padded[length - 1] = PAD;
+        long[] trigrams = new long[length - 2];
+        for(int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) padded[i] << 32) | ((long) padded[i + 1] << 16) | padded[i + 2];
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for(int i = 0; i < trigrams.length; i++) {
+            if(i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * A growable list of title ids
+     */
+    private static final class PostingList {
+        /**
+         * The shared posting list of a trigram no title contains
+         */
+        static final PostingList EMPTY = new PostingList();
+        /**
+         * The ids in the list
+         */
+        int[] ids = new int[4];
+        /**
+         * The number of ids in the list
+         */
+        int size = 0;
+
+        /**
+         * Appends an id to the list
+         * @param id The id to append
+         */
+        void add(int id) {
+            if(size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * A verified title and its distance from the query
+     */
+    private static final class Match {
+        /**
+         * The matching title
+         */
+        final String title;
+        /**
+         * The edit distance between the title and the query
+         */
+        final int distance;
+
+        /**
+         * Constructs a new Match
+         * @param title The matching title
+         * @param distance The edit distance between the title and the query
+         */
+        Match(String title, int distance) {
+            this.title = title;
+            this.distance = distance;
+        }
+    }
+}
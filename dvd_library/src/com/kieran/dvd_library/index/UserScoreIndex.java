@@ -0,0 +1,205 @@
+package com.kieran.dvd_library.index;
+
+import com.kieran.dvd_library.dao.DVDLibraryChangeEvent;
+import com.kieran.dvd_library.dao.DVDLibraryChangeListener;
+import com.kieran.dvd_library.dao.EChangeType;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.EDVDField;
+import com.kieran.dvd_library.util.DVDFieldParser;
+import com.kieran.dvd_library.util.IndexedSkipList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An index ranking DVDs by the numeric score in their user rating/note.
+ *
+ * Scores are parsed once when a DVD is added or edited, and the scored DVDs are kept in an
+ * order-statistic skip list, so top-N, bottom-N and rank queries cost O(log n + N) instead
+ * of parsing and sorting the whole library. DVDs without a numeric score are not ranked.
+ */
+public class UserScoreIndex implements DVDLibraryChangeListener {
+    /**
+     * Orders entries from the highest score to the lowest, and alphabetically among equal scores
+     */
+    private static final Comparator<Entry> ORDER = (a, b) -> a.score != b.score
+            ? Double.compare(b.score, a.score)
+            : a.title.compareTo(b.title);
+    /**
+     * The ranked entries, best first
+     */
+    private final IndexedSkipList<Entry> ranking = new IndexedSkipList<>(ORDER);
+    /**
+     * The ranked entry of every scored title
+     */
+    private final HashMap<String, Entry> entriesByTitle = new HashMap<>();
+
+    /**
+     * Rebuilds the index from every DVD in the library
+     * @param dvds Every DVD in the library
+     */
+    @Override
+    public synchronized void onReload(Collection<DVD> dvds) {
+        ranking.clear();
+        entriesByTitle.clear();
+        for(DVD dvd : dvds) {
+            add(dvd);
+        }
+    }
+
+    /**
+     * Keeps the index up to date with a mutation of the library
+     * @param event The mutation made to the library
+     */
+    @Override
+    public synchronized void onChange(DVDLibraryChangeEvent event) {
+        if(event.getType() == EChangeType.EDIT
+                && !event.hasChanged(EDVDField.TITLE) && !event.hasChanged(EDVDField.USER_RATING_AND_NOTE)) {
+            // The DVD keeps its rank, so only its image needs replacing
+            Entry entry = entriesByTitle.get(event.getAfter().getTitle());
+            if(entry != null) {
+                entry.dvd = event.getAfter();
+            }
+            return;
+        }
+        if(event.getBefore() != null) {
+            remove(event.getBefore().getTitle());
+        }
+        if(event.getAfter() != null) {
+            add(event.getAfter());
+        }
+    }
+
+    /**
+     * Retrieves the number of ranked DVDs
+     * @return The number of DVDs with a numeric user score
+     */
+    public synchronized int size() {
+        return ranking.size();
+    }
+
+    /**
+     * Retrieves the highest scored DVDs
+     * @param n The maximum number of DVDs to retrieve
+     * @return Up to n DVDs, highest score first
+     */
+    public synchronized List<DVD> top(int n) {
+        return toDvds(ranking.range(0, n));
+    }
+
+    /**
+     * Retrieves the lowest scored DVDs
+     * @param n The maximum number of DVDs to retrieve
+     * @return Up to n DVDs, lowest score first
+     */
+    public synchronized List<DVD> bottom(int n) {
+        int count = Math.min(n, ranking.size());
+        List<DVD> dvds = toDvds(ranking.range(ranking.size() - count, count));
+        Collections.reverse(dvds);
+        return dvds;
+    }
+
+    /**
+     * Retrieves the DVDs scored at least a minimum
+     * @param minScore The lowest score retrieved, on a scale of 0 to 10
+     * @return The DVDs scored minScore or higher, highest score first
+     */
+    public synchronized List<DVD> scoredAtLeast(double minScore) {
+        // Entries are ordered best first, so the DVDs scored below minScore start where a score just under it would be inserted
+        int count = ranking.lowerBound(new Entry("", Math.nextDown(minScore), null));
+        return toDvds(ranking.range(0, count));
+    }
+
+    /**
+     * Finds the rank of a DVD
+     * @param title The title of the DVD
+     * @return The one based rank of the DVD, 1 being the highest score, or -1 if the DVD is not ranked
+     */
+    public synchronized int rank(String title) {
+        Entry entry = entriesByTitle.get(title);
+        return entry == null ? -1 : ranking.indexOf(entry) + 1;
+    }
+
+    /**
+     * Retrieves the parsed user score of a DVD
+     * @param title The title of the DVD
+     * @return The DVD's score on a scale of 0 to 10, or NaN if the DVD is not ranked
+     */
+    public synchronized double getScore(String title) {
+        Entry entry = entriesByTitle.get(title);
+        return entry == null ? Double.NaN : entry.score;
+    }
+
+    /**
+     * Ranks a DVD if its user rating/note holds a numeric score
+     * @param dvd The DVD to rank
+     */
+    private void add(DVD dvd) {
+        double score = DVDFieldParser.parseUserScore(dvd.getUserRatingAndNote());
+        if(Double.isNaN(score) || dvd.getTitle() == null) {
+            return;
+        }
+        remove(dvd.getTitle());
+        Entry entry = new Entry(dvd.getTitle(), score, dvd);
+        entriesByTitle.put(entry.title, entry);
+        ranking.add(entry);
+    }
+
+    /**
+     * Stops ranking a DVD
+     * @param title The title of the DVD
+     */
+    private void remove(String title) {
+        Entry entry = entriesByTitle.remove(title);
+        if(entry != null) {
+            ranking.remove(entry);
+        }
+    }
+
+    /**
+     * Extracts the DVDs of a run of entries
+     * @param entries The entries
+     * @return The entries' DVDs, in the same order
+     */
+    private static List<DVD> toDvds(List<Entry> entries) {
+        List<DVD> dvds = new ArrayList<>(entries.size());
+        for(Entry entry : entries) {
+            dvds.add(entry.dvd);
+        }
+        return dvds;
+    }
+
+    /**
+     * A ranked DVD
+     */
+    private static final class Entry {
+        /**
+         * The title of the DVD
+         */
+        final String title;
+        /**
+         * The parsed user score of the DVD
+         */
+        final double score;
+        /**
+         * The most recent immutable image of the DVD
+         */
+        DVD dvd;
+
+        /**
+         * Constructs a new Entry
+         * @param title The title of the DVD
+         * @param score The parsed user score of the DVD
+         * @param dvd The DVD
+         */
+        Entry(String title, double score, DVD dvd) {
+            this.title = title;
+            this.score = score;
+            this.dvd = dvd;
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibrarySerializer;
+import com.kieran.dvd_library.dto.DVD;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Exports a library file in sorted order without holding the whole library in memory.
+ *
+ * The library is read one line at a time into a run of records whose estimated size stays
+ * within the memory budget. Each full run is sorted and spilled to a temporary file, and the
+ * runs are then combined with a k-way merge driven by a heap holding the head record of every
+ * run. When there are more runs than can be merged at once, groups of runs are first merged
+ * into longer intermediate runs. A library which fits within the budget is never spilled.
+ *
+ * The sort is stable, so DVDs with equal keys (including duplicate titles) keep their order
+ * from the library file. Lines which cannot be read as DVDs are skipped and counted.
+ *
+ * Usage: DVDLibraryExternalSort inputFile outputFile [--key K] [--format F] [--memory-mb N] [--temp-dir D] [--descending]
+ */
+public class DVDLibraryExternalSort {
+    /**
+     * The memory budget used when no budget is specified, in bytes
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+    /**
+     * The number of runs merged at once when no fan-in is specified
+     */
+    public static final int DEFAULT_MAX_FAN_IN = 64;
+    /**
+     * The estimated heap used by a record beyond the characters of its fields: the record,
+     * its DVD, six Strings with their backing arrays, and its slot in the run
+     */
+    private static final int RECORD_OVERHEAD_BYTES = 320;
+    /**
+     * The buffer size of every reader and writer, in characters
+     */
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    /**
+     * The order of the exported DVDs
+     */
+    private final ESortKey key;
+    /**
+     * True if the DVDs are exported in descending order
+     */
+    private final boolean descending;
+    /**
+     * The largest estimated size of a run held in memory, in bytes
+     */
+    private final long memoryBudget;
+    /**
+     * The largest number of runs merged at once
+     */
+    private final int maxFanIn;
+    /**
+     * The directory runs are spilled to, or null for the system's temporary directory
+     */
+    private final Path tempDir;
+    /**
+     * The serializer used to read the library and write the runs
+     */
+    private final DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+    /**
+     * The order of the records, built from the key and direction
+     */
+    private final Comparator<SortRecord> order;
+    /**
+     * The number of runs spilled by the last sort
+     */
+    private int runCount = 0;
+    /**
+     * The number of lines skipped by the last sort
+     */
+    private long skippedCount = 0;
+
+    /**
+     * Constructs a new DVDLibraryExternalSort using the default budget and fan-in and the system's temporary directory
+     * @param key The order of the exported DVDs
+     * @param descending True to export the DVDs in descending order
+     */
+    public DVDLibraryExternalSort(ESortKey key, boolean descending) {
+        this(key, descending, DEFAULT_MEMORY_BUDGET, DEFAULT_MAX_FAN_IN, null);
+    }
+
+    /**
+     * Constructs a new DVDLibraryExternalSort
+     * @param key The order of the exported DVDs
+     * @param descending True to export the DVDs in descending order. DVDs missing the key's value are exported last either way
+     * @param memoryBudget The largest estimated size of a run held in memory, in bytes
+     * @param maxFanIn The largest number of runs merged at once, at least 2
+     * @param tempDir The directory runs are spilled to, or null for the system's temporary directory
+     */
+    public DVDLibraryExternalSort(ESortKey key, boolean descending, long memoryBudget, int maxFanIn, Path tempDir) {
+        if(memoryBudget <= 0) {
+            throw new IllegalArgumentException("The memory budget must be positive");
+        }
+        if(maxFanIn < 2) {
+            throw new IllegalArgumentException("At least two runs must be merged at once");
+        }
+        this.key = key;
+        this.descending = descending;
+        this.memoryBudget = memoryBudget;
+        this.maxFanIn = maxFanIn;
+        this.tempDir = tempDir;
+        Comparator<SortRecord> byKey = Comparator.<SortRecord>comparingLong(record -> record.rank)
+                .thenComparing(record -> record.text, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(record -> record.dvd.getTitle(), String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(record -> record.dvd.getTitle());
+        Comparator<SortRecord> missingLast = Comparator.comparing(record -> record.rank == Long.MAX_VALUE);
+        this.order = missingLast.thenComparing(descending ? byKey.reversed() : byKey);
+    }
+
+    /**
+     * The entry point of the export tool
+     * @param args The input and output files, and optionally the key, format, memory budget, temporary directory and direction
+     */
+    public static void main(String[] args) {
+        if(args.length < 2) {
+            System.err.println("Usage: DVDLibraryExternalSort <inputFile> <outputFile> [--key title|release_date|studio|director|user_score] " +
+                    "[--format file|csv] [--memory-mb N] [--temp-dir DIR] [--descending]");
+            System.exit(1);
+        }
+        try {
+            ESortKey key = ESortKey.valueOf(getOption(args, "--key", "title").toUpperCase());
+            EExportFormat format = EExportFormat.valueOf(getOption(args, "--format", "file").toUpperCase());
+            long memoryBudget = Long.parseLong(getOption(args, "--memory-mb", Long.toString(DEFAULT_MEMORY_BUDGET >> 20))) << 20;
+            String tempDir = getOption(args, "--temp-dir", null);
+            boolean descending = false;
+            for(String arg : args) {
+                descending |= arg.equals("--descending");
+            }
+            DVDLibraryExternalSort sort = new DVDLibraryExternalSort(key, descending, memoryBudget, DEFAULT_MAX_FAN_IN,
+                    tempDir == null ? null : Paths.get(tempDir));
+            long start = System.nanoTime();
+            long count = sort.sort(args[0], args[1], format);
+            System.out.printf("Exported %d DVDs to %s in %.1f s using %d runs%n", count, args[1],
+                    (System.nanoTime() - start) / 1e9, sort.getRunCount());
+            if(sort.getSkippedCount() > 0) {
+                System.out.printf("Skipped %d unreadable lines%n", sort.getSkippedCount());
+            }
+        }
+        catch(IOException | IllegalArgumentException e) {
+            System.err.println("Failed to export library: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Exports a library file in sorted order
+     * @param inputFile The library file, in the format read by DVDLibraryFileImpl
+     * @param outputFile The file to write
+     * @param format The format of the output file
+     * @return The number of DVDs exported
+     * @throws IOException thrown when a file cannot be read or written
+     */
+    public long sort(String inputFile, String outputFile, EExportFormat format) throws IOException {
+        runCount = 0;
+        skippedCount = 0;
+        List<Path> runs = new ArrayList<>();
+        try {
+            List<SortRecord> run = new ArrayList<>();
+            long count = 0;
+            try(BufferedReader reader = new BufferedReader(new FileReader(inputFile), IO_BUFFER_SIZE)) {
+                long runBytes = 0;
+                String line;
+                while((line = reader.readLine()) != null) {
+                    SortRecord record = read(line);
+                    if(record == null) {
+                        skippedCount++;
+                        continue;
+                    }
+                    run.add(record);
+                    count++;
+                    runBytes += 2L * line.length() + RECORD_OVERHEAD_BYTES;
+                    if(runBytes >= memoryBudget) {
+                        runs.add(spill(run));
+                        run.clear();
+                        runBytes = 0;
+                    }
+                }
+            }
+            runCount = runs.size();
+            if(runs.isEmpty()) {
+                // The whole library fit within the budget
+                run.sort(order);
+                try(RecordWriter writer = new RecordWriter(outputFile, format)) {
+                    for(SortRecord record : run) {
+                        writer.write(record.dvd);
+                    }
+                }
+                return count;
+            }
+            if(!run.isEmpty()) {
+                runs.add(spill(run));
+                runCount++;
+            }
+            run = null;
+            // Merge groups of runs until the remaining runs can be merged into the output at once
+            while(runs.size() > maxFanIn) {
+                List<Path> merged = new ArrayList<>();
+                for(int from = 0; from < runs.size(); from += maxFanIn) {
+                    List<Path> group = runs.subList(from, Math.min(runs.size(), from + maxFanIn));
+                    if(group.size() == 1) {
+                        merged.add(group.get(0));
+                        continue;
+                    }
+                    Path intermediate = createRunFile();
+                    merged.add(intermediate);
+                    try(RecordWriter writer = new RecordWriter(intermediate)) {
+                        merge(group, writer);
+                    }
+                    deleteAll(group);
+                }
+                runs = merged;
+            }
+            try(RecordWriter writer = new RecordWriter(outputFile, format)) {
+                merge(runs, writer);
+            }
+            return count;
+        }
+        finally {
+            deleteAll(runs);
+        }
+    }
+
+    /**
+     * Retrieves the number of runs spilled by the last sort
+     * @return The number of sorted runs written to temporary files, or 0 if the library fit within the budget
+     */
+    public int getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * Retrieves the number of lines skipped by the last sort
+     * @return The number of lines which could not be read as DVDs
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Retrieves the order of the exported DVDs
+     * @return The sort key
+     */
+    public ESortKey getKey() {
+        return key;
+    }
+
+    /**
+     * Checks if the DVDs are exported in descending order
+     * @return True if the order is descending, and false otherwise
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * Sorts a run and writes it to a new temporary file
+     * @param run The records of the run
+     * @return The run's file
+     * @throws IOException thrown when the file cannot be written
+     */
+    private Path spill(List<SortRecord> run) throws IOException {
+        run.sort(order);
+        Path file = createRunFile();
+        try(RecordWriter writer = new RecordWriter(file)) {
+            for(SortRecord record : run) {
+                writer.write(record.dvd);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Merges sorted runs into a single sorted output
+     * @param runs The files of the runs, in the order their records appeared in the library
+     * @param writer The output the merged records are written to
+     * @throws IOException thrown when a run cannot be read or the output cannot be written
+     */
+    private void merge(List<Path> runs, RecordWriter writer) throws IOException {
+        // Equal records are taken from the earliest run first, which keeps the merge stable
+        PriorityQueue<RunReader> heap = new PriorityQueue<>(runs.size(),
+                (a, b) -> {
+                    int compared = order.compare(a.head, b.head);
+                    return compared != 0 ? compared : Integer.compare(a.index, b.index);
+                });
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        try {
+            for(int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), i);
+                readers.add(reader);
+                if(reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+            while(!heap.isEmpty()) {
+                RunReader reader = heap.poll();
+                writer.write(reader.head.dvd);
+                if(reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+        }
+        finally {
+            for(RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a record from a line of a library file or run
+     * @param line The line to read
+     * @return The record, or null if the line is not a DVD
+     */
+    private SortRecord read(String line) {
+        try {
+            DVD dvd = serializer.deserialize(line);
+            return new SortRecord(dvd, key.rank(dvd), key.text(dvd));
+        }
+        catch(RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates an empty temporary file for a run
+     * @return The created file
+     * @throws IOException thrown when the file cannot be created
+     */
+    private Path createRunFile() throws IOException {
+        Path file = tempDir == null ? Files.createTempFile("dvd-sort-", ".run") : Files.createTempFile(tempDir, "dvd-sort-", ".run");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Deletes temporary files, ignoring files which no longer exist
+     * @param files The files to delete
+     */
+    private static void deleteAll(List<Path> files) {
+        for(Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            }
+            catch(IOException ignored) { }
+        }
+    }
+
+    /**
+     * Retrieves the value following an option on the command line
+     * @param args The command line arguments
+     * @param option The option to look for
+     * @param defaultValue The value returned if the option is missing
+     * @return The option's value, or defaultValue if the option is missing
+     */
+    private static String getOption(String[] args, String option, String defaultValue) {
+        for(int i = 0; i < args.length - 1; i++) {
+            if(args[i].equals(option)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * A DVD and its precomputed sort key
+     */
+    private static final class SortRecord {
+        /**
+         * The DVD
+         */
+        final DVD dvd;
+        /**
+         * The numeric part of the DVD's sort key
+         */
+        final long rank;
+        /**
+         * The text part of the DVD's sort key
+         */
+        final String text;
+
+        /**
+         * Constructs a new SortRecord
+         * @param dvd The DVD
+         * @param rank The numeric part of the DVD's sort key
+         * @param text The text part of the DVD's sort key
+         */
+        SortRecord(DVD dvd, long rank, String text) {
+            this.dvd = dvd;
+            this.rank = rank;
+            this.text = text;
+        }
+    }
+
+    /**
+     * A sequential reader over a spilled run, holding the run's next record
+     */
+    private final class RunReader {
+        /**
+         * The run's file
+         */
+        private final BufferedReader reader;
+        /**
+         * The position of the run among the merged runs
+         */
+        final int index;
+        /**
+         * The run's next record, or null once the run is exhausted
+         */
+        SortRecord head;
+
+        /**
+         * Opens a run
+         * @param file The run's file
+         * @param index The position of the run among the merged runs
+         * @throws IOException thrown when the file cannot be opened
+         */
+        RunReader(Path file, int index) throws IOException {
+            this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            this.index = index;
+        }
+
+        /**
+         * Reads the run's next record into head
+         * @return True if a record was read, and false if the run is exhausted
+         * @throws IOException thrown when the file cannot be read
+         */
+        boolean advance() throws IOException {
+            String line = reader.readLine();
+            head = line == null ? null : read(line);
+            return head != null;
+        }
+
+        /**
+         * Closes the run's file
+         */
+        void close() {
+            try {
+                reader.close();
+            }
+            catch(IOException ignored) { }
+        }
+    }
+
+    /**
+     * Writes DVDs to a run or to the exported file
+     */
+    private final class RecordWriter implements AutoCloseable {
+        /**
+         * The file being written
+         */
+        private final BufferedWriter writer;
+        /**
+         * The format of the file
+         */
+        private final EExportFormat format;
+
+        /**
+         * Opens a run for writing
+         * @param file The run's file
+         * @throws IOException thrown when the file cannot be opened
+         */
+        RecordWriter(Path file) throws IOException {
+            this.writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+            this.format = EExportFormat.FILE;
+        }
+
+        /**
+         * Opens the exported file for writing, writing a header row for CSV
+         * @param file The exported file
+         * @param format The format of the exported file
+         * @throws IOException thrown when the file cannot be opened
+         */
+        RecordWriter(String file, EExportFormat format) throws IOException {
+            this.writer = new BufferedWriter(new FileWriter(file), IO_BUFFER_SIZE);
+            this.format = format;
+            if(format == EExportFormat.CSV) {
+                writer.write("Title,Release Date,MPAA Rating,Director,Studio,User Rating");
+                writer.newLine();
+            }
+        }
+
+        /**
+         * Writes a DVD on its own line
+         * @param dvd The DVD to write
+         * @throws IOException thrown when the file cannot be written
+         */
+        void write(DVD dvd) throws IOException {
+            if(format == EExportFormat.CSV) {
+                writeCsvField(writer, dvd.getTitle());
+                writer.write(',');
+                writeCsvField(writer, dvd.getReleaseDate());
+                writer.write(',');
+                writeCsvField(writer, dvd.getMpaaRating());
+                writer.write(',');
+                writeCsvField(writer, dvd.getDirectorName());
+                writer.write(',');
+                writeCsvField(writer, dvd.getStudio());
+                writer.write(',');
+                writeCsvField(writer, dvd.getUserRatingAndNote());
+            }
+            else {
+                writer.write(serializer.serialize(dvd));
+            }
+            writer.newLine();
+        }
+
+        /**
+         * Flushes and closes the file
+         * @throws IOException thrown when the file cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes a CSV field, quoting it if it holds a comma, quote or line break
+     * @param writer The file being written
+     * @param value The field's value
+     * @throws IOException thrown when the file cannot be written
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean quote = false;
+        for(int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if(!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
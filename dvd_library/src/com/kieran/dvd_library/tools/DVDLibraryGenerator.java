@@ -0,0 +1,406 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibrarySerializer;
+import com.kieran.dvd_library.dto.DVD;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A deterministic generator of synthetic DVD libraries with realistic field distributions.
+ *
+ * The same seed always produces the same DVDs. Studios and directors follow Zipf distributions,
+ * release years lean towards recent decades, a fraction of titles repeat an earlier title, and a
+ * fraction of notes are several kilobytes long. Records are streamed, so files of any size can be
+ * written in constant memory.
+ *
+ * Usage: DVDLibraryGenerator outputFile recordCount [seed] [--duplicate-rate R] [--long-note-rate R]
+ */
+public class DVDLibraryGenerator {
+    /**
+     * The fraction of titles repeating an earlier title when no rate is specified
+     */
+    public static final double DEFAULT_DUPLICATE_RATE = 0.005;
+    /**
+     * The fraction of notes several kilobytes long when no rate is specified
+     */
+    public static final double DEFAULT_LONG_NOTE_RATE = 0.01;
+    /**
+     * The number of distinct studios
+     */
+    private static final int STUDIO_COUNT = 400;
+    /**
+     * The number of distinct directors
+     */
+    private static final int DIRECTOR_COUNT = 40_000;
+    /**
+     * The Zipf exponent of the studio and director distributions
+     */
+    private static final double ZIPF_EXPONENT = 1.07;
+    /**
+     * The most recent release year
+     */
+    private static final int LATEST_YEAR = 2024;
+    /**
+     * The earliest release year
+     */
+    private static final int EARLIEST_YEAR = 1920;
+    /**
+     * The mean age of a DVD's release, in years
+     */
+    private static final double MEAN_AGE_YEARS = 14.0;
+    /**
+     * The first word of every title
+     */
+    private static final String[] ADJECTIVES = {
+            "Crimson", "Silent", "Broken", "Golden", "Hidden", "Last", "Midnight", "Savage", "Electric", "Frozen",
+            "Burning", "Lost", "Eternal", "Hollow", "Iron", "Velvet", "Wild", "Dark", "Bright", "Quiet",
+            "Final", "Secret", "Distant", "Rising", "Fallen", "Scarlet", "Shattered", "Wandering", "Endless", "Forgotten",
+            "Restless", "Sacred", "Stolen", "Twisted", "Blue", "Black", "White", "Red", "Neon", "Paper",
+            "Glass", "Steel", "Lucky", "Lonely", "Brave", "Dead", "Sweet", "Bitter"
+    };
+    /**
+     * The second word of every title
+     */
+    private static final String[] NOUNS = {
+            "River", "Empire", "Garden", "Horizon", "Kingdom", "Machine", "Mirror", "Ocean", "Promise", "Shadow",
+            "Storm", "Summer", "Winter", "Witness", "Road", "Heart", "Hunter", "Island", "Legacy", "Moon",
+            "Night", "Protocol", "Signal", "Sky", "Song", "Station", "Stranger", "Tide", "Valley", "Voyage",
+            "War", "Wolf", "Code", "Crown", "Dream", "Fire", "Ghost", "Harbor", "House", "Letter",
+            "Line", "Man", "Planet", "Run", "Star", "Street", "Town", "Year"
+    };
+    /**
+     * The word following "of" in every title
+     */
+    private static final String[] PLACES = {
+            "Tokyo", "Paris", "Cairo", "Berlin", "Rome", "Lagos", "Lima", "Oslo", "Seoul", "Delhi",
+            "Vienna", "Prague", "Dublin", "Havana", "Denver", "Boston", "Chicago", "Memphis", "Austin", "Phoenix",
+            "the North", "the South", "the East", "the West", "the Sea", "the Dead", "the Damned", "the Lost",
+            "the Sun", "the Moon", "Tomorrow", "Yesterday", "Heaven", "Fortune", "Glory", "Silence",
+            "Steel", "Stone", "Ash", "Dust", "Thunder", "Rain", "Snow", "Smoke", "Gold", "Blood", "Fire", "Ice"
+    };
+    /**
+     * The first word of every studio name
+     */
+    private static final String[] STUDIO_PREFIXES = {
+            "Silver", "Paramount", "Universal", "Lion", "Summit", "Orion", "Pioneer", "Atlas", "Beacon", "Cascade",
+            "Crescent", "Falcon", "Harbor", "Keystone", "Liberty", "Meridian", "Northstar", "Pinnacle", "Redwood", "Sterling"
+    };
+    /**
+     * The words following the first word of every studio name
+     */
+    private static final String[] STUDIO_SUFFIXES = {
+            "Pictures", "Studios", "Films", "Entertainment", "Media", "Productions", "Features", "Cinema",
+            "Releasing", "Works", "Motion Pictures", "Film Group", "Animation", "Classics", "Home Video", "Artists",
+            "Brothers", "International", "Independent", "Digital"
+    };
+    /**
+     * The first names of directors
+     */
+    private static final String[] FIRST_NAMES = {
+            "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+            "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Akira", "Yuki",
+            "Pedro", "Sofia", "Ingmar", "Agnes", "Satyajit", "Chantal", "Wong", "Claire", "Fritz", "Lina",
+            "Andrei", "Kathryn", "Jean", "Ava", "Spike", "Greta", "Bong", "Celine", "Hayao", "Jane"
+    };
+    /**
+     * The last names of directors
+     */
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+            "Kurosawa", "Almodovar", "Bergman", "Varda", "Ray", "Akerman", "Kar-wai", "Denis", "Lang", "Wertmuller",
+            "Tarkovsky", "Bigelow", "Renoir", "DuVernay", "Lee", "Gerwig", "Joon-ho", "Sciamma", "Miyazaki", "Campion",
+            "Scott", "Nolan", "Kubrick", "Hitchcock", "Fincher", "Coppola", "Lynch", "Herzog", "Wilder", "Ford"
+    };
+    /**
+     * The names of the months, for spelled out release dates
+     */
+    private static final String[] MONTHS = {
+            "January", "February", "March", "April", "May", "June",
+            "July", "August", "September", "October", "November", "December"
+    };
+    /**
+     * The MPAA ratings assigned
+     */
+    private static final String[] MPAA_RATINGS = { "G", "PG", "PG-13", "R", "NC-17", "NR" };
+    /**
+     * The share of DVDs given each of MPAA_RATINGS
+     */
+    private static final double[] MPAA_WEIGHTS = { 0.05, 0.17, 0.34, 0.38, 0.02, 0.04 };
+    /**
+     * The words notes are made of
+     */
+    private static final String[] NOTE_WORDS = {
+            "great", "cast", "slow", "start", "stunning", "visuals", "weak", "ending", "rewatch", "classic",
+            "overrated", "underrated", "score", "soundtrack", "plot", "twist", "pacing", "sequel", "better", "than",
+            "the", "original", "director's", "cut", "worth", "it", "family", "favorite", "borrowed", "from", "a", "friend"
+    };
+    /**
+     * The number of distinct base titles before sequel numbers are appended
+     */
+    private static final long TITLE_COMBINATIONS = (long) ADJECTIVES.length * NOUNS.length * PLACES.length;
+    /**
+     * A stride coprime with TITLE_COMBINATIONS, scattering consecutive records across the title space
+     */
+    private static final long TITLE_STRIDE = 40_507;
+
+    /**
+     * The source of every random choice
+     */
+    private final SplittableRandom random;
+    /**
+     * The fraction of titles repeating an earlier title
+     */
+    private final double duplicateRate;
+    /**
+     * The fraction of notes several kilobytes long
+     */
+    private final double longNoteRate;
+    /**
+     * The cumulative studio distribution
+     */
+    private final double[] studioCdf = zipfCdf(STUDIO_COUNT);
+    /**
+     * The cumulative director distribution
+     */
+    private final double[] directorCdf = zipfCdf(DIRECTOR_COUNT);
+    /**
+     * The number of DVDs generated so far
+     */
+    private long generated = 0;
+
+    /**
+     * Constructs a new DVDLibraryGenerator using the default duplicate and long note rates
+     * @param seed The seed of the generator
+     */
+    public DVDLibraryGenerator(long seed) {
+        this(seed, DEFAULT_DUPLICATE_RATE, DEFAULT_LONG_NOTE_RATE);
+    }
+
+    /**
+     * Constructs a new DVDLibraryGenerator
+     * @param seed The seed of the generator
+     * @param duplicateRate The fraction of titles repeating an earlier title
+     * @param longNoteRate The fraction of notes several kilobytes long
+     */
+    public DVDLibraryGenerator(long seed, double duplicateRate, double longNoteRate) {
+        this.random = new SplittableRandom(seed);
+        this.duplicateRate = duplicateRate;
+        this.longNoteRate = longNoteRate;
+    }
+
+    /**
+     * The entry point of the generator
+     * @param args The output file, the number of records, and optionally a seed and rates
+     */
+    public static void main(String[] args) {
+        if(args.length < 2) {
+            System.err.println("Usage: DVDLibraryGenerator <outputFile> <recordCount> [seed] [--duplicate-rate R] [--long-note-rate R]");
+            System.exit(1);
+        }
+        try {
+            long count = Long.parseLong(args[1]);
+            long seed = args.length > 2 && !args[2].startsWith("--") ? Long.parseLong(args[2]) : 42;
+            double duplicateRate = getDoubleOption(args, "--duplicate-rate", DEFAULT_DUPLICATE_RATE);
+            double longNoteRate = getDoubleOption(args, "--long-note-rate", DEFAULT_LONG_NOTE_RATE);
+            long start = System.nanoTime();
+            new DVDLibraryGenerator(seed, duplicateRate, longNoteRate).write(args[0], count);
+            System.out.printf("Wrote %d DVDs to %s in %.1f s%n", count, args[0], (System.nanoTime() - start) / 1e9);
+        }
+        catch(IOException | NumberFormatException e) {
+            System.err.println("Failed to generate library: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes generated DVDs to a file in the format read by DVDLibraryFileImpl
+     * @param outputFile The file to write
+     * @param count The number of DVDs to write
+     * @throws IOException thrown when the file cannot be written
+     */
+    public void write(String outputFile, long count) throws IOException {
+        DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile), 1 << 20)) {
+            for(long i = 0; i < count; i++) {
+                writer.write(serializer.serialize(nextDvd()));
+                writer.newLine();
+                if((i + 1) % 10_000_000 == 0) {
+                    System.out.printf("  %d DVDs written%n", i + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates the next DVD
+     * @return A new, mutable DVD
+     */
+    public DVD nextDvd() {
+        long index = generated++;
+        if(index > 0 && random.nextDouble() < duplicateRate) {
+            index = random.nextLong(index);
+        }
+        DVD dvd = new DVD();
+        dvd.setTitle(titleOf(index));
+        dvd.setReleaseDate(nextReleaseDate());
+        dvd.setMpaaRating(MPAA_RATINGS[weightedIndex(MPAA_WEIGHTS)]);
+        dvd.setDirectorName(directorOf(sampleCdf(directorCdf)));
+        dvd.setStudio(studioOf(sampleCdf(studioCdf)));
+        dvd.setUserRatingAndNote(nextNote());
+        return dvd;
+    }
+
+    /**
+     * Retrieves the number of DVDs generated so far
+     * @return The number of calls made to nextDvd()
+     */
+    public long getGeneratedCount() {
+        return generated;
+    }
+
+    /**
+     * Builds the unique title of a record index
+     * @param index The record index
+     * @return The title, unique to the index
+     */
+    public static String titleOf(long index) {
+        long combination = Math.floorMod(index * TITLE_STRIDE, TITLE_COMBINATIONS);
+        long sequel = index / TITLE_COMBINATIONS;
+        String title = ADJECTIVES[(int) (combination % ADJECTIVES.length)] + " " +
+                NOUNS[(int) (combination / ADJECTIVES.length % NOUNS.length)] + " of " +
+                PLACES[(int) (combination / ADJECTIVES.length / NOUNS.length)];
+        return sequel == 0 ? title : title + " " + (sequel + 1);
+    }
+
+    /**
+     * Builds the name of a studio
+     * @param rank The popularity rank of the studio
+     * @return The studio's name
+     */
+    private static String studioOf(int rank) {
+        return STUDIO_PREFIXES[rank % STUDIO_PREFIXES.length] + " " + STUDIO_SUFFIXES[rank / STUDIO_PREFIXES.length % STUDIO_SUFFIXES.length];
+    }
+
+    /**
+     * Builds the name of a director
+     * @param rank The popularity rank of the director
+     * @return The director's name
+     */
+    private static String directorOf(int rank) {
+        int initial = rank / FIRST_NAMES.length % 26;
+        return FIRST_NAMES[rank % FIRST_NAMES.length] + " " + (char) ('A' + initial) + ". " +
+                LAST_NAMES[rank / FIRST_NAMES.length / 26 % LAST_NAMES.length];
+    }
+
+    /**
+     * Generates a release date in one of the formats users type
+     * @return The release date
+     */
+    private String nextReleaseDate() {
+        int age = (int) (-Math.log(1 - random.nextDouble()) * MEAN_AGE_YEARS);
+        int year = Math.max(EARLIEST_YEAR, LATEST_YEAR - age);
+        int month = random.nextInt(12);
+        int day = random.nextInt(28) + 1;
+        double format = random.nextDouble();
+        if(format < 0.7) {
+            return String.format("%02d/%02d/%d", month + 1, day, year);
+        }
+        if(format < 0.9) {
+            return Integer.toString(year);
+        }
+        return MONTHS[month] + " " + day + ", " + year;
+    }
+
+    /**
+     * Generates a user rating/note
+     * @return The rating and note
+     */
+    private String nextNote() {
+        double kind = random.nextDouble();
+        String score;
+        if(kind < 0.85) {
+            score = (random.nextInt(10) + 1) + "/10";
+        }
+        else if(kind < 0.92) {
+            score = (random.nextInt(81) + 20) + "%";
+        }
+        else {
+            score = "";
+        }
+        int words = random.nextDouble() < longNoteRate ? 100 + random.nextInt(600) : random.nextInt(8);
+        StringBuilder note = new StringBuilder(score);
+        for(int i = 0; i < words; i++) {
+            if(note.length() > 0) {
+                note.append(' ');
+            }
+            note.append(NOTE_WORDS[random.nextInt(NOTE_WORDS.length)]);
+        }
+        // Empty fields cannot be read back from a library file
+        return note.length() == 0 ? "unrated" : note.toString();
+    }
+
+    /**
+     * Picks an index with probability proportional to its weight
+     * @param weights The weights, summing to 1
+     * @return The picked index
+     */
+    private int weightedIndex(double[] weights) {
+        double roll = random.nextDouble();
+        for(int i = 0; i < weights.length - 1; i++) {
+            roll -= weights[i];
+            if(roll < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    /**
+     * Samples a rank from a cumulative distribution
+     * @param cdf The cumulative distribution
+     * @return The sampled rank
+     */
+    private int sampleCdf(double[] cdf) {
+        int idx = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(cdf.length - 1, idx >= 0 ? idx : -idx - 1);
+    }
+
+    /**
+     * Builds the cumulative distribution of a Zipf distribution
+     * @param n The number of ranks
+     * @return The cumulative probability of each rank
+     */
+    private static double[] zipfCdf(int n) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for(int i = 0; i < n; i++) {
+            total += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cdf[i] = total;
+        }
+        for(int i = 0; i < n; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+
+    /**
+     * Retrieves the decimal value following an option on the command line
+     * @param args The command line arguments
+     * @param option The option to look for
+     * @param defaultValue The value returned if the option is missing
+     * @return The option's value, or defaultValue if the option is missing
+     */
+    private static double getDoubleOption(String[] args, String option, double defaultValue) {
+        for(int i = 0; i < args.length - 1; i++) {
+            if(args[i].equals(option)) {
+                return Double.parseDouble(args[i + 1]);
+            }
+        }
+        return defaultValue;
+    }
+}
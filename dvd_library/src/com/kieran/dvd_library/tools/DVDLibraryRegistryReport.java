@@ -0,0 +1,110 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibraryDao;
+import com.kieran.dvd_library.dao.DVDLibraryRegistry;
+import com.kieran.dvd_library.dto.DVD;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A command line tool which serves every library of a directory from one DVDLibraryRegistry and reports
+ * the memory each library holds.
+ *
+ * The tool looks up random DVDs in the libraries, favouring a few busy libraries over the rest the way
+ * traffic spreads across stores, so idle libraries are evicted whenever the heap budget is exceeded.
+ * It then prints the estimated heap of every library, the registry's totals and how often libraries were reopened.
+ *
+ * Usage: DVDLibraryRegistryReport directory [--budget-mb N] [--lookups N]
+ */
+public class DVDLibraryRegistryReport {
+    /**
+     * The heap budget used when none is given, in MiB
+     */
+    private static final int DEFAULT_BUDGET_MB = 64;
+    /**
+     * The number of lookups made when none is given
+     */
+    private static final int DEFAULT_LOOKUPS = 10_000;
+
+    /**
+     * The entry point of the report tool
+     * @param args The directory holding the libraries, and optionally the heap budget and number of lookups
+     */
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            System.err.println("Usage: DVDLibraryRegistryReport <directory> [--budget-mb N] [--lookups N]");
+            System.exit(1);
+        }
+        int budgetMb = DEFAULT_BUDGET_MB;
+        int lookups = DEFAULT_LOOKUPS;
+        try {
+            for(int i = 1; i < args.length - 1; i++) {
+                if(args[i].equals("--budget-mb")) {
+                    budgetMb = Integer.parseInt(args[++i]);
+                }
+                else if(args[i].equals("--lookups")) {
+                    lookups = Integer.parseInt(args[++i]);
+                }
+            }
+        }
+        catch(NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            System.exit(1);
+        }
+
+        DVDLibraryRegistry registry = new DVDLibraryRegistry(args[0], (long) budgetMb << 20);
+        List<String> names = registry.listLibraries();
+        if(names.isEmpty()) {
+            System.err.println("No libraries in " + args[0]);
+            System.exit(1);
+        }
+        List<DVDLibraryDao> libraries = new ArrayList<>();
+        for(String name : names) {
+            libraries.add(registry.open(name));
+        }
+
+        Random random = new Random(names.size());
+        List<List<String>> titles = new ArrayList<>();
+        for(int i = 0; i < libraries.size(); i++) {
+            titles.add(null);
+        }
+        int found = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < lookups; i++) {
+            // Squaring a uniform value favours the first libraries, so a few stay busy while the rest go idle
+            double skew = random.nextDouble();
+            int libraryIdx = (int) (skew * skew * libraries.size());
+            DVDLibraryDao library = libraries.get(libraryIdx);
+            if(titles.get(libraryIdx) == null) {
+                List<String> libraryTitles = new ArrayList<>();
+                for(DVD dvd : library.getAllDvds()) {
+                    libraryTitles.add(dvd.getTitle());
+                }
+                titles.set(libraryIdx, libraryTitles);
+            }
+            List<String> libraryTitles = titles.get(libraryIdx);
+            if(!libraryTitles.isEmpty() && library.getDvdInfo(libraryTitles.get(random.nextInt(libraryTitles.size()))) != null) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-30s %-9s %10s %14s %10s%n", "Library", "Resident", "DVDs", "Est. bytes", "Idle ms");
+        for(DVDLibraryRegistry.LibraryMemory memory : registry.getMemoryReport()) {
+            System.out.printf("%-30s %-9s %10d %14d %10d%n", memory.getName(), memory.isResident() ? "yes" : "no",
+                    memory.getDvdCount(), memory.getResidentBytes(), memory.getIdleMillis());
+        }
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("%nResident libraries: %,d of %,d budgeted bytes%n", registry.getResidentBytes(), registry.getHeapBudget());
+        System.out.printf("Shared dictionary: %,d strings, %,d bytes%n", registry.getDictionary().size(), registry.getDictionary().getMemoryBytes());
+        System.out.printf("JVM heap in use: %,d bytes%n", runtime.totalMemory() - runtime.freeMemory());
+        System.out.printf("%,d lookups (%,d found) in %.1f ms, %d evictions, %d reopens averaging %.1f ms%n",
+                lookups, found, elapsed / 1e6, registry.getEvictionCount(), registry.getReopenCount(), registry.getAverageReopenMillis());
+        if(!registry.saveAll()) {
+            System.err.println("Failed to save every library");
+            System.exit(1);
+        }
+    }
+}
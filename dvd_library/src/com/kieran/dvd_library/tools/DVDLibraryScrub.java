@@ -0,0 +1,79 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibraryChecksummedFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryScrubber;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+
+import java.io.IOException;
+
+/**
+ * A command line tool which verifies every checksum of a checksummed library file and reports the byte offset of every problem.
+ *
+ * The file is read by one thread per core unless told otherwise, and is never loaded, so a library can be scrubbed
+ * while it is open. Passing --repair then loads the library, which moves every damaged record to the quarantine file,
+ * and saves it again with fresh block trailers. The exit status is 0 if the file is clean, 2 if problems were found
+ * and 1 if the file could not be read.
+ *
+ * Usage: DVDLibraryScrub libraryFile [--threads N] [--repair]
+ */
+public class DVDLibraryScrub {
+    /**
+     * The entry point of the scrub tool
+     * @param args The library file, and optionally the number of threads and --repair
+     */
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            System.err.println("Usage: DVDLibraryScrub <libraryFile> [--threads N] [--repair]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean repair = false;
+        try {
+            for(int i = 1; i < args.length; i++) {
+                if(args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                }
+                else if(args[i].equals("--repair")) {
+                    repair = true;
+                }
+            }
+        }
+        catch(NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            System.exit(1);
+        }
+
+        DVDLibraryScrubber.Report report;
+        try {
+            report = DVDLibraryScrubber.scrub(args[0], threads);
+        }
+        catch(IOException e) {
+            System.err.println("Failed to scrub " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        for(DVDLibraryScrubber.Issue issue : report.getIssues()) {
+            System.out.println(issue);
+        }
+        System.out.printf("Scrubbed %,d records in %,d blocks (%,d bytes) with %d threads in %.1f ms, %.1f MiB/s: %s%n",
+                report.getRecords(), report.getBlocks(), report.getBytes(), report.getThreads(), report.getElapsedMillis(),
+                report.getMibPerSecond(), report.isClean() ? "clean" : report.getIssues().size() + " problems");
+        if(report.isClean() || !repair) {
+            System.exit(report.isClean() ? 0 : 2);
+        }
+
+        DVDLibraryChecksummedFileImpl dao = new DVDLibraryChecksummedFileImpl(new DVDLibraryStorage(), args[0]);
+        if(!dao.load()) {
+            System.err.println("Failed to load " + args[0]);
+            System.exit(1);
+        }
+        for(String warning : dao.getLoadWarnings()) {
+            System.out.println(warning);
+        }
+        if(!dao.save()) {
+            System.err.println("Failed to save " + args[0]);
+            System.exit(1);
+        }
+        System.out.println("Repaired " + args[0] + ", which now holds " + dao.getAllDvds().size() + " DVDs");
+    }
+}
@@ -0,0 +1,217 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryShardedDao;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A command line tool which moves a sharded library onto a different number of shards.
+ *
+ * Since shards are assigned by consistent hashing, only the DVDs whose owner changes are
+ * reported as moved, which is roughly |newCount - oldCount| / max(oldCount, newCount) of the library.
+ * Only the shards which gain or lose DVDs are rewritten, in two phases. Each is written to a temporary
+ * file first, and once all of them have been written a manifest naming them commits the rebalance.
+ * Only then is every temporary file moved over its shard. A rebalance failing before the commit leaves
+ * the old shards untouched, and one failing after it keeps the manifest and the remaining temporary
+ * files, so recover() or the next rebalance finishes the moves instead of losing the DVDs they hold.
+ */
+public class DVDLibraryShardRebalancer {
+    /**
+     * The suffix of the temporary file a shard is written to before it replaces the shard
+     */
+    private static final String TEMP_SUFFIX = ".rebalance";
+    /**
+     * The suffix of the manifest committing a rebalance, named after the base library file
+     */
+    private static final String MANIFEST_SUFFIX = ".rebalance-manifest";
+    /**
+     * Moves a temporary shard over its shard file. Tests replace it to fail between moves
+     */
+    static ShardMove shardMove = (from, to) ->
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    /**
+     * An operation moving a temporary shard over its shard file
+     */
+    interface ShardMove {
+        /**
+         * Moves a file, replacing the target
+         * @param from The temporary shard
+         * @param to The shard file
+         * @throws IOException thrown when the file cannot be moved
+         */
+        void move(Path from, Path to) throws IOException;
+    }
+
+    /**
+     * The entry point of the rebalancing tool
+     * @param args The base library file, the current shard count and the new shard count
+     */
+    public static void main(String[] args) {
+        if(args.length != 3) {
+            System.err.println("Usage: DVDLibraryShardRebalancer <libraryFile> <oldShardCount> <newShardCount>");
+            System.exit(1);
+        }
+        try {
+            int moved = rebalance(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            System.out.println("Rebalanced " + args[0] + " from " + args[1] + " to " + args[2] + " shards, moved " + moved + " DVDs");
+        }
+        catch(IOException | NumberFormatException e) {
+            System.err.println("Failed to rebalance: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Moves a sharded library onto a different number of shards.
+     * Shard files which are no longer used are deleted. An interrupted rebalance of the same library
+     * is finished first
+     * @param baseFile The library file the shard files are named after
+     * @param oldShardCount The number of shards the library is currently split across
+     * @param newShardCount The number of shards to split the library across
+     * @return The number of DVDs which moved to a different shard
+     * @throws IOException thrown when the shards cannot be loaded or saved, or an interrupted rebalance
+     *                     left the library on a number of shards other than oldShardCount
+     */
+    public static int rebalance(String baseFile, int oldShardCount, int newShardCount) throws IOException {
+        int recoveredShardCount = recover(baseFile);
+        if(recoveredShardCount >= 0 && recoveredShardCount != oldShardCount) {
+            throw new IOException("An interrupted rebalance left " + baseFile + " on " + recoveredShardCount + " shards");
+        }
+        List<List<DVD>> newShards = new ArrayList<>();
+        boolean[] changed = new boolean[newShardCount];
+        int moved = 0;
+        // The new library is only used to locate titles on the new shards, nothing is added to it
+        try(DVDLibraryShardedDao oldLibrary = DVDLibraryShardedDao.openFiles(baseFile, oldShardCount);
+            DVDLibraryShardedDao newLibrary = DVDLibraryShardedDao.openFiles(baseFile, newShardCount)) {
+            if(!oldLibrary.load()) {
+                throw new IOException("Failed to load the existing shards of " + baseFile);
+            }
+            for(int i = 0; i < newShardCount; i++) {
+                newShards.add(new ArrayList<>());
+                changed[i] = i >= oldShardCount;
+            }
+            for(DVD dvd : oldLibrary.getAllDvds()) {
+                int oldIdx = oldLibrary.getShardIndex(dvd.getTitle());
+                int newIdx = newLibrary.getShardIndex(dvd.getTitle());
+                if(oldIdx != newIdx) {
+                    moved++;
+                    changed[newIdx] = true;
+                    if(oldIdx < newShardCount) {
+                        changed[oldIdx] = true;
+                    }
+                }
+                newShards.get(newIdx).add(dvd);
+            }
+        }
+
+        // Phase one: write every changed shard next to the shard it replaces
+        List<Integer> rewritten = new ArrayList<>();
+        boolean committed = false;
+        try {
+            for(int i = 0; i < newShardCount; i++) {
+                if(!changed[i]) {
+                    continue;
+                }
+                rewritten.add(i);
+                writeShard(DVDLibraryShardedDao.getShardFileName(baseFile, i) + TEMP_SUFFIX, newShards.get(i));
+            }
+            writeManifest(baseFile, oldShardCount, newShardCount, rewritten);
+            committed = true;
+        }
+        finally {
+            if(!committed) {
+                Files.deleteIfExists(Paths.get(baseFile + MANIFEST_SUFFIX + TEMP_SUFFIX));
+                for(int shardIdx : rewritten) {
+                    Files.deleteIfExists(Paths.get(DVDLibraryShardedDao.getShardFileName(baseFile, shardIdx) + TEMP_SUFFIX));
+                }
+            }
+        }
+        // Phase two: the manifest lets recover() finish these moves if any of them fails
+        recover(baseFile);
+        return moved;
+    }
+
+    /**
+     * Finishes a rebalance which was committed but not completed, moving its remaining temporary shards
+     * into place and deleting the shard files it no longer uses
+     * @param baseFile The library file the shard files are named after
+     * @return The number of shards the library is split across after recovering, or -1 if no rebalance was pending
+     * @throws IOException thrown when a temporary shard cannot be moved or an unused shard cannot be deleted,
+     *                     in which case the manifest is kept so recovering can be retried
+     */
+    public static int recover(String baseFile) throws IOException {
+        Path manifest = Paths.get(baseFile + MANIFEST_SUFFIX);
+        if(!Files.exists(manifest)) {
+            return -1;
+        }
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        String[] counts = lines.get(0).split(" ");
+        int oldShardCount = Integer.parseInt(counts[0]);
+        int newShardCount = Integer.parseInt(counts[1]);
+        for(String line : lines.subList(1, lines.size())) {
+            String shardFile = DVDLibraryShardedDao.getShardFileName(baseFile, Integer.parseInt(line));
+            Path temp = Paths.get(shardFile + TEMP_SUFFIX);
+            // A missing temporary shard was already moved into place
+            if(Files.exists(temp)) {
+                shardMove.move(temp, Paths.get(shardFile));
+            }
+        }
+        for(int i = newShardCount; i < oldShardCount; i++) {
+            File unused = new File(DVDLibraryShardedDao.getShardFileName(baseFile, i));
+            if(unused.exists() && !unused.delete()) {
+                throw new IOException("Failed to delete unused shard " + unused);
+            }
+        }
+        Files.delete(manifest);
+        return newShardCount;
+    }
+
+    /**
+     * Commits a rebalance by atomically creating its manifest
+     * @param baseFile The library file the shard files are named after
+     * @param oldShardCount The number of shards the library is split across before the rebalance
+     * @param newShardCount The number of shards the library is split across after the rebalance
+     * @param rewritten The indexes of the shards written to temporary files
+     * @throws IOException thrown when the manifest cannot be written
+     */
+    private static void writeManifest(String baseFile, int oldShardCount, int newShardCount, List<Integer> rewritten) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(oldShardCount + " " + newShardCount);
+        for(int shardIdx : rewritten) {
+            lines.add(Integer.toString(shardIdx));
+        }
+        Path manifest = Paths.get(baseFile + MANIFEST_SUFFIX);
+        Path temp = Paths.get(baseFile + MANIFEST_SUFFIX + TEMP_SUFFIX);
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the DVDs of one shard to a file
+     * @param file The file to write
+     * @param dvds The DVDs owned by the shard
+     * @throws IOException thrown when the file cannot be written
+     */
+    private static void writeShard(String file, List<DVD> dvds) throws IOException {
+        DVDLibraryStorage storage = new DVDLibraryStorage();
+        storage.presize(dvds.size());
+        for(DVD dvd : dvds) {
+            storage.addDvd(dvd);
+        }
+        if(!new DVDLibraryFileImpl(storage, file).save()) {
+            throw new IOException("Failed to write the new shard " + file);
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibraryDao;
+import com.kieran.dvd_library.dao.DVDLibraryFastStartFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryNormalizedStorage;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dao.DVDLibraryVersionedStorage;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+
+/**
+ * A long running driver applying a mixed add, get, edit, remove and list workload to a DVDLibraryDao.
+ *
+ * Every interval the driver reports throughput, latency percentiles per operation and heap usage,
+ * both as currently used and as left after the most recent garbage collection, so steady heap growth
+ * shows up as a rising after-GC figure. The library is never saved, so the library file is left untouched.
+ *
+ * Usage: DVDLibrarySoakDriver libraryFile [--duration SECONDS] [--interval SECONDS] [--seed N]
+ *        [--initial N] [--storage plain|versioned|normalized] [--fast-start]
+ */
+public class DVDLibrarySoakDriver {
+    /**
+     * The share of operations which look a DVD up, in percent
+     */
+    private static final int GET_PERCENT = 60;
+    /**
+     * The share of operations which edit a DVD, in percent
+     */
+    private static final int EDIT_PERCENT = 15;
+    /**
+     * The share of operations which list the library, in percent
+     */
+    private static final int LIST_PERCENT = 1;
+    /**
+     * The share of gets which look up a title not in the library, in percent
+     */
+    private static final int MISS_PERCENT = 5;
+    /**
+     * The share of edits which rename the DVD, in percent
+     */
+    private static final int RENAME_PERCENT = 10;
+    /**
+     * The number of DVDs generated into an empty library when no count is specified
+     */
+    private static final int DEFAULT_INITIAL_DVDS = 100_000;
+
+    /**
+     * The DAO under test
+     */
+    private final DVDLibraryDao dao;
+    /**
+     * The generator of added DVDs
+     */
+    private final DVDLibraryGenerator generator;
+    /**
+     * The source of every workload decision
+     */
+    private final SplittableRandom random;
+    /**
+     * The titles currently in the library
+     */
+    private final ArrayList<String> liveTitles = new ArrayList<>();
+    /**
+     * The position of every live title in liveTitles
+     */
+    private final HashMap<String, Integer> livePositions = new HashMap<>();
+    /**
+     * The library size adds and removes steer towards
+     */
+    private int targetSize;
+
+    /**
+     * Constructs a new DVDLibrarySoakDriver
+     * @param dao The loaded DAO under test
+     * @param seed The seed of the workload
+     */
+    public DVDLibrarySoakDriver(DVDLibraryDao dao, long seed) {
+        this.dao = dao;
+        this.generator = new DVDLibraryGenerator(seed);
+        this.random = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        for(DVD dvd : dao.getAllDvds()) {
+            track(dvd.getTitle());
+        }
+        this.targetSize = liveTitles.size();
+    }
+
+    /**
+     * The entry point of the soak driver
+     * @param args The library file followed by options
+     */
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            System.err.println("Usage: DVDLibrarySoakDriver <libraryFile> [--duration SECONDS] [--interval SECONDS] [--seed N] " +
+                    "[--initial N] [--storage plain|versioned|normalized] [--fast-start]");
+            System.exit(1);
+        }
+        long durationSeconds = Long.parseLong(getOption(args, "--duration", "3600"));
+        long intervalSeconds = Long.parseLong(getOption(args, "--interval", "10"));
+        long seed = Long.parseLong(getOption(args, "--seed", "42"));
+        int initial = Integer.parseInt(getOption(args, "--initial", Integer.toString(DEFAULT_INITIAL_DVDS)));
+
+        DVDLibraryDao dao = createDao(args);
+        long loadStart = System.nanoTime();
+        if(!dao.load()) {
+            System.err.println("Failed to load " + args[0]);
+            System.exit(1);
+        }
+        if(dao instanceof DVDLibraryFastStartFileImpl) {
+            ((DVDLibraryFastStartFileImpl) dao).awaitLoaded();
+        }
+        System.out.printf("Loaded %s in %d ms%n", args[0], (System.nanoTime() - loadStart) / 1_000_000);
+
+        DVDLibrarySoakDriver driver = new DVDLibrarySoakDriver(dao, seed);
+        if(driver.liveTitles.isEmpty()) {
+            driver.populate(initial);
+            System.out.printf("Library was empty, generated %d DVDs%n", driver.liveTitles.size());
+        }
+        driver.run(durationSeconds * 1_000_000_000L, intervalSeconds * 1_000_000_000L);
+    }
+
+    /**
+     * Adds generated DVDs to the library and makes its new size the target size
+     * @param count The number of DVDs to generate
+     */
+    public void populate(int count) {
+        for(int i = 0; i < count; i++) {
+            DVD dvd = generator.nextDvd();
+            dao.addDvd(dvd);
+            track(dvd.getTitle());
+        }
+        targetSize = liveTitles.size();
+    }
+
+    /**
+     * Runs the workload, printing a report every interval and a summary at the end
+     * @param durationNanos How long to run the workload for
+     * @param intervalNanos How often to report
+     */
+    public void run(long durationNanos, long intervalNanos) {
+        EOperation[] operations = EOperation.values();
+        LatencyHistogram[] interval = new LatencyHistogram[operations.length];
+        LatencyHistogram[] total = new LatencyHistogram[operations.length];
+        for(int i = 0; i < operations.length; i++) {
+            interval[i] = new LatencyHistogram();
+            total[i] = new LatencyHistogram();
+        }
+        // Collect once up front, so heap growth is measured against the loaded library
+        System.gc();
+        long startHeap = heapAfterGc();
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        long nextReport = start + intervalNanos;
+        long intervalStart = start;
+        printHeader();
+        while(true) {
+            EOperation operation = nextOperation();
+            long opStart = System.nanoTime();
+            execute(operation);
+            long now = System.nanoTime();
+            interval[operation.ordinal()].record(now - opStart);
+            total[operation.ordinal()].record(now - opStart);
+            if(now >= nextReport || now >= end) {
+                printReport((now - start) / 1_000_000_000L, now - intervalStart, interval, startHeap);
+                for(LatencyHistogram histogram : interval) {
+                    histogram.reset();
+                }
+                intervalStart = now;
+                nextReport = now + intervalNanos;
+                if(now >= end) {
+                    break;
+                }
+            }
+        }
+        System.out.println();
+        System.out.println("Summary over " + (System.nanoTime() - start) / 1_000_000_000L + " s:");
+        printHeader();
+        printReport((System.nanoTime() - start) / 1_000_000_000L, System.nanoTime() - start, total, startHeap);
+    }
+
+    /**
+     * Picks the next operation of the workload
+     * @return The operation to execute
+     */
+    private EOperation nextOperation() {
+        int roll = random.nextInt(100);
+        if(roll < GET_PERCENT) {
+            return EOperation.GET;
+        }
+        if(roll < GET_PERCENT + EDIT_PERCENT) {
+            return EOperation.EDIT;
+        }
+        if(roll < GET_PERCENT + EDIT_PERCENT + LIST_PERCENT) {
+            return EOperation.LIST;
+        }
+        // Steer the library towards its target size, so a long run does not grow without bound
+        return liveTitles.size() < targetSize || liveTitles.isEmpty() ? EOperation.ADD : EOperation.REMOVE;
+    }
+
+    /**
+     * Executes a single operation against the DAO
+     * @param operation The operation to execute
+     */
+    private void execute(EOperation operation) {
+        switch(operation) {
+            case GET:
+                String title = random.nextInt(100) < MISS_PERCENT || liveTitles.isEmpty()
+                        ? "Missing Title " + random.nextInt()
+                        : randomLiveTitle();
+                dao.getDvdInfo(title);
+                break;
+            case ADD:
+                DVD dvd = generator.nextDvd();
+                dao.addDvd(dvd);
+                track(dvd.getTitle());
+                break;
+            case EDIT:
+                if(liveTitles.isEmpty()) {
+                    break;
+                }
+                String oldTitle = randomLiveTitle();
+                DVDPatch patch = new DVDPatch();
+                patch.set(EDVDField.USER_RATING_AND_NOTE, (random.nextInt(10) + 1) + "/10 rewatched");
+                String newTitle = null;
+                if(random.nextInt(100) < RENAME_PERCENT) {
+                    newTitle = DVDLibraryGenerator.titleOf(random.nextLong(Long.MAX_VALUE / 2));
+                    if(livePositions.containsKey(newTitle)) {
+                        newTitle = null;
+                    }
+                    else {
+                        patch.set(EDVDField.TITLE, newTitle);
+                    }
+                }
+                if(dao.updateDvd(oldTitle, patch) && newTitle != null) {
+                    untrack(oldTitle);
+                    track(newTitle);
+                }
+                break;
+            case REMOVE:
+                String removed = randomLiveTitle();
+                dao.removeDvd(removed);
+                untrack(removed);
+                break;
+            case LIST:
+                int count = 0;
+                for(DVD ignored : dao.getAllDvds()) {
+                    count++;
+                }
+                if(count < 0) {
+                    System.out.println();
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException("Unrecognized operation");
+        }
+    }
+
+    /**
+     * Picks a title uniformly from the library
+     * @return A live title
+     */
+    private String randomLiveTitle() {
+        return liveTitles.get(random.nextInt(liveTitles.size()));
+    }
+
+    /**
+     * Records that a title is in the library
+     * @param title The title
+     */
+    private void track(String title) {
+        if(!livePositions.containsKey(title)) {
+            livePositions.put(title, liveTitles.size());
+            liveTitles.add(title);
+        }
+    }
+
+    /**
+     * Records that a title left the library, moving the last live title into its position
+     * @param title The title
+     */
+    private void untrack(String title) {
+        Integer position = livePositions.remove(title);
+        if(position == null) {
+            return;
+        }
+        String last = liveTitles.remove(liveTitles.size() - 1);
+        if(position < liveTitles.size()) {
+            liveTitles.set(position, last);
+            livePositions.put(last, position);
+        }
+    }
+
+    /**
+     * Prints the column headings of a report
+     */
+    private static void printHeader() {
+        System.out.printf("%7s %7s %10s  %-54s %9s %9s%n", "time(s)", "size", "ops/s",
+                "p50 / p99 / p99.9 / max (us) per operation", "heap(MB)", "+gc(MB)");
+    }
+
+    /**
+     * Prints one report line per operation
+     * @param elapsedSeconds The seconds since the run started
+     * @param periodNanos The length of the reported period
+     * @param histograms The latencies of each operation over the period
+     * @param startHeap The heap left after garbage collection when the run started
+     */
+    private void printReport(long elapsedSeconds, long periodNanos, LatencyHistogram[] histograms, long startHeap) {
+        long ops = 0;
+        for(LatencyHistogram histogram : histograms) {
+            ops += histogram.getCount();
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long afterGc = heapAfterGc();
+        boolean first = true;
+        for(EOperation operation : EOperation.values()) {
+            LatencyHistogram histogram = histograms[operation.ordinal()];
+            String latencies = String.format("%-6s %7.1f / %7.1f / %8.1f / %8.1f", operation,
+                    histogram.percentile(0.5) / 1e3, histogram.percentile(0.99) / 1e3,
+                    histogram.percentile(0.999) / 1e3, histogram.getMax() / 1e3);
+            if(first) {
+                System.out.printf("%7d %7d %10.0f  %-54s %9d %+9d%n", elapsedSeconds, liveTitles.size(),
+                        ops / (periodNanos / 1e9), latencies, heap.getUsed() >> 20, (afterGc - startHeap) >> 20);
+                first = false;
+            }
+            else {
+                System.out.printf("%7s %7s %10s  %-54s%n", "", "", "", latencies);
+            }
+        }
+    }
+
+    /**
+     * Sums the heap left in use by every heap pool after its most recent garbage collection
+     * @return The heap in use after the most recent collections, in bytes
+     */
+    private static long heapAfterGc() {
+        long used = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if(pool.getType() == MemoryType.HEAP && usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Creates the DAO described by the command line arguments
+     * @param args The command line arguments
+     * @return The created DAO
+     */
+    private static DVDLibraryDao createDao(String[] args) {
+        String storageName = getOption(args, "--storage", "plain");
+        DVDLibraryStorage storage;
+        switch(storageName) {
+            case "versioned":
+                storage = new DVDLibraryVersionedStorage();
+                break;
+            case "normalized":
+                storage = new DVDLibraryNormalizedStorage();
+                break;
+            default:
+                storage = new DVDLibraryStorage();
+        }
+        for(String arg : args) {
+            if(arg.equals("--fast-start")) {
+                return new DVDLibraryFastStartFileImpl(storage, args[0]);
+            }
+        }
+        return new DVDLibraryFileImpl(storage, args[0]);
+    }
+
+    /**
+     * Retrieves the value following an option on the command line
+     * @param args The command line arguments
+     * @param option The option to look for
+     * @param defaultValue The value returned if the option is missing
+     * @return The option's value, or defaultValue if the option is missing
+     */
+    private static String getOption(String[] args, String option, String defaultValue) {
+        for(int i = 0; i < args.length - 1; i++) {
+            if(args[i].equals(option)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * An enumerated value representing an operation of the workload
+     */
+    private enum EOperation {
+        /** Look a DVD up by title */
+        GET,
+        /** Add a generated DVD */
+        ADD,
+        /** Patch a DVD's note, sometimes renaming it */
+        EDIT,
+        /** Remove a DVD */
+        REMOVE,
+        /** Iterate every DVD in the library */
+        LIST,
+    }
+
+    /**
+     * A log-linear histogram of latencies with a relative error of about 3%
+     */
+    private static final class LatencyHistogram {
+        /**
+         * The number of buckets per power of two
+         */
+        private static final int SUB_BUCKETS = 32;
+        /**
+         * log2(SUB_BUCKETS)
+         */
+        private static final int SUB_BUCKET_BITS = 5;
+        /**
+         * The number of recordings in each bucket
+         */
+        private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+        /**
+         * The number of recordings
+         */
+        private long count = 0;
+        /**
+         * The largest recording
+         */
+        private long max = 0;
+
+        /**
+         * Records a latency
+         * @param nanos The latency in nanoseconds
+         */
+        void record(long nanos) {
+            counts[bucketOf(Math.max(0, nanos))]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        /**
+         * Retrieves the number of recordings
+         * @return The number of recordings
+         */
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * Retrieves the largest recording
+         * @return The largest latency recorded, in nanoseconds
+         */
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * Finds the latency below which a fraction of the recordings fall
+         * @param fraction The fraction, in the range (0, 1]
+         * @return The latency in nanoseconds, or 0 if nothing was recorded
+         */
+        long percentile(double fraction) {
+            long target = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for(int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if(seen >= target && counts[i] > 0) {
+                    return Math.min(max, valueOf(i));
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Forgets every recording
+         */
+        void reset() {
+            Arrays.fill(counts, 0);
+            count = 0;
+            max = 0;
+        }
+
+        /**
+         * Finds the bucket of a latency
+         * @param value The latency
+         * @return The bucket's index
+         */
+        private static int bucketOf(long value) {
+            if(value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        }
+
+        /**
+         * Finds the largest latency held by a bucket
+         * @param bucket The bucket's index
+         * @return The latency
+         */
+        private static long valueOf(int bucket) {
+            if(bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibraryDao;
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryMerklePeer;
+import com.kieran.dvd_library.dao.DVDLibraryMerkleTree;
+import com.kieran.dvd_library.dao.DVDLibraryRemoteDao;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A command line tool which makes one library file a mirror of another.
+ *
+ * The two libraries are compared through their Merkle trees, so only the buckets whose hashes
+ * differ are read from either side, and only the DVDs which differ within those buckets are
+ * written to the target. Either library can be served by its own local process, in which case
+ * only hashes and the DVDs of differing buckets cross the loopback connection.
+ *
+ * Usage: DVDLibrarySync sourceFile targetFile [--source-process] [--target-process] [--dry-run]
+ */
+public class DVDLibrarySync {
+    /**
+     * The source of truth
+     */
+    private final DVDLibraryDao source;
+    /**
+     * The tree summarizing the source
+     */
+    private final DVDLibraryMerklePeer sourcePeer;
+    /**
+     * The library made to mirror the source
+     */
+    private final DVDLibraryDao target;
+    /**
+     * The tree summarizing the target
+     */
+    private final DVDLibraryMerklePeer targetPeer;
+    /**
+     * The number of buckets which differed in the last sync
+     */
+    private int differingBuckets = 0;
+    /**
+     * The number of DVDs read from both libraries in the last sync
+     */
+    private int transferredCount = 0;
+    /**
+     * The number of DVDs added to the target in the last sync
+     */
+    private int addedCount = 0;
+    /**
+     * The number of DVDs replaced in the target in the last sync
+     */
+    private int updatedCount = 0;
+    /**
+     * The number of DVDs removed from the target in the last sync
+     */
+    private int removedCount = 0;
+
+    /**
+     * Constructs a new DVDLibrarySync between two loaded libraries
+     * @param source The source of truth
+     * @param sourcePeer The Merkle tree summarizing the source
+     * @param target The library made to mirror the source
+     * @param targetPeer The Merkle tree summarizing the target
+     */
+    public DVDLibrarySync(DVDLibraryDao source, DVDLibraryMerklePeer sourcePeer, DVDLibraryDao target, DVDLibraryMerklePeer targetPeer) {
+        this.source = source;
+        this.sourcePeer = sourcePeer;
+        this.target = target;
+        this.targetPeer = targetPeer;
+    }
+
+    /**
+     * The entry point of the sync tool
+     * @param args The source and target files, and optionally which of them are served by their own process
+     */
+    public static void main(String[] args) {
+        if(args.length < 2) {
+            System.err.println("Usage: DVDLibrarySync <sourceFile> <targetFile> [--source-process] [--target-process] [--dry-run]");
+            System.exit(1);
+        }
+        boolean sourceProcess = false;
+        boolean targetProcess = false;
+        boolean dryRun = false;
+        for(String arg : args) {
+            sourceProcess |= arg.equals("--source-process");
+            targetProcess |= arg.equals("--target-process");
+            dryRun |= arg.equals("--dry-run");
+        }
+        DVDLibraryDao source = null;
+        DVDLibraryDao target = null;
+        try {
+            source = sourceProcess ? DVDLibraryRemoteDao.launch(args[0]) : new DVDLibraryFileImpl(new DVDLibraryStorage(), args[0]);
+            DVDLibraryMerklePeer sourcePeer = sourceProcess ? (DVDLibraryMerklePeer) source : DVDLibraryMerkleTree.attach(source);
+            target = targetProcess ? DVDLibraryRemoteDao.launch(args[1]) : new DVDLibraryFileImpl(new DVDLibraryStorage(), args[1]);
+            DVDLibraryMerklePeer targetPeer = targetProcess ? (DVDLibraryMerklePeer) target : DVDLibraryMerkleTree.attach(target);
+            if(!source.load()) {
+                throw new IOException("Failed to load " + args[0]);
+            }
+            if(!target.load()) {
+                throw new IOException("Failed to load " + args[1]);
+            }
+            DVDLibrarySync sync = new DVDLibrarySync(source, sourcePeer, target, targetPeer);
+            long start = System.nanoTime();
+            sync.sync(dryRun);
+            if(!dryRun && sync.getChangedCount() > 0 && !target.save()) {
+                throw new IOException("Failed to save " + args[1]);
+            }
+            System.out.printf("%s %d buckets differ, read %d DVDs: %d added, %d updated, %d removed in %.1f ms%n",
+                    dryRun ? "Dry run:" : "Synced:", sync.getDifferingBuckets(), sync.getTransferredCount(),
+                    sync.getAddedCount(), sync.getUpdatedCount(), sync.getRemovedCount(), (System.nanoTime() - start) / 1e6);
+        }
+        catch(IOException | RuntimeException e) {
+            System.err.println("Failed to sync: " + e.getMessage());
+            System.exit(1);
+        }
+        finally {
+            if(source instanceof DVDLibraryRemoteDao) {
+                ((DVDLibraryRemoteDao) source).close();
+            }
+            if(target instanceof DVDLibraryRemoteDao) {
+                ((DVDLibraryRemoteDao) target).close();
+            }
+        }
+    }
+
+    /**
+     * Makes the target mirror the source, without saving the target
+     * @param dryRun True to only count the differences without changing the target
+     * @return True if the libraries were already identical, and false otherwise
+     */
+    public boolean sync(boolean dryRun) {
+        differingBuckets = 0;
+        transferredCount = 0;
+        addedCount = 0;
+        updatedCount = 0;
+        removedCount = 0;
+        int[] buckets = DVDLibraryMerkleTree.diff(sourcePeer, targetPeer);
+        differingBuckets = buckets.length;
+        if(buckets.length == 0) {
+            return true;
+        }
+        List<DVD> sourceDvds = sourcePeer.getMerkleBuckets(buckets);
+        List<DVD> targetDvds = targetPeer.getMerkleBuckets(buckets);
+        transferredCount = sourceDvds.size() + targetDvds.size();
+
+        HashMap<String, DVD> targetByTitle = new HashMap<>();
+        for(DVD dvd : targetDvds) {
+            targetByTitle.put(dvd.getTitle(), dvd);
+        }
+        for(DVD dvd : sourceDvds) {
+            DVD existing = targetByTitle.remove(dvd.getTitle());
+            if(existing == null) {
+                addedCount++;
+            }
+            else if(!DVDPatch.between(existing, dvd).isEmpty()) {
+                updatedCount++;
+            }
+            else {
+                continue;
+            }
+            if(!dryRun) {
+                target.addDvd(dvd);
+            }
+        }
+        for(String title : targetByTitle.keySet()) {
+            removedCount++;
+            if(!dryRun) {
+                target.removeDvd(title);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the number of buckets which differed in the last sync
+     * @return The number of differing Merkle tree buckets
+     */
+    public int getDifferingBuckets() {
+        return differingBuckets;
+    }
+
+    /**
+     * Retrieves the number of DVDs read in the last sync
+     * @return The number of DVDs read from the differing buckets of both libraries
+     */
+    public int getTransferredCount() {
+        return transferredCount;
+    }
+
+    /**
+     * Retrieves the number of DVDs added to the target in the last sync
+     * @return The number of source DVDs missing from the target
+     */
+    public int getAddedCount() {
+        return addedCount;
+    }
+
+    /**
+     * Retrieves the number of DVDs replaced in the target in the last sync
+     * @return The number of DVDs whose fields differed between the libraries
+     */
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    /**
+     * Retrieves the number of DVDs removed from the target in the last sync
+     * @return The number of target DVDs missing from the source
+     */
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    /**
+     * Retrieves the number of changes made to the target in the last sync
+     * @return The number of DVDs added, updated and removed
+     */
+    public int getChangedCount() {
+        return addedCount + updatedCount + removedCount;
+    }
+}
@@ -0,0 +1,11 @@
+package com.kieran.dvd_library.tools;
+
+/**
+ * An enumerated value representing the format of an exported library
+ */
+public enum EExportFormat {
+    /** The line format read by DVDLibraryFileImpl */
+    FILE,
+    /** Comma separated values with a header row */
+    CSV,
+}
@@ -0,0 +1,68 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.util.DVDFieldParser;
+
+/**
+ * An enumerated value representing the order of an exported library.
+ *
+ * Each key orders DVDs by a numeric rank first and a case-insensitive text second,
+ * with DVDs missing the key's value sorted last. Ties are broken by title
+ */
+public enum ESortKey {
+    /** Order by title */
+    TITLE {
+        @Override
+        String text(DVD dvd) {
+            return dvd.getTitle();
+        }
+    },
+    /** Order by release date, oldest first */
+    RELEASE_DATE {
+        @Override
+        long rank(DVD dvd) {
+            long epochDay = DVDFieldParser.parseEpochDay(dvd.getReleaseDate());
+            return epochDay == DVDFieldParser.UNKNOWN_DATE ? Long.MAX_VALUE : epochDay;
+        }
+    },
+    /** Order by studio name */
+    STUDIO {
+        @Override
+        String text(DVD dvd) {
+            return dvd.getStudio();
+        }
+    },
+    /** Order by director's name */
+    DIRECTOR {
+        @Override
+        String text(DVD dvd) {
+            return dvd.getDirectorName();
+        }
+    },
+    /** Order by user score, lowest first */
+    USER_SCORE {
+        @Override
+        long rank(DVD dvd) {
+            double score = DVDFieldParser.parseUserScore(dvd.getUserRatingAndNote());
+            return Double.isNaN(score) ? Long.MAX_VALUE : Math.round(score * 100);
+        }
+    };
+
+    /**
+     * Retrieves the numeric part of a DVD's sort key
+     * @param dvd The DVD
+     * @return The DVD's rank, or Long.MAX_VALUE if the DVD is missing the key's value
+     */
+    long rank(DVD dvd) {
+        return 0;
+    }
+
+    /**
+     * Retrieves the text part of a DVD's sort key
+     * @param dvd The DVD
+     * @return The text compared case-insensitively after the rank
+     */
+    String text(DVD dvd) {
+        return "";
+    }
+}
@@ -0,0 +1,11 @@
+package com.kieran.dvd_library.ui;
+
+/**
+ * An enumerated value representing what a bulk edit does to the DVDs it selects
+ */
+public enum EBulkAction {
+    /** Set a field of every selected DVD */
+    UPDATE,
+    /** Remove every selected DVD */
+    DELETE,
+}
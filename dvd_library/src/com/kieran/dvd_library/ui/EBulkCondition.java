@@ -0,0 +1,13 @@
+package com.kieran.dvd_library.ui;
+
+/**
+ * An enumerated value representing how a bulk edit selects the DVDs it changes
+ */
+public enum EBulkCondition {
+    /** DVDs whose field equals a value */
+    FIELD_EQUALS,
+    /** DVDs released within a range of years */
+    RELEASED_BETWEEN,
+    /** DVDs whose user score is at least a minimum */
+    SCORE_AT_LEAST,
+}
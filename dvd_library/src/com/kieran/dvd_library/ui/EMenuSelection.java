@@ -14,6 +14,12 @@ public enum EMenuSelection {
     LIST_ALL,
     /** Retrieve a specific DVD by title */
     GET,
+    /** Import DVDs from a library file */
+    IMPORT,
+    /** Update or remove every DVD matching a condition */
+    BULK_EDIT,
+    /** Display library statistics */
+    STATISTICS,
     /** Exit the application */
     EXIT,
     /** A noop selection */
@@ -21,7 +21,8 @@ public interface UserIO {
      *
      * @param msg The message to prompt the user with. If msg is null, the parameter is ignored
      * @return The String inputted by the user
-     * @throws UserIOException thrown when an error occurs retrieving the user's input
+     * @throws UserIOException thrown when an error occurs retrieving the user's input, as a UserIOEndOfInputException
+     *                         once the input has ended
      */
     String getInputString(String msg) throws UserIOException;
     /**
@@ -31,14 +32,16 @@ public interface UserIO {
      * @param validateFnc The function to use when validating user input. Upon validateFnc returning false,
      *                    User input is asked for again until validateFnc returns true
      * @return The String inputted by the user
-     * @throws UserIOException thrown when an error occurs retrieving the user's input
+     * @throws UserIOException thrown when an error occurs retrieving the user's input, as a UserIOEndOfInputException
+     *                         once the input has ended
      */
     String getInputString(String msg, Predicate<String> validateFnc) throws UserIOException;
     /**
      * Stalls the application until an input number has been received.
      * @param msg The message to prompt the user with. If msg is null, the parameter is ignored
      * @return The resulting inputted number
-     * @throws UserIOException thrown when an error occurs retrieving the user's input
+     * @throws UserIOException thrown when an error occurs retrieving the user's input, as a UserIOEndOfInputException
+     *                         once the input has ended
      */
     Number getInputNumber(String msg) throws UserIOException;
     /**
@@ -47,7 +50,14 @@ public interface UserIO {
      * @param validateFnc The function to use when validating user input. Upon validateFnc returning false,
      *                    User input is asked for again until validateFnc returns true
      * @return The resulting inputted number
-     * @throws UserIOException thrown when an error occurs retrieving the user's input
+     * @throws UserIOException thrown when an error occurs retrieving the user's input, as a UserIOEndOfInputException
+     *                         once the input has ended
      */
     Number getInputNumber(String msg, Predicate<Number> validateFnc) throws UserIOException;
+
+    /**
+     * Writes any buffered output. Implementations which display messages immediately need not override this
+     * @throws UserIOException thrown when an error occurs writing the buffered output
+     */
+    default void flush() throws UserIOException { }
 }
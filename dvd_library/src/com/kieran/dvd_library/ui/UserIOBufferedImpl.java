@@ -0,0 +1,221 @@
+package com.kieran.dvd_library.ui;
+
+import com.kieran.dvd_library.util.ConversionOp;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.function.Predicate;
+
+/**
+ * A high throughput implementation of the UserIO interface.
+ *
+ * Input is read through a single long-lived buffered reader, and output is collected in a
+ * large buffer which is only written when it fills, when input is requested, or when flush()
+ * is called, so a multi-megabyte listing is written in a handful of system calls.
+ * Instances are not thread safe.
+ */
+public class UserIOBufferedImpl implements UserIO {
+    /**
+     * The default size of the output buffer, in characters
+     */
+    public static final int DEFAULT_OUTPUT_BUFFER_SIZE = 1 << 20;
+    /**
+     * The size of the input buffer, in characters
+     */
+    private static final int INPUT_BUFFER_SIZE = 1 << 16;
+    /**
+     * The reader all input is read from
+     */
+    private final BufferedReader reader;
+    /**
+     * The writer all output is collected in. Both the characters and their encoded bytes are
+     * buffered, so the output stream is only written when a buffer fills or on a flush
+     */
+    private final BufferedWriter writer;
+    /**
+     * The line separator appended to each message
+     */
+    private final String lineSeparator = System.lineSeparator();
+    /**
+     * The parser used for every number input. NumberFormat is not thread safe, which is fine
+     * as this class is not either
+     */
+    private final NumberFormat numberFormat = NumberFormat.getInstance();
+
+    /**
+     * Constructs a new UserIOBufferedImpl over the process' standard input and output.
+     * The standard streams are used directly, bypassing the line flushing of System.out
+     */
+    public UserIOBufferedImpl() {
+        this(new FileInputStream(FileDescriptor.in), new FileOutputStream(FileDescriptor.out), DEFAULT_OUTPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a new UserIOBufferedImpl over the given streams, using the platform charset
+     * @param in The stream input is read from
+     * @param out The stream output is written to
+     * @param outputBufferSize The size of the output buffer, in characters and in encoded bytes
+     */
+    public UserIOBufferedImpl(InputStream in, OutputStream out, int outputBufferSize) {
+        Charset charset = Charset.defaultCharset();
+        this.reader = new BufferedReader(new InputStreamReader(in, charset), INPUT_BUFFER_SIZE);
+        this.writer = new BufferedWriter(new OutputStreamWriter(new BufferedOutputStream(out, outputBufferSize), charset), outputBufferSize);
+    }
+
+    /**
+     * Displays a message once the output buffer is flushed
+     * @param msg The message to display, msg MUST be a valid String object
+     * @throws UserIOException thrown when an error occurs when displaying the message
+     */
+    @Override
+    public void displayMessage(String msg) throws UserIOException {
+        write(msg);
+        write(lineSeparator);
+    }
+
+    /**
+     * Stalls the application until an input string has been received.
+     *
+     * @param msg The message to prompt the user with. If msg is null, the parameter is ignored
+     * @return The String inputted by the user
+     * @throws UserIOException thrown when an error occurs retrieving the user's input
+     */
+    @Override
+    public String getInputString(String msg) throws UserIOException {
+        return getInputString(msg, input -> true);
+    }
+
+    /**
+     * Stalls the application until an input string has been received.
+     *
+     * @param msg The message to prompt the user with. If msg is null, the parameter is ignored
+     * @param validateFnc The function to use when validating user input. Upon validateFnc returning false,
+     *                    User input is asked for again until validateFnc returns true
+     * @return The String inputted by the user
+     * @throws UserIOException thrown when an error occurs retrieving the user's input
+     */
+    @Override
+    public String getInputString(String msg, Predicate<String> validateFnc) throws UserIOException {
+        if(msg != null) {
+            write(msg);
+        }
+        return getUserInput(validateFnc, strVal -> strVal);
+    }
+
+    /**
+     * Stalls the application until an input number has been received.
+     * @param msg The message to prompt the user with. If msg is null, the parameter is ignored
+     * @return The resulting inputted number
+     * @throws UserIOException thrown when an error occurs retrieving the user's input
+     */
+    @Override
+    public Number getInputNumber(String msg) throws UserIOException {
+        return getInputNumber(msg, input -> true);
+    }
+
+    /**
+     * Stalls the application until an input number has been received.
+     * @param msg The message to prompt the user with. If msg is null, the parameter is ignored
+     * @param validateFnc The function to use when validating user input. Upon validateFnc returning false,
+     *                    User input is asked for again until validateFnc returns true
+     * @return The resulting inputted number
+     * @throws UserIOException thrown when an error occurs retrieving the user's input
+     */
+    @Override
+    public Number getInputNumber(String msg, Predicate<Number> validateFnc) throws UserIOException {
+        if(msg != null) {
+            write(msg);
+        }
+        return getUserInput(validateFnc, this::parseNumber);
+    }
+
+    /**
+     * Writes the output buffer to the output stream
+     * @throws UserIOException thrown when an error occurs writing the buffered output
+     */
+    @Override
+    public void flush() throws UserIOException {
+        try {
+            writer.flush();
+        }
+        catch(IOException e) {
+            throw new UserIOException("Failed to write output: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Generically retrieve user input, flushing pending output first so prompts are visible.
+     * This function will ask for user input until validateFnc is satisfied
+     * @param validateFnc The function used to validate the user input
+     * @param conversionOp The operation converting the inputted string to the resulting input type
+     * @param <T> The type of input to retrieve
+     * @return The retrieved input
+     * @throws UserIOException thrown when something goes wrong retrieving user input
+     * @throws UserIOEndOfInputException thrown when the input has ended
+     */
+    private <T> T getUserInput(Predicate<T> validateFnc, ConversionOp<String, T> conversionOp) throws UserIOException {
+        while(true) {
+            flush();
+            // Read input
+            String strValue;
+            try {
+                strValue = reader.readLine();
+            }
+            catch(IOException e) {
+                throw new UserIOException("Failed to read input: " + e.getMessage());
+            }
+            if(strValue == null) {
+                throw new UserIOEndOfInputException();
+            }
+
+            // Convert to final value
+            T val;
+            try {
+                val = conversionOp.convert(strValue);
+            }
+            catch(Exception e) {
+                throw new UserIOException("Invalid input");
+            }
+            if(validateFnc.test(val)) {
+                return val;
+            }
+            displayMessage("Invalid Input, please try again");
+        }
+    }
+
+    /**
+     * Parses a number with the cached number format
+     * @param strVal The string to parse
+     * @return The parsed number
+     * @throws ParseException thrown when strVal does not start with a number
+     */
+    private Number parseNumber(String strVal) throws ParseException {
+        return numberFormat.parse(strVal);
+    }
+
+    /**
+     * Appends text to the output buffer
+     * @param text The text to append
+     * @throws UserIOException thrown when an error occurs writing the buffered output
+     */
+    private void write(String text) throws UserIOException {
+        try {
+            writer.write(text);
+        }
+        catch(IOException e) {
+            throw new UserIOException("Failed to write output: " + e.getMessage());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.kieran.dvd_library.ui;
 import com.kieran.dvd_library.util.ConversionOp;
 
 import java.text.NumberFormat;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 import java.util.function.Predicate;
 
@@ -86,12 +87,19 @@ public class UserIOConsoleImpl implements UserIO {
      * @param <T> The type of input to retrieve
      * @return The retrieved input
      * @throws UserIOException thrown when something goes wrong retrieving user input
+     * @throws UserIOEndOfInputException thrown when the input has ended
      */
     private <T> T getUserInput(Predicate<T> validateFnc, ConversionOp<String, T> conversionOp) throws UserIOException {
         Scanner scanner = new Scanner(System.in);
         while(true) {
             // Read input
-            String strValue = scanner.nextLine();
+            String strValue;
+            try {
+                strValue = scanner.nextLine();
+            }
+            catch(NoSuchElementException e) {
+                throw new UserIOEndOfInputException();
+            }
 
             // Convert to final value
             T val;
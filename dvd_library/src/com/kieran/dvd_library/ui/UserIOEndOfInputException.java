@@ -0,0 +1,19 @@
+package com.kieran.dvd_library.ui;
+
+/**
+ * An exception thrown when user input is requested after the input has ended,
+ * such as when piped input runs out or the user closes the console
+ */
+public class UserIOEndOfInputException extends UserIOException {
+    /**
+     * The serialization version of the exception
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new UserIOEndOfInputException
+     */
+    public UserIOEndOfInputException() {
+        super("End of input");
+    }
+}
@@ -0,0 +1,113 @@
+package com.kieran.dvd_library.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A consistent hash ring mapping keys onto a fixed number of partitions.
+ *
+ * Every partition owns several virtual points on the ring, and a key belongs to the
+ * partition owning the first point at or after the key's hash. Growing the ring from
+ * N to N + 1 partitions therefore only moves about 1 / (N + 1) of the keys.
+ */
+public class ConsistentHashRing {
+    /**
+     * The number of virtual points placed on the ring for each partition
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+    /**
+     * The sorted hashes of every virtual point on the ring
+     */
+    private final long[] points;
+    /**
+     * The partition owning each virtual point, indexed in the same order as points
+     */
+    private final int[] owners;
+    /**
+     * The number of partitions on the ring
+     */
+    private final int partitionCount;
+
+    /**
+     * Constructs a new ConsistentHashRing with the default number of virtual points per partition
+     * @param partitionCount The number of partitions, MUST be in the range [1, 65535]
+     */
+    public ConsistentHashRing(int partitionCount) {
+        this(partitionCount, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Constructs a new ConsistentHashRing
+     * @param partitionCount The number of partitions, MUST be in the range [1, 65535]
+     * @param virtualNodes The number of virtual points placed on the ring for each partition
+     */
+    public ConsistentHashRing(int partitionCount, int virtualNodes) {
+        if(partitionCount <= 0 || virtualNodes <= 0) {
+            throw new IllegalArgumentException("A hash ring requires at least one partition and virtual node");
+        }
+        if(partitionCount > 0xFFFF) {
+            throw new IllegalArgumentException("A hash ring supports at most 65535 partitions");
+        }
+        this.partitionCount = partitionCount;
+        int pointCount = partitionCount * virtualNodes;
+        long[] unsorted = new long[pointCount];
+        for(int partition = 0; partition < partitionCount; partition++) {
+            for(int vnode = 0; vnode < virtualNodes; vnode++) {
+                // Pack the owner into the low bits so sorting keeps owners attached to their points
+                long hash = hash("partition-" + partition + "-vnode-" + vnode);
+                unsorted[partition * virtualNodes + vnode] = (hash & ~0xFFFFL) | partition;
+            }
+        }
+        Arrays.sort(unsorted);
+        this.points = new long[pointCount];
+        this.owners = new int[pointCount];
+        for(int i = 0; i < pointCount; i++) {
+            points[i] = unsorted[i] & ~0xFFFFL;
+            owners[i] = (int) (unsorted[i] & 0xFFFFL);
+        }
+    }
+
+    /**
+     * Retrieves the number of partitions on the ring
+     * @return The number of partitions on the ring
+     */
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Retrieves the partition owning a key
+     * @param key The key to locate
+     * @return The index of the owning partition, in the range [0, getPartitionCount())
+     */
+    public int partitionFor(String key) {
+        long hash = hash(key) & ~0xFFFFL;
+        int idx = Arrays.binarySearch(points, hash);
+        if(idx < 0) {
+            idx = -idx - 1;
+        }
+        // Wrap around the ring
+        if(idx == points.length) {
+            idx = 0;
+        }
+        return owners[idx];
+    }
+
+    /**
+     * Hashes a string with 64-bit FNV-1a followed by a finalizing mix.
+     * String.hashCode() is not used since its distribution is poor for short, similar keys
+     * @param key The string to hash
+     * @return The 64-bit hash of the string
+     */
+    public static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for(byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xFF);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+}
@@ -0,0 +1,271 @@
+package com.kieran.dvd_library.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A counting Bloom filter over 64-bit hashes.
+ *
+ * Every element sets k of m four bit counters, chosen by double hashing its hash. An element
+ * whose counters are not all set was definitely never added, while an element whose counters
+ * are all set was probably added. Unlike a plain Bloom filter, counters can be decremented,
+ * so elements can be removed. A counter which reaches its maximum is never decremented again,
+ * which keeps removals from ever causing a false negative.
+ */
+public class CountingBloomFilter {
+    /**
+     * The number of counters packed into each long
+     */
+    private static final int COUNTERS_PER_WORD = 16;
+    /**
+     * The largest value of a counter
+     */
+    private static final int MAX_COUNT = 15;
+    /**
+     * The fewest counters in a filter
+     */
+    private static final int MIN_COUNTERS = 64;
+    /**
+     * The counters, packed four bits at a time
+     */
+    private final long[] counters;
+    /**
+     * The number of counters, m
+     */
+    private final int counterCount;
+    /**
+     * The number of counters set by each element, k
+     */
+    private final int hashCount;
+    /**
+     * The number of elements in the filter
+     */
+    private long size = 0;
+
+    /**
+     * Constructs a new CountingBloomFilter sized for a number of elements and false positive rate
+     * @param expectedElements The number of elements the filter is sized for
+     * @param falsePositiveRate The false positive rate of the filter when it holds expectedElements elements
+     */
+    public CountingBloomFilter(long expectedElements, double falsePositiveRate) {
+        this(optimalCounterCount(expectedElements, falsePositiveRate),
+                optimalHashCount(expectedElements, optimalCounterCount(expectedElements, falsePositiveRate)));
+    }
+
+    /**
+     * Constructs a new CountingBloomFilter
+     * @param counterCount The number of counters, m
+     * @param hashCount The number of counters set by each element, k
+     */
+    public CountingBloomFilter(int counterCount, int hashCount) {
+        if(counterCount < 1 || hashCount < 1) {
+            throw new IllegalArgumentException("A Bloom filter requires at least one counter and hash");
+        }
+        this.counterCount = counterCount;
+        this.hashCount = hashCount;
+        this.counters = new long[(counterCount + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD];
+    }
+
+    /**
+     * Computes the number of counters giving a false positive rate
+     * @param expectedElements The number of elements the filter is sized for
+     * @param falsePositiveRate The false positive rate when the filter holds expectedElements elements
+     * @return The number of counters, m = -n ln(p) / ln(2)^2
+     */
+    public static int optimalCounterCount(long expectedElements, double falsePositiveRate) {
+        if(falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("A false positive rate must be between 0 and 1");
+        }
+        double counters = -Math.max(1, expectedElements) * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        return (int) Math.max(MIN_COUNTERS, Math.min(Integer.MAX_VALUE - COUNTERS_PER_WORD, Math.ceil(counters)));
+    }
+
+    /**
+     * Computes the number of hashes minimizing the false positive rate
+     * @param expectedElements The number of elements the filter is sized for
+     * @param counterCount The number of counters
+     * @return The number of hashes, k = m / n ln(2)
+     */
+    public static int optimalHashCount(long expectedElements, int counterCount) {
+        return (int) Math.max(1, Math.round((double) counterCount / Math.max(1, expectedElements) * Math.log(2)));
+    }
+
+    /**
+     * Adds an element
+     * @param hash The 64-bit hash of the element
+     */
+    public void add(long hash) {
+        long step = step(hash);
+        for(int i = 0; i < hashCount; i++) {
+            int idx = index(hash, step, i);
+            int count = get(idx);
+            if(count < MAX_COUNT) {
+                set(idx, count + 1);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Removes an element added earlier.
+     * Removing an element which was never added can cause false negatives for other elements
+     * @param hash The 64-bit hash of the element
+     * @return True if the element might have been in the filter and was removed, and false if it was definitely absent
+     */
+    public boolean remove(long hash) {
+        if(!mightContain(hash)) {
+            return false;
+        }
+        long step = step(hash);
+        for(int i = 0; i < hashCount; i++) {
+            int idx = index(hash, step, i);
+            int count = get(idx);
+            if(count < MAX_COUNT) {
+                set(idx, count - 1);
+            }
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Checks if an element might be in the filter
+     * @param hash The 64-bit hash of the element
+     * @return False if the element is definitely not in the filter, and true if it probably is
+     */
+    public boolean mightContain(long hash) {
+        long step = step(hash);
+        for(int i = 0; i < hashCount; i++) {
+            if(get(index(hash, step, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes every element
+     */
+    public void clear() {
+        Arrays.fill(counters, 0);
+        size = 0;
+    }
+
+    /**
+     * Retrieves the number of elements in the filter
+     * @return The number of elements added and not removed
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of counters
+     * @return m
+     */
+    public int getCounterCount() {
+        return counterCount;
+    }
+
+    /**
+     * Retrieves the number of counters set by each element
+     * @return k
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Retrieves the memory used by the counters
+     * @return The size of the counters in bytes
+     */
+    public long getMemoryBytes() {
+        return (long) counters.length * Long.BYTES;
+    }
+
+    /**
+     * Estimates the false positive rate of the filter at its current size
+     * @return (1 - e^(-kn/m))^k
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * size / counterCount), hashCount);
+    }
+
+    /**
+     * Writes the filter to a stream
+     * @param out The stream to write to
+     * @throws IOException thrown when the stream cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(counterCount);
+        out.writeInt(hashCount);
+        out.writeLong(size);
+        for(long word : counters) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads a filter written by writeTo
+     * @param in The stream to read from
+     * @return The filter
+     * @throws IOException thrown when the stream cannot be read or does not hold a filter
+     */
+    public static CountingBloomFilter readFrom(DataInput in) throws IOException {
+        int counterCount = in.readInt();
+        int hashCount = in.readInt();
+        if(counterCount < 1 || hashCount < 1) {
+            throw new IOException("Corrupt Bloom filter");
+        }
+        CountingBloomFilter filter = new CountingBloomFilter(counterCount, hashCount);
+        filter.size = in.readLong();
+        for(int i = 0; i < filter.counters.length; i++) {
+            filter.counters[i] = in.readLong();
+        }
+        return filter;
+    }
+
+    /**
+     * Derives the step between an element's counters from its hash
+     * @param hash The 64-bit hash of the element
+     * @return An odd step, independent of the hash's low bits
+     */
+    private static long step(long hash) {
+        long step = hash * 0x9E3779B97F4A7C15L;
+        step ^= (step >>> 29);
+        return step | 1;
+    }
+
+    /**
+     * Finds one of an element's counters
+     * @param hash The 64-bit hash of the element
+     * @param step The step between the element's counters
+     * @param i Which of the element's counters to find
+     * @return The index of the counter
+     */
+    private int index(long hash, long step, int i) {
+        return (int) Long.remainderUnsigned(hash + i * step, counterCount);
+    }
+
+    /**
+     * Reads a counter
+     * @param idx The index of the counter
+     * @return The counter's value
+     */
+    private int get(int idx) {
+        return (int) (counters[idx / COUNTERS_PER_WORD] >>> ((idx % COUNTERS_PER_WORD) * 4)) & MAX_COUNT;
+    }
+
+    /**
+     * Writes a counter
+     * @param idx The index of the counter
+     * @param count The counter's new value
+     */
+    private void set(int idx, int count) {
+        int word = idx / COUNTERS_PER_WORD;
+        int shift = (idx % COUNTERS_PER_WORD) * 4;
+        counters[word] = (counters[word] & ~((long) MAX_COUNT << shift)) | ((long) count << shift);
+    }
+}
@@ -0,0 +1,210 @@
+package com.kieran.dvd_library.util;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * A utility class for extracting structured values from the free text fields of a DVD
+ */
+public class DVDFieldParser {
+    /**
+     * The earliest year accepted as a release year
+     */
+    private static final int MIN_YEAR = 1850;
+    /**
+     * The latest year accepted as a release year
+     */
+    private static final int MAX_YEAR = 2199;
+    /**
+     * The largest value of the score scale
+     */
+    public static final double MAX_SCORE = 10.0;
+    /**
+     * The epoch day returned for a release date without a release year
+     */
+    public static final long UNKNOWN_DATE = Long.MIN_VALUE;
+    /**
+     * The three letter prefixes of the month names, in calendar order
+     */
+    private static final String[] MONTH_PREFIXES = {
+            "jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"
+    };
+
+    /**
+     * Finds the release year in a free text release date, such as "1999", "03/31/1999" or "March 31, 1999"
+     * @param releaseDate The release date to parse, may be null
+     * @return The first four digit number in the range [1850, 2199], or -1 if there is none
+     */
+    public static int parseYear(String releaseDate) {
+        if(releaseDate == null) {
+            return -1;
+        }
+        int runStart = -1;
+        for(int i = 0; i <= releaseDate.length(); i++) {
+            boolean digit = i < releaseDate.length() && Character.isDigit(releaseDate.charAt(i));
+            if(digit && runStart < 0) {
+                runStart = i;
+            }
+            else if(!digit && runStart >= 0) {
+                if(i - runStart == 4) {
+                    int year = Integer.parseInt(releaseDate.substring(runStart, i));
+                    if(year >= MIN_YEAR && year <= MAX_YEAR) {
+                        return year;
+                    }
+                }
+                runStart = -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a free text release date into the number of days since 1970-01-01.
+     *
+     * The year is found as in parseYear. A month name ("March 31, 1999", "31 Mar 1999") gives the
+     * month, and the first other number of one or two digits gives the day. Without a month name
+     * the other numbers are read month first, which covers both "03/31/1999" and "1999-03-31".
+     * A missing month or day is taken as the first, as is an impossible date such as "02/30/1999"
+     * @param releaseDate The release date to parse, may be null
+     * @return The release date as an epoch day, or UNKNOWN_DATE if it holds no release year
+     */
+    public static long parseEpochDay(String releaseDate) {
+        int year = parseYear(releaseDate);
+        if(year < 0) {
+            return UNKNOWN_DATE;
+        }
+        int month = 0;
+        int[] numbers = new int[2];
+        int numberCount = 0;
+        boolean yearSkipped = false;
+        int length = releaseDate.length();
+        int i = 0;
+        while(i < length) {
+            int start = i;
+            char c = releaseDate.charAt(i);
+            if(Character.isDigit(c)) {
+                while(i < length && Character.isDigit(releaseDate.charAt(i))) {
+                    i++;
+                }
+                if(i - start == 4 && !yearSkipped && Integer.parseInt(releaseDate.substring(start, i)) == year) {
+                    yearSkipped = true;
+                }
+                else if(i - start <= 2 && numberCount < numbers.length) {
+                    numbers[numberCount++] = Integer.parseInt(releaseDate.substring(start, i));
+                }
+            }
+            else if(Character.isLetter(c)) {
+                while(i < length && Character.isLetter(releaseDate.charAt(i))) {
+                    i++;
+                }
+                if(month == 0 && i - start >= 3) {
+                    month = monthOf(releaseDate.substring(start, start + 3));
+                }
+            }
+            else {
+                i++;
+            }
+        }
+        int day;
+        if(month > 0) {
+            day = numberCount > 0 ? numbers[0] : 1;
+        }
+        else {
+            month = numberCount > 0 ? numbers[0] : 1;
+            day = numberCount > 1 ? numbers[1] : 1;
+        }
+        try {
+            return LocalDate.of(year, month, day).toEpochDay();
+        }
+        catch(DateTimeException e) {
+            return LocalDate.of(year, 1, 1).toEpochDay();
+        }
+    }
+
+    /**
+     * Finds the month named by the first three letters of a word
+     * @param prefix The first three letters of the word
+     * @return The month, 1 being January, or 0 if the word is not a month
+     */
+    private static int monthOf(String prefix) {
+        for(int i = 0; i < MONTH_PREFIXES.length; i++) {
+            if(MONTH_PREFIXES[i].equalsIgnoreCase(prefix)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Parses a numeric score out of a free text user rating/note, scaled onto [0, 10].
+     *
+     * The first number in the text is the score. It is scaled by the number following a '/'
+     * ("4/5 great" = 8.0), by 100 when followed by a '%' ("85%" = 8.5), or by 100 when it
+     * is larger than 10 ("85 out of 100" = 8.5). Scores outside the scale are clamped
+     * @param ratingAndNote The user rating/note to parse, may be null
+     * @return The score on a scale of 0 to 10, or NaN if the text holds no number
+     */
+    public static double parseUserScore(String ratingAndNote) {
+        if(ratingAndNote == null) {
+            return Double.NaN;
+        }
+        int start = 0;
+        int length = ratingAndNote.length();
+        while(start < length && !Character.isDigit(ratingAndNote.charAt(start))) {
+            start++;
+        }
+        if(start == length) {
+            return Double.NaN;
+        }
+        int end = scanNumber(ratingAndNote, start);
+        double value = Double.parseDouble(ratingAndNote.substring(start, end));
+
+        // Look past whitespace for a scale
+        int next = end;
+        while(next < length && ratingAndNote.charAt(next) == ' ') {
+            next++;
+        }
+        double scale = value > MAX_SCORE ? 100.0 : MAX_SCORE;
+        if(next < length && ratingAndNote.charAt(next) == '%') {
+            scale = 100.0;
+        }
+        else if(next < length && ratingAndNote.charAt(next) == '/') {
+            int denomStart = next + 1;
+            while(denomStart < length && ratingAndNote.charAt(denomStart) == ' ') {
+                denomStart++;
+            }
+            if(denomStart < length && Character.isDigit(ratingAndNote.charAt(denomStart))) {
+                double denominator = Double.parseDouble(ratingAndNote.substring(denomStart, scanNumber(ratingAndNote, denomStart)));
+                if(denominator > 0) {
+                    scale = denominator;
+                }
+            }
+        }
+        return Math.max(0.0, Math.min(MAX_SCORE, value / scale * MAX_SCORE));
+    }
+
+    /**
+     * Finds the end of a decimal number
+     * @param str The string holding the number
+     * @param start The index of the number's first digit
+     * @return The index following the number
+     */
+    private static int scanNumber(String str, int start) {
+        int end = start;
+        boolean seenPoint = false;
+        while(end < str.length()) {
+            char c = str.charAt(end);
+            if(Character.isDigit(c)) {
+                end++;
+            }
+            else if(c == '.' && !seenPoint && end + 1 < str.length() && Character.isDigit(str.charAt(end + 1))) {
+                seenPoint = true;
+                end++;
+            }
+            else {
+                break;
+            }
+        }
+        return end;
+    }
+}
@@ -0,0 +1,79 @@
+package com.kieran.dvd_library.util;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.EDVDField;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Common predicates for querying DVDs, for use with DVDLibraryDao.query() and select().
+ * Predicates combine with Predicate.and(), or() and negate()
+ */
+public class DVDPredicates {
+    /**
+     * Matches DVDs whose field equals a value, ignoring case and surrounding whitespace
+     * @param field The field to compare
+     * @param value The value to match
+     * @return The predicate
+     */
+    public static Predicate<DVD> fieldEquals(EDVDField field, String value) {
+        String expected = value.trim();
+        return dvd -> {
+            String actual = field.get(dvd);
+            return actual != null && actual.trim().equalsIgnoreCase(expected);
+        };
+    }
+
+    /**
+     * Matches DVDs whose field contains a value, ignoring case
+     * @param field The field to search
+     * @param value The value to search for
+     * @return The predicate
+     */
+    public static Predicate<DVD> fieldContains(EDVDField field, String value) {
+        String needle = value.toLowerCase(Locale.ROOT);
+        return dvd -> {
+            String actual = field.get(dvd);
+            return actual != null && actual.toLowerCase(Locale.ROOT).contains(needle);
+        };
+    }
+
+    /**
+     * Matches DVDs released within a range of years
+     * @param fromYear The earliest release year matched
+     * @param toYear The latest release year matched
+     * @return The predicate, which never matches DVDs without a recognizable release year
+     */
+    public static Predicate<DVD> releasedBetween(int fromYear, int toYear) {
+        return dvd -> {
+            int year = DVDFieldParser.parseYear(dvd.getReleaseDate());
+            return year >= fromYear && year <= toYear;
+        };
+    }
+
+    /**
+     * Matches DVDs released within a range of dates
+     * @param from The earliest release date matched
+     * @param to The latest release date matched
+     * @return The predicate, which never matches DVDs without a recognizable release year
+     */
+    public static Predicate<DVD> releasedBetween(LocalDate from, LocalDate to) {
+        long fromEpochDay = from.toEpochDay();
+        long toEpochDay = to.toEpochDay();
+        return dvd -> {
+            long epochDay = DVDFieldParser.parseEpochDay(dvd.getReleaseDate());
+            return epochDay != DVDFieldParser.UNKNOWN_DATE && epochDay >= fromEpochDay && epochDay <= toEpochDay;
+        };
+    }
+
+    /**
+     * Matches DVDs whose user score is at least a minimum
+     * @param minScore The lowest score matched, on a scale of 0 to 10
+     * @return The predicate, which never matches DVDs without a numeric user score
+     */
+    public static Predicate<DVD> scoreAtLeast(double minScore) {
+        return dvd -> DVDFieldParser.parseUserScore(dvd.getUserRatingAndNote()) >= minScore;
+    }
+}
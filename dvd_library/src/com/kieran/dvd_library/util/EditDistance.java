@@ -0,0 +1,55 @@
+package com.kieran.dvd_library.util;
+
+/**
+ * A utility class for measuring how different two strings are
+ */
+public class EditDistance {
+    /**
+     * Computes the case-insensitive Levenshtein distance between two strings, giving up once
+     * the distance is known to exceed maxDistance.
+     *
+     * Only a band of 2 * maxDistance + 1 cells around the diagonal of the distance matrix is
+     * computed, so the cost is O(maxDistance * length) rather than O(length^2)
+     * @param a The first string
+     * @param b The second string
+     * @param maxDistance The largest distance of interest, MUST be non-negative
+     * @return The distance between a and b, or maxDistance + 1 if it is larger than maxDistance
+     */
+    public static int boundedLevenshtein(CharSequence a, CharSequence b, int maxDistance) {
+        int n = a.length();
+        int m = b.length();
+        int tooFar = maxDistance + 1;
+        if(Math.abs(n - m) > maxDistance) {
+            return tooFar;
+        }
+        int[] prev = new int[m + 2];
+        int[] cur = new int[m + 2];
+        for(int j = 0; j <= m; j++) {
+            prev[j] = j <= maxDistance ? j : tooFar;
+        }
+        prev[m + 1] = tooFar;
+        for(int i = 1; i <= n; i++) {
+            int lo = Math.max(1, i - maxDistance);
+            int hi = Math.min(m, i + maxDistance);
+            cur[0] = i <= maxDistance ? i : tooFar;
+            cur[lo - 1] = lo == 1 ? cur[0] : tooFar;
+            int rowMin = cur[lo - 1];
+            char ac = Character.toLowerCase(a.charAt(i - 1));
+            for(int j = lo; j <= hi; j++) {
+                int cost = ac == Character.toLowerCase(b.charAt(j - 1)) ? 0 : 1;
+                int value = Math.min(prev[j - 1] + cost, Math.min(prev[j], cur[j - 1]) + 1);
+                cur[j] = Math.min(value, tooFar);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            // Cells just outside the band are read by the next row
+            cur[hi + 1] = tooFar;
+            if(rowMin > maxDistance) {
+                return tooFar;
+            }
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return prev[m];
+    }
+}
@@ -0,0 +1,323 @@
+package com.kieran.dvd_library.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted skip list which also answers order-statistic queries.
+ *
+ * Every forward link records how many elements it skips, so the position of an element and the
+ * element at a position are both found in O(log n) expected time, the same as an insert or removal.
+ * @param <E> The element type. Elements comparing equal are treated as duplicates
+ */
+public final class IndexedSkipList<E> implements Iterable<E> {
+    /**
+     * The maximum number of levels of the list. With a promotion probability of 1/4 this
+     * keeps searches logarithmic for more elements than an int can count
+     */
+    private static final int MAX_LEVEL = 16;
+    /**
+     * The orders elements of the list
+     */
+    private final Comparator<? super E> comparator;
+    /**
+     * The sentinel node preceding the first element, linked on every level
+     */
+    private final Node<E> head = new Node<>(null, MAX_LEVEL);
+    /**
+     * The number of levels currently in use
+     */
+    private int level = 1;
+    /**
+     * The number of elements in the list
+     */
+    private int size = 0;
+    /**
+     * The state of the xorshift generator choosing node levels
+     */
+    private int seed = 0x2545F491;
+
+    /**
+     * Constructs a new, empty IndexedSkipList
+     * @param comparator The order of the list's elements
+     */
+    public IndexedSkipList(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Retrieves the number of elements in the list
+     * @return The number of elements in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the list is empty
+     * @return True if the list has no elements, and false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every element from the list
+     */
+    public void clear() {
+        for(int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+        level = 1;
+        size = 0;
+    }
+
+    /**
+     * Inserts an element in order
+     * @param element The element to insert
+     * @return True if the element was inserted, and false if an equal element is already in the list
+     */
+    @SuppressWarnings("unchecked")
+    public boolean add(E element) {
+        Node<E>[] update = (Node<E>[]) new Node<?>[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node<E> x = head;
+        for(int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while(x.next[i] != null && comparator.compare(x.next[i].value, element) < 0) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        if(x.next[0] != null && comparator.compare(x.next[0].value, element) == 0) {
+            return false;
+        }
+
+        int nodeLevel = randomLevel();
+        if(nodeLevel > level) {
+            for(int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+        Node<E> node = new Node<>(element, nodeLevel);
+        for(int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            // The new node splits the span of its predecessor on each of its levels
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for(int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the element equal to a given element
+     * @param element The element to remove
+     * @return True if an equal element was removed, and false if the list holds no equal element
+     */
+    @SuppressWarnings("unchecked")
+    public boolean remove(E element) {
+        Node<E>[] update = (Node<E>[]) new Node<?>[MAX_LEVEL];
+        Node<E> x = head;
+        for(int i = level - 1; i >= 0; i--) {
+            while(x.next[i] != null && comparator.compare(x.next[i].value, element) < 0) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        Node<E> target = x.next[0];
+        if(target == null || comparator.compare(target.value, element) != 0) {
+            return false;
+        }
+        for(int i = 0; i < level; i++) {
+            if(update[i].next[i] == target) {
+                update[i].span[i] += target.span[i] - 1;
+                update[i].next[i] = target.next[i];
+            }
+            else {
+                update[i].span[i]--;
+            }
+        }
+        while(level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Finds the position of an element
+     * @param element The element to find
+     * @return The zero based position of the equal element, or -1 if the list holds no equal element
+     */
+    public int indexOf(E element) {
+        Node<E> x = head;
+        int rank = 0;
+        for(int i = level - 1; i >= 0; i--) {
+            while(x.next[i] != null && comparator.compare(x.next[i].value, element) <= 0) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if(x != head && comparator.compare(x.value, element) == 0) {
+                return rank - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the elements ordered before a given element, which is the index the element would be inserted at
+     * @param element The element to compare against. It does not need to be in the list
+     * @return The number of elements comparing less than element
+     */
+    public int lowerBound(E element) {
+        Node<E> x = head;
+        int rank = 0;
+        for(int i = level - 1; i >= 0; i--) {
+            while(x.next[i] != null && comparator.compare(x.next[i].value, element) < 0) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Retrieves the element at a position
+     * @param index The zero based position of the element
+     * @return The element at index
+     * @throws IndexOutOfBoundsException thrown when index is not in the range [0, size)
+     */
+    public E get(int index) {
+        return nodeAt(index).value;
+    }
+
+    /**
+     * Retrieves a run of consecutive elements
+     * @param fromIndex The zero based position of the first element
+     * @param count The maximum number of elements to retrieve
+     * @return Up to count elements in order, starting at fromIndex
+     * @throws IndexOutOfBoundsException thrown when fromIndex is not in the range [0, size]
+     */
+    public List<E> range(int fromIndex, int count) {
+        if(fromIndex == size) {
+            return new ArrayList<>();
+        }
+        List<E> elements = new ArrayList<>(Math.max(0, Math.min(count, size - fromIndex)));
+        for(Node<E> x = nodeAt(fromIndex); x != null && elements.size() < count; x = x.next[0]) {
+            elements.add(x.value);
+        }
+        return elements;
+    }
+
+    /**
+     * Creates an iterator over the list in order
+     * @return An iterator over the list
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private Node<E> next = head.next[0];
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public E next() {
+                if(next == null) {
+                    throw new NoSuchElementException();
+                }
+                E value = next.value;
+                next = next.next[0];
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Finds the node at a position
+     * @param index The zero based position of the node
+     * @return The node at index
+     * @throws IndexOutOfBoundsException thrown when index is not in the range [0, size)
+     */
+    private Node<E> nodeAt(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        Node<E> x = head;
+        int traversed = 0;
+        for(int i = level - 1; i >= 0; i--) {
+            while(x.next[i] != null && traversed + x.span[i] <= index + 1) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            if(traversed == index + 1) {
+                return x;
+            }
+        }
+        throw new IllegalStateException("Corrupt skip list spans");
+    }
+
+    /**
+     * Chooses the level of a new node, promoting it to each next level with a probability of 1/4
+     * @return The level of the new node, in the range [1, MAX_LEVEL]
+     */
+    private int randomLevel() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        // Two random bits per level
+        int bits = seed;
+        int nodeLevel = 1;
+        while(nodeLevel < MAX_LEVEL && (bits & 3) == 0) {
+            nodeLevel++;
+            bits >>>= 2;
+        }
+        return nodeLevel;
+    }
+
+    /**
+     * A node of the list
+     * @param <E> The element type
+     */
+    private static final class Node<E> {
+        /**
+         * The element held by the node, or null for the head
+         */
+        final E value;
+        /**
+         * The following node on each of the node's levels
+         */
+        final Node<E>[] next;
+        /**
+         * The number of elements skipped by each of the node's forward links, counting the linked node
+         */
+        final int[] span;
+
+        /**
+         * Constructs a new Node
+         * @param value The element held by the node
+         * @param nodeLevel The number of levels the node is linked on
+         */
+        @SuppressWarnings("unchecked")
+        Node(E value, int nodeLevel) {
+            this.value = value;
+            this.next = (Node<E>[]) new Node<?>[nodeLevel];
+            this.span = new int[nodeLevel];
+        }
+    }
+}
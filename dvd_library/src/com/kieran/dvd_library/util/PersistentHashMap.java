@@ -0,0 +1,543 @@
+package com.kieran.dvd_library.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable hash array mapped trie (HAMT).
+ *
+ * Every modification returns a new map which shares all untouched nodes with the
+ * map it was derived from, so a modification only copies the O(log32 n) nodes on
+ * the path to the changed key. Old versions stay valid for as long as they are
+ * referenced and are reclaimed by the garbage collector afterwards.
+ * @param <K> The key type. Keys MUST NOT be null
+ * @param <V> The value type. Values MUST NOT be null
+ */
+public final class PersistentHashMap<K, V> implements Iterable<V> {
+    /**
+     * The number of hash bits consumed by each level of the trie
+     */
+    private static final int BITS_PER_LEVEL = 5;
+    /**
+     * The mask used to extract a level's bits from a hash
+     */
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+    /**
+     * The shared empty map
+     */
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+    /**
+     * The root node of the trie, or null if the map is empty
+     */
+    private final BitmapNode<K, V> root;
+    /**
+     * The number of entries in the map
+     */
+    private final int size;
+
+    /**
+     * Constructs a new PersistentHashMap from a root node
+     * @param root The root node of the map
+     * @param size The number of entries reachable from root
+     */
+    private PersistentHashMap(BitmapNode<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Retrieves the empty map
+     * @param <K> The key type
+     * @param <V> The value type
+     * @return The empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Retrieves the number of entries in the map
+     * @return The number of entries in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the map is empty
+     * @return True if the map contains no entries, and false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Retrieves the value mapped to a key
+     * @param key The key to look up
+     * @return The mapped value, or null if the key is not present
+     */
+    public V get(K key) {
+        if(root == null) {
+            return null;
+        }
+        int hash = spread(key.hashCode());
+        Object node = root;
+        int shift = 0;
+        while(true) {
+            if(node instanceof BitmapNode) {
+                BitmapNode<K, V> bitmapNode = cast(node);
+                int bit = bitFor(hash, shift);
+                if((bitmapNode.bitmap & bit) == 0) {
+                    return null;
+                }
+                node = bitmapNode.slots[bitmapNode.indexOf(bit)];
+                shift += BITS_PER_LEVEL;
+            }
+            else if(node instanceof Leaf) {
+                Leaf<K, V> leaf = cast(node);
+                return leaf.matches(hash, key) ? leaf.value : null;
+            }
+            else {
+                CollisionNode<K, V> collisionNode = cast(node);
+                return collisionNode.get(hash, key);
+            }
+        }
+    }
+
+    /**
+     * Checks if a key is present in the map
+     * @param key The key to look up
+     * @return True if the key is mapped to a value, and false otherwise
+     */
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Builds a map with a key mapped to a value
+     * @param key The key to map
+     * @param value The value to map the key to
+     * @return A map containing every entry of this map, with key mapped to value
+     */
+    public PersistentHashMap<K, V> put(K key, V value) {
+        if(key == null || value == null) {
+            throw new NullPointerException("PersistentHashMap does not support null keys or values");
+        }
+        int hash = spread(key.hashCode());
+        Leaf<K, V> leaf = new Leaf<>(hash, key, value);
+        if(root == null) {
+            return new PersistentHashMap<>(new BitmapNode<>(bitFor(hash, 0), new Object[]{ leaf }), 1);
+        }
+        boolean existed = get(key) != null;
+        BitmapNode<K, V> newRoot = cast(root.put(leaf, 0));
+        return new PersistentHashMap<>(newRoot, existed ? size : size + 1);
+    }
+
+    /**
+     * Builds a map without a key
+     * @param key The key to remove
+     * @return A map containing every entry of this map except the one for key.
+     *         This map is returned if key is not present
+     */
+    public PersistentHashMap<K, V> remove(K key) {
+        if(root == null || get(key) == null) {
+            return this;
+        }
+        if(size == 1) {
+            return empty();
+        }
+        Object newRoot = root.remove(spread(key.hashCode()), key, 0);
+        if(newRoot instanceof Leaf) {
+            Leaf<K, V> leaf = cast(newRoot);
+            newRoot = new BitmapNode<>(bitFor(leaf.hash, 0), new Object[]{ leaf });
+        }
+        return new PersistentHashMap<>(cast(newRoot), size - 1);
+    }
+
+    /**
+     * Constructs an iterator over the values of the map
+     * @return The constructed iterator
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new ValueIterator<>(root);
+    }
+
+    /**
+     * Improves the distribution of a hash code's bits, since the low bits are consumed first
+     * @param hash The hash code to spread
+     * @return The spread hash
+     */
+    private static int spread(int hash) {
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        return hash ^ (hash >>> 13);
+    }
+
+    /**
+     * Computes the bitmap bit representing a hash at a given level
+     * @param hash The hash of the key
+     * @param shift The number of bits consumed by the levels above
+     * @return The bit for the hash at the level
+     */
+    private static int bitFor(int hash, int shift) {
+        return 1 << ((hash >>> shift) & LEVEL_MASK);
+    }
+
+    /**
+     * Performs an unchecked cast of a trie slot
+     * @param obj The object to cast
+     * @param <T> The target type
+     * @return obj as a T
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object obj) {
+        return (T) obj;
+    }
+
+    /**
+     * Builds the smallest subtree holding two leaves with different keys
+     * @param a The first leaf
+     * @param b The second leaf
+     * @param shift The number of bits consumed by the levels above the subtree
+     * @return The subtree holding both leaves
+     */
+    private static <K, V> Object merge(Leaf<K, V> a, Leaf<K, V> b, int shift) {
+        if(a.hash == b.hash) {
+            return new CollisionNode<K, V>(a.hash, new Object[]{ a, b });
+        }
+        int bitA = bitFor(a.hash, shift);
+        int bitB = bitFor(b.hash, shift);
+        if(bitA == bitB) {
+            return new BitmapNode<K, V>(bitA, new Object[]{ merge(a, b, shift + BITS_PER_LEVEL) });
+        }
+        Object[] slots = Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[]{ a, b } : new Object[]{ b, a };
+        return new BitmapNode<K, V>(bitA | bitB, slots);
+    }
+
+    /**
+     * A single key/value entry of the trie
+     */
+    private static final class Leaf<K, V> {
+        /**
+         * The spread hash of the key
+         */
+        final int hash;
+        /**
+         * The key of the entry
+         */
+        final K key;
+        /**
+         * The value of the entry
+         */
+        final V value;
+
+        /**
+         * Constructs a new Leaf
+         * @param hash The spread hash of the key
+         * @param key The key of the entry
+         * @param value The value of the entry
+         */
+        Leaf(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        /**
+         * Checks if the leaf holds a key
+         * @param hash The spread hash of the key
+         * @param key The key to compare against
+         * @return True if the leaf's key equals key, and false otherwise
+         */
+        boolean matches(int hash, Object key) {
+            return this.hash == hash && this.key.equals(key);
+        }
+    }
+
+    /**
+     * An interior node of the trie. Each set bit of the bitmap owns one slot,
+     * which is either a Leaf, a BitmapNode or a CollisionNode
+     */
+    private static final class BitmapNode<K, V> {
+        /**
+         * The bitmap of occupied slots
+         */
+        final int bitmap;
+        /**
+         * The compressed array of occupied slots
+         */
+        final Object[] slots;
+
+        /**
+         * Constructs a new BitmapNode
+         * @param bitmap The bitmap of occupied slots
+         * @param slots The compressed array of occupied slots
+         */
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        /**
+         * Retrieves the slot index of a bitmap bit
+         * @param bit The bit of the slot
+         * @return The index of the slot in the compressed slot array
+         */
+        int indexOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        /**
+         * Builds a copy of the node with a slot replaced
+         * @param idx The index of the slot
+         * @param slot The new slot contents
+         * @return The copied node
+         */
+        BitmapNode<K, V> withSlot(int idx, Object slot) {
+            Object[] newSlots = slots.clone();
+            newSlots[idx] = slot;
+            return new BitmapNode<>(bitmap, newSlots);
+        }
+
+        /**
+         * Builds a copy of the node with a leaf inserted
+         * @param leaf The leaf to insert
+         * @param shift The number of bits consumed by the levels above this node
+         * @return The copied node
+         */
+        Object put(Leaf<K, V> leaf, int shift) {
+            int bit = bitFor(leaf.hash, shift);
+            int idx = indexOf(bit);
+            if((bitmap & bit) == 0) {
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, idx);
+                newSlots[idx] = leaf;
+                System.arraycopy(slots, idx, newSlots, idx + 1, slots.length - idx);
+                return new BitmapNode<>(bitmap | bit, newSlots);
+            }
+            Object slot = slots[idx];
+            if(slot instanceof Leaf) {
+                Leaf<K, V> existing = cast(slot);
+                if(existing.matches(leaf.hash, leaf.key)) {
+                    return withSlot(idx, leaf);
+                }
+                return withSlot(idx, merge(existing, leaf, shift + BITS_PER_LEVEL));
+            }
+            if(slot instanceof BitmapNode) {
+                BitmapNode<K, V> child = cast(slot);
+                return withSlot(idx, child.put(leaf, shift + BITS_PER_LEVEL));
+            }
+            CollisionNode<K, V> child = cast(slot);
+            return withSlot(idx, child.put(leaf, shift + BITS_PER_LEVEL));
+        }
+
+        /**
+         * Builds a copy of the node with a key removed. The key MUST be present
+         * @param hash The spread hash of the key
+         * @param key The key to remove
+         * @param shift The number of bits consumed by the levels above this node
+         * @return The copied node, or the only remaining Leaf if the node would hold nothing else
+         */
+        Object remove(int hash, K key, int shift) {
+            int bit = bitFor(hash, shift);
+            int idx = indexOf(bit);
+            Object slot = slots[idx];
+            Object newSlot;
+            if(slot instanceof Leaf) {
+                newSlot = null;
+            }
+            else if(slot instanceof BitmapNode) {
+                BitmapNode<K, V> child = cast(slot);
+                newSlot = child.remove(hash, key, shift + BITS_PER_LEVEL);
+            }
+            else {
+                CollisionNode<K, V> child = cast(slot);
+                newSlot = child.remove(hash, key);
+            }
+
+            if(newSlot != null) {
+                if(slots.length == 1 && newSlot instanceof Leaf) {
+                    return newSlot;
+                }
+                return withSlot(idx, newSlot);
+            }
+            if(slots.length == 2 && slots[idx ^ 1] instanceof Leaf) {
+                return slots[idx ^ 1];
+            }
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, idx);
+            System.arraycopy(slots, idx + 1, newSlots, idx, slots.length - idx - 1);
+            return new BitmapNode<K, V>(bitmap & ~bit, newSlots);
+        }
+    }
+
+    /**
+     * A node holding leaves whose full hashes are identical
+     */
+    private static final class CollisionNode<K, V> {
+        /**
+         * The spread hash shared by every leaf
+         */
+        final int hash;
+        /**
+         * The leaves of the node
+         */
+        final Object[] slots;
+
+        /**
+         * Constructs a new CollisionNode
+         * @param hash The spread hash shared by every leaf
+         * @param slots The leaves of the node
+         */
+        CollisionNode(int hash, Object[] slots) {
+            this.hash = hash;
+            this.slots = slots;
+        }
+
+        /**
+         * Retrieves the value mapped to a key
+         * @param hash The spread hash of the key
+         * @param key The key to look up
+         * @return The mapped value, or null if the key is not present
+         */
+        V get(int hash, K key) {
+            for(Object slot : slots) {
+                Leaf<K, V> leaf = cast(slot);
+                if(leaf.matches(hash, key)) {
+                    return leaf.value;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Builds a copy of the node with a leaf inserted
+         * @param leaf The leaf to insert
+         * @param shift The number of bits consumed by the levels above this node
+         * @return The copied node
+         */
+        Object put(Leaf<K, V> leaf, int shift) {
+            if(leaf.hash != hash) {
+                // The new leaf diverges from the colliding hash, so push this node down a level
+                BitmapNode<K, V> wrapper = new BitmapNode<>(bitFor(hash, shift), new Object[]{ this });
+                return wrapper.put(leaf, shift);
+            }
+            for(int i = 0; i < slots.length; i++) {
+                Leaf<K, V> existing = cast(slots[i]);
+                if(existing.matches(leaf.hash, leaf.key)) {
+                    Object[] newSlots = slots.clone();
+                    newSlots[i] = leaf;
+                    return new CollisionNode<K, V>(hash, newSlots);
+                }
+            }
+            Object[] newSlots = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, newSlots, 0, slots.length);
+            newSlots[slots.length] = leaf;
+            return new CollisionNode<K, V>(hash, newSlots);
+        }
+
+        /**
+         * Builds a copy of the node with a key removed. The key MUST be present
+         * @param hash The spread hash of the key
+         * @param key The key to remove
+         * @return The copied node, or the only remaining Leaf
+         */
+        Object remove(int hash, K key) {
+            if(slots.length == 2) {
+                Leaf<K, V> first = cast(slots[0]);
+                return first.matches(hash, key) ? slots[1] : slots[0];
+            }
+            Object[] newSlots = new Object[slots.length - 1];
+            int dst = 0;
+            for(Object slot : slots) {
+                Leaf<K, V> leaf = cast(slot);
+                if(!leaf.matches(hash, key)) {
+                    newSlots[dst++] = leaf;
+                }
+            }
+            return new CollisionNode<K, V>(this.hash, newSlots);
+        }
+    }
+
+    /**
+     * A depth-first iterator over the values of a trie
+     */
+    private static final class ValueIterator<K, V> implements Iterator<V> {
+        /**
+         * The maximum depth of the trie: seven bitmap levels and a collision level
+         */
+        private static final int MAX_DEPTH = 8;
+        /**
+         * The slot arrays currently being walked, indexed by depth
+         */
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        /**
+         * The next slot index to visit in each walked array
+         */
+        private final int[] positions = new int[MAX_DEPTH];
+        /**
+         * The depth of the array currently being walked, or -1 when exhausted
+         */
+        private int depth;
+        /**
+         * The next leaf to return, or null when exhausted
+         */
+        private Leaf<K, V> next;
+
+        /**
+         * Constructs a new ValueIterator
+         * @param root The root of the trie, or null if the trie is empty
+         */
+        ValueIterator(BitmapNode<K, V> root) {
+            if(root == null) {
+                depth = -1;
+            }
+            else {
+                arrays[0] = root.slots;
+                depth = 0;
+            }
+            advance();
+        }
+
+        /**
+         * Moves to the next leaf of the trie
+         */
+        private void advance() {
+            next = null;
+            while(depth >= 0) {
+                Object[] array = arrays[depth];
+                if(positions[depth] >= array.length) {
+                    depth--;
+                    continue;
+                }
+                Object slot = array[positions[depth]++];
+                if(slot instanceof Leaf) {
+                    next = cast(slot);
+                    return;
+                }
+                depth++;
+                arrays[depth] = slot instanceof BitmapNode
+                        ? ((BitmapNode<?, ?>) slot).slots
+                        : ((CollisionNode<?, ?>) slot).slots;
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public V next() {
+            if(next == null) {
+                throw new NoSuchElementException();
+            }
+            V value = next.value;
+            advance();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.kieran.dvd_library.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe dictionary mapping equal strings onto a single shared instance.
+ *
+ * Low cardinality values such as studios, directors and MPAA ratings repeat across thousands of DVDs,
+ * so replacing each loaded copy with the dictionary's instance keeps one copy per distinct value.
+ * Entries are never removed, so the dictionary suits values drawn from a bounded vocabulary.
+ */
+public class StringDictionary {
+    /**
+     * The estimated heap cost of a map entry holding a string, excluding the string itself
+     */
+    private static final int ENTRY_BYTES = 48;
+    /**
+     * The shared instance of every string in the dictionary
+     */
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+    /**
+     * The estimated heap cost of the dictionary's strings and entries
+     */
+    private final AtomicLong memoryBytes = new AtomicLong();
+
+    /**
+     * Retrieves the shared instance of a string, adding the string to the dictionary if no equal string is present
+     * @param value The string to look up. May be null
+     * @return The dictionary's instance equal to value, or null if value is null
+     */
+    public String intern(String value) {
+        if(value == null) {
+            return null;
+        }
+        String shared = strings.get(value);
+        if(shared != null) {
+            return shared;
+        }
+        shared = strings.putIfAbsent(value, value);
+        if(shared != null) {
+            return shared;
+        }
+        memoryBytes.addAndGet(ENTRY_BYTES + estimateBytes(value));
+        return value;
+    }
+
+    /**
+     * Checks if a string is the dictionary's shared instance, so its memory is owned by the dictionary
+     * @param value The string to check
+     * @return True if value is the instance held by the dictionary, and false otherwise
+     */
+    public boolean isShared(String value) {
+        return value != null && strings.get(value) == value;
+    }
+
+    /**
+     * Retrieves the number of distinct strings in the dictionary
+     * @return The number of strings
+     */
+    public int size() {
+        return strings.size();
+    }
+
+    /**
+     * Retrieves the estimated heap cost of the dictionary
+     * @return The estimated number of bytes held by the dictionary's strings and entries
+     */
+    public long getMemoryBytes() {
+        return memoryBytes.get();
+    }
+
+    /**
+     * Estimates the heap cost of a string, assuming compact one byte per character storage where possible
+     * @param value The string. May be null
+     * @return The estimated number of bytes held by the string and its character array
+     */
+    public static long estimateBytes(String value) {
+        if(value == null) {
+            return 0;
+        }
+        int bytesPerChar = 1;
+        for(int i = 0; i < value.length(); i++) {
+            if(value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        // String header and fields, then the array header and its contents padded to 8 bytes
+        return 24 + ((16 + (long) value.length() * bytesPerChar + 7) & ~7L);
+    }
+}
@@ -14,4 +14,139 @@ public class StringUtils {
     public static String buildLeftAlignedFormatStr(int targetLen) {
         return "%-" + targetLen + "s";
     }
+
+    /**
+     * Hashes a string as if it had been trimmed and case folded, without building the normalized copy.
+     * Two strings equal under foldedEquals() always have the same folded hash
+     * @param str The string to hash
+     * @return The hash of the trimmed, case folded string
+     */
+    public static int foldedHash(CharSequence str) {
+        int end = trimmedEnd(str);
+        int hash = 0;
+        for(int i = trimmedStart(str, end); i < end; i++) {
+            hash = 31 * hash + foldCase(str.charAt(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes a string into 64 bits with FNV-1a over its characters followed by a finalizing mix
+     * @param str The string to hash
+     * @return The 64-bit hash of the string
+     */
+    public static long hash64(CharSequence str) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < str.length(); i++) {
+            hash ^= str.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix64(hash);
+    }
+
+    /**
+     * Hashes a string into 64 bits as if it had been trimmed and case folded, without building the normalized copy.
+     * Two strings equal under foldedEquals() always have the same 64-bit folded hash
+     * @param str The string to hash
+     * @return The 64-bit hash of the trimmed, case folded string
+     */
+    public static long foldedHash64(CharSequence str) {
+        int end = trimmedEnd(str);
+        long hash = 0xcbf29ce484222325L;
+        for(int i = trimmedStart(str, end); i < end; i++) {
+            hash ^= foldCase(str.charAt(i));
+            hash *= 0x100000001b3L;
+        }
+        return mix64(hash);
+    }
+
+    /**
+     * Compares two strings as if both had been trimmed and case folded, without building the normalized copies
+     * @param a The first string
+     * @param b The second string
+     * @return True if the trimmed, case folded strings are equal, and false otherwise
+     */
+    public static boolean foldedEquals(CharSequence a, CharSequence b) {
+        if(a == b) {
+            return true;
+        }
+        int aEnd = trimmedEnd(a);
+        int bEnd = trimmedEnd(b);
+        int aStart = trimmedStart(a, aEnd);
+        int bStart = trimmedStart(b, bEnd);
+        if(aEnd - aStart != bEnd - bStart) {
+            return false;
+        }
+        for(int i = 0; i < aEnd - aStart; i++) {
+            char ac = a.charAt(aStart + i);
+            char bc = b.charAt(bStart + i);
+            if(ac != bc && foldCase(ac) != foldCase(bc)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spreads every bit of a hash across the whole hash
+     * @param hash The hash to mix
+     * @return The mixed hash
+     */
+    private static long mix64(long hash) {
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+
+    /**
+     * Folds the case of a character the same way String.equalsIgnoreCase() does
+     * @param c The character to fold
+     * @return The case folded character
+     */
+    private static char foldCase(char c) {
+        if(c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Checks if a character is whitespace, with a fast path for ASCII
+     * @param c The character to check
+     * @return True if c is whitespace, and false otherwise
+     */
+    private static boolean isWhitespace(char c) {
+        if(c < 128) {
+            return c == ' ' || (c >= '\t' && c <= '\r') || (c >= '\u001C' && c <= '\u001F');
+        }
+        return Character.isWhitespace(c);
+    }
+
+    /**
+     * Finds the end of a string, excluding trailing whitespace
+     * @param str The string to scan
+     * @return The index following the last non-whitespace character
+     */
+    private static int trimmedEnd(CharSequence str) {
+        int end = str.length();
+        while(end > 0 && isWhitespace(str.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Finds the start of a string, excluding leading whitespace
+     * @param str The string to scan
+     * @param end The index following the last character to consider
+     * @return The index of the first non-whitespace character, or end if there is none
+     */
+    private static int trimmedStart(CharSequence str, int end) {
+        int start = 0;
+        while(start < end && isWhitespace(str.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
 }
@@ -1,11 +1,19 @@
 package com.kieran.dvd_library.view;
 
+import com.kieran.dvd_library.dao.DVDLibraryTitleFilter;
 import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import com.kieran.dvd_library.index.DVDLibraryStatistics;
+import com.kieran.dvd_library.ui.EBulkAction;
+import com.kieran.dvd_library.ui.EBulkCondition;
 import com.kieran.dvd_library.ui.EMenuSelection;
 import com.kieran.dvd_library.ui.UserIO;
 import com.kieran.dvd_library.ui.UserIOException;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The main view layer of the DVD Library application
@@ -19,6 +27,38 @@ public class DVDLibraryView {
      * A constant array of enum values, accessible by index
      */
     private static final EMenuSelection[] SELECTION_VALUES = EMenuSelection.values();
+    /**
+     * The label of every menu option, in the order of SELECTION_VALUES
+     */
+    private static final String[] MENU_LABELS = {
+            "Add a DVD", "Remove a DVD", "Edit a DVD", "List all DVDs", "Find DVD", "Import DVDs from a file", "Edit or remove many DVDs", "Library statistics", "Exit"
+    };
+    /**
+     * The label of every DVD field, in the order of EDVDField.values()
+     */
+    private static final String[] FIELD_LABELS = {
+            "Title", "Release date", "MPAA rating", "Director", "Studio", "User rating/note"
+    };
+    /**
+     * The maximum number of studios and directors listed in the statistics report
+     */
+    private static final int MAX_STATISTICS_ROWS = 10;
+    /**
+     * The banner separating the header from the rows
+     */
+    private final String headerBanner = getDisplayBanner('=');
+    /**
+     * The banner separating listed rows
+     */
+    private final String rowBanner = getDisplayBanner('-');
+    /**
+     * The cache of rendered rows, or null to render every row on every display
+     */
+    private DVDRowRenderCache rowCache;
+    /**
+     * The title filter reported with the library statistics, or null if the library is not filtered
+     */
+    private DVDLibraryTitleFilter titleFilter;
 
     /**
      * Constructs a new DVDLibraryView object using the provided UserIO interface
@@ -28,6 +68,22 @@ public class DVDLibraryView {
         this.userIO = userIO;
     }
 
+    /**
+     * Sets the cache rendered rows are looked up in
+     * @param rowCache The row cache, or null to render every row on every display
+     */
+    public void setRowCache(DVDRowRenderCache rowCache) {
+        this.rowCache = rowCache;
+    }
+
+    /**
+     * Sets the title filter reported with the library statistics
+     * @param titleFilter The title filter, or null if the library is not filtered
+     */
+    public void setTitleFilter(DVDLibraryTitleFilter titleFilter) {
+        this.titleFilter = titleFilter;
+    }
+
     /**
      * Displays an error message
      * @param msg The message to display
@@ -51,9 +107,9 @@ public class DVDLibraryView {
         String outMsg = String.format(DVD.getFormatString(),
                 "Title", "Release Date", "MPAA Rating", "Director", "Studio", "User Rating/Note") +
                 "\n" +
-                getDisplayBanner('=') +
+                headerBanner +
                 "\n" +
-                dvd.toString();
+                renderRow(dvd);
         userIO.displayMessage(outMsg);
     }
 
@@ -63,23 +119,207 @@ public class DVDLibraryView {
      * @throws UserIOException thrown when something goes wrong displaying output
      */
     public void displayDvdCollection(Collection<DVD> dvds) throws UserIOException {
-        StringBuilder combinedString = new StringBuilder();
+        // Size the listing up front, so appending cached rows is a straight copy
+        int rowLength = DVD.getFormatStringFormattedLength() + 1;
+        StringBuilder combinedString = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, (dvds.size() + 1L) * rowLength * 2));
         combinedString.append(String.format(DVD.getFormatString(),
                 "Title", "Release Date", "MPAA Rating", "Director", "Studio", "User Rating/Note")).append("\n");
-        combinedString.append(getDisplayBanner('=')).append("\n");
+        combinedString.append(headerBanner).append("\n");
+        boolean scan = rowCache != null && dvds.size() > rowCache.getMaxRows();
         for(DVD dvd : dvds) {
-            combinedString.append(dvd.toString()).append("\n").append(getDisplayBanner('-')).append("\n");
+            String row = scan ? rowCache.renderScan(dvd) : renderRow(dvd);
+            combinedString.append(row).append("\n").append(rowBanner).append("\n");
         }
         userIO.displayMessage(combinedString.toString());
     }
 
     /**
-     * Stalls the program until the user input's required fields for editing values of a DVD
-     * @param dvd THe DVD to edit
+     * Displays a ranked list of DVDs under a heading
+     * @param heading The heading describing the ranking
+     * @param dvds The DVDs to display, in rank order. Nothing is displayed if dvds is empty
+     * @throws UserIOException thrown when something goes wrong displaying output
+     */
+    public void displayRankedDvds(String heading, List<DVD> dvds) throws UserIOException {
+        if(dvds.isEmpty()) {
+            return;
+        }
+        StringBuilder msg = new StringBuilder(heading).append("\n");
+        msg.append(String.format("%-4s" + DVD.getFormatString(), "#",
+                "Title", "Release Date", "MPAA Rating", "Director", "Studio", "User Rating/Note")).append("\n");
+        msg.append(headerBanner).append("\n");
+        for(int i = 0; i < dvds.size(); i++) {
+            msg.append(String.format("%-4d", i + 1)).append(renderRow(dvds.get(i))).append("\n");
+        }
+        userIO.displayMessage(msg.toString());
+    }
+
+    /**
+     * Displays titles similar to a title which could not be found
+     * @param titles The suggested titles. Nothing is displayed if titles is empty
+     * @throws UserIOException thrown when something goes wrong displaying output
+     */
+    public void displayTitleSuggestions(List<String> titles) throws UserIOException {
+        if(titles.isEmpty()) {
+            return;
+        }
+        StringBuilder msg = new StringBuilder("Did you mean:");
+        for(String title : titles) {
+            msg.append("\n  ").append(title);
+        }
+        userIO.displayMessage(msg.toString());
+    }
+
+    /**
+     * Displays summary statistics of the library
+     * @param statistics The statistics to display
+     * @throws UserIOException thrown when something goes wrong displaying output
+     */
+    public void displayStatistics(DVDLibraryStatistics statistics) throws UserIOException {
+        StringBuilder msg = new StringBuilder();
+        msg.append("Total DVDs: ").append(statistics.getTotalCount()).append("\n");
+        double average = statistics.getAverageUserScore();
+        msg.append("Average user score: ")
+                .append(Double.isNaN(average) ? "n/a" : String.format("%.2f / 10", average))
+                .append(" (").append(statistics.getScoredCount()).append(" scored)\n");
+
+        msg.append("\nBy MPAA rating:\n");
+        appendCounts(msg, statistics.getCountsByMpaaRating(), Integer.MAX_VALUE);
+        msg.append("\nBy decade:\n");
+        for(Map.Entry<Integer, Integer> entry : statistics.getCountsByDecade().entrySet()) {
+            String decade = entry.getKey() == DVDLibraryStatistics.UNKNOWN_DECADE
+                    ? DVDLibraryStatistics.UNKNOWN : entry.getKey() + "s";
+            msg.append(String.format("  %-30s %d%n", decade, entry.getValue()));
+        }
+        msg.append("\nTop studios:\n");
+        appendCounts(msg, statistics.getCountsByStudio(), MAX_STATISTICS_ROWS);
+        msg.append("\nTop directors:\n");
+        appendCounts(msg, statistics.getCountsByDirector(), MAX_STATISTICS_ROWS);
+        if(rowCache != null) {
+            msg.append(String.format("%nRow cache: %d rows, ~%d KiB, %.1f%% hits (%d hits, %d misses, %d evictions, %d invalidations)%n",
+                    rowCache.size(), rowCache.getEstimatedBytes() / 1024, rowCache.getHitRate() * 100,
+                    rowCache.getHits(), rowCache.getMisses(), rowCache.getEvictions(), rowCache.getInvalidations()));
+        }
+        if(titleFilter != null) {
+            msg.append(String.format("Title filter: %d titles, ~%d KiB, %s false positives (target %s, expected %s), %d lookups, %d definite misses%n",
+                    titleFilter.size(), titleFilter.getMemoryBytes() / 1024,
+                    formatRate(titleFilter.getObservedFalsePositiveRate()), formatRate(titleFilter.getTargetFalsePositiveRate()),
+                    formatRate(titleFilter.getExpectedFalsePositiveRate()), titleFilter.getLookups(), titleFilter.getDefiniteMisses()));
+        }
+        userIO.displayMessage(msg.toString());
+    }
+
+    /**
+     * Stalls the program until the user inputs new values for the fields of a DVD.
+     * Each prompt shows the field's current value, and a blank input keeps it
+     * @param dvd The DVD to edit, which is left untouched
+     * @return A patch holding only the fields the user changed
      * @throws UserIOException thrown when something goes wrong displaying output or retrieving user input
      */
-    public void awaitInputEditDvd(DVD dvd) throws UserIOException {
-        awaitInputUpdateDvdValues(dvd);
+    public DVDPatch awaitInputEditDvd(DVD dvd) throws UserIOException {
+        DVDPatch patch = new DVDPatch();
+        awaitInputPatchField(patch, dvd, EDVDField.TITLE, "Enter the title of the DVD");
+        awaitInputPatchField(patch, dvd, EDVDField.RELEASE_DATE, "Enter the release date for the DVD");
+        awaitInputPatchField(patch, dvd, EDVDField.DIRECTOR_NAME, "Enter the name of the director for the DVD");
+        awaitInputPatchField(patch, dvd, EDVDField.STUDIO, "Enter the studio name of the DVD");
+        awaitInputPatchField(patch, dvd, EDVDField.MPAA_RATING, "Enter the MPAA rating for the DVD");
+        awaitInputPatchField(patch, dvd, EDVDField.USER_RATING_AND_NOTE, "Enter the user rating/note for the DVD");
+        return patch;
+    }
+
+    /**
+     * Stalls the program until the user inputs the name of a file to import DVDs from
+     * @return The file name inputted by the user
+     * @throws UserIOException thrown when something goes wrong retrieving user input
+     */
+    public String awaitInputGetImportFile() throws UserIOException {
+        return userIO.getInputString("Enter the library file to import: ");
+    }
+
+    /**
+     * Displays the outcome of an import
+     * @param imported The number of DVDs added to the library
+     * @param skipped The number of DVDs skipped because their titles were already in the library
+     * @throws UserIOException thrown when something goes wrong displaying output
+     */
+    public void displayImportResult(int imported, int skipped) throws UserIOException {
+        userIO.displayMessage("Imported " + imported + " DVDs, skipped " + skipped + " already in the library");
+    }
+
+    /**
+     * Stalls the program until the user chooses how a bulk edit selects DVDs
+     * @return The condition chosen by the user
+     * @throws UserIOException thrown when something goes wrong displaying output or retrieving user input
+     */
+    public EBulkCondition awaitInputGetBulkCondition() throws UserIOException {
+        userIO.displayMessage("Select DVDs by:\n1) A field's value\n2) Release year\n3) Minimum user score");
+        int selection = userIO.getInputNumber("Please choose an Option: ", n -> n.intValue() >= 1 && n.intValue() <= 3).intValue();
+        return EBulkCondition.values()[selection - 1];
+    }
+
+    /**
+     * Stalls the program until the user chooses what a bulk edit does to the selected DVDs
+     * @return The action chosen by the user
+     * @throws UserIOException thrown when something goes wrong displaying output or retrieving user input
+     */
+    public EBulkAction awaitInputGetBulkAction() throws UserIOException {
+        userIO.displayMessage("For every selected DVD:\n1) Set a field\n2) Remove the DVD");
+        int selection = userIO.getInputNumber("Please choose an Option: ", n -> n.intValue() >= 1 && n.intValue() <= 2).intValue();
+        return EBulkAction.values()[selection - 1];
+    }
+
+    /**
+     * Stalls the program until the user chooses a DVD field
+     * @param heading The heading displayed above the fields
+     * @return The field chosen by the user
+     * @throws UserIOException thrown when something goes wrong displaying output or retrieving user input
+     */
+    public EDVDField awaitInputGetField(String heading) throws UserIOException {
+        StringBuilder msg = new StringBuilder(heading).append("\n");
+        for(int i = 0; i < FIELD_LABELS.length; i++) {
+            msg.append(i + 1).append(") ").append(FIELD_LABELS[i]).append("\n");
+        }
+        userIO.displayMessage(msg.toString());
+        int selection = userIO.getInputNumber("Please choose an Option: ", n -> n.intValue() >= 1 && n.intValue() <= FIELD_LABELS.length).intValue();
+        return EDVDField.values()[selection - 1];
+    }
+
+    /**
+     * Stalls the program until the user inputs a value for a DVD field
+     * @param field The field the value is for
+     * @return The value inputted by the user
+     * @throws UserIOException thrown when something goes wrong retrieving user input
+     */
+    public String awaitInputGetFieldValue(EDVDField field) throws UserIOException {
+        return userIO.getInputString("Enter the " + FIELD_LABELS[field.ordinal()].toLowerCase() + ": ");
+    }
+
+    /**
+     * Stalls the program until the user inputs a year
+     * @param prompt The prompt displayed to the user
+     * @return The year inputted by the user, between 1 and 9999
+     * @throws UserIOException thrown when something goes wrong retrieving user input
+     */
+    public int awaitInputGetYear(String prompt) throws UserIOException {
+        return userIO.getInputNumber(prompt, n -> n.intValue() >= 1 && n.intValue() <= 9999).intValue();
+    }
+
+    /**
+     * Stalls the program until the user inputs a minimum user score
+     * @return The score inputted by the user, between 0 and 10
+     * @throws UserIOException thrown when something goes wrong retrieving user input
+     */
+    public double awaitInputGetMinimumScore() throws UserIOException {
+        return userIO.getInputNumber("Enter the minimum user score (0-10): ", n -> n.doubleValue() >= 0 && n.doubleValue() <= 10).doubleValue();
+    }
+
+    /**
+     * Displays the outcome of a bulk edit
+     * @param action The action applied to the selected DVDs
+     * @param affected The number of DVDs updated or removed
+     * @throws UserIOException thrown when something goes wrong displaying output
+     */
+    public void displayBulkResult(EBulkAction action, int affected) throws UserIOException {
+        userIO.displayMessage((action == EBulkAction.DELETE ? "Removed " : "Updated ") + affected + " DVDs");
     }
 
     /**
@@ -108,20 +348,16 @@ public class DVDLibraryView {
      * @throws UserIOException thrown when something goes wrong displaying output or retrieving user input
      */
     public EMenuSelection awaitInputGetMenuSelection() throws UserIOException {
-        String menuMsg = String.format("Welcome to the DVD Library:\n" +
-                "1) %s\n" +
-                "2) %s\n" +
-                "3) %s\n" +
-                "4) %s\n" +
-                "5) %s\n" +
-                "6) %s\n" +
-                "Please choose an Option: ",
-                "Add a DVD", "Remove a DVD", "Edit a DVD", "List all DVDs", "Find DVD", "Exit");
-        userIO.displayMessage(menuMsg);
+        StringBuilder menuMsg = new StringBuilder("Welcome to the DVD Library:\n");
+        for(int i = 0; i < MENU_LABELS.length; i++) {
+            menuMsg.append(i + 1).append(") ").append(MENU_LABELS[i]).append("\n");
+        }
+        menuMsg.append("Please choose an Option: ");
+        userIO.displayMessage(menuMsg.toString());
         try {
             int selection = userIO.getInputNumber(null).intValue();
-            if(selection > 6 || selection < 1) {
-                throw new ArrayIndexOutOfBoundsException("Invalid menu selection. Select a number in the range [1, 6]");
+            if(selection > MENU_LABELS.length || selection < 1) {
+                throw new ArrayIndexOutOfBoundsException("Invalid menu selection. Select a number in the range [1, " + MENU_LABELS.length + "]");
             }
             return SELECTION_VALUES[selection - 1];
         }
@@ -148,6 +384,57 @@ public class DVDLibraryView {
         dvd.setUserRatingAndNote(userIO.getInputString("Enter the user rating/note for the DVD: "));
     }
 
+    /**
+     * Appends one line per count to a report
+     * @param msg The report to append to
+     * @param counts The counts to append, in display order
+     * @param limit The maximum number of lines to append
+     */
+    private static void appendCounts(StringBuilder msg, Map<String, Integer> counts, int limit) {
+        int lines = 0;
+        for(Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if(lines++ == limit) {
+                msg.append(String.format("  ...and %d more%n", counts.size() - limit));
+                break;
+            }
+            msg.append(String.format("  %-30s %d%n", entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Formats a rate as a percentage
+     * @param rate The rate, between 0 and 1
+     * @return The rate as a percentage, or "n/a" if the rate is NaN
+     */
+    private static String formatRate(double rate) {
+        return Double.isNaN(rate) ? "n/a" : String.format("%.2f%%", rate * 100);
+    }
+
+    /**
+     * Queries user input for a new value of a single field, adding it to a patch if it differs from the current value
+     * @param patch The patch to add the new value to
+     * @param dvd The DVD being edited
+     * @param field The field to query
+     * @param prompt The prompt displayed to the user, without the trailing current value
+     * @throws UserIOException thrown when something goes wrong displaying output or retrieving user input
+     */
+    private void awaitInputPatchField(DVDPatch patch, DVD dvd, EDVDField field, String prompt) throws UserIOException {
+        String current = field.get(dvd);
+        String value = userIO.getInputString(prompt + " [" + current + "]: ");
+        if(value != null && !value.trim().isEmpty() && !value.equals(current)) {
+            patch.set(field, value);
+        }
+    }
+
+    /**
+     * Renders a DVD's row, through the row cache if one is set
+     * @param dvd The DVD to render
+     * @return The DVD's row
+     */
+    private String renderRow(DVD dvd) {
+        return rowCache == null ? dvd.toString() : rowCache.render(dvd);
+    }
+
     /**
      * Generates a banner of length DVD.getFormatStringFormattedLength(),
      * using bannerContents a the contents of the banner.
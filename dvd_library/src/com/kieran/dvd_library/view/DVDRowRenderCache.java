@@ -0,0 +1,254 @@
+package com.kieran.dvd_library.view;
+
+import com.kieran.dvd_library.dao.DVDLibraryChangeEvent;
+import com.kieran.dvd_library.dao.DVDLibraryChangeListener;
+import com.kieran.dvd_library.dto.DVD;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded, least recently used cache of rendered DVD rows.
+ *
+ * Rows are keyed by title and remember the DVD object they were rendered from, so a row is only
+ * reused for the very same DVD object. Listings larger than the cache render through renderScan(),
+ * which never evicts, as a least recently used cache evicts every row a repeated scan will need. Every mutation made through a DVDLibraryDao invalidates
+ * the rows of the titles it touched, and a reload empties the cache.
+ */
+public class DVDRowRenderCache implements DVDLibraryChangeListener {
+    /**
+     * The number of rows cached when no limit is specified
+     */
+    public static final int DEFAULT_MAX_ROWS = 100_000;
+    /**
+     * The estimated bytes held by a cached row besides its characters: the map entry,
+     * the row holder and the String and array headers
+     */
+    private static final int ROW_OVERHEAD_BYTES = 112;
+    /**
+     * The maximum number of rows held by the cache
+     */
+    private final int maxRows;
+    /**
+     * The cached rows by title, in least recently used order
+     */
+    private final LinkedHashMap<String, Row> rows;
+    /**
+     * The number of renders served from the cache
+     */
+    private long hits = 0;
+    /**
+     * The number of renders which had to format a row
+     */
+    private long misses = 0;
+    /**
+     * The number of rows dropped to stay within maxRows
+     */
+    private long evictions = 0;
+    /**
+     * The number of rows dropped because their DVD was mutated or the library reloaded
+     */
+    private long invalidations = 0;
+    /**
+     * The number of characters held by the cached rows
+     */
+    private long cachedChars = 0;
+
+    /**
+     * Constructs a new DVDRowRenderCache holding at most DEFAULT_MAX_ROWS rows
+     */
+    public DVDRowRenderCache() {
+        this(DEFAULT_MAX_ROWS);
+    }
+
+    /**
+     * Constructs a new DVDRowRenderCache
+     * @param maxRows The maximum number of rows held by the cache
+     */
+    public DVDRowRenderCache(int maxRows) {
+        this.maxRows = maxRows;
+        this.rows = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Row> eldest) {
+                if(size() <= DVDRowRenderCache.this.maxRows) {
+                    return false;
+                }
+                evictions++;
+                cachedChars -= eldest.getValue().text.length();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the rendered row of a DVD, formatting and caching it on a miss
+     * @param dvd The DVD to render
+     * @return The DVD's row, as produced by DVD.toString()
+     */
+    public synchronized String render(DVD dvd) {
+        return render(dvd, true);
+    }
+
+    /**
+     * Retrieves the rendered row of a DVD as part of a scan over more DVDs than the cache holds.
+     * Cached rows are reused, but a missed row is only cached while the cache has room
+     * @param dvd The DVD to render
+     * @return The DVD's row, as produced by DVD.toString()
+     */
+    public synchronized String renderScan(DVD dvd) {
+        return render(dvd, rows.size() < maxRows);
+    }
+
+    /**
+     * Retrieves the maximum number of rows held by the cache
+     * @return The maximum number of cached rows
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * Retrieves the rendered row of a DVD, formatting it on a miss
+     * @param dvd The DVD to render
+     * @param admit Whether a missed row is cached
+     * @return The DVD's row
+     */
+    private String render(DVD dvd, boolean admit) {
+        String title = dvd.getTitle();
+        Row row = rows.get(title);
+        if(row != null && row.dvd == dvd) {
+            hits++;
+            return row.text;
+        }
+        misses++;
+        if(!admit) {
+            return dvd.toString();
+        }
+        String text = dvd.toString();
+        Row replaced = rows.put(title, new Row(dvd, text));
+        if(replaced != null) {
+            cachedChars -= replaced.text.length();
+        }
+        cachedChars += text.length();
+        return text;
+    }
+
+    /**
+     * Drops the rows of the titles touched by a mutation of the library
+     * @param event The mutation made to the library
+     */
+    @Override
+    public synchronized void onChange(DVDLibraryChangeEvent event) {
+        if(event.getBefore() != null) {
+            invalidate(event.getBefore().getTitle());
+        }
+        if(event.getAfter() != null) {
+            invalidate(event.getAfter().getTitle());
+        }
+    }
+
+    /**
+     * Empties the cache, as every DVD object of the library was replaced
+     * @param dvds Every DVD in the library
+     */
+    @Override
+    public synchronized void onReload(Collection<DVD> dvds) {
+        invalidations += rows.size();
+        rows.clear();
+        cachedChars = 0;
+    }
+
+    /**
+     * Retrieves the number of renders served from the cache
+     * @return The number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of renders which had to format a row
+     * @return The number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Retrieves the fraction of renders served from the cache
+     * @return The hit rate in the range [0, 1], or 0 if nothing has been rendered
+     */
+    public synchronized double getHitRate() {
+        long renders = hits + misses;
+        return renders == 0 ? 0.0 : (double) hits / renders;
+    }
+
+    /**
+     * Retrieves the number of rows dropped to stay within the cache's size limit
+     * @return The number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Retrieves the number of rows dropped because their DVD was mutated or the library reloaded
+     * @return The number of invalidations
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Retrieves the number of cached rows
+     * @return The number of cached rows
+     */
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    /**
+     * Estimates the heap held by the cache, assuming two bytes per character
+     * @return An upper bound estimate of the cache's size in bytes
+     */
+    public synchronized long getEstimatedBytes() {
+        return cachedChars * 2 + (long) rows.size() * ROW_OVERHEAD_BYTES;
+    }
+
+    /**
+     * Drops the row of a title
+     * @param title The title whose row is dropped
+     */
+    private void invalidate(String title) {
+        Row row = rows.remove(title);
+        if(row != null) {
+            invalidations++;
+            cachedChars -= row.text.length();
+        }
+    }
+
+    /**
+     * A rendered row and the DVD object it was rendered from
+     */
+    private static final class Row {
+        /**
+         * The DVD object the row was rendered from
+         */
+        final DVD dvd;
+        /**
+         * The rendered row
+         */
+        final String text;
+
+        /**
+         * Constructs a new Row
+         * @param dvd The DVD object the row was rendered from
+         * @param text The rendered row
+         */
+        Row(DVD dvd, String text) {
+            this.dvd = dvd;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.kieran.dvd_library.controller;
+
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.ui.UserIOBufferedImpl;
+import com.kieran.dvd_library.view.DVDLibraryView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryController
+ */
+public class DVDLibraryControllerTest {
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    @Test
+    public void endOfInputSavesTheLibrary() throws Exception {
+        String file = dir.resolve("library.txt").toString();
+        // Adds a DVD, then ends without choosing Exit, like a script piped into the application
+        String script = "1\nAlien\n05/25/1979\nRidley Scott\nFox\nR\n9/10\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserIOBufferedImpl io = new UserIOBufferedImpl(new ByteArrayInputStream(script.getBytes(Charset.defaultCharset())), out, 1024);
+        DVDLibraryController controller = new DVDLibraryController(new DVDLibraryView(io), new DVDLibraryFileImpl(new DVDLibraryStorage(), file));
+        controller.run();
+        io.flush();
+        assertTrue(out.toString(Charset.defaultCharset()).contains("End of input, exiting"));
+
+        DVDLibraryFileImpl saved = new DVDLibraryFileImpl(new DVDLibraryStorage(), file);
+        assertTrue(saved.load());
+        DVD dvd = saved.getDvdInfo("Alien");
+        assertNotNull(dvd);
+        assertEquals("Fox", dvd.getStudio());
+    }
+}
@@ -0,0 +1,194 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryChangeStream and DVDLibraryChangeLog
+ */
+public class DVDLibraryChangeStreamTest {
+    /**
+     * The directory holding each test's library and change log
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    /**
+     * Retrieves the sequence numbers of events
+     * @param events The events
+     * @return The sequence number of every event, in order
+     */
+    private static List<Long> sequences(List<DVDLibraryChangeEvent> events) {
+        List<Long> sequences = new ArrayList<>();
+        for(DVDLibraryChangeEvent event : events) {
+            sequences.add(event.getSequence());
+        }
+        return sequences;
+    }
+
+    @Test
+    public void reloadsReachTheStreamAndTheLog() throws Exception {
+        String logFile = dir.resolve("changes.log").toString();
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        try(DVDLibraryChangeStream stream = DVDLibraryChangeStream.attach(dao, 16, logFile)) {
+            assertTrue(dao.load());
+            dao.addDvd(dvd("Alien"));
+            List<DVDLibraryChangeEvent> events = stream.subscribe(1).poll(10);
+            assertEquals(2, events.size());
+            assertEquals(EChangeType.RELOAD, events.get(0).getType());
+            assertEquals(EChangeType.ADD, events.get(1).getType());
+        }
+        try(DVDLibraryChangeLog log = new DVDLibraryChangeLog(logFile)) {
+            assertEquals(2, log.getLastSequence());
+            assertEquals(EChangeType.RELOAD, log.read(1, 1).get(0).getType());
+        }
+    }
+
+    @Test
+    public void lateEventsNeverMoveTheStreamBackwards() throws Exception {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        DVDLibraryChangeStream stream = DVDLibraryChangeStream.attach(dao, 16);
+        DVDLibraryChangeStream.Subscription subscription = stream.subscribe();
+        stream.onChange(new DVDLibraryChangeEvent(2, EChangeType.ADD, null, dvd("Aliens")));
+        assertEquals(2, stream.getLastSequence());
+        // Event 1 has been numbered but not delivered, so nothing can be read past it yet
+        assertTrue(subscription.poll(10).isEmpty());
+        stream.onChange(new DVDLibraryChangeEvent(1, EChangeType.ADD, null, dvd("Alien")));
+        assertEquals(2, stream.getLastSequence());
+        assertEquals(List.of(1L, 2L), sequences(subscription.poll(10)));
+    }
+
+    @Test
+    public void logReadsStartFromTheIndexedOffset() throws Exception {
+        String logFile = dir.resolve("changes.log").toString();
+        try(DVDLibraryChangeLog log = new DVDLibraryChangeLog(logFile)) {
+            for(long seq = 1; seq <= 2000; seq++) {
+                // Swap every pair of events, as concurrent mutations may deliver them
+                long written = seq % 2 == 1 ? seq + 1 : seq - 1;
+                log.append(Collections.singletonList(new DVDLibraryChangeEvent(written, EChangeType.ADD, null, dvd("Movie " + written))));
+            }
+            assertEquals(List.of(1500L, 1501L, 1502L), sequences(log.read(1500, 3)));
+        }
+        try(DVDLibraryChangeLog log = new DVDLibraryChangeLog(logFile)) {
+            assertEquals(2000, log.getLastSequence());
+            assertEquals(List.of(1L, 2L), sequences(log.read(1, 2)));
+            List<DVDLibraryChangeEvent> tail = log.read(1999, 10);
+            assertEquals(List.of(1999L, 2000L), sequences(tail));
+            assertEquals("Movie 2000", tail.get(1).getAfter().getTitle());
+        }
+    }
+
+    @Test
+    public void imagesHoldingTabsAndLineBreaksRoundTrip() throws Exception {
+        String logFile = dir.resolve("changes.log").toString();
+        DVD before = dvd("Tab\tTitle");
+        before.setUserRatingAndNote("Line one\r\nLine two \\ done");
+        DVD after = new DVD(before);
+        after.setStudio("Studio\twith a tab");
+        try(DVDLibraryChangeLog log = new DVDLibraryChangeLog(logFile)) {
+            log.append(List.of(new DVDLibraryChangeEvent(1, EChangeType.ADD, null, before),
+                    new DVDLibraryChangeEvent(2, EChangeType.EDIT, before, after),
+                    new DVDLibraryChangeEvent(3, EChangeType.REMOVE, after, null)));
+        }
+        try(DVDLibraryChangeLog log = new DVDLibraryChangeLog(logFile)) {
+            assertEquals(3, log.getLastSequence());
+            List<DVDLibraryChangeEvent> events = log.read(1, 3);
+            assertEquals(3, events.size());
+            assertEquals(before.getTitle(), events.get(0).getAfter().getTitle());
+            assertEquals(before.getUserRatingAndNote(), events.get(0).getAfter().getUserRatingAndNote());
+            assertEquals(after.getStudio(), events.get(1).getAfter().getStudio());
+            assertEquals(before.getUserRatingAndNote(), events.get(1).getBefore().getUserRatingAndNote());
+            assertEquals(after.getStudio(), events.get(2).getBefore().getStudio());
+            assertNull(events.get(2).getAfter());
+        }
+    }
+
+    @Test
+    public void concurrentWritersLogAReplayableOrder() throws Exception {
+        String logFile = dir.resolve("changes.log").toString();
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryVersionedStorage(), dir.resolve("library.txt").toString());
+        int threads = 4;
+        int operations = 2000;
+        try(DVDLibraryChangeStream stream = DVDLibraryChangeStream.attach(dao, 16, logFile)) {
+            List<Thread> writers = new ArrayList<>();
+            for(int t = 0; t < threads; t++) {
+                int seed = t;
+                writers.add(new Thread(() -> {
+                    for(int i = 0; i < operations; i++) {
+                        // Every writer works on the same few titles, so their mutations interleave
+                        String title = "Movie " + ((i * 7 + seed) % 10);
+                        switch((i + seed) % 3) {
+                            case 0:
+                                dao.addDvd(dvd(title));
+                                break;
+                            case 1:
+                                DVDPatch patch = new DVDPatch();
+                                patch.set(EDVDField.STUDIO, "Studio " + seed + "-" + i);
+                                dao.updateDvd(title, patch);
+                                break;
+                            default:
+                                dao.removeDvd(title);
+                        }
+                    }
+                }));
+            }
+            for(Thread writer : writers) {
+                writer.start();
+            }
+            for(Thread writer : writers) {
+                writer.join();
+            }
+        }
+        // Replaying the log in sequence order must rebuild the library, each before image matching the replay
+        Map<String, DVD> replayed = new HashMap<>();
+        try(DVDLibraryChangeLog log = new DVDLibraryChangeLog(logFile)) {
+            long last = log.getLastSequence();
+            List<DVDLibraryChangeEvent> events = log.read(1, (int) last);
+            assertEquals(last, events.size());
+            for(DVDLibraryChangeEvent event : events) {
+                DVD expected = event.getBefore() == null ? null : replayed.get(event.getBefore().getTitle());
+                if(event.getBefore() != null) {
+                    assertEquals(expected.getStudio(), event.getBefore().getStudio());
+                    replayed.remove(event.getBefore().getTitle());
+                }
+                if(event.getAfter() != null) {
+                    replayed.put(event.getAfter().getTitle(), event.getAfter());
+                }
+            }
+        }
+        assertEquals(dao.getAllDvds().size(), replayed.size());
+        for(DVD dvd : dao.getAllDvds()) {
+            assertEquals(dvd.getStudio(), replayed.get(dvd.getTitle()).getStudio());
+        }
+    }
+}
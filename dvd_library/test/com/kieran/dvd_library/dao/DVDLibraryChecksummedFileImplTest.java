@@ -0,0 +1,191 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryChecksummedFileImpl and DVDLibraryScrubber
+ */
+public class DVDLibraryChecksummedFileImplTest {
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    /**
+     * Saves a checksummed library
+     * @param file The library file
+     * @param size The number of DVDs in the library
+     */
+    private static void saveLibrary(Path file, int size) {
+        DVDLibraryChecksummedFileImpl dao = new DVDLibraryChecksummedFileImpl(new DVDLibraryStorage(), file.toString());
+        assertTrue(dao.load());
+        for(int i = 0; i < size; i++) {
+            dao.addDvd(dvd("Movie " + i));
+        }
+        assertTrue(dao.save());
+    }
+
+    /**
+     * Finds the byte offset of every line of a file
+     * @param file The file
+     * @return The offset of the first byte of each line
+     */
+    private static List<Long> lineOffsets(Path file) throws Exception {
+        byte[] bytes = Files.readAllBytes(file);
+        List<Long> offsets = new ArrayList<>();
+        offsets.add(0L);
+        for(int i = 0; i < bytes.length - 1; i++) {
+            if(bytes[i] == '\n') {
+                offsets.add(i + 1L);
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Changes one byte of a record's DVD in place, keeping the record readable but breaking its checksum
+     * @param file The library file
+     * @param lineOffset The byte offset of the record's line
+     * @return The title of the damaged record
+     */
+    private static String damageRecord(Path file, long lineOffset) throws Exception {
+        try(RandomAccessFile out = new RandomAccessFile(file.toFile(), "rw")) {
+            byte[] line = new byte[200];
+            out.seek(lineOffset);
+            int read = out.read(line);
+            String text = new String(line, 0, read, StandardCharsets.UTF_8);
+            int studio = text.indexOf("Studio");
+            assertTrue(studio > 0 && studio < text.indexOf('\n'), "Line at " + lineOffset + " is not a record");
+            out.seek(lineOffset + studio);
+            out.write('X');
+            return text.substring(DVDLibraryChecksummedFileImpl.RECORD_PREFIX_BYTES, text.indexOf("::"));
+        }
+    }
+
+    @Test
+    public void damagedRecordsAreQuarantined() throws Exception {
+        Path file = dir.resolve("library.txt");
+        saveLibrary(file, 3000);
+        List<Long> offsets = lineOffsets(file);
+        long damagedOffset = offsets.get(1500);
+        String damaged = damageRecord(file, damagedOffset);
+
+        DVDLibraryChecksummedFileImpl dao = new DVDLibraryChecksummedFileImpl(new DVDLibraryStorage(), file.toString());
+        assertTrue(dao.load(), "A damaged record must never fail the load");
+        assertEquals(2999, dao.getAllDvds().size());
+        assertNull(dao.getDvdInfo(damaged));
+        assertNotNull(dao.getDvdInfo("Movie 0"));
+        List<String> warnings = dao.getLoadWarnings();
+        assertTrue(warnings.stream().anyMatch(warning -> warning.contains("byte offset " + damagedOffset)
+                && warning.contains("does not match its checksum")), warnings.toString());
+        // The block's trailer mismatch is explained by the damaged record, so only the record is reported
+        assertFalse(warnings.stream().anyMatch(warning -> warning.startsWith("Block")), warnings.toString());
+
+        List<String> quarantine = Files.readAllLines(Path.of(dao.getQuarantineFile()));
+        assertEquals(2, quarantine.size());
+        assertTrue(quarantine.get(0).contains("byte offset " + damagedOffset));
+        assertTrue(quarantine.get(1).contains(damaged + "::") && quarantine.get(1).contains("Xtudio"));
+
+        // The next save drops the damaged record and writes a clean file
+        assertTrue(dao.save());
+        assertTrue(dao.scrub(1).isClean());
+    }
+
+    @Test
+    public void lostAndTruncatedLinesAreReported() throws Exception {
+        Path file = dir.resolve("library.txt");
+        saveLibrary(file, 2000);
+        List<String> lines = Files.readAllLines(file);
+        // Lose a record from the first block, and the trailer of the last block
+        lines.remove(10);
+        lines.remove(lines.size() - 1);
+        Files.write(file, lines);
+
+        DVDLibraryChecksummedFileImpl dao = new DVDLibraryChecksummedFileImpl(new DVDLibraryStorage(), file.toString());
+        assertTrue(dao.load());
+        assertEquals(1999, dao.getAllDvds().size());
+        List<String> warnings = dao.getLoadWarnings();
+        assertTrue(warnings.stream().anyMatch(warning -> warning.contains("lines were lost or duplicated")), warnings.toString());
+        assertTrue(warnings.stream().anyMatch(warning -> warning.contains("may have been truncated")), warnings.toString());
+        assertEquals(2, DVDLibraryScrubber.scrub(file.toString(), 2).getIssues().size());
+    }
+
+    @Test
+    public void plainFilesAreLoadedAndChecksummedBySaving() throws Exception {
+        Path file = dir.resolve("library.txt");
+        DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+        Files.write(file, List.of(serializer.serialize(dvd("Alien")), "not a DVD", serializer.serialize(dvd("Heat"))));
+        assertFalse(DVDLibraryScrubber.scrub(file.toString(), 1).isClean());
+
+        DVDLibraryChecksummedFileImpl dao = new DVDLibraryChecksummedFileImpl(new DVDLibraryStorage(), file.toString());
+        assertTrue(dao.load());
+        assertEquals(2, dao.getAllDvds().size());
+        assertTrue(Files.readAllLines(Path.of(dao.getQuarantineFile())).contains("not a DVD"));
+        assertTrue(dao.save());
+        assertEquals(DVDLibraryChecksummedFileImpl.HEADER, Files.readAllLines(file).get(0));
+        assertTrue(dao.scrub(1).isClean());
+    }
+
+    @Test
+    public void parallelScrubsFindEveryDamagedRecordOnce() throws Exception {
+        // Large enough that the file is split across several threads
+        Path file = dir.resolve("library.txt");
+        saveLibrary(file, 200_000);
+        assertTrue(new File(file.toString()).length() > 8L << 20);
+        DVDLibraryScrubber.Report clean = DVDLibraryScrubber.scrub(file.toString(), 4);
+        assertTrue(clean.isClean(), clean.getIssues().toString());
+        assertTrue(clean.getThreads() > 1);
+        assertEquals(200_000, clean.getRecords());
+        assertEquals((200_000 + DVDLibraryChecksummedFileImpl.BLOCK_RECORDS - 1) / DVDLibraryChecksummedFileImpl.BLOCK_RECORDS, clean.getBlocks());
+
+        List<Long> offsets = lineOffsets(file);
+        List<Long> damaged = new ArrayList<>();
+        for(long offset : new long[] {offsets.get(1), offsets.get(offsets.size() / 3), offsets.get(offsets.size() / 2),
+                offsets.get(offsets.size() - 3)}) {
+            damageRecord(file, offset);
+            damaged.add(offset);
+        }
+        for(int threads = 1; threads <= 4; threads++) {
+            DVDLibraryScrubber.Report report = DVDLibraryScrubber.scrub(file.toString(), threads);
+            assertEquals(200_000, report.getRecords());
+            List<Long> found = new ArrayList<>();
+            for(DVDLibraryScrubber.Issue issue : report.getIssues()) {
+                found.add(issue.getOffset());
+            }
+            assertEquals(damaged, found, threads + " threads");
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryCompactStorage
+ */
+public class DVDLibraryCompactStorageTest {
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    /**
+     * Builds titles which all share one hash code, and so one home slot, by combining "Aa" and "BB"
+     * @param pairs The number of pairs in each title
+     * @return 2^pairs distinct titles with equal hash codes
+     */
+    private static List<String> collidingTitles(int pairs) {
+        List<String> titles = new ArrayList<>();
+        for(int bits = 0; bits < 1 << pairs; bits++) {
+            StringBuilder title = new StringBuilder();
+            for(int i = 0; i < pairs; i++) {
+                title.append((bits >>> i & 1) == 0 ? "Aa" : "BB");
+            }
+            titles.add(title.toString());
+        }
+        return titles;
+    }
+
+    /**
+     * Checks that a storage holds exactly the DVDs of a map, by identity
+     * @param expected The DVDs by title
+     * @param storage The storage
+     */
+    private static void assertSameContents(Map<String, DVD> expected, DVDLibraryCompactStorage storage) {
+        assertEquals(expected.size(), storage.getAllDvds().size());
+        assertEquals(expected.isEmpty(), storage.isEmpty());
+        IdentityHashMap<DVD, Boolean> iterated = new IdentityHashMap<>();
+        for(DVD dvd : storage) {
+            assertSame(expected.get(dvd.getTitle()), dvd);
+            assertNull(iterated.put(dvd, true), "Iterated " + dvd.getTitle() + " twice");
+        }
+        assertEquals(expected.size(), iterated.size());
+        assertEquals(expected.size(), storage.getAllDvds().toArray().length);
+    }
+
+    @Test
+    public void randomOperationsMatchAHashMap() {
+        List<String> titles = new ArrayList<>(collidingTitles(8));
+        for(int i = 0; i < 768; i++) {
+            titles.add("Movie " + i);
+        }
+        Random random = new Random(29);
+        DVDLibraryCompactStorage storage = new DVDLibraryCompactStorage();
+        HashMap<String, DVD> expected = new HashMap<>();
+        for(int step = 0; step < 300_000; step++) {
+            String title = titles.get(random.nextInt(titles.size()));
+            int operation = random.nextInt(10);
+            // Drift between growing and shrinking, so removals run over both sparse and crowded tables
+            boolean growing = step / 20_000 % 2 == 0;
+            if(operation < (growing ? 3 : 6)) {
+                assertEquals(expected.remove(title) != null, storage.removeDvd(title), title);
+            }
+            else if(operation < 8) {
+                DVD dvd = dvd(title);
+                expected.put(title, dvd);
+                storage.addDvd(dvd);
+            }
+            else {
+                assertSame(expected.get(title), storage.getDvd(title), title);
+            }
+            if(step % 5000 == 0) {
+                assertSameContents(expected, storage);
+                // Every title must still be found through its probe run
+                for(String known : titles) {
+                    assertSame(expected.get(known), storage.getDvd(known), known);
+                }
+            }
+        }
+        assertSameContents(expected, storage);
+    }
+
+    @Test
+    public void removalsShiftCollidingEntriesBack() {
+        List<String> titles = collidingTitles(5);
+        DVDLibraryCompactStorage storage = new DVDLibraryCompactStorage();
+        storage.presize(64);
+        HashMap<String, DVD> expected = new HashMap<>();
+        for(String title : titles) {
+            DVD dvd = dvd(title);
+            expected.put(title, dvd);
+            storage.addDvd(dvd);
+        }
+        // Remove from the start, middle and end of one long probe run, checking the rest after each removal
+        for(int i : new int[] {0, 16, 31, 1, 15}) {
+            assertTrue(storage.removeDvd(titles.get(i)));
+            expected.remove(titles.get(i));
+            assertFalse(storage.removeDvd(titles.get(i)));
+            for(String title : titles) {
+                assertSame(expected.get(title), storage.getDvd(title), title);
+            }
+        }
+        assertSameContents(expected, storage);
+    }
+
+    @Test
+    public void presizedTablesNeverGrowWhileFilling() {
+        DVDLibraryCompactStorage storage = new DVDLibraryCompactStorage();
+        storage.presize(10_000);
+        int capacity = storage.getCapacity();
+        assertEquals(0, capacity & (capacity - 1), "Capacity must be a power of two");
+        for(int i = 0; i < 10_000; i++) {
+            storage.addDvd(dvd("Movie " + i));
+        }
+        assertEquals(capacity, storage.getCapacity());
+        // Shrinking the expected size never shrinks the table
+        storage.presize(10);
+        assertEquals(capacity, storage.getCapacity());
+        storage.addDvd(dvd(null));
+        assertEquals(10_000, storage.getAllDvds().size());
+    }
+
+    @Test
+    public void iteratorsFailFastOnStructuralChanges() {
+        DVDLibraryCompactStorage storage = new DVDLibraryCompactStorage();
+        for(int i = 0; i < 10; i++) {
+            storage.addDvd(dvd("Movie " + i));
+        }
+        Iterator<DVD> dvds = storage.iterator();
+        dvds.next();
+        storage.removeDvd("Movie 5");
+        assertThrows(ConcurrentModificationException.class, dvds::next);
+    }
+}
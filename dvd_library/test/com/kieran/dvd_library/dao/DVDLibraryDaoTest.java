@@ -0,0 +1,236 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import com.kieran.dvd_library.util.DVDPredicates;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryDao
+ */
+public class DVDLibraryDaoTest {
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    @Test
+    public void editEventsCarryTheStoredDvd() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryVersionedStorage(), dir.resolve("library.txt").toString());
+        assertTrue(dao.load());
+        dao.addDvd(dvd("Alien"));
+        dao.addDvd(dvd("Heat"));
+        List<DVDLibraryChangeEvent> events = new ArrayList<>();
+        dao.addChangeListener(new DVDLibraryChangeListener() {
+            @Override
+            public void onChange(DVDLibraryChangeEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void onChanges(List<DVDLibraryChangeEvent> batch) {
+                events.addAll(batch);
+            }
+        });
+
+        DVDPatch rename = new DVDPatch();
+        rename.set(EDVDField.TITLE, "Aliens");
+        assertTrue(dao.updateDvd("Alien", rename));
+        DVDPatch studio = new DVDPatch();
+        studio.set(EDVDField.STUDIO, "Warner");
+        assertEquals(1, dao.updateWhere(dvd -> dvd.getTitle().equals("Heat"), studio));
+
+        assertEquals(2, events.size());
+        assertEquals("Alien", events.get(0).getBefore().getTitle());
+        assertSame(dao.getDvdInfo("Aliens"), events.get(0).getAfter());
+        assertSame(dao.getDvdInfo("Heat"), events.get(1).getAfter());
+        assertEquals("Warner", events.get(1).getAfter().getStudio());
+    }
+
+    @Test
+    public void emptyPatchesConsultTheTitleFilter() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        DVDLibraryTitleFilter filter = DVDLibraryTitleFilter.attach(dao, DVDLibraryTitleFilter.DEFAULT_FALSE_POSITIVE_RATE);
+        assertTrue(dao.load());
+        dao.addDvd(dvd("Alien"));
+
+        assertTrue(dao.updateDvd("Alien", new DVDPatch()));
+        assertFalse(dao.updateDvd("Missing", new DVDPatch()));
+        assertEquals(2, filter.getLookups());
+        assertEquals(1, filter.getDefiniteMisses() + filter.getFalsePositives());
+    }
+
+    @Test
+    public void parallelQueriesMatchASequentialScanOnEveryStorage() {
+        DVDLibraryStorage[] storages = {
+                new DVDLibraryStorage(), new DVDLibraryVersionedStorage(), new DVDLibraryNormalizedStorage(), new DVDLibraryCompactStorage()
+        };
+        for(DVDLibraryStorage storage : storages) {
+            DVDLibraryFileImpl dao = new DVDLibraryFileImpl(storage, dir.resolve(storage.getClass().getSimpleName() + ".txt").toString());
+            assertTrue(dao.load());
+            for(int i = 0; i < 10_000; i++) {
+                DVD dvd = dvd("Movie " + i);
+                dvd.setStudio("Studio " + i % 7);
+                dao.addDvd(dvd);
+            }
+            for(int i = 0; i < 10_000; i += 3) {
+                dao.removeDvd("Movie " + i);
+            }
+            Predicate<DVD> where = DVDPredicates.fieldEquals(EDVDField.STUDIO, "studio 3");
+            Set<String> expected = new HashSet<>();
+            for(DVD dvd : dao.getAllDvds()) {
+                if(where.test(dvd)) {
+                    expected.add(dvd.getTitle());
+                }
+            }
+            List<String> queried = dao.select(where, DVD::getTitle);
+            assertEquals(expected.size(), queried.size(), storage.getClass().getSimpleName());
+            assertEquals(expected, new HashSet<>(queried));
+            assertEquals(dao.getAllDvds().size(), dao.parallelStream().count());
+            assertTrue(dao.stream().spliterator().hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+        }
+    }
+
+    @Test
+    public void streamsAreUnaffectedByWritesMadeWhileConsumingThem() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        assertTrue(dao.load());
+        for(int i = 0; i < 100; i++) {
+            dao.addDvd(dvd("Movie " + i));
+        }
+        Iterator<DVD> dvds = dao.stream().iterator();
+        int seen = 0;
+        while(dvds.hasNext()) {
+            dao.removeDvd(dvds.next().getTitle());
+            dao.addDvd(dvd("Sequel " + seen));
+            seen++;
+        }
+        assertEquals(100, seen);
+        assertEquals(100, dao.getAllDvds().size());
+        assertNull(dao.getDvdInfo("Movie 0"));
+    }
+
+    @Test
+    public void bulkEditsAndDeletesMatchAScanOnEveryStorage() {
+        DVDLibraryStorage[] storages = {
+                new DVDLibraryStorage(), new DVDLibraryVersionedStorage(), new DVDLibraryNormalizedStorage(), new DVDLibraryCompactStorage()
+        };
+        for(DVDLibraryStorage storage : storages) {
+            String name = storage.getClass().getSimpleName();
+            DVDLibraryFileImpl dao = new DVDLibraryFileImpl(storage, dir.resolve(name + ".txt").toString());
+            assertTrue(dao.load());
+            for(int i = 0; i < 5000; i++) {
+                DVD dvd = dvd("Movie " + i);
+                dvd.setStudio("Studio " + i % 5);
+                dao.addDvd(dvd);
+            }
+            List<List<DVDLibraryChangeEvent>> batches = new ArrayList<>();
+            dao.addChangeListener(new DVDLibraryChangeListener() {
+                @Override
+                public void onChange(DVDLibraryChangeEvent event) {
+                    batches.add(List.of(event));
+                }
+
+                @Override
+                public void onChanges(List<DVDLibraryChangeEvent> events) {
+                    batches.add(events);
+                }
+            });
+
+            DVDPatch patch = new DVDPatch();
+            patch.set(EDVDField.USER_RATING_AND_NOTE, "9/10");
+            assertEquals(1000, dao.updateWhere(DVDPredicates.fieldEquals(EDVDField.STUDIO, "Studio 2"), patch), name);
+            assertEquals(1, batches.size(), "A bulk edit must be reported in one batch");
+            assertEquals(1000, batches.get(0).size());
+            assertEquals(EChangeType.EDIT, batches.get(0).get(0).getType());
+            for(DVD dvd : dao.getAllDvds()) {
+                assertEquals(dvd.getStudio().equals("Studio 2") ? "9/10" : "5/10", dvd.getUserRatingAndNote(), dvd.getTitle());
+            }
+
+            assertEquals(2000, dao.deleteWhere(DVDPredicates.fieldEquals(EDVDField.STUDIO, "Studio 0")
+                    .or(DVDPredicates.fieldEquals(EDVDField.STUDIO, "Studio 1"))));
+            assertEquals(2, batches.size());
+            assertEquals(2000, batches.get(1).size());
+            assertEquals(EChangeType.REMOVE, batches.get(1).get(0).getType());
+            assertEquals(3000, dao.getAllDvds().size());
+            assertNull(dao.getDvdInfo("Movie 0"));
+            assertEquals(0, dao.deleteWhere(DVDPredicates.fieldEquals(EDVDField.STUDIO, "Studio 0")));
+            assertEquals(2, batches.size(), "Deleting nothing must not notify listeners");
+        }
+    }
+
+    @Test
+    public void bulkEditsOnlyTouchCandidatesStillInTheDao() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        assertTrue(dao.load());
+        dao.addDvd(dvd("Alien"));
+        dao.addDvd(dvd("Heat"));
+        dao.addDvd(dvd("Ronin"));
+        // Candidates as an index which has not yet seen the removal of Ronin would return them
+        List<DVD> candidates = new ArrayList<>(dao.getAllDvds());
+        assertTrue(dao.removeDvd("Ronin"));
+        DVDPatch patch = new DVDPatch();
+        patch.set(EDVDField.STUDIO, "Warner");
+        assertEquals(2, dao.updateWhere(candidates, dvd -> true, patch));
+        assertNull(dao.getDvdInfo("Ronin"));
+        assertEquals("Warner", dao.getDvdInfo("Heat").getStudio());
+
+        // A stale candidate only matches if the DVD in the DAO still does
+        assertEquals(0, dao.deleteWhere(candidates, dvd -> dvd.getStudio().equals("Studio")));
+        assertEquals(2, dao.getAllDvds().size());
+    }
+
+    @Test
+    public void bulkRenamesOfSeveralDvdsAreRejected() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        assertTrue(dao.load());
+        dao.addDvd(dvd("Alien"));
+        dao.addDvd(dvd("Heat"));
+        DVDPatch rename = new DVDPatch();
+        rename.set(EDVDField.TITLE, "Same");
+        assertThrows(IllegalArgumentException.class, () -> dao.updateWhere(dvd -> true, rename));
+        assertNull(dao.getDvdInfo("Same"));
+        assertEquals(2, dao.getAllDvds().size());
+
+        assertEquals(1, dao.updateWhere(dvd -> dvd.getTitle().equals("Heat"), rename));
+        assertEquals("Same", dao.getDvdInfo("Same").getTitle());
+        assertNull(dao.getDvdInfo("Heat"));
+        // An empty patch changes nothing, but still reports how many DVDs matched
+        assertEquals(2, dao.updateWhere(dvd -> true, new DVDPatch()));
+    }
+}
@@ -0,0 +1,186 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.index.DVDLibraryStatistics;
+import com.kieran.dvd_library.index.ReleaseDateIndex;
+import com.kieran.dvd_library.index.TitleTrigramIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Tests for DVDLibraryFastStartFileImpl
+ */
+public class DVDLibraryFastStartFileImplTest {
+    /**
+     * The number of DVDs in each test library, enough for the background load to outlast the test's first lookups
+     */
+    private static final int LIBRARY_SIZE = 50_000;
+    /**
+     * The directory holding each test's library and index
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    /**
+     * Saves a library of numbered DVDs and its title index
+     * @param file The library file
+     * @param storage The storage of the DAO saving the library
+     */
+    private static void writeLibrary(String file, DVDLibraryStorage storage) {
+        DVDLibraryFastStartFileImpl dao = new DVDLibraryFastStartFileImpl(storage, file);
+        for(int i = 0; i < LIBRARY_SIZE; i++) {
+            dao.addDvd(dvd("Movie " + i));
+        }
+        dao.addDvd(dvd("The Matrix"));
+        assertTrue(dao.save());
+    }
+
+    @Test
+    public void normalizedTitlesAreFoundThroughTheIndex() {
+        String file = dir.resolve("library.txt").toString();
+        writeLibrary(file, new DVDLibraryNormalizedStorage());
+        DVDLibraryFastStartFileImpl dao = new DVDLibraryFastStartFileImpl(new DVDLibraryNormalizedStorage(), file);
+        assertTrue(dao.load());
+        // Holding the DAO's lock keeps the background load from releasing the index
+        synchronized(dao) {
+            assumeFalse(dao.isFullyLoaded());
+            DVD dvd = dao.getDvdInfo("  the MATRIX ");
+            assertNotNull(dvd);
+            assertEquals("The Matrix", dvd.getTitle());
+            assertNull(dao.getDvdInfo("The Matrix Reloaded"));
+        }
+        dao.awaitLoaded();
+        assertNotNull(dao.getDvdInfo("the matrix"));
+    }
+
+    @Test
+    public void backgroundLoadNotifiesReloadListenersWithoutDeadlocking() {
+        String file = dir.resolve("library.txt").toString();
+        writeLibrary(file, new DVDLibraryStorage());
+        DVDLibraryFastStartFileImpl dao = new DVDLibraryFastStartFileImpl(new DVDLibraryStorage(), file);
+        // The listeners the controller registers, which are rebuilt on the background load's thread
+        TitleTrigramIndex titleIndex = new TitleTrigramIndex();
+        DVDLibraryStatistics statistics = new DVDLibraryStatistics();
+        ReleaseDateIndex releaseDates = new ReleaseDateIndex();
+        dao.addChangeListener(titleIndex);
+        dao.addChangeListener(statistics);
+        dao.addChangeListener(releaseDates);
+        DVDLibraryChangeStream stream = DVDLibraryChangeStream.attach(dao, 16);
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            assertTrue(dao.load());
+            assertNotNull(dao.getDvdInfo("Movie 7"));
+            dao.awaitLoaded();
+        });
+        assertEquals(LIBRARY_SIZE + 1, titleIndex.size());
+        assertEquals(LIBRARY_SIZE + 1, statistics.getTotalCount());
+        assertEquals(LIBRARY_SIZE + 1, releaseDates.size());
+        assertEquals(1, stream.getLastSequence());
+    }
+
+    @Test
+    public void damagedIndexedRecordsWaitForTheLoadWithoutDeadlocking() throws Exception {
+        String file = dir.resolve("library.txt").toString();
+        writeLibrary(file, new DVDLibraryStorage());
+        // Damage the last record without changing the file's length or modification time, so the index still matches
+        File libraryFile = new File(file);
+        long modified = libraryFile.lastModified();
+        String contents = new String(Files.readAllBytes(libraryFile.toPath()), StandardCharsets.UTF_8);
+        int damagedAt = contents.lastIndexOf("The Matrix::");
+        contents = contents.substring(0, damagedAt) + "The Matrix##" + contents.substring(damagedAt + "The Matrix::".length());
+        Files.write(libraryFile.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        assertTrue(libraryFile.setLastModified(modified));
+
+        DVDLibraryFastStartFileImpl dao = new DVDLibraryFastStartFileImpl(new DVDLibraryStorage(), file);
+        assertTrue(dao.load());
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            assertNull(dao.getDvdInfo("The Matrix"));
+            assertTrue(dao.isFullyLoaded());
+        });
+        // The background load stopped at the damaged record, so the partial library must not be saved
+        assertFalse(dao.save());
+    }
+
+    @Test
+    public void loadWarningsWaitForTheBackgroundLoad() throws Exception {
+        String file = dir.resolve("library.txt").toString();
+        writeLibrary(file, new DVDLibraryNormalizedStorage());
+        // Respell a record as a duplicate of The Matrix without changing the file's length or modification time
+        File libraryFile = new File(file);
+        long modified = libraryFile.lastModified();
+        String contents = new String(Files.readAllBytes(libraryFile.toPath()), StandardCharsets.UTF_8);
+        int respelledAt = contents.indexOf("Movie 4999::");
+        contents = contents.substring(0, respelledAt) + "the matrix::" + contents.substring(respelledAt + "Movie 4999::".length());
+        Files.write(libraryFile.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        assertTrue(libraryFile.setLastModified(modified));
+
+        DVDLibraryFastStartFileImpl dao = new DVDLibraryFastStartFileImpl(new DVDLibraryNormalizedStorage(), file);
+        assertTrue(dao.load());
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            List<String> warnings = dao.getLoadWarnings();
+            assertTrue(dao.isFullyLoaded());
+            assertEquals(1, warnings.size());
+            assertTrue(warnings.get(0).contains("the matrix"));
+        });
+    }
+
+    @Test
+    public void reloadsNeverReadAHalfWrittenSave() throws Exception {
+        String file = dir.resolve("library.txt").toString();
+        writeLibrary(file, new DVDLibraryStorage());
+        DVDLibraryFastStartFileImpl dao = new DVDLibraryFastStartFileImpl(new DVDLibraryStorage(), file);
+        assertTrue(dao.load());
+        dao.awaitLoaded();
+        // Nothing else writes the file, so every reload overlapping a save must find nothing to apply
+        AtomicBoolean saving = new AtomicBoolean(true);
+        AtomicInteger unexpectedReloads = new AtomicInteger();
+        Thread reloader = new Thread(() -> {
+            while(saving.get()) {
+                if(dao.reloadChanges() != 0) {
+                    unexpectedReloads.incrementAndGet();
+                }
+            }
+        });
+        reloader.start();
+        for(int i = 0; i < 10; i++) {
+            dao.addDvd(dvd("Sequel " + i));
+            assertTrue(dao.save());
+        }
+        saving.set(false);
+        reloader.join();
+        assertEquals(0, unexpectedReloads.get());
+        assertEquals(LIBRARY_SIZE + 11, dao.getAllDvds().size());
+    }
+}
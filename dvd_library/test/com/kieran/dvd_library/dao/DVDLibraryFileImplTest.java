@@ -0,0 +1,184 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for DVDLibraryFileImpl
+ */
+public class DVDLibraryFileImplTest {
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @param studio The studio of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title, String studio) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio(studio);
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    /**
+     * Rewrites the library file the way another program would, moving its modification time forward
+     * @param file The library file
+     * @param dvds The DVDs the file holds afterwards
+     */
+    private static void rewrite(Path file, DVD... dvds) throws Exception {
+        DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+        List<String> lines = new ArrayList<>();
+        for(DVD dvd : dvds) {
+            lines.add(serializer.serialize(dvd));
+        }
+        File libraryFile = file.toFile();
+        long modified = libraryFile.lastModified();
+        Files.write(file, lines);
+        assertTrue(libraryFile.setLastModified(modified + 2000));
+    }
+
+    @Test
+    public void reloadsKeepUnsavedChanges() throws Exception {
+        Path file = dir.resolve("library.txt");
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryVersionedStorage(), file.toString());
+        assertTrue(dao.load());
+        dao.addDvd(dvd("Alien", "Fox"));
+        dao.addDvd(dvd("Heat", "Warner"));
+        dao.addDvd(dvd("Ronin", "MGM"));
+        assertTrue(dao.save());
+        // Unsaved changes are only tracked while the file is watched
+        assumeTrue(dao.startHotReload());
+
+        // Unsaved changes, which the rewritten file knows nothing about
+        dao.addDvd(dvd("Brazil", "Universal"));
+        DVDPatch patch = new DVDPatch();
+        patch.set(EDVDField.STUDIO, "Local");
+        assertTrue(dao.updateDvd("Heat", patch));
+        assertTrue(dao.removeDvd("Ronin"));
+        rewrite(file, dvd("Alien", "External"), dvd("Heat", "External"), dvd("Ronin", "External"), dvd("Casino", "External"));
+
+        // The watcher may apply the rewrite first, which leaves this reload nothing to do
+        assertTrue(dao.reloadChanges() >= 0);
+        assertEquals("External", dao.getDvdInfo("Alien").getStudio());
+        assertNotNull(dao.getDvdInfo("Casino"));
+        assertNotNull(dao.getDvdInfo("Brazil"));
+        assertEquals("Local", dao.getDvdInfo("Heat").getStudio());
+        assertNull(dao.getDvdInfo("Ronin"));
+
+        // Once saved, the DAO's DVDs no longer have unsaved changes to protect
+        assertTrue(dao.save());
+        rewrite(file, dvd("Alien", "External"));
+        assertTrue(dao.reloadChanges() >= 0);
+        assertEquals(1, dao.getAllDvds().size());
+        dao.stopHotReload();
+    }
+
+    @Test
+    public void unwatchedReloadsApplyTheFileOverUnsavedChanges() throws Exception {
+        Path file = dir.resolve("library.txt");
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), file.toString());
+        assertTrue(dao.load());
+        dao.addDvd(dvd("Alien", "Fox"));
+        assertTrue(dao.save());
+        DVDPatch patch = new DVDPatch();
+        patch.set(EDVDField.STUDIO, "Local");
+        assertTrue(dao.updateDvd("Alien", patch));
+        rewrite(file, dvd("Alien", "External"));
+
+        assertEquals(1, dao.reloadChanges());
+        assertEquals("External", dao.getDvdInfo("Alien").getStudio());
+    }
+
+    @Test
+    public void reloadsNotifyListenersInOneBatchPerChangeType() throws Exception {
+        Path file = dir.resolve("library.txt");
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), file.toString());
+        assertTrue(dao.load());
+        for(int i = 0; i < 10; i++) {
+            dao.addDvd(dvd("Movie " + i, "Studio"));
+        }
+        assertTrue(dao.save());
+        List<List<DVDLibraryChangeEvent>> batches = new ArrayList<>();
+        dao.addChangeListener(new DVDLibraryChangeListener() {
+            @Override
+            public void onChange(DVDLibraryChangeEvent event) {
+                fail("Reloads must be reported in batches");
+            }
+
+            @Override
+            public void onChanges(List<DVDLibraryChangeEvent> events) {
+                batches.add(events);
+            }
+        });
+        List<DVD> rewritten = new ArrayList<>();
+        for(int i = 3; i < 10; i++) {
+            rewritten.add(dvd("Movie " + i, i < 6 ? "Other" : "Studio"));
+        }
+        rewritten.add(dvd("Movie 10", "Studio"));
+        rewritten.add(dvd("Movie 11", "Studio"));
+        rewrite(file, rewritten.toArray(new DVD[0]));
+
+        assertEquals(8, dao.reloadChanges());
+        assertEquals(3, batches.size());
+        assertEquals(EChangeType.REMOVE, batches.get(0).get(0).getType());
+        assertEquals(3, batches.get(0).size());
+        assertEquals(EChangeType.ADD, batches.get(1).get(0).getType());
+        assertEquals(2, batches.get(1).size());
+        assertEquals(EChangeType.EDIT, batches.get(2).get(0).getType());
+        assertEquals(3, batches.get(2).size());
+        assertEquals("Other", batches.get(2).get(0).getAfter().getStudio());
+    }
+
+    @Test
+    public void editsBeforeAnAppendAreNotMistakenForAnAppend() throws Exception {
+        Path file = dir.resolve("library.txt");
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), file.toString());
+        assertTrue(dao.load());
+        // Enough DVDs that the first line is far from the end of the file
+        for(int i = 0; i < 500; i++) {
+            dao.addDvd(dvd("Movie " + i, "Studio"));
+        }
+        assertTrue(dao.save());
+        String first = new DVDLibrarySerializer().serialize(dao.getAllDvds().iterator().next());
+        String title = first.substring(0, first.indexOf("::"));
+
+        // Edit the first line without changing its length, then append a DVD
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(first, lines.get(0));
+        lines.set(0, first.replace("Studio", "Others"));
+        lines.add(new DVDLibrarySerializer().serialize(dvd("Casino", "Universal")));
+        long modified = file.toFile().lastModified();
+        Files.write(file, lines);
+        assertTrue(file.toFile().setLastModified(modified + 2000));
+
+        assertEquals(2, dao.reloadChanges());
+        assertEquals("Others", dao.getDvdInfo(title).getStudio());
+        assertNotNull(dao.getDvdInfo("Casino"));
+    }
+}
@@ -0,0 +1,148 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryMerkleTree
+ */
+public class DVDLibraryMerkleTreeTest {
+    /**
+     * The depth of the trees under test, small enough that buckets hold several DVDs
+     */
+    private static final int DEPTH = 8;
+
+    /**
+     * The directory holding each test's libraries
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @param studio The studio of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title, String studio) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio(studio);
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    /**
+     * Finds the differing buckets by comparing every DVD of both libraries
+     * @param a The first library
+     * @param b The second library
+     * @param tree A tree of either library, used to find the bucket of a title
+     * @return The numbers of the buckets holding a DVD missing from, or different in, the other library
+     */
+    private static int[] bruteForceDiff(DVDLibraryDao a, DVDLibraryDao b, DVDLibraryMerkleTree tree) {
+        DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+        HashMap<String, String> linesOfA = new HashMap<>();
+        for(DVD dvd : a.getAllDvds()) {
+            linesOfA.put(dvd.getTitle(), serializer.serialize(dvd));
+        }
+        boolean[] differing = new boolean[1 << DEPTH];
+        for(DVD dvd : b.getAllDvds()) {
+            String line = linesOfA.remove(dvd.getTitle());
+            if(!serializer.serialize(dvd).equals(line)) {
+                differing[tree.bucketOf(dvd.getTitle())] = true;
+            }
+        }
+        for(String title : linesOfA.keySet()) {
+            differing[tree.bucketOf(title)] = true;
+        }
+        List<Integer> buckets = new ArrayList<>();
+        for(int bucket = 0; bucket < differing.length; bucket++) {
+            if(differing[bucket]) {
+                buckets.add(bucket);
+            }
+        }
+        return buckets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    public void diffsFindExactlyTheBucketsAScanFinds() {
+        DVDLibraryFileImpl a = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("a.txt").toString());
+        DVDLibraryFileImpl b = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("b.txt").toString());
+        DVDLibraryMerkleTree treeA = DVDLibraryMerkleTree.attach(a, DEPTH);
+        DVDLibraryMerkleTree treeB = DVDLibraryMerkleTree.attach(b, DEPTH);
+        assertTrue(a.load());
+        assertTrue(b.load());
+        for(int i = 0; i < 2000; i++) {
+            a.addDvd(dvd("Movie " + i, "Studio"));
+            b.addDvd(dvd("Movie " + i, "Studio"));
+        }
+        assertEquals(treeA.getRootHash(), treeB.getRootHash());
+        assertEquals(0, DVDLibraryMerkleTree.diff(treeA, treeB).length);
+
+        Random random = new Random(9);
+        for(int step = 0; step < 300; step++) {
+            DVDLibraryFileImpl library = random.nextBoolean() ? a : b;
+            String title = "Movie " + random.nextInt(2500);
+            int operation = random.nextInt(3);
+            if(operation == 0) {
+                library.removeDvd(title);
+            }
+            else if(operation == 1 && library.getDvdInfo(title) != null) {
+                DVDPatch patch = new DVDPatch();
+                patch.set(EDVDField.STUDIO, "Studio " + random.nextInt(3));
+                library.updateDvd(title, patch);
+            }
+            else {
+                library.addDvd(dvd(title, "Studio " + random.nextInt(3)));
+            }
+            if(step % 20 == 0) {
+                assertArrayEquals(bruteForceDiff(a, b, treeA), DVDLibraryMerkleTree.diff(treeA, treeB));
+            }
+        }
+        assertArrayEquals(bruteForceDiff(a, b, treeA), DVDLibraryMerkleTree.diff(treeA, treeB));
+    }
+
+    @Test
+    public void incrementalHashesMatchARebuild() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        DVDLibraryMerkleTree tree = DVDLibraryMerkleTree.attach(dao, DEPTH);
+        assertTrue(dao.load());
+        for(int i = 0; i < 500; i++) {
+            dao.addDvd(dvd("Movie " + i, "Studio"));
+        }
+        DVDPatch rename = new DVDPatch();
+        rename.set(EDVDField.TITLE, "Renamed");
+        assertTrue(dao.updateDvd("Movie 7", rename));
+        assertTrue(dao.removeDvd("Movie 8"));
+        // Adding then removing a DVD must leave its bucket's hash as it was
+        dao.addDvd(dvd("Transient", "Studio"));
+        assertTrue(dao.removeDvd("Transient"));
+
+        DVDLibraryMerkleTree rebuilt = DVDLibraryMerkleTree.attach(dao, DEPTH);
+        rebuilt.onReload(dao.getAllDvds());
+        int[] nodes = new int[(2 << DEPTH) - 1];
+        for(int i = 0; i < nodes.length; i++) {
+            nodes[i] = i + 1;
+        }
+        assertArrayEquals(rebuilt.getMerkleHashes(nodes), tree.getMerkleHashes(nodes));
+        assertThrows(IllegalArgumentException.class,
+                () -> DVDLibraryMerkleTree.diff(tree, DVDLibraryMerkleTree.attach(dao, DEPTH + 1)));
+    }
+}
@@ -0,0 +1,67 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryNormalizedStorage
+ */
+public class DVDLibraryNormalizedStorageTest {
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @param studio The studio of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title, String studio) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio(studio);
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    @Test
+    public void runtimeAddsOfCaseVariantsAreRejected() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryNormalizedStorage(), dir.resolve("library.txt").toString());
+        dao.addDvd(dvd("The Matrix", "Warner"));
+        assertThrows(IllegalArgumentException.class, () -> dao.addDvd(dvd("the matrix ", "Other")));
+        assertEquals("Warner", dao.getDvdInfo("THE MATRIX").getStudio());
+        // The exact title still replaces the stored DVD
+        dao.addDvd(dvd("The Matrix", "Village Roadshow"));
+        assertEquals("Village Roadshow", dao.getDvdInfo("the matrix").getStudio());
+        assertTrue(dao.getLoadWarnings().isEmpty());
+    }
+
+    @Test
+    public void reloadingReplacesTheWarningsOfThePreviousLoad() throws Exception {
+        Path file = dir.resolve("library.txt");
+        DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+        Files.write(file, Arrays.asList(serializer.serialize(dvd("The Matrix", "Warner")),
+                serializer.serialize(dvd("the matrix", "Other"))));
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryNormalizedStorage(), file.toString());
+        assertTrue(dao.load());
+        assertEquals(1, dao.getLoadWarnings().size());
+        assertTrue(dao.load());
+        assertEquals(1, dao.getLoadWarnings().size());
+        assertEquals("the matrix", dao.getDvdInfo("The Matrix").getTitle());
+    }
+}
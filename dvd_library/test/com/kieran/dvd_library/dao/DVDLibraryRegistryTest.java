@@ -0,0 +1,153 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryRegistry
+ */
+public class DVDLibraryRegistryTest {
+    /**
+     * The number of DVDs added to each library
+     */
+    private static final int LIBRARY_SIZE = 500;
+    /**
+     * The heap budget of each test's registry, which holds roughly two full libraries
+     */
+    private static final long HEAP_BUDGET = 250_000;
+
+    /**
+     * The directory holding each test's libraries
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10, a note long enough to give each DVD a heap cost of its own");
+        return dvd;
+    }
+
+    /**
+     * Finds a library in the registry's memory report
+     * @param registry The registry
+     * @param name The name of the library
+     * @return The library's report
+     */
+    private static DVDLibraryRegistry.LibraryMemory report(DVDLibraryRegistry registry, String name) {
+        for(DVDLibraryRegistry.LibraryMemory memory : registry.getMemoryReport()) {
+            if(memory.getName().equals(name)) {
+                return memory;
+            }
+        }
+        throw new AssertionError("No report for " + name);
+    }
+
+    @Test
+    public void idleLibrariesAreEvictedToStayWithinTheBudget() {
+        DVDLibraryRegistry registry = new DVDLibraryRegistry(dir.toString(), HEAP_BUDGET);
+        List<DVDLibraryDao> daos = new ArrayList<>();
+        AtomicInteger reloads = new AtomicInteger();
+        for(int lib = 0; lib < 6; lib++) {
+            DVDLibraryDao dao = registry.open("library-" + lib);
+            assertSame(dao, registry.open("library-" + lib));
+            dao.addChangeListener(new DVDLibraryChangeListener() {
+                @Override
+                public void onReload(Collection<DVD> dvds) {
+                    reloads.incrementAndGet();
+                }
+
+                @Override
+                public void onChange(DVDLibraryChangeEvent event) { }
+            });
+            for(int i = 0; i < LIBRARY_SIZE; i++) {
+                dao.addDvd(dvd("Movie " + lib + "-" + i));
+            }
+            daos.add(dao);
+            // Only the library in use may hold the registry over its budget
+            long others = registry.getResidentBytes() - report(registry, "library-" + lib).getResidentBytes();
+            assertTrue(others <= HEAP_BUDGET, others + " bytes held by idle libraries");
+        }
+        assertTrue(registry.getEvictionCount() >= 3, registry.getEvictionCount() + " evictions");
+        assertFalse(report(registry, "library-0").isResident());
+        assertEquals(6, registry.listLibraries().size(), "Evicted libraries must be saved first");
+
+        // Evicted libraries are read back with their unsaved changes, without telling their listeners
+        for(int lib = 0; lib < 6; lib++) {
+            DVDLibraryDao dao = daos.get(lib);
+            assertEquals(LIBRARY_SIZE, dao.getAllDvds().size());
+            assertNotNull(dao.getDvdInfo("Movie " + lib + "-7"));
+        }
+        assertTrue(registry.getReopenCount() >= 3);
+        assertEquals(0, reloads.get());
+        assertTrue(registry.getResidentBytes() <= HEAP_BUDGET + report(registry, "library-5").getResidentBytes());
+    }
+
+    @Test
+    public void busyLibrariesAreNeverEvicted() throws Exception {
+        DVDLibraryRegistry registry = new DVDLibraryRegistry(dir.toString(), HEAP_BUDGET);
+        DVDLibraryDao busy = registry.open("busy");
+        for(int i = 0; i < LIBRARY_SIZE; i++) {
+            busy.addDvd(dvd("Busy " + i));
+        }
+        // Hold the busy library on another thread by blocking inside one of its bulk edits
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DVDPatch patch = new DVDPatch();
+        patch.set(EDVDField.STUDIO, "Warner");
+        Thread user = new Thread(() -> busy.updateWhere(List.of(dvd("Busy 0")), dvd -> {
+            entered.countDown();
+            try {
+                release.await();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }, patch));
+        user.start();
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        try {
+            for(int lib = 0; lib < 3; lib++) {
+                DVDLibraryDao dao = registry.open("other-" + lib);
+                for(int i = 0; i < LIBRARY_SIZE; i++) {
+                    dao.addDvd(dvd("Movie " + lib + "-" + i));
+                }
+            }
+            assertTrue(report(registry, "busy").isResident());
+            assertTrue(registry.getEvictionCount() > 0);
+        }
+        finally {
+            release.countDown();
+            user.join();
+        }
+        assertEquals("Warner", busy.getDvdInfo("Busy 0").getStudio());
+    }
+}
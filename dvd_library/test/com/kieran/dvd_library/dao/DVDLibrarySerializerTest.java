@@ -0,0 +1,40 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Tests for DVDLibrarySerializer
+ */
+public class DVDLibrarySerializerTest {
+    @Test
+    public void patchValuesHoldingTheDelimiterRoundTrip() {
+        DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+        DVDPatch patch = new DVDPatch();
+        patch.set(EDVDField.TITLE, "Star Wars: Episode IV");
+        patch.set(EDVDField.STUDIO, "Lucasfilm::Fox:");
+        patch.set(EDVDField.USER_RATING_AND_NOTE, "Tab\there, \\u003a is not a colon\nand a break");
+        String serialized = serializer.serializePatch(patch);
+        assertFalse(serialized.contains("\t") || serialized.contains("\n"));
+        DVDPatch read = serializer.deserializePatch(serialized);
+        assertEquals(patch.getFields(), read.getFields());
+        for(EDVDField field : patch.getFields()) {
+            assertEquals(patch.get(field), read.get(field));
+        }
+    }
+
+    @Test
+    public void patchesSplitOnRegexDelimitersLiterally() {
+        DVDLibrarySerializer serializer = new DVDLibrarySerializer("|");
+        DVDPatch patch = new DVDPatch();
+        patch.set(EDVDField.DIRECTOR_NAME, "Wachowski | Wachowski");
+        patch.set(EDVDField.MPAA_RATING, "R");
+        DVDPatch read = serializer.deserializePatch(serializer.serializePatch(patch));
+        assertEquals("Wachowski | Wachowski", read.get(EDVDField.DIRECTOR_NAME));
+        assertEquals("R", read.get(EDVDField.MPAA_RATING));
+    }
+}
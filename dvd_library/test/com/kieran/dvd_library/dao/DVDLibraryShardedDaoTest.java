@@ -0,0 +1,151 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryShardedDao, including shards served by local processes over loopback sockets
+ */
+public class DVDLibraryShardedDaoTest {
+    /**
+     * The directory holding each test's shard files
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    @Test
+    public void processShardsServeAndPersistTheLibrary() throws Exception {
+        String base = dir.resolve("library.txt").toString();
+        try(DVDLibraryShardedDao dao = DVDLibraryShardedDao.openProcesses(base, 3)) {
+            assertTrue(dao.load());
+            assertTrue(dao.isEmpty());
+            for(int i = 0; i < 30; i++) {
+                dao.addDvd(dvd("Movie " + i));
+            }
+            DVD escaped = dvd("Tab\tand\nNewline \\ Movie");
+            escaped.setUserRatingAndNote("Line one\nLine two\r\n\\t is not a tab");
+            dao.addDvd(escaped);
+            assertEquals(31, dao.getAllDvds().size());
+            assertEquals(escaped.getUserRatingAndNote(), dao.getDvdInfo(escaped.getTitle()).getUserRatingAndNote());
+            assertTrue(dao.getAllDvds().stream().anyMatch(dvd -> dvd.getTitle().equals(escaped.getTitle())));
+            // Library files hold one DVD per line, so only the socket can carry line breaks
+            assertTrue(dao.removeDvd(escaped.getTitle()));
+            assertTrue(dao.removeDvd("Movie 0"));
+            assertFalse(dao.removeDvd("Movie 0"));
+            assertTrue(dao.save());
+        }
+        try(DVDLibraryShardedDao dao = DVDLibraryShardedDao.openProcesses(base, 3)) {
+            assertTrue(dao.load());
+            assertEquals(29, dao.getAllDvds().size());
+            assertNull(dao.getDvdInfo("Movie 0"));
+            assertEquals("5/10", dao.getDvdInfo("Movie 1").getUserRatingAndNote());
+        }
+    }
+
+    @Test
+    public void processShardsMoveRenamesAcrossShards() throws Exception {
+        String base = dir.resolve("library.txt").toString();
+        try(DVDLibraryShardedDao dao = DVDLibraryShardedDao.openProcesses(base, 2)) {
+            assertTrue(dao.load());
+            dao.addDvd(dvd("Alien"));
+            String renamed = "Alien 0";
+            for(int i = 1; dao.getShardIndex(renamed) == dao.getShardIndex("Alien"); i++) {
+                renamed = "Alien " + i;
+            }
+            DVDPatch patch = new DVDPatch();
+            patch.set(EDVDField.TITLE, renamed);
+            patch.set(EDVDField.USER_RATING_AND_NOTE, "Value\twith a tab");
+            assertTrue(dao.updateDvd("Alien", patch));
+            assertNull(dao.getDvdInfo("Alien"));
+            assertEquals("Value\twith a tab", dao.getDvdInfo(renamed).getUserRatingAndNote());
+        }
+    }
+
+    @Test
+    public void processShardsApplyBulkUpdatesToEveryShard() throws Exception {
+        String base = dir.resolve("library.txt").toString();
+        try(DVDLibraryShardedDao dao = DVDLibraryShardedDao.openProcesses(base, 3)) {
+            assertTrue(dao.load());
+            for(int i = 0; i < 30; i++) {
+                dao.addDvd(dvd("Movie " + i));
+            }
+            DVDPatch patch = new DVDPatch();
+            patch.set(EDVDField.STUDIO, "Fox");
+            assertEquals(30, dao.updateWhere(null, dvd -> true, patch));
+            for(DVD dvd : dao.getAllDvds()) {
+                assertEquals("Fox", dvd.getStudio());
+            }
+            assertEquals(15, dao.deleteWhere(dvd -> Integer.parseInt(dvd.getTitle().substring(6)) % 2 == 0));
+            assertEquals(15, dao.getAllDvds().size());
+        }
+    }
+
+    @Test
+    public void batchFailuresOnAShardAreRethrown() {
+        List<DVDLibraryDao> shards = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            boolean failing = i == 1;
+            shards.add(new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("shard-" + i).toString()) {
+                @Override
+                protected void applyBatch(Collection<String> removals, Collection<DVD> additions) {
+                    if(failing) {
+                        throw new UncheckedIOException(new IOException("Shard unreachable"));
+                    }
+                    super.applyBatch(removals, additions);
+                }
+            });
+        }
+        try(DVDLibraryShardedDao dao = new DVDLibraryShardedDao(shards)) {
+            for(int i = 0; i < 30; i++) {
+                dao.addDvd(dvd("Movie " + i));
+            }
+            assertThrows(UncheckedIOException.class, () -> dao.deleteWhere(dvd -> true));
+            // The shards which did not fail keep their part of the batch
+            for(DVD dvd : dao.getAllDvds()) {
+                assertEquals(1, dao.getShardIndex(dvd.getTitle()));
+            }
+        }
+    }
+
+    @Test
+    public void wireEscapingRoundTrips() {
+        String[] values = { "", "plain", "tab\there", "line\nbreak", "back\\slash", "\\t literal", "\r\n\t\\" };
+        for(String value : values) {
+            String escaped = DVDLibraryShardServer.escape(value);
+            assertFalse(escaped.contains("\t") || escaped.contains("\n") || escaped.contains("\r"));
+            assertEquals(value, DVDLibraryShardServer.unescape(escaped));
+        }
+    }
+}
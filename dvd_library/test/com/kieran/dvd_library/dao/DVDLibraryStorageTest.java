@@ -0,0 +1,80 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for DVDLibraryStorage
+ */
+public class DVDLibraryStorageTest {
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    /**
+     * Counts the DVDs a storage's spliterator reports
+     * @param storage The storage
+     * @return The number of DVDs streamed
+     */
+    private static long streamedCount(DVDLibraryStorage storage) {
+        return StreamSupport.stream(storage.spliterator(), false).count();
+    }
+
+    @Test
+    public void arraySnapshotIsReusedUntilTheStorageIsMutated() {
+        DVDLibraryStorage storage = new DVDLibraryStorage();
+        storage.addDvd(dvd("Alien"));
+        DVD[] first = storage.getArraySnapshot();
+        assertSame(first, storage.getArraySnapshot());
+        storage.addDvd(dvd("Heat"));
+        DVD[] second = storage.getArraySnapshot();
+        assertNotSame(first, second);
+        assertEquals(2, second.length);
+        storage.removeDvd("Alien");
+        assertEquals(1, storage.getArraySnapshot().length);
+    }
+
+    @Test
+    public void arraysBuiltDuringAMutationAreNotPublished() {
+        DVDLibraryStorage storage = new DVDLibraryStorage() {
+            /**
+             * Whether the next build of the array still has a mutation to interleave
+             */
+            private boolean interleave = true;
+
+            @Override
+            public Collection<DVD> getAllDvds() {
+                Collection<DVD> dvds = new ArrayList<>(super.getAllDvds());
+                if(interleave) {
+                    // Another writer adds a DVD after the array's contents were read
+                    interleave = false;
+                    addDvd(dvd("Heat"));
+                }
+                return dvds;
+            }
+        };
+        storage.addDvd(dvd("Alien"));
+        assertEquals(2, streamedCount(storage));
+        assertEquals(2, streamedCount(storage));
+    }
+}
@@ -0,0 +1,126 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryTitleFilter
+ */
+public class DVDLibraryTitleFilterTest {
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    @Test
+    public void removedAndRenamedTitlesBecomeAbsent() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        DVDLibraryTitleFilter filter = DVDLibraryTitleFilter.attach(dao, DVDLibraryTitleFilter.DEFAULT_FALSE_POSITIVE_RATE);
+        assertFalse(filter.isDefinitelyAbsent("Anything"), "An unbuilt filter must not rule titles out");
+        assertTrue(dao.load());
+        for(int i = 0; i < 4000; i++) {
+            dao.addDvd(dvd("Movie " + i));
+        }
+        DVDPatch patch = new DVDPatch();
+        for(int i = 0; i < 4000; i += 2) {
+            if(i % 4 == 0) {
+                assertTrue(dao.removeDvd("Movie " + i));
+            }
+            else {
+                patch.set(EDVDField.TITLE, "Renamed " + i);
+                assertTrue(dao.updateDvd("Movie " + i, patch));
+            }
+        }
+
+        int stillPassed = 0;
+        for(int i = 0; i < 4000; i++) {
+            if(i % 2 == 1) {
+                assertFalse(filter.isDefinitelyAbsent("Movie " + i), "False negative for Movie " + i);
+            }
+            else {
+                if(!filter.isDefinitelyAbsent("Movie " + i)) {
+                    stillPassed++;
+                }
+                if(i % 4 == 2) {
+                    assertFalse(filter.isDefinitelyAbsent("Renamed " + i), "False negative for Renamed " + i);
+                }
+            }
+        }
+        // Only false positives may pass once their DVDs are gone
+        assertTrue(stillPassed < 100, stillPassed + " of 2000 departed titles still pass the filter");
+        assertEquals(3000, filter.size());
+    }
+
+    @Test
+    public void outgrownFiltersAreRebuiltWithoutFalseNegatives() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        DVDLibraryTitleFilter filter = DVDLibraryTitleFilter.attach(dao, DVDLibraryTitleFilter.DEFAULT_FALSE_POSITIVE_RATE);
+        assertTrue(dao.load());
+        long initialMemory = filter.getMemoryBytes();
+        for(int i = 0; i < 20_000; i++) {
+            dao.addDvd(dvd("Movie " + i));
+        }
+        assertTrue(filter.getMemoryBytes() > initialMemory);
+        assertTrue(filter.getExpectedFalsePositiveRate() <= DVDLibraryTitleFilter.DEFAULT_FALSE_POSITIVE_RATE);
+        int misses = 0;
+        for(int i = 0; i < 20_000; i++) {
+            assertFalse(filter.isDefinitelyAbsent("Movie " + i));
+            if(filter.isDefinitelyAbsent("Missing " + i)) {
+                misses++;
+            }
+        }
+        assertTrue(misses > 19_000, "Only " + misses + " of 20000 missing titles were ruled out");
+    }
+
+    @Test
+    public void savedFiltersAnswerBeforeTheLibraryLoads() {
+        String libraryFile = dir.resolve("library.txt").toString();
+        String filterFile = dir.resolve("library.filter").toString();
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), libraryFile);
+        DVDLibraryTitleFilter filter = DVDLibraryTitleFilter.attach(dao, DVDLibraryTitleFilter.DEFAULT_FALSE_POSITIVE_RATE);
+        assertTrue(dao.load());
+        dao.addDvd(dvd("Alien"));
+        assertTrue(dao.save());
+        assertTrue(filter.save(filterFile, libraryFile));
+
+        DVDLibraryFileImpl restarted = new DVDLibraryFileImpl(new DVDLibraryStorage(), libraryFile);
+        DVDLibraryTitleFilter restored = DVDLibraryTitleFilter.attach(restarted,
+                DVDLibraryTitleFilter.DEFAULT_FALSE_POSITIVE_RATE, filterFile, libraryFile);
+        assertFalse(restored.isDefinitelyAbsent("Alien"));
+        assertEquals(1, restored.size());
+
+        // A filter saved for an older version of the library is ignored
+        dao.addDvd(dvd("Heat"));
+        assertTrue(dao.save());
+        DVDLibraryTitleFilter stale = DVDLibraryTitleFilter.attach(new DVDLibraryFileImpl(new DVDLibraryStorage(), libraryFile),
+                DVDLibraryTitleFilter.DEFAULT_FALSE_POSITIVE_RATE, filterFile, libraryFile);
+        assertFalse(stale.isDefinitelyAbsent("Heat"));
+        assertFalse(stale.isDefinitelyAbsent("Missing"));
+    }
+}
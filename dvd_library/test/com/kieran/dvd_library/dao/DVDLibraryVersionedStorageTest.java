@@ -0,0 +1,98 @@
+package com.kieran.dvd_library.dao;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryVersionedStorage
+ */
+public class DVDLibraryVersionedStorageTest {
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    @Test
+    public void publishedDvdsAreImmutableCopies() {
+        DVDLibraryVersionedStorage storage = new DVDLibraryVersionedStorage();
+        DVD original = dvd("Alien");
+        storage.addDvd(original);
+        DVD stored = storage.getDvd("Alien");
+        assertTrue(stored.isImmutable());
+        assertTrue(!original.isImmutable());
+        assertThrows(IllegalStateException.class, () -> stored.setStudio("Other"));
+    }
+
+    @Test
+    public void snapshotIsUnaffectedByLaterWrites() {
+        DVDLibraryVersionedStorage storage = new DVDLibraryVersionedStorage();
+        storage.addDvd(dvd("Alien"));
+        DVDLibrarySnapshot before = storage.snapshot();
+        storage.removeDvd("Alien");
+        storage.addDvd(dvd("Aliens"));
+        assertNotNull(before.getDvd("Alien"));
+        assertNull(before.getDvd("Aliens"));
+        assertEquals(before.getVersion() + 2, storage.snapshot().getVersion());
+    }
+
+    @Test
+    public void editsThroughTheDaoPublishOneVersion() {
+        DVDLibraryVersionedStorage storage = new DVDLibraryVersionedStorage();
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(storage, "unused.txt");
+        dao.addDvd(dvd("Alien"));
+        long version = storage.snapshot().getVersion();
+        DVDPatch patch = new DVDPatch();
+        patch.set(EDVDField.STUDIO, "Fox");
+        assertTrue(dao.updateDvd("Alien", patch));
+        assertEquals(version + 1, storage.snapshot().getVersion());
+        assertEquals("Fox", storage.getDvd("Alien").getStudio());
+    }
+
+    @Test
+    public void readersNeverSeeAnEditedTitleMissing() throws InterruptedException {
+        DVDLibraryVersionedStorage storage = new DVDLibraryVersionedStorage();
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(storage, "unused.txt");
+        dao.addDvd(dvd("Alien"));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while(!done.get()) {
+                DVD dvd = storage.getDvd("Alien");
+                if(dvd == null || dvd.getStudio() == null) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        for(int i = 0; i < 20_000; i++) {
+            DVDPatch patch = new DVDPatch();
+            patch.set(EDVDField.STUDIO, "Studio " + i);
+            dao.updateDvd("Alien", patch);
+        }
+        done.set(true);
+        reader.join();
+        assertEquals(0, misses.get());
+    }
+}
@@ -0,0 +1,153 @@
+package com.kieran.dvd_library.index;
+
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryStatistics
+ */
+public class DVDLibraryStatisticsTest {
+    /**
+     * The values random DVD fields are drawn from, indexed by EDVDField ordinal after the title
+     */
+    private static final String[][] VALUES = {
+            {"03/31/1999", "1984", "June 5, 2007", "unknown", "2010-01-01"},
+            {"G", "PG", "R", "", " PG "},
+            {"Ridley Scott", "Michael Mann", " ", "Sofia Coppola"},
+            {"Fox", "Warner", "Universal", "", "Warner "},
+            {"5/10", "8.5/10", "4/5 great", "85%", "loved it", "10"}
+    };
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @param releaseDate The release date of the DVD
+     * @param studio The studio of the DVD
+     * @param userRating The user rating/note of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title, String releaseDate, String studio, String userRating) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate(releaseDate);
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio(studio);
+        dvd.setUserRatingAndNote(userRating);
+        return dvd;
+    }
+
+    @Test
+    public void countersFollowAddsEditsAndRemovals() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        DVDLibraryStatistics statistics = new DVDLibraryStatistics();
+        dao.addChangeListener(statistics);
+        assertTrue(dao.load());
+        dao.addDvd(dvd("Alien", "05/25/1979", "Fox", "9/10"));
+        dao.addDvd(dvd("Heat", "1995", "Warner", "4/5"));
+        dao.addDvd(dvd("Ronin", "1998", "MGM", "no score"));
+        assertEquals(3, statistics.getTotalCount());
+        assertEquals(2, statistics.getScoredCount());
+        assertEquals(8.5, statistics.getAverageUserScore(), 1e-9);
+        assertEquals(Map.of(1970, 1, 1990, 2), statistics.getCountsByDecade());
+
+        DVDPatch patch = new DVDPatch();
+        patch.set(EDVDField.STUDIO, "Fox");
+        patch.set(EDVDField.USER_RATING_AND_NOTE, "7/10");
+        assertTrue(dao.updateDvd("Ronin", patch));
+        assertEquals(List.of("Fox", "Warner"), new ArrayList<>(statistics.getCountsByStudio().keySet()));
+        assertEquals(3, statistics.getScoredCount());
+
+        assertTrue(dao.removeDvd("Alien"));
+        assertEquals(2, statistics.getTotalCount());
+        assertEquals(7.5, statistics.getAverageUserScore(), 1e-9);
+        assertEquals(Map.of(1990, 2), statistics.getCountsByDecade());
+        dao.removeDvd("Heat");
+        dao.removeDvd("Ronin");
+        assertTrue(Double.isNaN(statistics.getAverageUserScore()));
+        assertTrue(statistics.getCountsByStudio().isEmpty());
+    }
+
+    @Test
+    public void incrementalCountersMatchARebuildAfterRandomMutations() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        DVDLibraryStatistics statistics = new DVDLibraryStatistics();
+        dao.addChangeListener(statistics);
+        assertTrue(dao.load());
+        Random random = new Random(7);
+        EDVDField[] fields = EDVDField.values();
+        for(int i = 0; i < 5000; i++) {
+            String title = "Movie " + random.nextInt(200);
+            switch(random.nextInt(4)) {
+                case 0:
+                    DVD dvd = new DVD();
+                    dvd.setTitle(title);
+                    for(int f = 1; f < fields.length; f++) {
+                        fields[f].set(dvd, randomValue(random, f));
+                    }
+                    dao.addDvd(dvd);
+                    break;
+                case 1:
+                    dao.removeDvd(title);
+                    break;
+                case 2:
+                    DVDPatch patch = new DVDPatch();
+                    int f = 1 + random.nextInt(fields.length - 1);
+                    patch.set(fields[f], randomValue(random, f));
+                    dao.updateDvd(title, patch);
+                    break;
+                default:
+                    DVDPatch rename = new DVDPatch();
+                    rename.set(EDVDField.TITLE, "Movie " + random.nextInt(200));
+                    try {
+                        dao.updateDvd(title, rename);
+                    }
+                    catch(IllegalArgumentException e) {
+                        // The new title was taken
+                    }
+                    break;
+            }
+        }
+
+        DVDLibraryStatistics rebuilt = new DVDLibraryStatistics();
+        rebuilt.onReload(dao.getAllDvds());
+        assertEquals(rebuilt.getTotalCount(), statistics.getTotalCount());
+        assertEquals(dao.getAllDvds().size(), statistics.getTotalCount());
+        assertEquals(rebuilt.getScoredCount(), statistics.getScoredCount());
+        assertEquals(rebuilt.getAverageUserScore(), statistics.getAverageUserScore(), 1e-9);
+        assertEquals(rebuilt.getCountsByStudio(), statistics.getCountsByStudio());
+        assertEquals(rebuilt.getCountsByMpaaRating(), statistics.getCountsByMpaaRating());
+        assertEquals(rebuilt.getCountsByDirector(), statistics.getCountsByDirector());
+        assertEquals(rebuilt.getCountsByDecade(), statistics.getCountsByDecade());
+    }
+
+    /**
+     * Draws a random value for a DVD field
+     * @param random The source of randomness
+     * @param field The ordinal of the field, which MUST NOT be the title
+     * @return The value
+     */
+    private static String randomValue(Random random, int field) {
+        String[] values = VALUES[field - 1];
+        return values[random.nextInt(values.length)];
+    }
+}
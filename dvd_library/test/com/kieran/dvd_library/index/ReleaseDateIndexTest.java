@@ -0,0 +1,155 @@
+package com.kieran.dvd_library.index;
+
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import com.kieran.dvd_library.util.DVDFieldParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for ReleaseDateIndex
+ */
+public class ReleaseDateIndexTest {
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @param releaseDate The release date of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title, String releaseDate) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate(releaseDate);
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    /**
+     * Collects the titles of a list of DVDs
+     * @param dvds The DVDs
+     * @return The titles, in order
+     */
+    private static List<String> titles(List<DVD> dvds) {
+        List<String> titles = new ArrayList<>();
+        for(DVD dvd : dvds) {
+            titles.add(dvd.getTitle());
+        }
+        return titles;
+    }
+
+    @Test
+    public void rangesFollowDateEditsRenamesAndRemovals() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        ReleaseDateIndex index = new ReleaseDateIndex();
+        dao.addChangeListener(index);
+        assertTrue(dao.load());
+        dao.addDvd(dvd("Alien", "05/25/1979"));
+        dao.addDvd(dvd("Heat", "December 15, 1995"));
+        dao.addDvd(dvd("Ronin", "1998-09-25"));
+        dao.addDvd(dvd("Brazil", "unknown"));
+        assertEquals(3, index.size());
+        assertEquals(LocalDate.of(1995, 12, 15), index.getReleaseDate("Heat"));
+        assertNull(index.getReleaseDate("Brazil"));
+        assertEquals(List.of("Heat", "Ronin"), titles(index.releasedBetween(1990, 1999)));
+        assertEquals(List.of("Alien"), titles(index.releasedBetween(LocalDate.of(1979, 5, 25), LocalDate.of(1979, 5, 25))));
+        assertEquals(List.of("Ronin", "Heat"), titles(index.newest(2)));
+        assertEquals(List.of("Alien", "Heat", "Ronin"), titles(index.oldest(10)));
+
+        DVDPatch redate = new DVDPatch();
+        redate.set(EDVDField.RELEASE_DATE, "1985");
+        assertTrue(dao.updateDvd("Brazil", redate));
+        DVDPatch rename = new DVDPatch();
+        rename.set(EDVDField.TITLE, "Aliens");
+        rename.set(EDVDField.RELEASE_DATE, "07/18/1986");
+        assertTrue(dao.updateDvd("Alien", rename));
+        assertTrue(dao.removeDvd("Heat"));
+        assertEquals(List.of("Brazil", "Aliens", "Ronin"), titles(index.oldest(10)));
+        assertNull(index.getReleaseDate("Alien"));
+        assertEquals(List.of("Brazil", "Aliens"), titles(index.releasedBetween(1980, 1989)));
+        assertTrue(index.releasedBetween(2000, 1990).isEmpty());
+    }
+
+    @Test
+    public void queriesMatchAScanThroughRandomMutations() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        ReleaseDateIndex index = new ReleaseDateIndex();
+        dao.addChangeListener(index);
+        assertTrue(dao.load());
+        Random random = new Random(5);
+        for(int step = 0; step < 5000; step++) {
+            String title = "Movie " + random.nextInt(300);
+            String date = random.nextInt(10) == 0 ? "unknown"
+                    : (1 + random.nextInt(12)) + "/" + (1 + random.nextInt(28)) + "/" + (1950 + random.nextInt(60));
+            int operation = random.nextInt(4);
+            if(operation == 0) {
+                dao.removeDvd(title);
+            }
+            else if(operation == 1 && dao.getDvdInfo(title) != null) {
+                DVDPatch patch = new DVDPatch();
+                String newTitle = "Movie " + random.nextInt(300);
+                if(random.nextBoolean() && dao.getDvdInfo(newTitle) == null) {
+                    patch.set(EDVDField.TITLE, newTitle);
+                }
+                patch.set(random.nextBoolean() ? EDVDField.RELEASE_DATE : EDVDField.STUDIO, date);
+                dao.updateDvd(title, patch);
+            }
+            else {
+                dao.addDvd(dvd(title, date));
+            }
+
+            if(step % 250 == 0) {
+                // Rebuilding from the library must give the same index
+                index.onReload(dao.getAllDvds());
+            }
+            if(step % 50 == 0) {
+                List<DVD> dated = new ArrayList<>();
+                for(DVD dvd : dao.getAllDvds()) {
+                    if(DVDFieldParser.parseEpochDay(dvd.getReleaseDate()) != DVDFieldParser.UNKNOWN_DATE) {
+                        dated.add(dvd);
+                    }
+                }
+                dated.sort(Comparator.<DVD>comparingLong(dvd -> DVDFieldParser.parseEpochDay(dvd.getReleaseDate()))
+                        .thenComparing(DVD::getTitle));
+                assertEquals(dated.size(), index.size());
+                assertEquals(titles(dated), titles(index.oldest(Integer.MAX_VALUE)));
+                int fromYear = 1950 + random.nextInt(60);
+                int toYear = fromYear + random.nextInt(15);
+                List<String> expected = new ArrayList<>();
+                for(DVD dvd : dated) {
+                    int year = LocalDate.ofEpochDay(DVDFieldParser.parseEpochDay(dvd.getReleaseDate())).getYear();
+                    if(year >= fromYear && year <= toYear) {
+                        expected.add(dvd.getTitle());
+                    }
+                }
+                assertEquals(expected, titles(index.releasedBetween(fromYear, toYear)));
+                List<String> newest = titles(index.newest(5));
+                for(int i = 0; i < newest.size(); i++) {
+                    assertEquals(dated.get(dated.size() - 1 - i).getTitle(), newest.get(i));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.kieran.dvd_library.index;
+
+import com.kieran.dvd_library.dao.DVDLibraryChangeEvent;
+import com.kieran.dvd_library.dao.EChangeType;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.util.EditDistance;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for TitleTrigramIndex
+ */
+public class TitleTrigramIndexTest {
+    /**
+     * The words random titles are made of
+     */
+    private static final String[] WORDS = {
+            "alien", "heat", "ronin", "casino", "brazil", "matrix", "return", "empire", "night", "star",
+            "wars", "house", "river", "dark", "knight", "blade", "runner", "jaws", "rocky", "fargo"
+    };
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    /**
+     * Builds a random title of two or three words, some of them capitalized
+     * @param random The source of randomness
+     * @return The title
+     */
+    private static String randomTitle(Random random) {
+        StringBuilder title = new StringBuilder();
+        int words = 2 + random.nextInt(2);
+        for(int i = 0; i < words; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if(random.nextBoolean()) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            }
+            title.append(i == 0 ? "" : " ").append(word);
+        }
+        return title.toString();
+    }
+
+    /**
+     * Applies random single character substitutions, insertions and deletions to a string
+     * @param random The source of randomness
+     * @param s The string to edit
+     * @param edits The number of edits to apply
+     * @return The edited string
+     */
+    private static String randomEdits(Random random, String s, int edits) {
+        StringBuilder edited = new StringBuilder(s);
+        for(int i = 0; i < edits; i++) {
+            int at = random.nextInt(edited.length());
+            char c = (char) ('a' + random.nextInt(26));
+            switch(random.nextInt(3)) {
+                case 0:
+                    edited.setCharAt(at, c);
+                    break;
+                case 1:
+                    edited.insert(at, c);
+                    break;
+                default:
+                    edited.deleteCharAt(at);
+                    break;
+            }
+        }
+        return edited.toString();
+    }
+
+    @Test
+    public void suggestsTheClosestTitlesFirst() {
+        TitleTrigramIndex index = new TitleTrigramIndex();
+        index.onReload(List.of(dvd("The Matrix"), dvd("The Matrix Reloaded"), dvd("Heat"), dvd("Alien")));
+        assertEquals(List.of("The Matrix"), index.suggest("teh matrix", 2, 10));
+        assertEquals(List.of("Heat"), index.suggest("HEAT ", 1));
+
+        index.onChange(new DVDLibraryChangeEvent(1, EChangeType.EDIT, dvd("The Matrix"), dvd("The Matrices")));
+        assertEquals(List.of("The Matrices"), index.suggest("the matrics", 2, 10));
+        index.onChange(new DVDLibraryChangeEvent(2, EChangeType.REMOVE, dvd("Heat"), null));
+        assertEquals(Collections.emptyList(), index.suggest("Heat", 1, 10));
+        assertEquals(4 - 1, index.size());
+    }
+
+    @Test
+    public void suggestionsMatchABruteForceScanThroughMutations() {
+        Random random = new Random(42);
+        TitleTrigramIndex index = new TitleTrigramIndex();
+        List<String> live = new ArrayList<>();
+        List<DVD> initial = new ArrayList<>();
+        while(live.size() < 300) {
+            String title = randomTitle(random);
+            if(!live.contains(title)) {
+                live.add(title);
+                initial.add(dvd(title));
+            }
+        }
+        index.onReload(initial);
+
+        long sequence = 0;
+        for(int round = 0; round < 3000; round++) {
+            // Mutate the library the way the DAO reports it, including renames and removals
+            int op = random.nextInt(3);
+            String title = randomTitle(random);
+            if(op == 0 && !live.contains(title)) {
+                live.add(title);
+                index.onChange(new DVDLibraryChangeEvent(++sequence, EChangeType.ADD, null, dvd(title)));
+            }
+            else if(op == 1 && !live.isEmpty()) {
+                String removed = live.remove(random.nextInt(live.size()));
+                index.onChange(new DVDLibraryChangeEvent(++sequence, EChangeType.REMOVE, dvd(removed), null));
+            }
+            else if(op == 2 && !live.isEmpty() && !live.contains(title)) {
+                int at = random.nextInt(live.size());
+                String renamed = live.set(at, title);
+                index.onChange(new DVDLibraryChangeEvent(++sequence, EChangeType.EDIT, dvd(renamed), dvd(title)));
+            }
+
+            if(round % 10 == 0) {
+                int maxDistance = 1 + random.nextInt(2);
+                String target = live.isEmpty() ? randomTitle(random) : live.get(random.nextInt(live.size()));
+                String query = randomEdits(random, target, random.nextInt(maxDistance + 1));
+                List<String> expected = bruteForce(live, query, maxDistance);
+                assertEquals(expected, index.suggest(query, maxDistance, Integer.MAX_VALUE), "Query " + query);
+            }
+        }
+        assertEquals(live.size(), index.size());
+    }
+
+    /**
+     * Finds the titles within a case-insensitive edit distance of a query by comparing every title
+     * @param titles Every title
+     * @param query The title to find similar titles for
+     * @param maxDistance The largest edit distance of a returned title
+     * @return The similar titles, closest first and alphabetically among equally close titles
+     */
+    private static List<String> bruteForce(List<String> titles, String query, int maxDistance) {
+        String normalizedQuery = query.trim().toLowerCase();
+        List<String> matches = new ArrayList<>();
+        List<Integer> distances = new ArrayList<>();
+        for(String title : titles) {
+            int distance = levenshtein(normalizedQuery, title.trim().toLowerCase());
+            assertEquals(Math.min(distance, maxDistance + 1), EditDistance.boundedLevenshtein(normalizedQuery, title.trim().toLowerCase(), maxDistance));
+            if(distance <= maxDistance) {
+                matches.add(title);
+                distances.add(distance);
+            }
+        }
+        List<Integer> order = new ArrayList<>();
+        for(int i = 0; i < matches.size(); i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> !distances.get(a).equals(distances.get(b))
+                ? Integer.compare(distances.get(a), distances.get(b)) : matches.get(a).compareTo(matches.get(b)));
+        List<String> sorted = new ArrayList<>();
+        for(int i : order) {
+            sorted.add(matches.get(i));
+        }
+        return sorted;
+    }
+
+    /**
+     * Computes the Levenshtein distance between two strings with the full distance matrix
+     * @param a The first string
+     * @param b The second string
+     * @return The distance between a and b
+     */
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for(int i = 0; i <= a.length(); i++) {
+            for(int j = 0; j <= b.length(); j++) {
+                if(i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                }
+                else {
+                    int substitution = d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                    d[i][j] = Math.min(substitution, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
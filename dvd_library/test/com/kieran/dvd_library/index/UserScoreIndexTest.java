@@ -0,0 +1,93 @@
+package com.kieran.dvd_library.index;
+
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryVersionedStorage;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for UserScoreIndex
+ */
+public class UserScoreIndexTest {
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @param userRating The user rating/note of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title, String userRating) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio("Studio");
+        dvd.setUserRatingAndNote(userRating);
+        return dvd;
+    }
+
+    /**
+     * Collects the titles of a list of DVDs
+     * @param dvds The DVDs
+     * @return The titles, in order
+     */
+    private static List<String> titles(List<DVD> dvds) {
+        List<String> titles = new ArrayList<>();
+        for(DVD dvd : dvds) {
+            titles.add(dvd.getTitle());
+        }
+        return titles;
+    }
+
+    @Test
+    public void ranksFollowScoreEditsRenamesAndRemovals() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryVersionedStorage(), dir.resolve("library.txt").toString());
+        UserScoreIndex index = new UserScoreIndex();
+        dao.addChangeListener(index);
+        assertTrue(dao.load());
+        dao.addDvd(dvd("Alien", "9/10"));
+        dao.addDvd(dvd("Heat", "4/5"));
+        dao.addDvd(dvd("Ronin", "8/10"));
+        dao.addDvd(dvd("Brazil", "unrated"));
+        assertEquals(3, index.size());
+        assertEquals(List.of("Alien", "Heat", "Ronin"), titles(index.top(10)));
+        assertEquals(List.of("Ronin", "Heat"), titles(index.bottom(2)));
+        assertEquals(List.of("Alien", "Heat", "Ronin"), titles(index.scoredAtLeast(8.0)));
+        assertEquals(-1, index.rank("Brazil"));
+
+        DVDPatch rescore = new DVDPatch();
+        rescore.set(EDVDField.USER_RATING_AND_NOTE, "10/10");
+        assertTrue(dao.updateDvd("Ronin", rescore));
+        DVDPatch rename = new DVDPatch();
+        rename.set(EDVDField.TITLE, "Aliens");
+        assertTrue(dao.updateDvd("Alien", rename));
+        DVDPatch studio = new DVDPatch();
+        studio.set(EDVDField.STUDIO, "Warner");
+        assertTrue(dao.updateDvd("Heat", studio));
+        assertEquals(List.of("Ronin", "Aliens", "Heat"), titles(index.top(3)));
+        assertEquals(3, index.rank("Heat"));
+        // Edits keeping the rank only replace the image, which is the published DVD itself
+        assertSame(dao.getDvdInfo("Heat"), index.top(3).get(2));
+
+        assertTrue(dao.removeDvd("Ronin"));
+        assertEquals(1, index.rank("Aliens"));
+        assertEquals(List.of("Aliens"), titles(index.scoredAtLeast(9.0)));
+    }
+}
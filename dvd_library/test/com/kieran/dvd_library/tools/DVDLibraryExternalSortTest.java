@@ -0,0 +1,128 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibrarySerializer;
+import com.kieran.dvd_library.dto.DVD;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryExternalSort
+ */
+public class DVDLibraryExternalSortTest {
+    /**
+     * The number of DVDs in each test's library
+     */
+    private static final int LIBRARY_SIZE = 5000;
+
+    /**
+     * The directory holding each test's library, output and runs
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Writes a generated library holding duplicate titles, with an unreadable line in the middle
+     * @param file The library file
+     * @return The generated DVDs, in the order they were written
+     */
+    private static List<DVD> writeLibrary(Path file) throws Exception {
+        DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+        DVDLibraryGenerator generator = new DVDLibraryGenerator(11, 0.1, 0.01);
+        List<DVD> dvds = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        for(int i = 0; i < LIBRARY_SIZE; i++) {
+            DVD dvd = generator.nextDvd();
+            dvds.add(dvd);
+            lines.add(serializer.serialize(dvd));
+            if(i == LIBRARY_SIZE / 2) {
+                lines.add("not a DVD");
+            }
+        }
+        Files.write(file, lines);
+        return dvds;
+    }
+
+    /**
+     * Sorts DVDs in memory the way the export is documented to order them
+     * @param dvds The DVDs, in the order they appear in the library
+     * @param key The sort key
+     * @param descending True for descending order
+     * @return The expected lines of the exported file
+     */
+    private static List<String> expected(List<DVD> dvds, ESortKey key, boolean descending) {
+        Comparator<DVD> byKey = Comparator.<DVD>comparingLong(key::rank)
+                .thenComparing(key::text, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(DVD::getTitle, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(DVD::getTitle);
+        Comparator<DVD> missingLast = Comparator.comparing(dvd -> key.rank(dvd) == Long.MAX_VALUE);
+        List<DVD> sorted = new ArrayList<>(dvds);
+        // List.sort is stable, so DVDs with equal keys keep their order in the library
+        sorted.sort(missingLast.thenComparing(descending ? byKey.reversed() : byKey));
+        DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+        List<String> lines = new ArrayList<>();
+        for(DVD dvd : sorted) {
+            lines.add(serializer.serialize(dvd));
+        }
+        return lines;
+    }
+
+    @Test
+    public void spilledSortsMatchAStableInMemorySort() throws Exception {
+        Path input = dir.resolve("library.txt");
+        Path output = dir.resolve("sorted.txt");
+        Path runs = Files.createDirectory(dir.resolve("runs"));
+        List<DVD> dvds = writeLibrary(input);
+        for(ESortKey key : ESortKey.values()) {
+            for(boolean descending : new boolean[] {false, true}) {
+                // A small budget and fan-in force many runs and intermediate merges
+                DVDLibraryExternalSort sort = new DVDLibraryExternalSort(key, descending, 64 * 1024, 3, runs);
+                assertEquals(LIBRARY_SIZE, sort.sort(input.toString(), output.toString(), EExportFormat.FILE));
+                assertTrue(sort.getRunCount() > 3, key + " spilled " + sort.getRunCount() + " runs");
+                assertEquals(1, sort.getSkippedCount());
+                assertEquals(expected(dvds, key, descending), Files.readAllLines(output), key + (descending ? " descending" : ""));
+                try(Stream<Path> left = Files.list(runs)) {
+                    assertEquals(0, left.count(), "Runs must be deleted once merged");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void librariesWithinTheBudgetAreNeverSpilled() throws Exception {
+        Path input = dir.resolve("library.txt");
+        Path output = dir.resolve("sorted.txt");
+        List<DVD> dvds = writeLibrary(input);
+        DVDLibraryExternalSort sort = new DVDLibraryExternalSort(ESortKey.STUDIO, false, Long.MAX_VALUE, 2, dir);
+        assertEquals(LIBRARY_SIZE, sort.sort(input.toString(), output.toString(), EExportFormat.FILE));
+        assertEquals(0, sort.getRunCount());
+        assertEquals(expected(dvds, ESortKey.STUDIO, false), Files.readAllLines(output));
+    }
+
+    @Test
+    public void csvExportsHoldAHeaderAndOneSortedRowPerDvd() throws Exception {
+        Path input = dir.resolve("library.txt");
+        Path output = dir.resolve("sorted.csv");
+        List<DVD> dvds = writeLibrary(input);
+        DVDLibraryExternalSort sort = new DVDLibraryExternalSort(ESortKey.TITLE, false, 64 * 1024, 2, dir);
+        sort.sort(input.toString(), output.toString(), EExportFormat.CSV);
+        List<String> lines = Files.readAllLines(output);
+        assertEquals("Title,Release Date,MPAA Rating,Director,Studio,User Rating", lines.get(0));
+        List<String> expected = expected(dvds, ESortKey.TITLE, false);
+        assertEquals(LIBRARY_SIZE + 1, lines.size());
+        for(int i = 0; i < LIBRARY_SIZE; i++) {
+            String title = expected.get(i).substring(0, expected.get(i).indexOf("::"));
+            String field = title.contains(",") || title.contains("\"") ? "\"" + title.replace("\"", "\"\"") + "\"" : title;
+            assertTrue(lines.get(i + 1).startsWith(field + ","), "Row " + i + " is " + lines.get(i + 1));
+        }
+    }
+}
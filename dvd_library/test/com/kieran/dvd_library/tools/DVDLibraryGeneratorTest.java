@@ -0,0 +1,87 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibrarySerializer;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.util.DVDFieldParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryGenerator
+ */
+public class DVDLibraryGeneratorTest {
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    @Test
+    public void theSameSeedGeneratesTheSameLibrary() {
+        DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+        DVDLibraryGenerator first = new DVDLibraryGenerator(7);
+        DVDLibraryGenerator second = new DVDLibraryGenerator(7);
+        DVDLibraryGenerator other = new DVDLibraryGenerator(8);
+        int differing = 0;
+        for(int i = 0; i < 1000; i++) {
+            String line = serializer.serialize(first.nextDvd());
+            assertEquals(line, serializer.serialize(second.nextDvd()));
+            if(!line.equals(serializer.serialize(other.nextDvd()))) {
+                differing++;
+            }
+        }
+        assertEquals(1000, first.getGeneratedCount());
+        assertNotEquals(0, differing);
+    }
+
+    @Test
+    public void titlesAreUniqueToTheirIndex() {
+        Set<String> titles = new HashSet<>();
+        for(long index = 0; index < 300_000; index++) {
+            assertTrue(titles.add(DVDLibraryGenerator.titleOf(index)), "Repeated title at " + index);
+        }
+    }
+
+    @Test
+    public void duplicatesFollowTheDuplicateRate() {
+        for(double rate : new double[] {0.0, 0.2}) {
+            DVDLibraryGenerator generator = new DVDLibraryGenerator(3, rate, 0.0);
+            Set<String> titles = new HashSet<>();
+            int duplicates = 0;
+            for(int i = 0; i < 20_000; i++) {
+                if(!titles.add(generator.nextDvd().getTitle())) {
+                    duplicates++;
+                }
+            }
+            // A duplicate draws an earlier record index, whose title is new if that record was itself a duplicate
+            double observed = duplicates / 20_000.0;
+            assertTrue(observed >= rate * (1 - rate) - 0.01 && observed <= rate + 0.01, "Duplicate rate " + observed);
+        }
+    }
+
+    @Test
+    public void writtenLibrariesLoadWithParsableFields() throws Exception {
+        Path file = dir.resolve("library.txt");
+        new DVDLibraryGenerator(11, 0.0, 0.05).write(file.toString(), 5000);
+        assertEquals(5000, Files.readAllLines(file).size());
+
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), file.toString());
+        assertTrue(dao.load());
+        assertEquals(5000, dao.getAllDvds().size());
+        for(DVD dvd : dao.getAllDvds()) {
+            int year = DVDFieldParser.parseYear(dvd.getReleaseDate());
+            assertTrue(year >= 1920 && year <= 2024, dvd.getReleaseDate());
+        }
+    }
+}
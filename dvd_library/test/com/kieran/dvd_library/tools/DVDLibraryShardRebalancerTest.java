@@ -0,0 +1,152 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryShardedDao;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.util.ConsistentHashRing;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibraryShardRebalancer
+ */
+public class DVDLibraryShardRebalancerTest {
+    /**
+     * The directory holding each test's shard files
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Writes a library of numbered DVDs across several shard files
+     * @param base The library file the shard files are named after
+     * @param shardCount The number of shards
+     * @param size The number of DVDs
+     */
+    private static void writeLibrary(String base, int shardCount, int size) {
+        try(DVDLibraryShardedDao dao = DVDLibraryShardedDao.openFiles(base, shardCount)) {
+            assertTrue(dao.load());
+            for(int i = 0; i < size; i++) {
+                DVD dvd = new DVD();
+                dvd.setTitle("Movie " + i);
+                dvd.setReleaseDate("01/01/2000");
+                dvd.setMpaaRating("PG");
+                dvd.setDirectorName("Director");
+                dvd.setStudio("Studio");
+                dvd.setUserRatingAndNote("5/10");
+                dao.addDvd(dvd);
+            }
+            assertTrue(dao.save());
+        }
+    }
+
+    @Test
+    public void rebalancingKeepsEveryDvdOnItsNewShard() throws Exception {
+        String base = dir.resolve("library.txt").toString();
+        writeLibrary(base, 3, 500);
+        int moved = DVDLibraryShardRebalancer.rebalance(base, 3, 4);
+        assertTrue(moved > 0 && moved < 500);
+        try(DVDLibraryShardedDao dao = DVDLibraryShardedDao.openFiles(base, 4)) {
+            assertTrue(dao.load());
+            assertEquals(500, dao.getAllDvds().size());
+        }
+        ConsistentHashRing ring = new ConsistentHashRing(4);
+        for(int i = 0; i < 4; i++) {
+            DVDLibraryFileImpl shard = new DVDLibraryFileImpl(new DVDLibraryStorage(), DVDLibraryShardedDao.getShardFileName(base, i));
+            assertTrue(shard.load());
+            for(DVD dvd : shard.getAllDvds()) {
+                assertEquals(i, ring.partitionFor(dvd.getTitle()));
+            }
+        }
+        assertTrue(DVDLibraryShardRebalancer.rebalance(base, 4, 2) > 0);
+        assertFalse(new File(DVDLibraryShardedDao.getShardFileName(base, 2)).exists());
+        assertFalse(new File(DVDLibraryShardedDao.getShardFileName(base, 3)).exists());
+        try(DVDLibraryShardedDao dao = DVDLibraryShardedDao.openFiles(base, 2)) {
+            assertTrue(dao.load());
+            assertEquals(500, dao.getAllDvds().size());
+        }
+        try(Stream<Path> files = Files.list(dir)) {
+            assertFalse(files.anyMatch(file -> file.toString().endsWith(".rebalance")));
+        }
+    }
+
+    @Test
+    public void unchangedShardsAreNotRewritten() throws Exception {
+        String base = dir.resolve("library.txt").toString();
+        writeLibrary(base, 3, 100);
+        File shard = new File(DVDLibraryShardedDao.getShardFileName(base, 0));
+        assertTrue(shard.setLastModified(1_000_000_000_000L));
+        assertEquals(0, DVDLibraryShardRebalancer.rebalance(base, 3, 3));
+        assertEquals(1_000_000_000_000L, shard.lastModified());
+    }
+
+    @Test
+    public void failedMovesAreFinishedByRecovering() throws Exception {
+        String base = dir.resolve("library.txt").toString();
+        writeLibrary(base, 4, 500);
+        DVDLibraryShardRebalancer.ShardMove move = DVDLibraryShardRebalancer.shardMove;
+        AtomicInteger moves = new AtomicInteger();
+        DVDLibraryShardRebalancer.shardMove = (from, to) -> {
+            if(moves.incrementAndGet() == 2) {
+                throw new IOException("Disk full");
+            }
+            move.move(from, to);
+        };
+        try {
+            assertThrows(IOException.class, () -> DVDLibraryShardRebalancer.rebalance(base, 4, 2));
+        }
+        finally {
+            DVDLibraryShardRebalancer.shardMove = move;
+        }
+        // The remaining temporary shards are kept, so the moved DVDs are not lost
+        try(Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.anyMatch(file -> file.toString().endsWith(".rebalance")));
+        }
+        assertEquals(2, DVDLibraryShardRebalancer.recover(base));
+        assertEquals(-1, DVDLibraryShardRebalancer.recover(base));
+        assertFalse(new File(DVDLibraryShardedDao.getShardFileName(base, 3)).exists());
+        try(DVDLibraryShardedDao dao = DVDLibraryShardedDao.openFiles(base, 2)) {
+            assertTrue(dao.load());
+            assertEquals(500, dao.getAllDvds().size());
+        }
+        try(Stream<Path> files = Files.list(dir)) {
+            assertFalse(files.anyMatch(file -> file.toString().contains(".rebalance")));
+        }
+    }
+
+    @Test
+    public void rebalancingFinishesAnInterruptedRebalanceFirst() throws Exception {
+        String base = dir.resolve("library.txt").toString();
+        writeLibrary(base, 3, 200);
+        DVDLibraryShardRebalancer.ShardMove move = DVDLibraryShardRebalancer.shardMove;
+        DVDLibraryShardRebalancer.shardMove = (from, to) -> {
+            throw new IOException("Disk full");
+        };
+        try {
+            assertThrows(IOException.class, () -> DVDLibraryShardRebalancer.rebalance(base, 3, 5));
+        }
+        finally {
+            DVDLibraryShardRebalancer.shardMove = move;
+        }
+        // The interrupted rebalance committed 5 shards, so 3 is no longer the current count
+        assertThrows(IOException.class, () -> DVDLibraryShardRebalancer.rebalance(base, 3, 2));
+        assertTrue(DVDLibraryShardRebalancer.rebalance(base, 5, 2) > 0);
+        try(DVDLibraryShardedDao dao = DVDLibraryShardedDao.openFiles(base, 2)) {
+            assertTrue(dao.load());
+            assertEquals(200, dao.getAllDvds().size());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryVersionedStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibrarySoakDriver
+ */
+public class DVDLibrarySoakDriverTest {
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    @Test
+    public void shortRunsKeepTheLibraryNearItsSizeWithoutSaving() {
+        Path file = dir.resolve("library.txt");
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryVersionedStorage(), file.toString());
+        assertTrue(dao.load());
+        DVDLibrarySoakDriver driver = new DVDLibrarySoakDriver(dao, 5);
+        driver.populate(2000);
+        int populated = dao.getAllDvds().size();
+        driver.run(300_000_000L, 100_000_000L);
+        // Adds and removes steer towards the populated size, so it only drifts by the last few operations
+        assertEquals(populated, dao.getAllDvds().size(), 5);
+        assertFalse(Files.exists(file) && file.toFile().length() > 0);
+    }
+}
@@ -0,0 +1,106 @@
+package com.kieran.dvd_library.tools;
+
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryMerkleTree;
+import com.kieran.dvd_library.dao.DVDLibrarySerializer;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDLibrarySync
+ */
+public class DVDLibrarySyncTest {
+    /**
+     * The directory holding each test's libraries
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @param studio The studio of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title, String studio) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio(studio);
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    /**
+     * Serializes every DVD of a library
+     * @param dao The library
+     * @return The library's lines, sorted
+     */
+    private static Set<String> contents(DVDLibraryFileImpl dao) {
+        DVDLibrarySerializer serializer = new DVDLibrarySerializer();
+        Set<String> lines = new TreeSet<>();
+        for(DVD dvd : dao.getAllDvds()) {
+            lines.add(serializer.serialize(dvd));
+        }
+        return lines;
+    }
+
+    @Test
+    public void syncsMakeTheTargetMirrorTheSource() {
+        DVDLibraryFileImpl source = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("source.txt").toString());
+        DVDLibraryFileImpl target = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("target.txt").toString());
+        DVDLibraryMerkleTree sourceTree = DVDLibraryMerkleTree.attach(source);
+        DVDLibraryMerkleTree targetTree = DVDLibraryMerkleTree.attach(target);
+        assertTrue(source.load());
+        assertTrue(target.load());
+        for(int i = 0; i < 3000; i++) {
+            source.addDvd(dvd("Movie " + i, "Studio"));
+            target.addDvd(dvd("Movie " + i, "Studio"));
+        }
+        // Three DVDs only in the source, two edited in the target and four only in the target
+        for(int i = 3000; i < 3003; i++) {
+            source.addDvd(dvd("Movie " + i, "Studio"));
+        }
+        DVDPatch patch = new DVDPatch();
+        patch.set(EDVDField.STUDIO, "Other");
+        assertTrue(target.updateDvd("Movie 10", patch));
+        assertTrue(target.updateDvd("Movie 20", patch));
+        for(int i = 0; i < 4; i++) {
+            target.addDvd(dvd("Extra " + i, "Studio"));
+        }
+
+        DVDLibrarySync sync = new DVDLibrarySync(source, sourceTree, target, targetTree);
+        assertFalse(sync.sync(true));
+        assertEquals(3, sync.getAddedCount());
+        assertEquals(2, sync.getUpdatedCount());
+        assertEquals(4, sync.getRemovedCount());
+        assertNotEquals(contents(source), contents(target));
+
+        assertFalse(sync.sync(false));
+        assertEquals(9, sync.getChangedCount());
+        assertTrue(sync.getDifferingBuckets() <= 9);
+        // Only the DVDs of differing buckets are read, not whole libraries
+        assertTrue(sync.getTransferredCount() < 100, "Read " + sync.getTransferredCount() + " DVDs");
+        assertEquals(contents(source), contents(target));
+        assertEquals(sourceTree.getRootHash(), targetTree.getRootHash());
+
+        assertTrue(sync.sync(false));
+        assertEquals(0, sync.getChangedCount());
+        assertEquals(0, sync.getTransferredCount());
+    }
+}
@@ -0,0 +1,106 @@
+package com.kieran.dvd_library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for CountingBloomFilter
+ */
+public class CountingBloomFilterTest {
+    @Test
+    public void removalsNeverCauseFalseNegatives() {
+        CountingBloomFilter filter = new CountingBloomFilter(5000, 0.01);
+        // Hash to number of copies, so elements added more than once are removed as often
+        HashMap<Long, Integer> present = new HashMap<>();
+        List<Long> hashes = new ArrayList<>();
+        Random random = new Random(13);
+        for(int i = 0; i < 8000; i++) {
+            hashes.add(random.nextLong());
+        }
+        for(int step = 0; step < 200_000; step++) {
+            long hash = hashes.get(random.nextInt(hashes.size()));
+            if(random.nextInt(3) == 0 && present.containsKey(hash)) {
+                assertTrue(filter.remove(hash));
+                present.merge(hash, -1, (count, delta) -> count == 1 ? null : count + delta);
+            }
+            else if(present.size() < 5000 || present.containsKey(hash)) {
+                filter.add(hash);
+                present.merge(hash, 1, Integer::sum);
+            }
+            if(step % 1000 == 0) {
+                for(long element : present.keySet()) {
+                    assertTrue(filter.mightContain(element), "False negative at step " + step);
+                }
+            }
+        }
+        assertEquals(present.values().stream().mapToLong(Integer::longValue).sum(), filter.size());
+    }
+
+    @Test
+    public void saturatedCountersAreNeverDecremented() {
+        // So few counters that every one of them saturates
+        CountingBloomFilter filter = new CountingBloomFilter(64, 3);
+        Random random = new Random(17);
+        List<Long> added = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            long hash = random.nextLong();
+            added.add(hash);
+            filter.add(hash);
+        }
+        for(int i = 0; i < 999; i++) {
+            filter.remove(added.get(i));
+        }
+        assertTrue(filter.mightContain(added.get(999)));
+        assertEquals(1, filter.size());
+    }
+
+    @Test
+    public void falsePositivesStayNearTheTargetRate() {
+        CountingBloomFilter filter = new CountingBloomFilter(20_000, 0.01);
+        Random random = new Random(19);
+        for(int i = 0; i < 20_000; i++) {
+            filter.add(random.nextLong());
+        }
+        int falsePositives = 0;
+        for(int i = 0; i < 100_000; i++) {
+            if(filter.mightContain(random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2000, falsePositives + " false positives in 100000 lookups");
+        assertEquals(0.01, filter.getExpectedFalsePositiveRate(), 0.005);
+        // A filter which was never given an element rules everything out
+        assertFalse(new CountingBloomFilter(100, 0.01).remove(random.nextLong()));
+    }
+
+    @Test
+    public void filtersRoundTripThroughAStream() throws Exception {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.05);
+        Random random = new Random(23);
+        for(int i = 0; i < 700; i++) {
+            filter.add(random.nextLong());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        CountingBloomFilter read = CountingBloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(filter.size(), read.size());
+        assertEquals(filter.getCounterCount(), read.getCounterCount());
+        assertEquals(filter.getHashCount(), read.getHashCount());
+        for(int i = 0; i < 10_000; i++) {
+            long hash = random.nextLong();
+            assertEquals(filter.mightContain(hash), read.mightContain(hash));
+        }
+    }
+}
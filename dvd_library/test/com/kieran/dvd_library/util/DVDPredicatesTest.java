@@ -0,0 +1,68 @@
+package com.kieran.dvd_library.util;
+
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDPredicates
+ */
+public class DVDPredicatesTest {
+    /**
+     * Builds a DVD with every field set
+     * @param releaseDate The release date of the DVD
+     * @param studio The studio of the DVD
+     * @param userRating The user rating/note of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String releaseDate, String studio, String userRating) {
+        DVD dvd = new DVD();
+        dvd.setTitle("Alien");
+        dvd.setReleaseDate(releaseDate);
+        dvd.setMpaaRating("R");
+        dvd.setDirectorName("Ridley Scott");
+        dvd.setStudio(studio);
+        dvd.setUserRatingAndNote(userRating);
+        return dvd;
+    }
+
+    @Test
+    public void fieldPredicatesIgnoreCaseAndMissingValues() {
+        DVD alien = dvd("05/25/1979", " 20th Century Fox ", "9/10");
+        assertTrue(DVDPredicates.fieldEquals(EDVDField.STUDIO, "20TH CENTURY FOX").test(alien));
+        assertFalse(DVDPredicates.fieldEquals(EDVDField.STUDIO, "Fox").test(alien));
+        assertTrue(DVDPredicates.fieldContains(EDVDField.STUDIO, "century").test(alien));
+        assertTrue(DVDPredicates.fieldContains(EDVDField.DIRECTOR_NAME, "SCOTT").test(alien));
+        DVD noStudio = dvd("1979", null, "9/10");
+        assertFalse(DVDPredicates.fieldEquals(EDVDField.STUDIO, "Fox").test(noStudio));
+        assertFalse(DVDPredicates.fieldContains(EDVDField.STUDIO, "").test(noStudio));
+    }
+
+    @Test
+    public void releaseRangesIncludeTheirEndsAndSkipUnknownDates() {
+        assertTrue(DVDPredicates.releasedBetween(1970, 1979).test(dvd("05/25/1979", "Fox", "")));
+        assertTrue(DVDPredicates.releasedBetween(1979, 1990).test(dvd("May 25, 1979", "Fox", "")));
+        assertFalse(DVDPredicates.releasedBetween(1980, 1990).test(dvd("1979-05-25", "Fox", "")));
+        assertFalse(DVDPredicates.releasedBetween(0, 9999).test(dvd("someday", "Fox", "")));
+
+        LocalDate from = LocalDate.of(1979, 5, 25);
+        LocalDate to = LocalDate.of(1979, 6, 30);
+        assertTrue(DVDPredicates.releasedBetween(from, to).test(dvd("05/25/1979", "Fox", "")));
+        assertTrue(DVDPredicates.releasedBetween(from, to).test(dvd("1979-06-30", "Fox", "")));
+        assertFalse(DVDPredicates.releasedBetween(from, to).test(dvd("May 24, 1979", "Fox", "")));
+        assertFalse(DVDPredicates.releasedBetween(from, to).test(dvd("unknown", "Fox", "")));
+    }
+
+    @Test
+    public void scoresAreParsedFromFreeTextRatings() {
+        assertTrue(DVDPredicates.scoreAtLeast(8.0).test(dvd("1979", "Fox", "4/5 great")));
+        assertTrue(DVDPredicates.scoreAtLeast(8.5).test(dvd("1979", "Fox", "85%")));
+        assertFalse(DVDPredicates.scoreAtLeast(8.6).test(dvd("1979", "Fox", "85 out of 100")));
+        assertFalse(DVDPredicates.scoreAtLeast(0.0).test(dvd("1979", "Fox", "loved it")));
+    }
+}
@@ -0,0 +1,73 @@
+package com.kieran.dvd_library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for IndexedSkipList
+ */
+public class IndexedSkipListTest {
+    @Test
+    public void matchesATreeMapThroughRandomOperations() {
+        Random random = new Random(1234);
+        IndexedSkipList<Integer> list = new IndexedSkipList<>(Comparator.naturalOrder());
+        TreeMap<Integer, Integer> reference = new TreeMap<>();
+        for(int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5000);
+            switch(random.nextInt(6)) {
+                case 0:
+                case 1:
+                    assertEquals(reference.put(key, key) == null, list.add(key));
+                    break;
+                case 2:
+                    assertEquals(reference.remove(key) != null, list.remove(key));
+                    break;
+                case 3:
+                    assertEquals(reference.containsKey(key) ? reference.headMap(key).size() : -1, list.indexOf(key));
+                    assertEquals(reference.headMap(key).size(), list.lowerBound(key));
+                    break;
+                case 4:
+                    if(!reference.isEmpty()) {
+                        int index = random.nextInt(reference.size());
+                        int from = random.nextInt(reference.size() + 1);
+                        int count = random.nextInt(20);
+                        List<Integer> expected = new ArrayList<>(reference.keySet()).subList(from, Math.min(reference.size(), from + count));
+                        assertEquals(new ArrayList<>(reference.keySet()).get(index), list.get(index));
+                        assertEquals(expected, list.range(from, count));
+                    }
+                    break;
+                default:
+                    if(random.nextInt(5000) == 0) {
+                        list.clear();
+                        reference.clear();
+                    }
+                    break;
+            }
+            assertEquals(reference.size(), list.size());
+        }
+        List<Integer> iterated = new ArrayList<>();
+        list.forEach(iterated::add);
+        assertEquals(new ArrayList<>(reference.keySet()), iterated);
+    }
+
+    @Test
+    public void positionsOutsideTheListAreRejected() {
+        IndexedSkipList<String> list = new IndexedSkipList<>(Comparator.naturalOrder());
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(0));
+        list.add("b");
+        list.add("a");
+        assertEquals("b", list.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.range(3, 1));
+        assertEquals(List.of(), list.range(2, 5));
+    }
+}
@@ -0,0 +1,145 @@
+package com.kieran.dvd_library.view;
+
+import com.kieran.dvd_library.dao.DVDLibraryFileImpl;
+import com.kieran.dvd_library.dao.DVDLibraryStorage;
+import com.kieran.dvd_library.dao.DVDLibraryVersionedStorage;
+import com.kieran.dvd_library.dto.DVD;
+import com.kieran.dvd_library.dto.DVDPatch;
+import com.kieran.dvd_library.dto.EDVDField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for DVDRowRenderCache
+ */
+public class DVDRowRenderCacheTest {
+    /**
+     * The directory holding each test's library
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Builds a DVD with every field set
+     * @param title The title of the DVD
+     * @param studio The studio of the DVD
+     * @return The DVD
+     */
+    private static DVD dvd(String title, String studio) {
+        DVD dvd = new DVD();
+        dvd.setTitle(title);
+        dvd.setReleaseDate("01/01/2000");
+        dvd.setMpaaRating("PG");
+        dvd.setDirectorName("Director");
+        dvd.setStudio(studio);
+        dvd.setUserRatingAndNote("5/10");
+        return dvd;
+    }
+
+    @Test
+    public void editsAndRenamesInvalidateTheirRows() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryVersionedStorage(), dir.resolve("library.txt").toString());
+        DVDRowRenderCache cache = new DVDRowRenderCache();
+        dao.addChangeListener(cache);
+        assertTrue(dao.load());
+        dao.addDvd(dvd("Alien", "Fox"));
+        dao.addDvd(dvd("Heat", "Warner"));
+        cache.render(dao.getDvdInfo("Alien"));
+        cache.render(dao.getDvdInfo("Heat"));
+        cache.render(dao.getDvdInfo("Alien"));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        DVDPatch studio = new DVDPatch();
+        studio.set(EDVDField.STUDIO, "Universal");
+        assertTrue(dao.updateDvd("Alien", studio));
+        assertEquals(1, cache.getInvalidations());
+        assertTrue(cache.render(dao.getDvdInfo("Alien")).contains("Universal"));
+        // The edited DVD's row is cached again and reused
+        cache.render(dao.getDvdInfo("Alien"));
+        assertEquals(2, cache.getHits());
+
+        DVDPatch rename = new DVDPatch();
+        rename.set(EDVDField.TITLE, "Aliens");
+        assertTrue(dao.updateDvd("Alien", rename));
+        assertEquals(2, cache.getInvalidations());
+        assertEquals(1, cache.size());
+        assertTrue(cache.render(dao.getDvdInfo("Aliens")).startsWith("Aliens"));
+
+        assertTrue(dao.load());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void rowsAreOnlyReusedForTheSameDvdObject() {
+        DVDRowRenderCache cache = new DVDRowRenderCache();
+        DVD original = dvd("Alien", "Fox");
+        cache.render(original);
+        // An equal title rendered from another object, such as a DVD replaced behind the cache's back
+        assertTrue(cache.render(dvd("Alien", "Warner")).contains("Warner"));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void scansLargerThanTheCacheNeverEvict() {
+        DVDRowRenderCache cache = new DVDRowRenderCache(10);
+        for(int i = 0; i < 30; i++) {
+            cache.render(dvd("Movie " + i, "Studio"));
+        }
+        assertEquals(10, cache.size());
+        assertEquals(20, cache.getEvictions());
+
+        DVDRowRenderCache scanned = new DVDRowRenderCache(10);
+        DVD[] dvds = new DVD[30];
+        for(int i = 0; i < dvds.length; i++) {
+            dvds[i] = dvd("Movie " + i, "Studio");
+        }
+        for(int pass = 0; pass < 2; pass++) {
+            for(DVD dvd : dvds) {
+                assertEquals(dvd.toString(), scanned.renderScan(dvd));
+            }
+        }
+        assertEquals(0, scanned.getEvictions());
+        assertEquals(10, scanned.getHits());
+    }
+
+    @Test
+    public void renderedRowsAlwaysMatchTheStoredDvds() {
+        DVDLibraryFileImpl dao = new DVDLibraryFileImpl(new DVDLibraryStorage(), dir.resolve("library.txt").toString());
+        DVDRowRenderCache cache = new DVDRowRenderCache(32);
+        dao.addChangeListener(cache);
+        assertTrue(dao.load());
+        Random random = new Random(99);
+        for(int i = 0; i < 20_000; i++) {
+            String title = "Movie " + random.nextInt(64);
+            switch(random.nextInt(4)) {
+                case 0:
+                    dao.addDvd(dvd(title, "Studio " + random.nextInt(5)));
+                    break;
+                case 1:
+                    dao.removeDvd(title);
+                    break;
+                case 2:
+                    DVDPatch patch = new DVDPatch();
+                    patch.set(EDVDField.STUDIO, "Studio " + random.nextInt(5));
+                    dao.updateDvd(title, patch);
+                    break;
+                default:
+                    DVD stored = dao.getDvdInfo(title);
+                    if(stored != null) {
+                        assertEquals(stored.toString(), cache.render(stored));
+                    }
+                    break;
+            }
+        }
+        assertTrue(cache.getHits() > 0);
+    }
+}